@@ -0,0 +1,73 @@
+package com.chat.configuration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Hebt die ID-Sequenz der Chatnachrichten über die bereits vergebenen IDs.
+ *
+ * <p>Früher wurden die IDs per {@code IDENTITY} (Auto-Increment) vergeben, heute blockweise aus
+ * {@code chat_message_seq}. Legt {@code ddl-auto=update} die Sequenz in einer bestehenden Datenbank
+ * an, beginnt sie bei 1 und würde mit den vorhandenen IDs kollidieren. Deshalb wird sie beim Start,
+ * nachdem Hibernate das Schema aktualisiert hat und bevor Nachrichten angenommen werden, auf
+ * {@code MAX(id)} plus einen Block gesetzt. Ist sie bereits weiter, bleibt sie unverändert.</p>
+ *
+ * <p>MySQL kennt keine Sequenzen; Hibernate bildet sie dort als Tabelle mit der Spalte
+ * {@code next_val} nach. Datenbanken mit echten Sequenzen (H2, MariaDB) werden per
+ * {@code ALTER SEQUENCE ... RESTART WITH} angepasst.</p>
+ */
+@Component
+public class ChatMessageIdMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMessageIdMigration.class);
+
+    /**
+     * Muss der {@code allocationSize} von {@link com.chat.entity.ChatMessage#getId()} entsprechen.
+     */
+    static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param dataSource           die Datenquelle
+     * @param entityManagerFactory nur als Abhängigkeit, damit das Schema bereits aktualisiert ist
+     */
+    public ChatMessageIdMigration(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    public void migrate() {
+        Long max = jdbcTemplate.queryForObject("select max(id) from chat_message", Long.class);
+        if (max == null) {
+            return;
+        }
+        long next = max + ALLOCATION_SIZE + 1;
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                    DatabaseMetaData::getDatabaseProductName).toLowerCase();
+            if (product.contains("mysql")) {
+                int updated = jdbcTemplate.update("update chat_message_seq set next_val = ? where next_val < ?", next, next);
+                if (updated > 0) {
+                    log.info("ID-Sequenz der Chatnachrichten auf {} angehoben", next);
+                }
+                return;
+            }
+            Long current = jdbcTemplate.queryForObject("select next value for chat_message_seq", Long.class);
+            if (current != null && current <= max + ALLOCATION_SIZE) {
+                jdbcTemplate.execute("alter sequence chat_message_seq restart with " + next);
+                log.info("ID-Sequenz der Chatnachrichten auf {} angehoben", next);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not move chat_message_seq above the existing message ids", e);
+        }
+    }
+}
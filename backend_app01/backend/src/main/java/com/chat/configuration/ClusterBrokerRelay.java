@@ -0,0 +1,149 @@
+package com.chat.configuration;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.ClusterFrame;
+import com.chat.model.Status;
+import com.chat.service.ClusterBus;
+import com.chat.service.ConversationCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Verbindet den lokalen Simple-Broker mit dem {@link ClusterBus}.
+ *
+ * <p>Alle Nachrichten an {@code /chatroom/**} und {@code /user/**}, die auf diesem Knoten an den
+ * Broker gehen, werden zusätzlich an die anderen Knoten verteilt. Von dort empfangene Nachrichten
+ * werden in den lokalen Broker-Kanal eingespeist und erreichen so die hier verbundenen Sitzungen.
+ * Eingespeiste Nachrichten tragen den Header {@value #ORIGIN_HEADER} und werden nicht erneut
+ * weitergeleitet, ebenso wenig wie Nachrichten mit {@link ClusterBus#LOCAL_HEADER}.</p>
+ *
+ * <p>Chatnachrichten aus eingespeisten Frames (öffentlicher Chatroom, auch gebündelt, und
+ * {@code /user/{name}/private}) werden außerdem in den {@link ConversationCache} dieses Knotens
+ * übernommen, damit Verlauf und Resync hier dieselben neuesten Nachrichten sehen wie auf dem
+ * Ursprungsknoten.</p>
+ *
+ * <p>Nur aktiv, wenn {@code chat.cluster.mode} nicht {@code standalone} ist.</p>
+ */
+@Component
+@ConditionalOnExpression("'${chat.cluster.mode:standalone}' != 'standalone'")
+public class ClusterBrokerRelay implements ChannelInterceptor, WebSocketMessageBrokerConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterBrokerRelay.class);
+
+    static final String ORIGIN_HEADER = "cluster-origin";
+
+    /**
+     * Ziele, auf denen Chatnachrichten verteilt werden.
+     */
+    private static final Pattern CHAT_DESTINATION = Pattern.compile("/chatroom/public|/user/[^/]+/private");
+
+    private final ClusterBus clusterBus;
+    private final MessageChannel brokerChannel;
+    private final ConversationCache conversationCache;
+    private final ObjectMapper objectMapper;
+
+    public ClusterBrokerRelay(ClusterBus clusterBus,
+                              @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                              ConversationCache conversationCache,
+                              ObjectMapper objectMapper) {
+        this.clusterBus = clusterBus;
+        this.brokerChannel = brokerChannel;
+        this.conversationCache = conversationCache;
+        this.objectMapper = objectMapper;
+        clusterBus.onReceive(this::deliver);
+    }
+
+    /**
+     * Registriert diesen Interceptor auf dem Broker-Kanal.
+     *
+     * @param registry die Broker-Registrierung
+     */
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.configureBrokerChannel().interceptors(this);
+    }
+
+    /**
+     * Leitet lokal entstandene Broadcasts und private Nachrichten an die anderen Knoten weiter.
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || message.getHeaders().containsKey(ORIGIN_HEADER)
+                || message.getHeaders().containsKey(ClusterBus.LOCAL_HEADER)
+                || message.getHeaders().containsKey(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null && (destination.startsWith("/chatroom/") || destination.startsWith("/user/"))) {
+            Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+            clusterBus.publish(new ClusterFrame(clusterBus.nodeId(), destination,
+                    contentType != null ? contentType.toString() : null, payload));
+        }
+        return message;
+    }
+
+    private void deliver(ClusterFrame frame) {
+        if (frame.destination().startsWith(ClusterBus.INTERNAL_PREFIX)) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(frame.destination());
+        if (frame.contentType() != null) {
+            accessor.setContentType(MimeType.valueOf(frame.contentType()));
+        }
+        accessor.setHeader(ORIGIN_HEADER, frame.origin());
+        try {
+            brokerChannel.send(MessageBuilder.createMessage(frame.payload(), accessor.getMessageHeaders()));
+        } catch (RuntimeException e) {
+            // Der Cache soll trotzdem nachgeführt werden, sonst fehlt die Nachricht im Verlauf dieses Knotens
+            log.warn("Nachricht von Knoten {} an {} nicht zugestellt", frame.origin(), frame.destination(), e);
+        }
+
+        if (CHAT_DESTINATION.matcher(frame.destination()).matches()) {
+            applyToCache(frame);
+        }
+    }
+
+    /**
+     * Übernimmt die Chatnachrichten eines eingespeisten Frames in den Verlaufs-Cache. Der Inhalt ist
+     * eine einzelne Nachricht oder ein Array (gebündelter Broadcast).
+     */
+    private void applyToCache(ClusterFrame frame) {
+        try {
+            JsonNode root = objectMapper.readTree(frame.payload());
+            Iterable<JsonNode> nodes = root.isArray() ? root : List.of(root);
+            for (JsonNode node : nodes) {
+                com.chat.model.Message message = objectMapper.treeToValue(node, com.chat.model.Message.class);
+                if (message.getStatus() == Status.MESSAGE && message.getSequence() != null
+                        && message.getTimestamp() != null) {
+                    conversationCache.append(ChatMessage.from(message, message.getTimestamp()));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Nachricht von Knoten {} an {} nicht lesbar", frame.origin(), frame.destination(), e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.chat.configuration;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Begrenzt, wie viele Nachrichten pro Anwendungsziel (z. B. {@code /app/message}) gleichzeitig
+ * verarbeitet werden.
+ *
+ * <p>Mit virtuellen Threads gibt es keine Obergrenze durch die Poolgröße mehr. Ohne diese Grenze
+ * könnte eine Flut von Nachrichten beliebig viele Handler gleichzeitig in die Datenbank schicken
+ * und den Verbindungspool erschöpfen. Überzählige Nachrichten warten vor dem Handler; auf einem
+ * virtuellen Thread kostet dieses Warten keinen Plattform-Thread.</p>
+ */
+public class DestinationConcurrencyLimiter implements ExecutorChannelInterceptor {
+
+    private final String prefix;
+    private final int permits;
+    private final Map<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+
+    /**
+     * @param prefix  Zielpräfix, für das die Grenze gilt (z. B. {@code /app/})
+     * @param permits maximale Anzahl gleichzeitig verarbeiteter Nachrichten pro Ziel
+     */
+    public DestinationConcurrencyLimiter(String prefix, int permits) {
+        this.prefix = prefix;
+        this.permits = permits;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        Semaphore semaphore = semaphoreFor(message);
+        if (semaphore != null) {
+            semaphore.acquireUninterruptibly();
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        Semaphore semaphore = semaphoreFor(message);
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    private Semaphore semaphoreFor(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !destination.startsWith(prefix)) {
+            return null;
+        }
+        return semaphores.computeIfAbsent(destination, key -> new Semaphore(permits));
+    }
+}
@@ -0,0 +1,83 @@
+package com.chat.configuration;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.chat.service.RateLimiter;
+
+/**
+ * Begrenzt Anmeldung und Registrierung pro Client-Adresse, damit weder Passwörter durchprobiert
+ * noch massenhaft Konten angelegt werden können.
+ *
+ * <p>Gilt für {@code POST} auf die konfigurierten Pfade (standardmäßig {@code /api/users/login},
+ * {@code /api/users/jwt-login} und {@code /api/users/signup}), die sich ein gemeinsames Budget
+ * teilen. Überzählige Anfragen erhalten {@code 429 Too Many Requests} mit {@code Retry-After} und
+ * erreichen den Passwort-Hasher gar nicht erst.</p>
+ */
+@Component
+public class HttpRateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final List<String> paths;
+    private final RateLimiter limiter;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public HttpRateLimitFilter(@Value("${chat.ratelimit.enabled:true}") boolean enabled,
+                               @Value("${chat.ratelimit.http.paths:/api/users/login,/api/users/jwt-login,/api/users/signup}") List<String> paths,
+                               @Value("${chat.ratelimit.http.capacity:10}") int capacity,
+                               @Value("${chat.ratelimit.http.per-second:0.2}") double perSecond,
+                               @Value("${chat.ratelimit.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        this.paths = paths;
+        this.limiter = new RateLimiter(capacity, perSecond, maxKeys);
+    }
+
+    /**
+     * Kennzahlen der Ratenbegrenzung.
+     *
+     * @param rejected    seit dem Start abgewiesene Anfragen
+     * @param trackedKeys aktuell gespeicherte Budgets (Client-Adressen)
+     */
+    public record Stats(long rejected, int trackedKeys) {
+    }
+
+    /**
+     * @return aktuelle Kennzahlen
+     */
+    public Stats stats() {
+        return new Stats(rejected.get(), limiter.size());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !paths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long waitNanos = limiter.tryAcquire(request.getRemoteAddr());
+        if (waitNanos == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        rejected.incrementAndGet();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("Too many requests, please retry later");
+    }
+}
@@ -4,18 +4,37 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 /**
  * Filter zur Validierung von JWT-Token für geschützte API-Endpunkte.
  * <p>
- * Nur Anfragen, deren Pfade mit {@code /api/secure/} beginnen, werden überprüft.
- * Für alle anderen Endpunkte wird der Filter übersprungen.
+ * Nur Anfragen, deren Pfade mit {@code /api/secure/} beginnen, müssen ein gültiges Token tragen.
+ * Bei allen anderen Endpunkten wird ein mitgeschicktes gültiges Token ausgewertet, etwa für die
+ * Statistiken, die Administratoren auch von außen abrufen dürfen; ohne oder mit ungültigem Token
+ * geht die Anfrage unverändert weiter.
+ * <p>
+ * Benutzer aus {@code chat.security.admins} erhalten zusätzlich die Rolle {@code ADMIN} für
+ * Verwaltungsendpunkte wie den Neuaufbau des Suchindex.
  */
 public class JwtFilter extends OncePerRequestFilter {
 
+    private final Set<String> admins;
+
+    /**
+     * @param admins Benutzernamen mit der Rolle {@code ADMIN}
+     */
+    public JwtFilter(Set<String> admins) {
+        this.admins = admins;
+    }
+
     /**
      * Prüft bei geschützten Routen den Authorization-Header und validiert das JWT.
      *
@@ -48,9 +67,25 @@ public class JwtFilter extends OncePerRequestFilter {
                 response.getWriter().write("Ungültiges oder abgelaufenes Token");
                 return;
             }
+
+            authenticate(jwt);
+        } else {
+            String authHeader = request.getHeader("Authorization");
+            if (authHeader != null && authHeader.startsWith("Bearer ") && JwtUtil.validateToken(authHeader.substring(7))) {
+                authenticate(authHeader.substring(7));
+            }
         }
 
         // Wenn alles passt oder Pfad nicht geschützt ist → weiterreichen
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Stellt den Benutzer für nachgelagerte Prüfungen und als Principal der Controller bereit.
+     */
+    private void authenticate(String jwt) {
+        String username = JwtUtil.extractUsername(jwt);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(username, null,
+                admins.contains(username) ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN")) : List.of()));
+    }
 }
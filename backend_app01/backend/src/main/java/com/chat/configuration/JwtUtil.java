@@ -1,11 +1,19 @@
 package com.chat.configuration;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Dienstklasse zur Erstellung und Validierung von JWT-Token (JSON Web Token).
@@ -18,6 +26,10 @@ import java.util.Date;
  * </ul>
  * <p>
  * Wird typischerweise für Authentifizierung und Autorisierung in REST-APIs verwendet.
+ * <p>
+ * Schlüssel und Parser werden nur einmal erzeugt (beide sind thread-sicher). Bereits geprüfte
+ * Token werden bis zu ihrem Ablauf in einem begrenzten Cache gehalten, sodass wiederholte
+ * Prüfungen desselben Tokens nur einen Map-Zugriff statt HMAC-Berechnung und JSON-Parsing kosten.
  */
 public class JwtUtil {
 
@@ -26,6 +38,37 @@ public class JwtUtil {
      */
     private static final String SECRET_KEY = "supergeheimespasswort1234567890123456";
 
+    /**
+     * Aus {@link #SECRET_KEY} abgeleiteter HMAC-Schlüssel.
+     */
+    private static final Key SIGNING_KEY = Keys.hmacShaKeyFor(SECRET_KEY.getBytes(StandardCharsets.UTF_8));
+
+    /**
+     * Wiederverwendbarer, thread-sicherer Parser für signierte Token.
+     */
+    private static final JwtParser PARSER = Jwts.parserBuilder()
+            .setSigningKey(SIGNING_KEY)
+            .build();
+
+    /**
+     * Maximale Anzahl gleichzeitig zwischengespeicherter, gültiger Token.
+     */
+    private static final int MAX_CACHED_TOKENS = 10_000;
+
+    /**
+     * Bereits geprüfte Token mit Benutzername und Ablaufzeitpunkt.
+     */
+    private static final Map<String, VerifiedToken> VERIFIED = new ConcurrentHashMap<>();
+
+    /**
+     * Ergebnis einer erfolgreichen Prüfung.
+     *
+     * @param username  der Benutzername (Subject)
+     * @param expiresAt Ablaufzeitpunkt in Millisekunden
+     */
+    private record VerifiedToken(String username, long expiresAt) {
+    }
+
     /**
      * Erzeugt ein JWT-Token für den angegebenen Benutzernamen.
      *
@@ -37,7 +80,7 @@ public class JwtUtil {
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + 86400000)) // 1 Tag
-                .signWith(Keys.hmacShaKeyFor(SECRET_KEY.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .signWith(SIGNING_KEY, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -49,12 +92,7 @@ public class JwtUtil {
      * @throws io.jsonwebtoken.JwtException wenn der Token ungültig oder abgelaufen ist.
      */
     public static String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(Keys.hmacShaKeyFor(SECRET_KEY.getBytes(StandardCharsets.UTF_8)))
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return verify(token).username();
     }
 
     /**
@@ -65,13 +103,55 @@ public class JwtUtil {
      */
     public static boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(Keys.hmacShaKeyFor(SECRET_KEY.getBytes(StandardCharsets.UTF_8)))
-                    .build()
-                    .parseClaimsJws(token);
+            verify(token);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
+
+    /**
+     * Prüft einen Token und liefert das zwischengespeicherte Ergebnis, solange er nicht abgelaufen ist.
+     *
+     * @param token Der JWT-Token.
+     * @return Benutzername und Ablaufzeitpunkt.
+     * @throws JwtException wenn der Token ungültig oder abgelaufen ist.
+     */
+    private static VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new JwtException("Token fehlt");
+        }
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = VERIFIED.get(token);
+        if (cached != null) {
+            if (cached.expiresAt() > now) {
+                return cached;
+            }
+            VERIFIED.remove(token, cached);
+            throw new ExpiredJwtException(null, null, "Token abgelaufen");
+        }
+
+        Claims claims = PARSER.parseClaimsJws(token).getBody();
+        Date expiration = claims.getExpiration();
+        VerifiedToken verified = new VerifiedToken(claims.getSubject(),
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+
+        if (VERIFIED.size() >= MAX_CACHED_TOKENS) {
+            evict(now);
+        }
+        VERIFIED.put(token, verified);
+        return verified;
+    }
+
+    /**
+     * Entfernt abgelaufene Token; reicht das nicht, wird ein Teil der übrigen Einträge verworfen.
+     */
+    private static void evict(long now) {
+        VERIFIED.values().removeIf(v -> v.expiresAt() <= now);
+        Iterator<String> it = VERIFIED.keySet().iterator();
+        while (VERIFIED.size() >= MAX_CACHED_TOKENS * 9 / 10 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
 }
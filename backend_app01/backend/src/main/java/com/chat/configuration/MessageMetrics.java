@@ -0,0 +1,345 @@
+package com.chat.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metriken für den heißen Pfad der Chatnachrichten, veröffentlicht über Micrometer
+ * ({@code /actuator/prometheus}, {@code /actuator/metrics}).
+ *
+ * <ul>
+ *     <li>{@code chat.messages.received} – eingehende Nachrichten an {@code /app/message} und
+ *     {@code /app/private-message}</li>
+ *     <li>{@code chat.message.persist} – Zeit vom Eintreffen des Frames bis zum Commit</li>
+ *     <li>{@code chat.message.deliver} – Zeit vom Eintreffen des Frames bis zur Übergabe an die
+ *     Sitzung jedes Empfängers</li>
+ *     <li>{@code chat.websocket.sessions} und {@code chat.broker.subscriptions} – aktuelle STOMP-Sitzungen
+ *     und Abonnements</li>
+ *     <li>{@code chat.channel.queued} und {@code chat.channel.active} – Warteschlange und aktive Threads
+ *     der Client-Kanäle, siehe {@link #bindChannelExecutor}</li>
+ * </ul>
+ * Alle Nachrichtenmetriken tragen das Tag {@code type} ({@code public} oder {@code private}); die
+ * Timer veröffentlichen p50/p95/p99 sowie ein Histogramm für Prometheus.
+ *
+ * <p>Der Interceptor {@link #inbound()} stempelt die Empfangszeit in den Header
+ * {@value #RECEIVED_HEADER}. Während der Controller läuft, merkt er sich Zeit und Typ im Thread:
+ * Der einfache Broker verteilt synchron auf diesem Thread, sodass jede dabei erzeugte Nachricht
+ * auf dem Outbound-Kanal ({@link #outbound()}) den Stempel übernimmt und nach der Übergabe an die
+ * Sitzung gemessen wird.
+ * Gebündelte Verteilung und Nachrichten anderer Clusterknoten laufen auf anderen Threads und gehen
+ * nicht in {@code chat.message.deliver} ein.</p>
+ */
+@Component
+public class MessageMetrics {
+
+    public static final String RECEIVED_HEADER = "chatReceivedNanos";
+    public static final String PUBLIC = "public";
+    public static final String PRIVATE = "private";
+
+    private static final String TYPE_HEADER = "chatMessageType";
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    /**
+     * Stempel der Nachricht, die der aktuelle Thread gerade verarbeitet.
+     */
+    private record Received(long nanos, String type) {
+    }
+
+    private final ThreadLocal<Received> current = new ThreadLocal<>();
+    private final Map<String, Map<String, String>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Counter> received = new LinkedHashMap<>();
+    private final Map<String, Timer> persist = new LinkedHashMap<>();
+    private final Map<String, Timer> deliver = new LinkedHashMap<>();
+    private final Inbound inbound = new Inbound();
+    private final Outbound outbound = new Outbound();
+
+    public MessageMetrics(MeterRegistry registry) {
+        for (String type : List.of(PUBLIC, PRIVATE)) {
+            received.put(type, Counter.builder("chat.messages.received")
+                    .description("Eingegangene Chatnachrichten")
+                    .tag("type", type)
+                    .register(registry));
+            persist.put(type, timer("chat.message.persist", "Vom Eintreffen bis zum Commit", type, registry));
+            deliver.put(type, timer("chat.message.deliver", "Vom Eintreffen bis zur Übergabe an die Empfängersitzung", type, registry));
+        }
+        Gauge.builder("chat.websocket.sessions", subscriptions, Map::size)
+                .description("Verbundene STOMP-Sitzungen")
+                .register(registry);
+        for (String group : List.of(PUBLIC, "presence", PRIVATE, "other")) {
+            Gauge.builder("chat.broker.subscriptions", () -> subscriptionCounts().get(group))
+                    .description("Aktive Abonnements am Broker")
+                    .tag("destination", group)
+                    .register(registry);
+        }
+    }
+
+    private static Timer timer(String name, String description, String type, MeterRegistry registry) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("type", type)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Kennzahlen je Nachrichtentyp.
+     *
+     * @param received  eingegangene Nachrichten
+     * @param persisted gespeicherte Nachrichten
+     * @param persistMs Perzentile (p50, p95, p99) vom Eintreffen bis zum Commit in Millisekunden
+     * @param delivered Übergaben an Empfängersitzungen
+     * @param deliverMs Perzentile (p50, p95, p99) vom Eintreffen bis zur Übergabe in Millisekunden
+     */
+    public record TypeStats(long received, long persisted, Map<String, Double> persistMs,
+                            long delivered, Map<String, Double> deliverMs) {
+    }
+
+    /**
+     * Momentaufnahme für das Betriebs-Dashboard.
+     *
+     * @param sessions      verbundene STOMP-Sitzungen
+     * @param subscriptions Abonnements je Zielgruppe
+     * @param types         Kennzahlen je Nachrichtentyp
+     */
+    public record Stats(int sessions, Map<String, Integer> subscriptions, Map<String, TypeStats> types) {
+    }
+
+    /**
+     * @return aktuelle Kennzahlen
+     */
+    public Stats stats() {
+        Map<String, TypeStats> types = new LinkedHashMap<>();
+        for (String type : received.keySet()) {
+            HistogramSnapshot persisted = persist.get(type).takeSnapshot();
+            HistogramSnapshot delivered = deliver.get(type).takeSnapshot();
+            types.put(type, new TypeStats((long) received.get(type).count(),
+                    persisted.count(), percentiles(persisted),
+                    delivered.count(), percentiles(delivered)));
+        }
+        return new Stats(subscriptions.size(), subscriptionCounts(), types);
+    }
+
+    /**
+     * Liefert den Empfangszeitpunkt aus dem Header einer eingehenden Nachricht.
+     *
+     * @param headers die Header des Frames
+     * @return der Zeitpunkt ({@link System#nanoTime()}) oder die aktuelle Zeit, wenn kein Stempel vorliegt
+     */
+    public static long receivedNanos(SimpMessageHeaderAccessor headers) {
+        Object stamp = headers != null ? headers.getHeader(RECEIVED_HEADER) : null;
+        return stamp instanceof Long nanos ? nanos : System.nanoTime();
+    }
+
+    /**
+     * Erfasst den Commit einer Nachricht.
+     *
+     * @param type          {@link #PUBLIC} oder {@link #PRIVATE}
+     * @param receivedNanos Empfangszeitpunkt aus {@link #receivedNanos(SimpMessageHeaderAccessor)}
+     */
+    public void persisted(String type, long receivedNanos) {
+        persist.get(type).record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Meldet Warteschlange und aktive Threads eines Kanal-Executors. Virtuelle Threads haben keine
+     * Warteschlange; dafür werden keine Werte gemeldet.
+     *
+     * @param registry die Registry
+     * @param channel  Name des Kanals ({@code inbound} oder {@code outbound})
+     * @param executor der Executor des Kanals
+     */
+    public static void bindChannelExecutor(MeterRegistry registry, String channel, TaskExecutor executor) {
+        if (!(executor instanceof ThreadPoolTaskExecutor pool)) {
+            return;
+        }
+        Gauge.builder("chat.channel.queued", pool, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Nachrichten, die auf einen Thread des Kanals warten")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("chat.channel.active", pool, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Aktive Threads des Kanals")
+                .tag("channel", channel)
+                .register(registry);
+    }
+
+    /**
+     * @return der Interceptor für den Client-Inbound-Kanal
+     */
+    public ExecutorChannelInterceptor inbound() {
+        return inbound;
+    }
+
+    /**
+     * @return der Interceptor für den Client-Outbound-Kanal
+     */
+    public ExecutorChannelInterceptor outbound() {
+        return outbound;
+    }
+
+    /**
+     * Zählt und stempelt eingehende Nachrichten, verfolgt Sitzungen und Abonnements und merkt sich
+     * den Stempel im Thread, solange die Handler laufen.
+     */
+    private final class Inbound implements ExecutorChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+            if (messageType == SimpMessageType.MESSAGE) {
+                return markInbound(message);
+            }
+            if (messageType != null) {
+                track(messageType, message);
+            }
+            return message;
+        }
+
+        @Override
+        public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+            if (message.getHeaders().get(RECEIVED_HEADER) instanceof Long nanos
+                    && message.getHeaders().get(TYPE_HEADER) instanceof String type) {
+                current.set(new Received(nanos, type));
+            }
+            return message;
+        }
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+            current.remove();
+        }
+    }
+
+    /**
+     * Übernimmt den Stempel des Threads in ausgehende Nachrichten und misst nach der Übergabe an
+     * die Sitzung.
+     */
+    private final class Outbound implements ExecutorChannelInterceptor {
+
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            Received stamp = current.get();
+            if (stamp == null || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+                return message;
+            }
+            return stamp(message, stamp.nanos(), stamp.type());
+        }
+
+        @Override
+        public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+            if (ex == null && message.getHeaders().get(RECEIVED_HEADER) instanceof Long nanos
+                    && message.getHeaders().get(TYPE_HEADER) instanceof String type) {
+                deliver.get(type).record(System.nanoTime() - nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private Message<?> markInbound(Message<?> message) {
+        String type = typeOf(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        if (type == null) {
+            return message;
+        }
+        received.get(type).increment();
+        return stamp(message, System.nanoTime(), type);
+    }
+
+    private static Message<?> stamp(Message<?> message, long nanos, String type) {
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setHeader(RECEIVED_HEADER, nanos);
+        accessor.setHeader(TYPE_HEADER, type);
+        // Veränderbare Header werden direkt ergänzt, sonst entsteht eine Kopie
+        return accessor.getMessageHeaders() == message.getHeaders()
+                ? message
+                : MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    private void track(SimpMessageType messageType, Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        switch (messageType) {
+            case CONNECT -> subscriptions.putIfAbsent(sessionId, new ConcurrentHashMap<>());
+            case DISCONNECT -> subscriptions.remove(sessionId);
+            case SUBSCRIBE -> {
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+                String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+                Map<String, String> session = subscriptions.get(sessionId);
+                if (session != null && subscriptionId != null && destination != null) {
+                    session.put(subscriptionId, groupOf(destination));
+                }
+            }
+            case UNSUBSCRIBE -> {
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+                Map<String, String> session = subscriptions.get(sessionId);
+                if (session != null && subscriptionId != null) {
+                    session.remove(subscriptionId);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private Map<String, Integer> subscriptionCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String group : List.of(PUBLIC, "presence", PRIVATE, "other")) {
+            counts.put(group, 0);
+        }
+        for (Map<String, String> session : subscriptions.values()) {
+            for (String group : session.values()) {
+                counts.merge(group, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static Map<String, Double> percentiles(HistogramSnapshot snapshot) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            values.put("p" + Math.round(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+        }
+        return values;
+    }
+
+    private static String typeOf(String destination) {
+        if ("/app/message".equals(destination)) {
+            return PUBLIC;
+        }
+        if ("/app/private-message".equals(destination)) {
+            return PRIVATE;
+        }
+        return null;
+    }
+
+    private static String groupOf(String destination) {
+        if (destination.equals("/chatroom/public")) {
+            return PUBLIC;
+        }
+        if (destination.equals("/chatroom/presence")) {
+            return "presence";
+        }
+        return destination.startsWith("/user/") ? PRIVATE : "other";
+    }
+}
@@ -0,0 +1,378 @@
+package com.chat.configuration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Begrenzte Ausgangswarteschlange pro WebSocket-Sitzung mit Erkennung langsamer Empfänger.
+ *
+ * <p>Jede Sitzung erhält eine Warteschlange mit höchstens {@code maxMessages} Nachrichten und
+ * {@code maxBytes} Zeichen. Das Senden an den Socket übernimmt pro Sitzung ein virtueller Thread;
+ * Absender (Broker, Anwendung) reihen nur ein und warten nie auf einen langsamen Client. Läuft die
+ * Warteschlange über, greift die konfigurierte {@link Overflow}-Strategie.</p>
+ *
+ * <p>Ein Überwachungsthread bewertet jede Sekunde den Füllstand jeder Warteschlange als gleitenden
+ * Mittelwert (Slow-Consumer-Score zwischen 0 und 1) und trennt Sitzungen, deren laufender
+ * Sendevorgang länger als {@code sendTimeLimitMillis} dauert, mit dem Status {@link #SLOW_CONSUMER}.</p>
+ */
+@Component
+public class OutboundSessionPolicy implements WebSocketHandlerDecoratorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundSessionPolicy.class);
+
+    /**
+     * Schließstatus für getrennte langsame Empfänger (anwendungsspezifischer Bereich 4000–4999).
+     */
+    public static final CloseStatus SLOW_CONSUMER = new CloseStatus(4008, "Slow consumer");
+
+    private static final int SLOWEST_REPORTED = 10;
+    private static final double SCORE_WEIGHT = 0.2;
+
+    /**
+     * Verhalten bei voller Warteschlange.
+     */
+    public enum Overflow {
+        /** Älteste wartende Nachrichten verwerfen. */
+        DROP_OLDEST,
+        /** Nicht wesentliche Nachrichten (z. B. Anwesenheit) verwerfen, sonst trennen. */
+        DROP_NON_ESSENTIAL,
+        /** Verbindung mit {@link #SLOW_CONSUMER} trennen. */
+        DISCONNECT
+    }
+
+    /**
+     * Zustand einer Sitzung für die Statistik.
+     */
+    public record SessionStats(String sessionId, String user, int queuedMessages, long queuedBytes,
+                               long dropped, double score) {
+    }
+
+    /**
+     * Laufzeitwerte aller Sitzungen; {@code slowest} enthält die Sitzungen mit dem höchsten Score.
+     */
+    public record Stats(int sessions, long queuedMessages, long queuedBytes, long dropped,
+                        long droppedNonEssential, long disconnected, List<SessionStats> slowest) {
+    }
+
+    private record Pending(WebSocketMessage<?> message, long size, boolean essential) {
+    }
+
+    private final int maxMessages;
+    private final long maxBytes;
+    private final Overflow overflow;
+    private final List<String> nonEssentialPrefixes;
+    private final long sendTimeLimitMillis;
+
+    private final Map<String, BoundedSession> sessions = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder droppedNonEssential = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private ScheduledExecutorService monitor;
+
+    public OutboundSessionPolicy(@Value("${chat.websocket.outbound.max-messages:1000}") int maxMessages,
+                                 @Value("${chat.websocket.outbound.max-bytes:1048576}") long maxBytes,
+                                 @Value("${chat.websocket.outbound.overflow:DROP_NON_ESSENTIAL}") Overflow overflow,
+                                 @Value("${chat.websocket.outbound.non-essential:/chatroom/presence}") List<String> nonEssentialPrefixes,
+                                 @Value("${chat.websocket.outbound.send-time-limit-ms:10000}") long sendTimeLimitMillis) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.overflow = overflow;
+        this.nonEssentialPrefixes = List.copyOf(nonEssentialPrefixes);
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbound-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        monitor.scheduleWithFixedDelay(this::inspect, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        monitor.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                BoundedSession bounded = new BoundedSession(session);
+                sessions.put(session.getId(), bounded);
+                super.afterConnectionEstablished(bounded);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                BoundedSession bounded = sessions.remove(session.getId());
+                if (bounded != null) {
+                    bounded.discard();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * @return aktuelle Laufzeitwerte
+     */
+    public Stats stats() {
+        long queuedMessages = 0;
+        long queuedBytes = 0;
+        List<SessionStats> all = sessions.values().stream().map(BoundedSession::stats).toList();
+        for (SessionStats s : all) {
+            queuedMessages += s.queuedMessages();
+            queuedBytes += s.queuedBytes();
+        }
+        List<SessionStats> slowest = all.stream()
+                .sorted(Comparator.comparingDouble(SessionStats::score).reversed())
+                .limit(SLOWEST_REPORTED)
+                .toList();
+        return new Stats(all.size(), queuedMessages, queuedBytes, dropped.sum(), droppedNonEssential.sum(),
+                disconnected.sum(), slowest);
+    }
+
+    /**
+     * Aktualisiert die Scores und trennt Sitzungen mit hängendem Sendevorgang.
+     */
+    public void inspect() {
+        long now = System.currentTimeMillis();
+        for (BoundedSession session : sessions.values()) {
+            try {
+                session.inspect(now);
+            } catch (RuntimeException e) {
+                log.warn("Prüfung der Sitzung {} fehlgeschlagen", session.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Liest das Ziel aus einem STOMP-{@code MESSAGE}-Frame; Heartbeats und andere Frames gelten als wesentlich.
+     */
+    private boolean isEssential(WebSocketMessage<?> message) {
+        if (nonEssentialPrefixes.isEmpty()) {
+            return true;
+        }
+        String frame;
+        if (message instanceof TextMessage text) {
+            frame = text.getPayload();
+        } else if (message instanceof BinaryMessage binary) {
+            frame = headers(binary.getPayload());
+        } else {
+            return true;
+        }
+        int headerEnd = frame.indexOf("\n\n");
+        int start = frame.indexOf("\ndestination:");
+        if (start < 0 || (headerEnd >= 0 && start > headerEnd)) {
+            return true;
+        }
+        start += "\ndestination:".length();
+        int end = frame.indexOf('\n', start);
+        String destination = frame.substring(start, end < 0 ? frame.length() : end);
+        for (String prefix : nonEssentialPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Liest die Header eines binären Frames (z. B. CBOR), die wie bei Text-Frames als UTF-8 kodiert sind.
+     */
+    private static String headers(ByteBuffer payload) {
+        ByteBuffer frame = payload.duplicate();
+        for (int i = frame.position(); i < frame.limit() - 1; i++) {
+            if (frame.get(i) == '\n' && frame.get(i + 1) == '\n') {
+                frame.limit(i);
+                break;
+            }
+        }
+        return StandardCharsets.UTF_8.decode(frame).toString();
+    }
+
+    private static long sizeOf(WebSocketMessage<?> message) {
+        // Zeichen statt UTF-8-Bytes: vermeidet eine zusätzliche Kodierung pro Nachricht
+        return message instanceof TextMessage text ? text.getPayload().length() : message.getPayloadLength();
+    }
+
+    /**
+     * Sitzung mit eigener Warteschlange. Alle Felder werden unter der Sperre der Instanz geändert.
+     */
+    private final class BoundedSession extends WebSocketSessionDecorator {
+
+        private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        private long queuedBytes;
+        private long droppedHere;
+        private boolean sending;
+        private long sendStartedAt;
+        private boolean closing;
+        private volatile double score;
+
+        BoundedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            Pending pending = new Pending(message, sizeOf(message), isEssential(message));
+            synchronized (this) {
+                if (closing) {
+                    return;
+                }
+                while (!queue.isEmpty() && (queue.size() >= maxMessages || queuedBytes + pending.size() > maxBytes)) {
+                    switch (overflow) {
+                        case DROP_OLDEST -> {
+                            Pending oldest = queue.pollFirst();
+                            queuedBytes -= oldest.size();
+                            drop(oldest);
+                        }
+                        case DROP_NON_ESSENTIAL -> {
+                            if (!pending.essential()) {
+                                drop(pending);
+                                return;
+                            }
+                            if (!dropFirstNonEssential()) {
+                                disconnect();
+                                return;
+                            }
+                        }
+                        case DISCONNECT -> {
+                            disconnect();
+                            return;
+                        }
+                    }
+                }
+                queue.addLast(pending);
+                queuedBytes += pending.size();
+                if (!sending) {
+                    sending = true;
+                    senders.execute(this::drain);
+                }
+            }
+        }
+
+        /**
+         * Sendet wartende Nachrichten nacheinander, bis die Warteschlange leer ist.
+         */
+        private void drain() {
+            while (true) {
+                Pending next;
+                synchronized (this) {
+                    next = closing ? null : queue.pollFirst();
+                    if (next == null) {
+                        sending = false;
+                        sendStartedAt = 0;
+                        return;
+                    }
+                    queuedBytes -= next.size();
+                    sendStartedAt = System.currentTimeMillis();
+                }
+                try {
+                    getDelegate().sendMessage(next.message());
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Senden an Sitzung {} fehlgeschlagen", getId(), e);
+                    synchronized (this) {
+                        discard();
+                        sending = false;
+                    }
+                    return;
+                }
+            }
+        }
+
+        synchronized void inspect(long now) {
+            double fill = Math.max((double) queue.size() / maxMessages, (double) queuedBytes / maxBytes);
+            score = (1 - SCORE_WEIGHT) * score + SCORE_WEIGHT * Math.min(1.0, fill);
+            if (sendStartedAt > 0 && now - sendStartedAt > sendTimeLimitMillis && !closing) {
+                log.info("Sitzung {} sendet seit {} ms, wird getrennt", getId(), now - sendStartedAt);
+                disconnect();
+            }
+        }
+
+        synchronized SessionStats stats() {
+            Principal principal = getPrincipal();
+            return new SessionStats(getId(), principal != null ? principal.getName() : null, queue.size(),
+                    queuedBytes, droppedHere, score);
+        }
+
+        /**
+         * Verwirft alle wartenden Nachrichten, z. B. nachdem die Verbindung geschlossen wurde.
+         */
+        synchronized void discard() {
+            closing = true;
+            queue.clear();
+            queuedBytes = 0;
+        }
+
+        private boolean dropFirstNonEssential() {
+            for (Iterator<Pending> it = queue.iterator(); it.hasNext(); ) {
+                Pending candidate = it.next();
+                if (!candidate.essential()) {
+                    it.remove();
+                    queuedBytes -= candidate.size();
+                    drop(candidate);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void drop(Pending pending) {
+            droppedHere++;
+            dropped.increment();
+            if (!pending.essential()) {
+                droppedNonEssential.increment();
+            }
+        }
+
+        private void disconnect() {
+            discard();
+            disconnected.increment();
+            // Schließen kann blockieren, solange ein Sendevorgang hängt – daher nicht auf dem Absender-Thread
+            senders.execute(() -> {
+                try {
+                    getDelegate().close(SLOW_CONSUMER);
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Trennen der Sitzung {} fehlgeschlagen", getId(), e);
+                }
+            });
+        }
+    }
+}
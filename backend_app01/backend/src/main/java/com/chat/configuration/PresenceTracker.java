@@ -0,0 +1,47 @@
+package com.chat.configuration;
+
+import com.chat.service.PresenceRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+/**
+ * Überträgt STOMP-Sitzungsereignisse in die {@link PresenceRegistry}.
+ *
+ * <p>Authentifizierte Sitzungen werden beim Verbinden ihrem Benutzer zugeordnet, beim Trennen
+ * entfernt. Als Interceptor auf dem Inbound-Kanal vermerkt die Klasse außerdem jedes eingehende
+ * Frame – auch Heartbeats – als Lebenszeichen der Sitzung.</p>
+ */
+@Component
+public class PresenceTracker implements ChannelInterceptor {
+
+    private final PresenceRegistry presenceRegistry;
+
+    public PresenceTracker(PresenceRegistry presenceRegistry) {
+        this.presenceRegistry = presenceRegistry;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        presenceRegistry.touch(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        return message;
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        if (event.getUser() != null) {
+            presenceRegistry.connect(SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders()),
+                    event.getUser().getName());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        presenceRegistry.disconnect(event.getSessionId());
+    }
+}
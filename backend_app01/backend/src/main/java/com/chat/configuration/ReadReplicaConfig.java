@@ -0,0 +1,107 @@
+package com.chat.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Optionale Aufteilung der Datenbankzugriffe auf Primärdatenbank und Lese-Replikat.
+ *
+ * <p>Mit {@code chat.datasource.replica.enabled=true} gibt es zwei Hikari-Pools mit getrennt
+ * einstellbarer Größe: {@code primary} für {@code spring.datasource.*} und {@code replica} für
+ * {@code chat.datasource.replica.*}. Schreibgeschützte Transaktionen, also alle lesenden
+ * Repository-Methoden außerhalb einer schreibenden Transaktion (Verlauf, Suche, Benutzer), laufen
+ * über das Replikat, alles andere über die Primärdatenbank.</p>
+ *
+ * <p>Die Entscheidung fällt erst beim ersten Statement: Hibernate holt sich die Verbindung schon
+ * beim Transaktionsbeginn, bevor Spring die Transaktion als schreibgeschützt markiert hat. Deshalb
+ * liegt vor der Weiche ein {@link LazyConnectionDataSourceProxy}, der die echte Verbindung erst
+ * anfordert, wenn sie gebraucht wird.</p>
+ *
+ * <p>Wo das Replikat nicht nachhinken darf, erzwingt {@link ReadYourWrites} die Primärdatenbank.</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    /**
+     * @param properties die Einstellungen unter {@code spring.datasource}
+     * @param poolSize   maximale Anzahl Verbindungen
+     * @return der Pool der Primärdatenbank
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties,
+                                              @Value("${chat.datasource.primary.pool-size:10}") int poolSize) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+
+    /**
+     * @param properties die Einstellungen unter {@code spring.datasource}, liefern Benutzer und
+     *                   Passwort, falls für das Replikat keine gesetzt sind
+     * @param url        JDBC-URL des Replikats
+     * @param username   Benutzer des Replikats (optional)
+     * @param password   Passwort des Replikats (optional)
+     * @param poolSize   maximale Anzahl Verbindungen
+     * @return der Pool des Replikats, mit schreibgeschützten Verbindungen
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${chat.datasource.replica.url}") String url,
+                                              @Value("${chat.datasource.replica.username:}") String username,
+                                              @Value("${chat.datasource.replica.password:}") String password,
+                                              @Value("${chat.datasource.replica.pool-size:10}") int poolSize) {
+        if (url.isBlank()) {
+            throw new IllegalStateException("chat.datasource.replica.url must be set when the replica is enabled");
+        }
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username.isBlank() ? properties.determineUsername() : username)
+                .password(username.isBlank() ? properties.determinePassword() : password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * @return die Datenquelle für JPA und alle übrigen Nutzer, mit Weiche nach Transaktionsart
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource();
+        routing.setTargetDataSources(Map.of(Boolean.FALSE, primary, Boolean.TRUE, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Wählt das Replikat, wenn die laufende Transaktion schreibgeschützt ist.
+     */
+    private static class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        }
+    }
+}
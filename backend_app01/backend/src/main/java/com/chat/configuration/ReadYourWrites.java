@@ -0,0 +1,91 @@
+package com.chat.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lesen der eigenen Schreibvorgänge trotz nachhinkendem Replikat (siehe {@link ReadReplicaConfig}).
+ *
+ * <p>Nach jedem Speichern in einer Konversation wird der Zeitpunkt vermerkt. Lesezugriffe auf diese
+ * Konversation laufen dann für {@code windowMillis} in einer schreibenden Transaktion und damit
+ * gegen die Primärdatenbank, sodass Absender und Empfänger ihre gerade gesendeten Nachrichten im
+ * Verlauf sehen. Länger zurückliegende Konversationen werden vom Replikat gelesen.</p>
+ *
+ * <p>Die Vermerke gelten nur für diesen Knoten. Ohne Replikat ist die Klasse wirkungslos.</p>
+ */
+@Component
+public class ReadYourWrites {
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long windowMillis;
+
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    public ReadYourWrites(TransactionTemplate transactionTemplate,
+                          @Value("${chat.datasource.replica.enabled:false}") boolean enabled,
+                          @Value("${chat.datasource.replica.read-your-writes-ms:5000}") long windowMillis) {
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Vermerkt einen abgeschlossenen Schreibvorgang in einer Konversation.
+     *
+     * @param conversationId Schlüssel der Konversation
+     */
+    public void written(String conversationId) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lastWrites.put(conversationId, now);
+        long swept = lastSweep.get();
+        if (now - swept > windowMillis && lastSweep.compareAndSet(swept, now)) {
+            lastWrites.values().removeIf(time -> now - time > windowMillis);
+        }
+    }
+
+    /**
+     * @param conversationId Schlüssel der Konversation
+     * @return ob die Konversation innerhalb des Fensters beschrieben wurde
+     */
+    public boolean recentlyWritten(String conversationId) {
+        Long time = lastWrites.get(conversationId);
+        return time != null && System.currentTimeMillis() - time <= windowMillis;
+    }
+
+    /**
+     * Führt eine Abfrage auf der Primärdatenbank aus, wenn die Konversation kürzlich beschrieben
+     * wurde, sonst unverändert (und damit schreibgeschützt auf dem Replikat).
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param query          die Abfrage
+     * @return ihr Ergebnis
+     */
+    public <T> T read(String conversationId, Supplier<T> query) {
+        return recentlyWritten(conversationId) ? primary(query) : query.get();
+    }
+
+    /**
+     * Führt eine Abfrage immer auf der Primärdatenbank aus, etwa wenn ihr Ergebnis in einen
+     * Schreibvorgang einfließt.
+     *
+     * @param query die Abfrage
+     * @return ihr Ergebnis
+     */
+    public <T> T primary(Supplier<T> query) {
+        if (!enabled) {
+            return query.get();
+        }
+        return transactionTemplate.execute(status -> query.get());
+    }
+}
@@ -1,13 +1,26 @@
 package com.chat.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpMethod;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.config.Customizer;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
 /**
  * Konfiguriert die Sicherheitsregeln für die Webanwendung.
  * 
@@ -21,6 +34,14 @@ import org.springframework.security.config.Customizer;
  * ein gültiges JWT im <code>Authorization</code>-Header. Andere Pfade wie
  * <code>/login</code> oder <code>/signup</code> sind öffentlich erreichbar.</p>
  *
+ * <p>Verwaltungsendpunkte (Neuaufbau des Suchindex) erfordern zusätzlich die Rolle {@code ADMIN},
+ * die der {@link JwtFilter} den in {@code chat.security.admins} genannten Benutzern gibt.</p>
+ *
+ * <p>Laufzeitstatistiken ({@code /api/stats/**}) und Actuator-Endpunkte (außer
+ * {@code /actuator/health}) verraten Interna wie die Namen verbundener Benutzer. Sie sind nur von
+ * den Adressen in {@code chat.security.monitoring-addresses} (standardmäßig nur lokal) oder mit
+ * der Rolle {@code ADMIN} erreichbar, z. B. für einen Prometheus-Server mit Bearer-Token.</p>
+ *
  * @author
  */
 @Configuration
@@ -34,12 +55,18 @@ public class SecurityConfig {
      * Authentifizierung erreichbar. Alle Endpunkte unter <code>/api/secure/**</code>
      * sind durch JWT-basierte Authentifizierung geschützt.</p>
      *
-     * @param http das {@link HttpSecurity}-Objekt zur Konfiguration
+     * @param http                das {@link HttpSecurity}-Objekt zur Konfiguration
+     * @param admins              Benutzernamen mit der Rolle {@code ADMIN}
+     * @param monitoringAddresses Client-Adressen, die Statistiken und Metriken ohne Anmeldung abrufen dürfen
      * @return ein {@link SecurityFilterChain}-Bean, das die Sicherheitsregeln definiert
      * @throws Exception bei Konfigurationsfehlern
      */
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http,
+                                           @Value("${chat.security.admins:}") List<String> admins,
+                                           @Value("${chat.security.monitoring-addresses:127.0.0.1,::1}") List<String> monitoringAddresses)
+            throws Exception {
+        AuthorizationManager<RequestAuthorizationContext> monitoring = monitoringAccess(parseAddresses(monitoringAddresses));
         return http
                 .cors(Customizer.withDefaults())
                 .csrf(csrf -> csrf.disable())
@@ -52,10 +79,43 @@ public class SecurityConfig {
                         "/api/users/history/**",
                         "/ws/**"
                     ).permitAll()
+                    .requestMatchers(HttpMethod.POST, "/api/secure/messages/search/rebuild").hasRole("ADMIN")
+                    .requestMatchers("/actuator/health").permitAll()
+                    .requestMatchers("/api/stats/**", "/actuator/**").access(monitoring)
                     .requestMatchers("/api/secure/**").authenticated()
                     .anyRequest().permitAll() // optional, aber verhindert "unmatched" 403
                 )
-                .addFilterBefore(new JwtFilter(), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new JwtFilter(Set.copyOf(admins.stream().map(String::trim).filter(a -> !a.isEmpty()).toList())),
+                        UsernamePasswordAuthenticationFilter.class)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Erlaubt Anfragen von den angegebenen Adressen oder mit der Rolle {@code ADMIN}.
+     */
+    private static AuthorizationManager<RequestAuthorizationContext> monitoringAccess(Set<InetAddress> addresses) {
+        return (Supplier<Authentication> authentication, RequestAuthorizationContext context) -> {
+            try {
+                if (addresses.contains(InetAddress.getByName(context.getRequest().getRemoteAddr()))) {
+                    return new AuthorizationDecision(true);
+                }
+            } catch (UnknownHostException e) {
+                // Keine gültige Adresse: nur mit Rolle zulassen
+            }
+            Authentication user = authentication.get();
+            return new AuthorizationDecision(user != null && user.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .anyMatch("ROLE_ADMIN"::equals));
+        };
+    }
+
+    private static Set<InetAddress> parseAddresses(List<String> addresses) {
+        return Set.copyOf(addresses.stream().map(String::trim).filter(a -> !a.isEmpty()).map(address -> {
+            try {
+                return InetAddress.getByName(address);
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Invalid monitoring address: " + address, e);
+            }
+        }).toList());
+    }
+}
@@ -0,0 +1,139 @@
+package com.chat.configuration;
+
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import com.chat.service.UserCache;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Authentifiziert STOMP-Sitzungen einmalig beim {@code CONNECT}.
+ *
+ * <p>Der Client übergibt das JWT im nativen Header {@code Authorization: Bearer <token>}. Bei
+ * gültigem Token wird der Benutzer als {@link java.security.Principal} an die Sitzung gebunden;
+ * Spring hängt ihn danach automatisch an jeden weiteren Frame dieser Sitzung, sodass pro Frame
+ * keine Prüfung mehr nötig ist. {@code convertAndSendToUser} erreicht so die Sitzungen des
+ * tatsächlich angemeldeten Benutzers.</p>
+ *
+ * <p>Ein ungültiger Token führt immer zu einem STOMP-{@code ERROR}. Verbindungen ganz ohne Token
+ * werden abgelehnt, solange {@code chat.websocket.require-auth} nicht ausdrücklich auf {@code false}
+ * gesetzt ist.</p>
+ *
+ * <p>Zusätzlich wird jedes {@code SUBSCRIBE} auf ein benutzerbezogenes Ziel
+ * {@code /user/{name}/...} geprüft: Authentifizierte Sitzungen dürfen nur ihren eigenen Namen
+ * abonnieren. Anonyme Sitzungen (nur ohne {@code require-auth}) werden beim ersten solchen
+ * Abonnement an den Namen gebunden und dürfen danach keine fremden Ziele mehr abonnieren; an den
+ * Namen eines registrierten Benutzers kann sich eine anonyme Sitzung nicht binden.
+ * Sitzungsbezogene Ziele wie {@code /user/queue/...} löst Spring ohnehin pro Sitzung auf.</p>
+ */
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    private static final Pattern USER_DESTINATION = Pattern.compile("^/user/([^/]+)/.+");
+
+    /**
+     * Sitzungsattribut mit dem Namen, an den eine anonyme Sitzung gebunden ist.
+     */
+    static final String ANONYMOUS_NAME_ATTRIBUTE = "chat.anonymous-name";
+
+    private final boolean requireAuth;
+    private final UserCache userCache;
+
+    public StompAuthInterceptor(@Value("${chat.websocket.require-auth:true}") boolean requireAuth,
+                                UserCache userCache) {
+        this.requireAuth = requireAuth;
+        this.userCache = userCache;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            checkSubscription(accessor);
+            return message;
+        }
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            if (requireAuth) {
+                throw new MessageDeliveryException("Fehlender oder ungültiger Authorization Header");
+            }
+            return message;
+        }
+
+        String username;
+        try {
+            username = JwtUtil.extractUsername(authHeader.substring(7));
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new MessageDeliveryException("Ungültiges oder abgelaufenes Token");
+        }
+        accessor.setUser(new UsernamePasswordAuthenticationToken(username, null, List.of()));
+        return message;
+    }
+
+    /**
+     * Liefert den Namen, an den eine anonyme Sitzung durch ihr erstes benutzerbezogenes Abonnement
+     * gebunden ist.
+     *
+     * @param sessionAttributes die Attribute der STOMP-Sitzung (optional)
+     * @return der Name oder {@code null}, wenn die Sitzung noch nicht gebunden ist
+     */
+    public static String anonymousName(Map<String, Object> sessionAttributes) {
+        return sessionAttributes != null ? (String) sessionAttributes.get(ANONYMOUS_NAME_ATTRIBUTE) : null;
+    }
+
+    /**
+     * Lehnt Abonnements fremder benutzerbezogener Ziele ab.
+     */
+    private void checkSubscription(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        Matcher matcher = destination == null ? null : USER_DESTINATION.matcher(destination);
+        if (matcher == null || !matcher.matches() || matcher.group(1).equals("queue")) {
+            return;
+        }
+        String name = matcher.group(1);
+
+        Principal user = accessor.getUser();
+        if (user != null) {
+            if (!name.equals(user.getName())) {
+                throw new MessageDeliveryException("Subscription to another user's destination denied");
+            }
+            return;
+        }
+        if (requireAuth) {
+            throw new MessageDeliveryException("Authentication required");
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null) {
+            return;
+        }
+        Object bound = attributes.get(ANONYMOUS_NAME_ATTRIBUTE);
+        if (bound == null) {
+            // Registrierte Namen sind nur mit Token erreichbar
+            if (userCache.isUsernameTaken(name)) {
+                throw new MessageDeliveryException("Name belongs to a registered user");
+            }
+            bound = attributes.putIfAbsent(ANONYMOUS_NAME_ATTRIBUTE, name);
+        }
+        if (bound != null && !bound.equals(name)) {
+            throw new MessageDeliveryException("Subscription to another user's destination denied");
+        }
+    }
+}
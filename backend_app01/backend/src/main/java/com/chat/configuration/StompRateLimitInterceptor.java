@@ -0,0 +1,227 @@
+package com.chat.configuration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.chat.model.ThrottleNotice;
+import com.chat.service.RateLimiter;
+
+/**
+ * Begrenzt, wie schnell ein Client an {@code /app/message} und {@code /app/private-message}
+ * senden darf – jede dieser Nachrichten kostet einen Datenbankeintrag und eine Verteilung.
+ *
+ * <p>Das Budget gilt pro angemeldetem Benutzer und Ziel. Ohne Anmeldung gilt es pro Client-Adresse,
+ * damit ein Client sein Budget nicht durch neue Verbindungen erneuern kann; die Adresse merkt sich
+ * der Interceptor beim WebSocket-Handshake in den Sitzungsattributen. Nachrichten
+ * mit Medienreferenz haben ein eigenes, kleineres Budget. Überzählige {@code SEND}-Frames werden
+ * verworfen. Hat die Sitzung {@value #THROTTLE_DESTINATION} abonniert, erhält sie dort eine
+ * {@link ThrottleNotice} und bleibt verbunden. Andernfalls antwortet der Server mit einem
+ * STOMP-{@code ERROR} (Header {@code retry-after-ms}), nach dem Spring die Verbindung schließt.</p>
+ *
+ * <p>Das Abonnement von {@value #THROTTLE_DESTINATION} merkt sich der Interceptor selbst in den
+ * Sitzungsattributen; der Hinweis geht direkt an die Sitzung und nicht über den Broker.</p>
+ */
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor, HandshakeInterceptor {
+
+    public static final String THROTTLE_DESTINATION = "/user/queue/throttle";
+
+    private static final String SUBSCRIPTION_ATTRIBUTE = StompRateLimitInterceptor.class.getName() + ".subscription";
+    public static final String REMOTE_ADDRESS_ATTRIBUTE = StompRateLimitInterceptor.class.getName() + ".remoteAddress";
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final CBORFactory CBOR = new CBORFactory();
+
+    private final MessageChannel clientOutboundChannel;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final List<String> destinations;
+    private final RateLimiter textLimiter;
+    private final RateLimiter mediaLimiter;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public StompRateLimitInterceptor(@Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                                     ObjectMapper objectMapper,
+                                     @Value("${chat.ratelimit.enabled:true}") boolean enabled,
+                                     @Value("${chat.ratelimit.stomp.destinations:/app/message,/app/private-message}") List<String> destinations,
+                                     @Value("${chat.ratelimit.stomp.text.capacity:20}") int textCapacity,
+                                     @Value("${chat.ratelimit.stomp.text.per-second:5}") double textPerSecond,
+                                     @Value("${chat.ratelimit.stomp.media.capacity:5}") int mediaCapacity,
+                                     @Value("${chat.ratelimit.stomp.media.per-second:0.5}") double mediaPerSecond,
+                                     @Value("${chat.ratelimit.max-keys:100000}") int maxKeys) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.destinations = destinations;
+        this.textLimiter = new RateLimiter(textCapacity, textPerSecond, maxKeys);
+        this.mediaLimiter = new RateLimiter(mediaCapacity, mediaPerSecond, maxKeys);
+    }
+
+    /**
+     * Kennzahlen der Ratenbegrenzung.
+     *
+     * @param rejected    seit dem Start verworfene Frames
+     * @param trackedKeys aktuell gespeicherte Budgets (Benutzer × Ziel × Art)
+     */
+    public record Stats(long rejected, int trackedKeys) {
+    }
+
+    /**
+     * Merkt sich die Client-Adresse für das Budget nicht angemeldeter Sitzungen.
+     */
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        if (remote != null && remote.getAddress() != null) {
+            attributes.put(REMOTE_ADDRESS_ATTRIBUTE, remote.getAddress().getHostAddress());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.SUBSCRIBE || command == StompCommand.UNSUBSCRIBE) {
+            trackSubscription(accessor);
+            return message;
+        }
+        if (!enabled || command != StompCommand.SEND || !destinations.contains(accessor.getDestination())) {
+            return message;
+        }
+
+        String owner = owner(accessor);
+        boolean media = hasMedia(message.getPayload(), accessor.getContentType());
+        String key = owner + '|' + accessor.getDestination() + (media ? "|media" : "|text");
+
+        long waitNanos = (media ? mediaLimiter : textLimiter).tryAcquire(key);
+        if (waitNanos == 0) {
+            return message;
+        }
+        rejected.incrementAndGet();
+        reject(accessor, TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+        return null;
+    }
+
+    /**
+     * @return aktuelle Kennzahlen
+     */
+    public Stats stats() {
+        return new Stats(rejected.get(), textLimiter.size() + mediaLimiter.size());
+    }
+
+    private static String owner(StompHeaderAccessor accessor) {
+        Principal user = accessor.getUser();
+        if (user != null) {
+            return "u:" + user.getName();
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object address = attributes != null ? attributes.get(REMOTE_ADDRESS_ATTRIBUTE) : null;
+        return address != null ? "a:" + address : "s:" + accessor.getSessionId();
+    }
+
+    private void trackSubscription(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null) {
+            return;
+        }
+        if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            if (THROTTLE_DESTINATION.equals(accessor.getDestination())) {
+                attributes.put(SUBSCRIPTION_ATTRIBUTE, accessor.getSubscriptionId());
+            }
+        } else if (accessor.getSubscriptionId() != null) {
+            attributes.remove(SUBSCRIPTION_ATTRIBUTE, accessor.getSubscriptionId());
+        }
+    }
+
+    private void reject(StompHeaderAccessor request, long retryAfterMillis) {
+        Map<String, Object> attributes = request.getSessionAttributes();
+        String subscriptionId = attributes != null ? (String) attributes.get(SUBSCRIPTION_ATTRIBUTE) : null;
+
+        StompHeaderAccessor reply;
+        byte[] payload;
+        if (subscriptionId != null) {
+            reply = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            reply.setSubscriptionId(subscriptionId);
+            reply.setDestination(THROTTLE_DESTINATION);
+            reply.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            try {
+                payload = objectMapper.writeValueAsBytes(new ThrottleNotice(request.getDestination(), retryAfterMillis));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            reply = StompHeaderAccessor.create(StompCommand.ERROR);
+            reply.setMessage("Rate limit exceeded for " + request.getDestination());
+            reply.setNativeHeader("retry-after-ms", Long.toString(retryAfterMillis));
+            payload = ("Too many messages, retry in " + retryAfterMillis + " ms").getBytes(StandardCharsets.UTF_8);
+        }
+        reply.setSessionId(request.getSessionId());
+        clientOutboundChannel.send(MessageBuilder.createMessage(payload, reply.getMessageHeaders()));
+    }
+
+    /**
+     * Prüft per Streaming-Parser, ob das Feld {@code media} der Nachricht gesetzt ist. Der Inhalt
+     * wird dafür nicht vollständig deserialisiert; das Lesen endet beim Feld {@code media}.
+     *
+     * @param payload     die Nutzdaten des {@code SEND}-Frames
+     * @param contentType der Inhaltstyp des Frames, {@code null} für JSON
+     * @return {@code true}, wenn eine Medienreferenz gesetzt ist
+     */
+    private static boolean hasMedia(Object payload, MimeType contentType) {
+        if (!(payload instanceof byte[] bytes)) {
+            return false;
+        }
+        boolean cbor = contentType != null && contentType.isCompatibleWith(WireFormatInterceptor.APPLICATION_CBOR);
+        try (JsonParser parser = cbor ? CBOR.createParser(bytes) : JSON.createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("media".equals(field)) {
+                    return value == JsonToken.VALUE_STRING && !parser.getText().isEmpty();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            // Ungültige Nutzdaten scheitern später beim Konvertieren; hier als Text zählen
+        }
+        return false;
+    }
+}
@@ -0,0 +1,71 @@
+package com.chat.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Optionaler Betrieb auf virtuellen Threads (Java 21).
+ *
+ * <p>Mit {@code chat.threads.virtual=true} werden eingehende STOMP-Nachrichten, die Auslieferung an
+ * die Clients und die HTTP-Anfragen von Tomcat jeweils auf einem eigenen virtuellen Thread
+ * verarbeitet statt in den begrenzten Standard-Pools. Blockierende JPA-Aufrufe in den
+ * {@code @MessageMapping}-Handlern belegen dann keinen Plattform-Thread mehr.</p>
+ *
+ * <p>Damit die Datenbank nicht überlastet wird, begrenzt ein {@link DestinationConcurrencyLimiter}
+ * die gleichzeitige Verarbeitung pro {@code /app}-Ziel.</p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig implements WebSocketMessageBrokerConfigurer {
+
+    private final int maxConcurrentPerDestination;
+
+    public VirtualThreadConfig(@Value("${chat.threads.max-concurrent-per-destination:8}") int maxConcurrentPerDestination) {
+        this.maxConcurrentPerDestination = maxConcurrentPerDestination;
+    }
+
+    /**
+     * Verarbeitet eingehende Nachrichten auf virtuellen Threads, begrenzt pro Ziel.
+     *
+     * @param registration die Registrierung des Client-Inbound-Kanals
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.executor(virtualExecutor("ws-inbound-"))
+                .interceptors(new DestinationConcurrencyLimiter("/app/", maxConcurrentPerDestination));
+    }
+
+    /**
+     * Liefert ausgehende Nachrichten auf virtuellen Threads an die Sitzungen aus.
+     *
+     * @param registration die Registrierung des Client-Outbound-Kanals
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(virtualExecutor("ws-outbound-"));
+    }
+
+    /**
+     * Lässt Tomcat jede HTTP-Anfrage auf einem eigenen virtuellen Thread bearbeiten.
+     *
+     * @return der Customizer für den Tomcat-Connector
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    private static SimpleAsyncTaskExecutor virtualExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+}
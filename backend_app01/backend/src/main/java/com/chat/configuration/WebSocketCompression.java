@@ -0,0 +1,198 @@
+package com.chat.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Steuert und misst die WebSocket-Kompression ({@code permessage-deflate}, RFC 7692).
+ *
+ * <p>Tomcat handelt die Erweiterung selbst aus, sobald der Browser sie anbietet, und komprimiert
+ * danach jedes Daten-Frame der Verbindung. Jede komprimierte Verbindung hält dafür einen eigenen
+ * zlib-Deflater und -Inflater (zusammen rund 300 KB nativer Speicher). Diese Klasse begrenzt daher
+ * die Zahl gleichzeitig komprimierter Verbindungen auf {@code maxSessions}; darüber hinaus entfernt
+ * der {@link WebSocketCompressionFilter} das Angebot aus dem Handshake und die Verbindung läuft
+ * unkomprimiert. SockJS-Transporte über HTTP handeln keine Kompression aus und bleiben unverändert.</p>
+ *
+ * <p>Das Kompressionsverhältnis und die CPU-Kosten werden geschätzt: Jedes
+ * {@code sampleRate}-te Frame einer komprimierten Verbindung wird zusätzlich mit denselben
+ * Einstellungen wie in Tomcat komprimiert und die Dauer gemessen. Tomcat behält den Wörterbuchkontext
+ * zwischen Nachrichten bei, die tatsächliche Ersparnis ist daher eher höher als geschätzt.</p>
+ */
+@Component
+public class WebSocketCompression implements WebSocketHandlerDecoratorFactory {
+
+    public static final String EXTENSION = "permessage-deflate";
+
+    private static final String COMPRESSED = WebSocketCompression.class.getName() + ".compressed";
+
+    /**
+     * Laufzeitwerte der Kompression.
+     *
+     * @param compressionRatio    komprimierte / unkomprimierte Bytes der Stichprobe
+     * @param nanosPerFrame       mittlere Kompressionsdauer eines Frames der Stichprobe
+     * @param estimatedCpuMillis  hochgerechnete CPU-Zeit für alle komprimierten Frames
+     * @param estimatedBytesSaved hochgerechnete eingesparte Bytes für alle komprimierten Frames
+     */
+    public record Stats(boolean enabled, int compressedSessions, int maxSessions, long declinedHandshakes,
+                        long frames, long sampledFrames, double compressionRatio, long nanosPerFrame,
+                        long estimatedCpuMillis, long estimatedBytesSaved) {
+    }
+
+    private final boolean enabled;
+    private final int maxSessions;
+    private final int sampleRate;
+
+    private final AtomicInteger compressedSessions = new AtomicInteger();
+    private final LongAdder declinedHandshakes = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder sampledFrames = new LongAdder();
+    private final LongAdder sampledBytesIn = new LongAdder();
+    private final LongAdder sampledBytesOut = new LongAdder();
+    private final LongAdder sampledNanos = new LongAdder();
+
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(
+            () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    public WebSocketCompression(@Value("${chat.websocket.compression.enabled:true}") boolean enabled,
+                                @Value("${chat.websocket.compression.max-sessions:1000}") int maxSessions,
+                                @Value("${chat.websocket.compression.sample-rate:100}") int sampleRate) {
+        this.enabled = enabled;
+        this.maxSessions = maxSessions;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * Entscheidet beim Handshake, ob die Verbindung Kompression aushandeln darf.
+     *
+     * @return {@code false}, wenn die Kompression abgeschaltet oder das Limit erreicht ist
+     */
+    public boolean admit() {
+        if (!enabled) {
+            return false;
+        }
+        if (compressedSessions.get() >= maxSessions) {
+            declinedHandshakes.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return aktuelle Laufzeitwerte
+     */
+    public Stats stats() {
+        long sampled = sampledFrames.sum();
+        long in = sampledBytesIn.sum();
+        long out = sampledBytesOut.sum();
+        long total = frames.sum();
+        long nanosPerFrame = sampled > 0 ? sampledNanos.sum() / sampled : 0;
+        return new Stats(enabled, compressedSessions.get(), maxSessions, declinedHandshakes.sum(), total, sampled,
+                in > 0 ? (double) out / in : 1.0, nanosPerFrame,
+                total * nanosPerFrame / 1_000_000, sampled > 0 ? total * (in - out) / sampled : 0);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (isCompressed(session)) {
+                    session.getAttributes().put(COMPRESSED, Boolean.TRUE);
+                    compressedSessions.incrementAndGet();
+                    session = new SamplingSession(session);
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                if (session.getAttributes().remove(COMPRESSED) != null) {
+                    compressedSessions.decrementAndGet();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Komprimiert einen Frame-Inhalt wie Tomcat und zählt Größe und Dauer in die Stichprobe.
+     *
+     * @param payload der unkomprimierte Inhalt
+     * @return Größe des komprimierten Inhalts in Bytes
+     */
+    public int sample(byte[] payload) {
+        long start = System.nanoTime();
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(payload);
+        byte[] buffer = new byte[payload.length + payload.length / 1000 + 64];
+        int length = 0;
+        do {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length, Deflater.SYNC_FLUSH);
+        } while (length == buffer.length);
+        // Die vier Bytes 00 00 FF FF am Ende jeder Nachricht werden laut RFC 7692 nicht übertragen
+        int compressed = Math.max(0, length - 4);
+
+        sampledNanos.add(System.nanoTime() - start);
+        sampledFrames.increment();
+        sampledBytesIn.add(payload.length);
+        sampledBytesOut.add(compressed);
+        return compressed;
+    }
+
+    private static boolean isCompressed(WebSocketSession session) {
+        for (WebSocketExtension extension : session.getExtensions()) {
+            if (EXTENSION.equalsIgnoreCase(extension.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Zählt gesendete Frames und nimmt jedes {@code sampleRate}-te in die Stichprobe auf.
+     */
+    private final class SamplingSession extends WebSocketSessionDecorator {
+
+        private int sent;
+
+        SamplingSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            frames.increment();
+            // Spring serialisiert Sendevorgänge pro Sitzung, der Zähler braucht keine Synchronisation
+            if (++sent % sampleRate == 0) {
+                if (message.getPayload() instanceof String text) {
+                    sample(text.getBytes(StandardCharsets.UTF_8));
+                } else if (message.getPayload() instanceof ByteBuffer bytes) {
+                    byte[] copy = new byte[bytes.remaining()];
+                    bytes.duplicate().get(copy);
+                    sample(copy);
+                }
+            }
+            super.sendMessage(message);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.chat.configuration;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Entfernt das Angebot {@code permessage-deflate} aus WebSocket-Handshakes, wenn
+ * {@link WebSocketCompression#admit()} die Kompression ablehnt.
+ *
+ * <p>Tomcat liest die angebotenen Erweiterungen direkt aus dem Request-Header und bietet
+ * {@code permessage-deflate} immer an; ohne Angebot des Clients bleibt die Verbindung unkomprimiert.
+ * Andere angebotene Erweiterungen bleiben erhalten.</p>
+ */
+@Component
+public class WebSocketCompressionFilter extends OncePerRequestFilter {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    private final WebSocketCompression compression;
+
+    public WebSocketCompressionFilter(WebSocketCompression compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"websocket".equalsIgnoreCase(request.getHeader("Upgrade"))
+                || request.getHeader(EXTENSIONS_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (compression.admit()) {
+            filterChain.doFilter(request, response);
+        } else {
+            filterChain.doFilter(new WithoutDeflate(request), response);
+        }
+    }
+
+    /**
+     * Entfernt {@code permessage-deflate} aus einem Header-Wert wie
+     * {@code permessage-deflate; client_max_window_bits, x-custom}.
+     *
+     * @param header der angebotene Header-Wert
+     * @return die übrigen Erweiterungen oder {@code null}, wenn keine übrig bleibt
+     */
+    private static String withoutDeflate(String header) {
+        List<String> kept = new ArrayList<>();
+        for (String offer : header.split(",")) {
+            String name = offer.split(";", 2)[0].trim();
+            if (!name.isEmpty() && !WebSocketCompression.EXTENSION.equalsIgnoreCase(name)) {
+                kept.add(offer.trim());
+            }
+        }
+        return kept.isEmpty() ? null : String.join(", ", kept);
+    }
+
+    private static final class WithoutDeflate extends HttpServletRequestWrapper {
+
+        private final List<String> extensions = new ArrayList<>();
+
+        WithoutDeflate(HttpServletRequest request) {
+            super(request);
+            for (Enumeration<String> values = request.getHeaders(EXTENSIONS_HEADER); values.hasMoreElements(); ) {
+                String value = withoutDeflate(values.nextElement());
+                if (value != null) {
+                    extensions.add(value);
+                }
+            }
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                return extensions.isEmpty() ? null : extensions.get(0);
+            }
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (EXTENSIONS_HEADER.equalsIgnoreCase(name)) {
+                return Collections.enumeration(extensions);
+            }
+            return super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            if (extensions.isEmpty()) {
+                names.removeIf(EXTENSIONS_HEADER::equalsIgnoreCase);
+            }
+            return Collections.enumeration(names);
+        }
+    }
+}
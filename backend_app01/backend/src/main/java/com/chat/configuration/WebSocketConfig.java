@@ -1,12 +1,26 @@
 package com.chat.configuration;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 /**
  * Konfigurationsklasse für WebSocket mit STOMP in der Chat-Anwendung.
  * <p>
@@ -14,16 +28,94 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
  * (Simple Text Oriented Messaging Protocol) und konfiguriert die entsprechenden 
  * Endpunkte sowie die Message-Broker.
  * </p>
+ * <p>
+ * Die Konfiguration läuft vor allen anderen {@link WebSocketMessageBrokerConfigurer}n, damit der
+ * {@link StompAuthInterceptor} als erster Interceptor auf dem Inbound-Kanal registriert wird.
+ * </p>
  */
 @Configuration
 @EnableWebSocketMessageBroker
+@Order(Ordered.HIGHEST_PRECEDENCE + 99)
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthInterceptor stompAuthInterceptor;
+    private final PresenceTracker presenceTracker;
+    private final WireFormatInterceptor wireFormatInterceptor;
+    private final WebSocketCompression webSocketCompression;
+    private final OutboundSessionPolicy outboundSessionPolicy;
+    private final StompRateLimitInterceptor stompRateLimitInterceptor;
+    private final MessageMetrics messageMetrics;
+    private final long heartbeatMillis;
+    private final int messageSizeLimit;
+
+    public WebSocketConfig(StompAuthInterceptor stompAuthInterceptor,
+                           PresenceTracker presenceTracker,
+                           WireFormatInterceptor wireFormatInterceptor,
+                           WebSocketCompression webSocketCompression,
+                           OutboundSessionPolicy outboundSessionPolicy,
+                           StompRateLimitInterceptor stompRateLimitInterceptor,
+                           MessageMetrics messageMetrics,
+                           @Value("${chat.websocket.heartbeat-ms:10000}") long heartbeatMillis,
+                           @Value("${chat.media.max-size:20971520}") long maxMediaSize) {
+        this.stompAuthInterceptor = stompAuthInterceptor;
+        this.presenceTracker = presenceTracker;
+        this.wireFormatInterceptor = wireFormatInterceptor;
+        this.webSocketCompression = webSocketCompression;
+        this.outboundSessionPolicy = outboundSessionPolicy;
+        this.stompRateLimitInterceptor = stompRateLimitInterceptor;
+        this.messageMetrics = messageMetrics;
+        this.heartbeatMillis = heartbeatMillis;
+        this.messageSizeLimit = messageSizeLimit(maxMediaSize);
+    }
+
+    /**
+     * Größte eingehende STOMP-Nachricht: eine Data-URL älterer Clients mit einer Datei der maximalen
+     * Mediengröße (Base64, also vier Zeichen je drei Bytes) plus 128 KB für Text und Header.
+     *
+     * @param maxMediaSize maximale Größe einer Mediendatei in Bytes
+     * @return das Limit in Bytes
+     */
+    static int messageSizeLimit(long maxMediaSize) {
+        long base64 = (maxMediaSize + 2) / 3 * 4;
+        return (int) Math.min(Integer.MAX_VALUE, base64 + 128 * 1024);
+    }
+
+    /**
+     * Scheduler für die STOMP-Heartbeats des einfachen Brokers.
+     *
+     * @return ein Scheduler mit einem Thread
+     */
+    @Bean
+    public ThreadPoolTaskScheduler heartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        return scheduler;
+    }
+
+    /**
+     * Meldet Warteschlangenlänge und aktive Threads der Client-Kanäle als
+     * {@code chat.channel.queued} bzw. {@code chat.channel.active}.
+     *
+     * @param inbound  Executor des Client-Inbound-Kanals
+     * @param outbound Executor des Client-Outbound-Kanals
+     * @return der Binder, den Spring Boot an die Registry bindet
+     */
+    @Bean
+    public MeterBinder channelExecutorMetrics(@Qualifier("clientInboundChannelExecutor") TaskExecutor inbound,
+                                              @Qualifier("clientOutboundChannelExecutor") TaskExecutor outbound) {
+        return registry -> {
+            MessageMetrics.bindChannelExecutor(registry, "inbound", inbound);
+            MessageMetrics.bindChannelExecutor(registry, "outbound", outbound);
+        };
+    }
+
     /**
      * Registriert den STOMP-Endpunkt, über den Clients eine WebSocket-Verbindung herstellen können.
      * <p>
      * Der Endpunkt {@code /ws} unterstützt SockJS als Fallback für Browser, die kein natives WebSocket unterstützen.
-     * Alle Ursprünge werden zugelassen (CORS: {@code *}).
+     * Alle Ursprünge werden zugelassen (CORS: {@code *}). Beim Handshake merkt sich der
+     * {@link StompRateLimitInterceptor} die Client-Adresse.
      * </p>
      *
      * @param registry die STOMP-Endpunkt-Registrierung
@@ -32,6 +124,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
+                .addInterceptors(stompRateLimitInterceptor)
                 .withSockJS(); // SockJS-Fallback aktivieren
     }
 
@@ -40,7 +133,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      * <p>
      * - Präfix {@code /app} für Nachrichten, die an @MessageMapping-Methoden gesendet werden.<br>
      * - Aktiviert einen einfachen Broker mit den Zielpräfixen {@code /chatroom} und {@code /user}.<br>
-     * - Setzt das Benutzerziel-Präfix auf {@code /user}, um private Nachrichten zu ermöglichen.
+     * - Setzt das Benutzerziel-Präfix auf {@code /user}, um private Nachrichten zu ermöglichen.<br>
+     * - Tauscht mit den Clients Heartbeats aus, damit die Anwesenheit hängende Verbindungen erkennt.
      * </p>
      *
      * @param registry die Broker-Registrierung
@@ -48,27 +142,83 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/chatroom", "/user");
+        registry.enableSimpleBroker("/chatroom", "/user")
+                .setHeartbeatValue(new long[]{heartbeatMillis, heartbeatMillis})
+                .setTaskScheduler(heartbeatScheduler());
         registry.setUserDestinationPrefix("/user");
     }
 
+    /**
+     * Registriert die Authentifizierung beim STOMP-{@code CONNECT}, die Erfassung von
+     * Lebenszeichen für die Anwesenheit, die Formatwahl der Sitzung und die Ratenbegrenzung auf dem
+     * Inbound-Kanal. Die Ratenbegrenzung läuft nach der Authentifizierung, damit der Benutzer bereits
+     * feststeht; die Metriken zählen danach nur angenommene Nachrichten.
+     *
+     * @param registration die Registrierung des Client-Inbound-Kanals
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor, presenceTracker, wireFormatInterceptor, stompRateLimitInterceptor,
+                messageMetrics.inbound());
+    }
+
+    /**
+     * Wandelt ausgehende Nachrichten für Sitzungen, die CBOR gewählt haben, in CBOR um und misst
+     * die Zeit bis zur Übergabe an die Sitzung.
+     *
+     * @param registration die Registrierung des Client-Outbound-Kanals
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(wireFormatInterceptor, messageMetrics.outbound());
+    }
+
+    /**
+     * Ergänzt die Standardkonverter um einen CBOR-Konverter für {@code SEND}-Frames mit
+     * {@code content-type: application/cbor}. JSON bleibt das Standardformat: Der Konverter greift
+     * nur bei ausdrücklich angegebenem CBOR-Inhaltstyp, nicht bei Nachrichten ohne Inhaltstyp.
+     *
+     * @param messageConverters die Liste der Konverter
+     * @return {@code true}, damit die Standardkonverter zusätzlich registriert werden
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(WireFormatInterceptor.APPLICATION_CBOR);
+        cbor.setObjectMapper(new CBORMapper());
+        cbor.setStrictContentTypeMatch(true);
+        messageConverters.add(cbor);
+        return true;
+    }
+
     /**
      * Konfiguriert technische Parameter für den WebSocket-Nachrichtentransport.
      * <p>
-     * Diese Einstellungen erlauben größere Nachrichten und unbegrenzte Sendezeit:
+     * Medien werden nicht mehr als Base64 in Nachrichten übertragen, sondern über
+     * {@code /api/media} hochgeladen und nur per Referenz verschickt. Ausgehende Frames bleiben daher klein:
      * <ul>
-     *     <li>Sendezeitlimit: 0 (unbegrenzt)</li>
-     *     <li>Sendepuffergröße: 50 MB</li>
-     *     <li>Maximale Nachrichtengröße: 50 MB</li>
+     *     <li>Sendezeitlimit: 10 s (ein Limit von 0 schließt die Sitzung bereits, sobald zwei
+     *     Nachrichten gleichzeitig an sie gesendet werden)</li>
+     *     <li>Sendepuffergröße: 1 MB</li>
+     *     <li>Maximale Nachrichtengröße: siehe {@link #messageSizeLimit(long)}, damit ältere Clients
+     *     weiterhin Data-URLs schicken können, die {@link com.chat.service.MediaStore#internalize}
+     *     in den Medienspeicher übernimmt</li>
      * </ul>
+     * Die Kompression der Frames ({@code permessage-deflate}) begrenzt und misst {@link WebSocketCompression}.
+     * Ausgehende Nachrichten laufen über die begrenzte Warteschlange der {@link OutboundSessionPolicy}; sie
+     * nimmt Nachrichten ohne Wartezeit an, sodass Sendezeit- und Pufferlimit oben nur noch als Rückfallebene
+     * greifen. {@link WireFormatInterceptor} vermerkt, welche Sitzungen natives WebSocket nutzen und damit
+     * binäre CBOR-Frames empfangen können.
      * </p>
      *
      * @param registry die Transport-Registrierung
      */
     @Override
     public void configureWebSocketTransport(WebSocketTransportRegistration registry) {
-        registry.setSendTimeLimit(0)
-                .setSendBufferSizeLimit(50 * 1024 * 1024)
-                .setMessageSizeLimit(50 * 1024 * 1024);
+        registry.setSendTimeLimit(10000)
+                .setSendBufferSizeLimit(1024 * 1024)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(webSocketCompression)
+                .addDecoratorFactory(outboundSessionPolicy)
+                .addDecoratorFactory(wireFormatInterceptor);
     }
-}
+}
\ No newline at end of file
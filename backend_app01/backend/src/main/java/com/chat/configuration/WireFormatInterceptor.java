@@ -0,0 +1,247 @@
+package com.chat.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.sockjs.transport.session.AbstractSockJsSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Handelt pro STOMP-Sitzung das Nachrichtenformat aus und wandelt ausgehende Nachrichten um.
+ *
+ * <p>Ein Client wählt CBOR, indem er beim {@code CONNECT} (für die ganze Sitzung) oder beim
+ * {@code SUBSCRIBE} (für ein einzelnes Abo) den Header {@code content-type: application/cbor}
+ * mitschickt. Ohne Angabe bleibt es bei JSON.</p>
+ *
+ * <p>CBOR ist nur über natives WebSocket möglich: SockJS überträgt jeden Frame als Text, die
+ * Bytes kämen beim Client verfälscht an. Sitzungen über SockJS bleiben daher bei JSON, auch wenn
+ * sie CBOR anfordern. Welche Sitzungen nativ verbunden sind, vermerkt der Handler-Decorator dieser
+ * Klasse in den Sitzungsattributen.</p>
+ *
+ * <p>Der Server erzeugt Nachrichten weiterhin als JSON. Für CBOR-Empfänger wird der JSON-Inhalt
+ * im ausgehenden Kanal umgewandelt; Felder mit {@code null} entfallen dabei. CBOR-Frames tragen
+ * den Inhaltstyp {@value #CBOR_FRAME_TYPE_NAME}: Spring verschickt einen Frame nur dann als binäre
+ * WebSocket-Nachricht, wenn sein Inhaltstyp zu {@code application/octet-stream} passt, sonst als
+ * UTF-8-Text. Der Parameter {@code format=cbor} kennzeichnet das Format für den Client.</p>
+ *
+ * <p>Der einfache Broker verwendet für alle Empfänger einer Nachricht dasselbe Byte-Array, daher
+ * wird das Ergebnis über die Identität dieses Arrays zwischengespeichert: Jede Nachricht wird
+ * höchstens einmal pro Format kodiert, unabhängig von der Anzahl der Empfänger. Kodiert wird
+ * außerhalb der Sperre des Zwischenspeichers; kodieren zwei Threads dieselbe Nachricht gleichzeitig,
+ * gewinnt das zuerst eingetragene Ergebnis.</p>
+ *
+ * <p>Eingehende {@code SEND}-Frames mit {@code application/cbor} verarbeitet der in
+ * {@link WebSocketConfig} registrierte CBOR-Konverter.</p>
+ */
+@Component
+public class WireFormatInterceptor implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    static final String CBOR_FRAME_TYPE_NAME = "application/octet-stream;format=cbor";
+
+    /**
+     * Inhaltstyp ausgehender CBOR-Frames.
+     */
+    public static final MimeType CBOR_FRAME_TYPE = MimeType.valueOf(CBOR_FRAME_TYPE_NAME);
+
+    /**
+     * Sitzungsattribut, das native WebSocket-Sitzungen kennzeichnet.
+     */
+    public static final String NATIVE_WEBSOCKET = WireFormatInterceptor.class.getName() + ".native";
+
+    private static final String CONTENT_TYPE = "content-type";
+
+    /**
+     * Formate je Sitzung: Standardformat und abweichende Formate einzelner Abos.
+     */
+    private static final class SessionFormats {
+        volatile boolean cbor;
+        final Map<String, Boolean> subscriptions = new ConcurrentHashMap<>();
+
+        boolean cbor(String subscriptionId) {
+            Boolean perSubscription = subscriptionId != null ? subscriptions.get(subscriptionId) : null;
+            return perSubscription != null ? perSubscription : cbor;
+        }
+    }
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+    private final Map<String, SessionFormats> sessions = new ConcurrentHashMap<>();
+    /**
+     * JSON-Inhalt → CBOR-Inhalt. {@code byte[]} vergleicht über die Identität, die schwachen
+     * Schlüssel verschwinden, sobald der Broker die Nachricht nicht mehr hält.
+     */
+    private final Map<byte[], byte[]> encoded = Collections.synchronizedMap(new WeakHashMap<>());
+    private final LongAdder encodings = new LongAdder();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor stomp = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (stomp != null && stomp.getCommand() != null) {
+            switch (stomp.getCommand()) {
+                case CONNECT, STOMP -> onConnect(stomp);
+                case SUBSCRIBE -> onSubscribe(stomp);
+                case UNSUBSCRIBE -> onUnsubscribe(stomp);
+                default -> {
+                }
+            }
+            if (stomp.getCommand() != StompCommand.MESSAGE) {
+                return message;
+            }
+        }
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        return toClientFormat(message);
+    }
+
+    /**
+     * Vermerkt beim Verbindungsaufbau, ob die Sitzung natives WebSocket und nicht SockJS nutzt.
+     */
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (!(WebSocketSessionDecorator.unwrap(session) instanceof AbstractSockJsSession)) {
+                    session.getAttributes().put(NATIVE_WEBSOCKET, Boolean.TRUE);
+                }
+                super.afterConnectionEstablished(session);
+            }
+        };
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    /**
+     * @return Anzahl der bisher durchgeführten Umwandlungen nach CBOR
+     */
+    public long encodingCount() {
+        return encodings.sum();
+    }
+
+    /**
+     * Wandelt einen JSON-Inhalt in CBOR um und lässt dabei {@code null}-Felder weg.
+     *
+     * @param json der JSON-Inhalt
+     * @return der CBOR-Inhalt
+     */
+    public byte[] jsonToCbor(byte[] json) {
+        try {
+            JsonNode tree = jsonMapper.readTree(json);
+            removeNulls(tree);
+            encodings.increment();
+            return cborMapper.writeValueAsBytes(tree);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Message<?> toClientFormat(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        SessionFormats formats = sessionId != null ? sessions.get(sessionId) : null;
+        if (formats == null || !formats.cbor(SimpMessageHeaderAccessor.getSubscriptionId(headers))
+                || !(message.getPayload() instanceof byte[] json) || !isJson(headers)) {
+            return message;
+        }
+
+        byte[] cbor = encoded.get(json);
+        if (cbor == null) {
+            byte[] fresh = jsonToCbor(json);
+            cbor = encoded.putIfAbsent(json, fresh);
+            if (cbor == null) {
+                cbor = fresh;
+            }
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(CBOR_FRAME_TYPE);
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    private void onConnect(StompHeaderAccessor stomp) {
+        if (isCbor(stomp.getFirstNativeHeader(CONTENT_TYPE)) && isNative(stomp)) {
+            sessions.computeIfAbsent(stomp.getSessionId(), id -> new SessionFormats()).cbor = true;
+        }
+    }
+
+    private void onSubscribe(StompHeaderAccessor stomp) {
+        String requested = stomp.getFirstNativeHeader(CONTENT_TYPE);
+        if (requested == null || stomp.getSessionId() == null || stomp.getSubscriptionId() == null) {
+            return;
+        }
+        sessions.computeIfAbsent(stomp.getSessionId(), id -> new SessionFormats())
+                .subscriptions.put(stomp.getSubscriptionId(), isCbor(requested) && isNative(stomp));
+    }
+
+    private void onUnsubscribe(StompHeaderAccessor stomp) {
+        SessionFormats formats = stomp.getSessionId() != null ? sessions.get(stomp.getSessionId()) : null;
+        if (formats != null && stomp.getSubscriptionId() != null) {
+            formats.subscriptions.remove(stomp.getSubscriptionId());
+        }
+    }
+
+    private static boolean isNative(StompHeaderAccessor stomp) {
+        Map<String, Object> attributes = stomp.getSessionAttributes();
+        return attributes != null && Boolean.TRUE.equals(attributes.get(NATIVE_WEBSOCKET));
+    }
+
+    private static boolean isCbor(String contentType) {
+        return contentType != null && APPLICATION_CBOR.equalsTypeAndSubtype(MimeType.valueOf(contentType));
+    }
+
+    private static boolean isJson(MessageHeaders headers) {
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        MimeType mimeType = contentType instanceof MimeType m ? m
+                : contentType instanceof String s ? MimeType.valueOf(s) : null;
+        return mimeType != null && "json".equals(mimeType.getSubtype());
+    }
+
+    private static void removeNulls(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                JsonNode value = fields.next().getValue();
+                if (value.isNull()) {
+                    fields.remove();
+                } else {
+                    removeNulls(value);
+                }
+            }
+        } else if (node.isArray()) {
+            node.forEach(WireFormatInterceptor::removeNulls);
+        }
+    }
+}
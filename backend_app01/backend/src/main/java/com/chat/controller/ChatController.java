@@ -1,24 +1,49 @@
 package com.chat.controller;
 
+import com.chat.configuration.MessageMetrics;
+import com.chat.configuration.ReadYourWrites;
+import com.chat.configuration.StompAuthInterceptor;
 import com.chat.entity.ChatMessage;
 import com.chat.model.LoginRequest;
 import com.chat.model.Message;
+import com.chat.model.Receipt;
+import com.chat.model.ResyncBatch;
+import com.chat.model.ResyncRequest;
+import com.chat.model.SendFailure;
+import com.chat.model.Status;
 import com.chat.model.UserDto;
-import com.chat.repository.ChatMessageRepository;
+import com.chat.model.UserSuggestion;
 import com.chat.repository.UserRepository;
+import com.chat.service.BroadcastBatcher;
+import com.chat.service.ChatHistoryService;
+import com.chat.service.ChatMessageWriter;
+import com.chat.service.ConversationCache;
+import com.chat.service.ConversationSequencer;
+import com.chat.service.InboxService;
+import com.chat.service.MediaStore;
+import com.chat.service.MessageSearchIndex;
+import com.chat.service.PasswordHasher;
+import com.chat.service.PresenceRegistry;
+import com.chat.service.ReceiptService;
 import com.chat.service.UserService;
 import jakarta.servlet.http.HttpSession;
 import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
+import java.security.Principal;
 import java.util.Map; 
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.chat.entity.Users;
 
@@ -33,16 +58,32 @@ import com.chat.entity.Users;
 @RequestMapping("/api/users")
 public class ChatController {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+
+    private static final int MAX_SUGGESTIONS = 50;
+
     private final SimpMessagingTemplate simpMessagingTemplate;
-    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageWriter chatMessageWriter;
+    private final ChatHistoryService chatHistoryService;
+    private final MediaStore mediaStore;
+    private final ConversationCache conversationCache;
     private final UserService userService;
+    private final MessageSearchIndex messageSearchIndex;
+    private final PresenceRegistry presenceRegistry;
+    private final BroadcastBatcher broadcastBatcher;
+    private final MessageMetrics messageMetrics;
+    private final ReceiptService receiptService;
+    private final ConversationSequencer conversationSequencer;
+    private final ReadYourWrites readYourWrites;
+    private final InboxService inboxService;
 
     /**
      * Führt die Benutzeranmeldung durch.
      * 
      * @param loginRequest enthält Benutzername und Passwort
      * @param session HTTP-Session zur Speicherung des eingeloggten Benutzers
-     * @return HTTP 200 bei Erfolg, 404 wenn Benutzer nicht gefunden, 401 bei falschem Passwort
+     * @return HTTP 200 bei Erfolg, 404 wenn Benutzer nicht gefunden, 401 bei falschem Passwort,
+     *         503 wenn die Passwortprüfung ausgelastet ist
      */
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest, HttpSession session) {
@@ -50,6 +91,8 @@ public class ChatController {
             Users user = userService.authenticate(loginRequest.getUsername(), loginRequest.getPassword());
             session.setAttribute("user", user);
             return ResponseEntity.ok("Login successful");
+        } catch (PasswordHasher.SaturatedException ex) {
+            return serviceUnavailable();
         } catch (RuntimeException ex) {
             if ("User not found".equals(ex.getMessage())) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
@@ -77,22 +120,35 @@ public class ChatController {
      * Sucht einen Benutzer anhand des Benutzernamens.
      * 
      * @param username der Benutzername
-     * @return Benutzerobjekt oder 404, falls nicht gefunden
+     * @return öffentliche Angaben zum Benutzer (ohne E-Mail und Passwort) oder 404, falls nicht gefunden
      */
     @GetMapping("/search")
-    public ResponseEntity<Users> findByUsername(@RequestParam String username) {
+    public ResponseEntity<UserSuggestion> findByUsername(@RequestParam String username) {
         Users user = userService.findByUsername(username);
         if (user == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
-        return ResponseEntity.ok(user);
+        return ResponseEntity.ok(new UserSuggestion(user.getId(), user.getUsername(), user.getName()));
+    }
+
+    /**
+     * Liefert Vorschläge für die Benutzersuche während der Eingabe.
+     *
+     * @param q     Anfang des Benutzernamens oder eines Wortes im Anzeigenamen
+     * @param limit maximale Anzahl Treffer (höchstens {@value #MAX_SUGGESTIONS})
+     * @return passende Benutzer mit ID, Benutzername und Anzeigename
+     */
+    @GetMapping("/typeahead")
+    public List<UserSuggestion> typeahead(@RequestParam String q,
+                                          @RequestParam(defaultValue = "10") int limit) {
+        return userService.suggest(q, Math.min(limit, MAX_SUGGESTIONS));
     }
 
     /**
      * Registriert einen neuen Benutzer.
      * 
      * @param userDto enthält Benutzerdaten wie Name, E-Mail, Passwort usw.
-     * @return HTTP 200 bei erfolgreicher Registrierung
+     * @return HTTP 200 bei erfolgreicher Registrierung, 503 wenn die Passwortprüfung ausgelastet ist
      */
     @PostMapping("/signup")
     public ResponseEntity<?> signup(@RequestBody UserDto userDto) {
@@ -104,6 +160,8 @@ public class ChatController {
                     userDto.getPassword()
             );
             return ResponseEntity.ok("User created successfully");
+        } catch (PasswordHasher.SaturatedException ex) {
+            return serviceUnavailable();
         } catch (RuntimeException ex) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
         }
@@ -112,55 +170,246 @@ public class ChatController {
     /**
      * Empfängt eine öffentliche Chatnachricht über WebSocket.
      * 
-     * <p>Die Nachricht wird gespeichert und an alle Clients im Chatroom gesendet.</p>
+     * <p>Die Nachricht wird zur Speicherung an den {@link ChatMessageWriter} übergeben und
+     * an alle Clients im Chatroom gesendet, ohne auf die Datenbank zu warten. Eingebettete
+     * Data-URLs werden vorher durch eine Referenz in den {@link MediaStore} ersetzt.</p>
+     *
+     * <p>{@code JOIN} und {@code LEAVE} werden weder gespeichert noch weitergeleitet, sondern nur in
+     * der {@link PresenceRegistry} vermerkt, die Änderungen gesammelt meldet.</p>
      *
-     * @param message das empfangene Nachrichtenobjekt
-     * @return das weitergeleitete Nachrichtenobjekt
+     * <p>Ist die Bündelung aktiv, übernimmt der {@link BroadcastBatcher} die Verteilung und die
+     * Methode gibt {@code null} zurück. Im Modus {@code GROUP_COMMIT} wird erst nach dem Commit
+     * verteilt, ebenfalls ohne Rückgabewert.</p>
+     *
+     * @param message   das empfangene Nachrichtenobjekt
+     * @param principal der beim STOMP-CONNECT authentifizierte Benutzer (optional)
+     * @param headers   Header des Frames, liefert die Sitzungs-ID
+     * @return das weitergeleitete Nachrichtenobjekt, {@code null} bei {@code JOIN}/{@code LEAVE} oder Bündelung
      * @throws InterruptedException falls beim Verarbeiten eine Unterbrechung auftritt
      */
     @MessageMapping("/message")
     @SendTo("/chatroom/public")
-    public Message receiveMessage(Message message) throws InterruptedException {
-        chatMessageRepository.save(new ChatMessage(
-                message.getSenderName(),
-                message.getReceiverName(),
-                message.getMessage(),
-                message.getMedia(),
-                message.getMediaType(),
-                message.getStatus(),
-                System.currentTimeMillis()
-        ));
+    public Message receiveMessage(Message message, Principal principal, SimpMessageHeaderAccessor headers)
+            throws InterruptedException {
+        bindSender(message, principal);
+        message.setTimestamp(System.currentTimeMillis());
+        if (message.getStatus() == Status.JOIN) {
+            presenceRegistry.connect(headers.getSessionId(), message.getSenderName());
+            return null;
+        }
+        if (message.getStatus() == Status.LEAVE) {
+            presenceRegistry.disconnect(headers.getSessionId());
+            return null;
+        }
+        if (!internalize(message)) {
+            return null;
+        }
+        stamp(message);
+        CompletableFuture<ChatMessage> saved = persist(message, MessageMetrics.PUBLIC, headers);
+        if (chatMessageWriter.deliversAfterCommit()) {
+            saved.thenRun(() -> broadcast(message));
+            return null;
+        }
+        if (broadcastBatcher.isEnabled()) {
+            broadcastBatcher.publish("/chatroom/public", message);
+            return null;
+        }
         return message;
     }
 
+    private void broadcast(Message message) {
+        if (broadcastBatcher.isEnabled()) {
+            broadcastBatcher.publish("/chatroom/public", message);
+        } else {
+            simpMessagingTemplate.convertAndSend("/chatroom/public", message);
+        }
+    }
+
     /**
      * Sendet eine private Chatnachricht über WebSocket an einen bestimmten Benutzer.
      * 
-     * <p>Die Nachricht wird auch in der Datenbank gespeichert.</p>
+     * <p>Die Nachricht wird auch in der Datenbank gespeichert; im Modus {@code GROUP_COMMIT} erst
+     * danach zugestellt. Auch der Absender erhält sie mit ihrer Sequenznummer über
+     * {@code /user/{name}/private}, denn an ihr messen die Bestätigungen des Empfängers.
+     * Nachrichten mit ungültigen Teilnehmernamen (siehe {@link ChatMessage#isValidParticipant})
+     * werden verworfen.</p>
      *
-     * @param message die zu sendende private Nachricht
+     * @param message   die zu sendende private Nachricht
+     * @param principal der beim STOMP-CONNECT authentifizierte Benutzer (optional)
+     * @param headers   Header des Frames, liefert den Empfangszeitpunkt für die Metriken
      */
     @MessageMapping("/private-message")
-    public void privateMessage(Message message) {
+    public void privateMessage(Message message, Principal principal, SimpMessageHeaderAccessor headers) {
+        bindSender(message, principal);
+        message.setTimestamp(System.currentTimeMillis());
         String receiver = message.getReceiverName();
-        simpMessagingTemplate.convertAndSendToUser(receiver, "/private", message);
+        if (!ChatMessage.isValidParticipant(message.getSenderName()) || !ChatMessage.isValidParticipant(receiver)) {
+            // Sonst teilten sich (a:b, c) und (a, b:c) eine Konversation
+            return;
+        }
+        if (!internalize(message)) {
+            return;
+        }
+        stamp(message);
+        String sender = message.getSenderName();
+        Runnable deliver = () -> {
+            simpMessagingTemplate.convertAndSendToUser(receiver, "/private", message);
+            if (sender != null && !sender.equals(receiver)) {
+                simpMessagingTemplate.convertAndSendToUser(sender, "/private", message);
+            }
+        };
+        if (chatMessageWriter.deliversAfterCommit()) {
+            persist(message, MessageMetrics.PRIVATE, headers).thenRun(deliver);
+        } else {
+            deliver.run();
+            persist(message, MessageMetrics.PRIVATE, headers);
+        }
+    }
+
+    /**
+     * Empfängt eine kumulative Empfangs- oder Lesebestätigung für eine private Konversation.
+     *
+     * <p>Es wird nichts pro Nachricht gespeichert: der {@link ReceiptService} führt die
+     * Bestätigungen zusammen, schreibt sie gesammelt und meldet den neuen Stand dem Absender. Ein
+     * Lesestand setzt außerdem die ungelesenen Nachrichten im Posteingang zurück.</p>
+     *
+     * <p>Der Lesende ist der angemeldete Benutzer. Anonyme Sitzungen bestätigen für den Namen, an
+     * den sie durch ihr Abonnement von {@code /user/{name}/...} gebunden sind; der
+     * {@code senderName} der Bestätigung zählt nicht, sonst könnte jeder fremde Lesestände setzen.</p>
+     *
+     * @param receipt   die Bestätigung mit dem Gegenüber als {@code receiverName}
+     * @param principal der beim STOMP-CONNECT authentifizierte Benutzer (optional)
+     * @param headers   Header des Frames mit den Sitzungsattributen
+     */
+    @MessageMapping("/receipt")
+    public void receipt(Receipt receipt, Principal principal, SimpMessageHeaderAccessor headers) {
+        String reader = principal != null ? principal.getName()
+                : StompAuthInterceptor.anonymousName(headers.getSessionAttributes());
+        if (reader == null) {
+            return;
+        }
+        receiptService.acknowledge(reader, receipt);
+        inboxService.read(reader, receipt.receiverName(), receipt.readUpTo());
+    }
+
+    /**
+     * Gleicht nach einem Verbindungsabbruch die verpassten Nachrichten ab.
+     *
+     * <p>Der Client meldet pro Konversation die zuletzt gesehene Sequenznummer und erhält nur die
+     * Nachrichten danach, in begrenzter Menge, als Liste von {@link ResyncBatch} über
+     * {@code /user/{name}/resync}. Wie bei privaten Nachrichten erhalten alle Sitzungen des Benutzers
+     * die Antwort; Clients verwerfen bereits bekannte Sequenznummern.</p>
+     *
+     * <p>Wie bei Bestätigungen gilt der angemeldete Benutzer bzw. der Name, an den eine anonyme
+     * Sitzung gebunden ist; {@link ResyncRequest#user()} zählt nicht, sonst könnte jeder fremde
+     * private Nachrichten abfragen.</p>
+     *
+     * @param request   die zuletzt gesehenen Sequenznummern
+     * @param principal der beim STOMP-CONNECT authentifizierte Benutzer (optional)
+     * @param headers   Header des Frames mit den Sitzungsattributen
+     */
+    @MessageMapping("/resync")
+    public void resync(ResyncRequest request, Principal principal, SimpMessageHeaderAccessor headers) {
+        String user = principal != null ? principal.getName()
+                : StompAuthInterceptor.anonymousName(headers.getSessionAttributes());
+        if (user == null) {
+            return;
+        }
+        List<ResyncBatch> batches = chatHistoryService.resync(user, request.conversations());
+        simpMessagingTemplate.convertAndSendToUser(user, "/resync", batches);
+    }
+
+    /**
+     * Antwort, wenn der Passwort-Hash-Pool voll ist. Der Client soll es kurz darauf erneut versuchen.
+     */
+    private static ResponseEntity<?> serviceUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Too many login attempts, please retry");
+    }
+
+    /**
+     * Setzt bei authentifizierten Sitzungen den Absender auf den angemeldeten Benutzer, damit
+     * Clients keinen fremden Namen angeben können.
+     *
+     * @param message   die empfangene Nachricht
+     * @param principal der angemeldete Benutzer oder {@code null}
+     */
+    private static void bindSender(Message message, Principal principal) {
+        if (principal != null) {
+            message.setSenderName(principal.getName());
+        }
+    }
+
+    /**
+     * Übernimmt eingebettete Medien in den {@link MediaStore}. Ungültige Data-URLs lehnen die
+     * Nachricht ab; der Absender erhält einen {@link SendFailure} über {@code /user/{name}/errors}.
+     *
+     * @return {@code false}, wenn die Nachricht verworfen wurde
+     */
+    private boolean internalize(Message message) {
+        try {
+            mediaStore.internalize(message);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            simpMessagingTemplate.convertAndSendToUser(message.getSenderName(), "/errors",
+                    new SendFailure(message.getReceiverName(), null, message.getTimestamp(), ex.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Vergibt einer Chatnachricht die nächste Sequenznummer ihrer Konversation.
+     *
+     * @param message die empfangene Nachricht
+     */
+    private void stamp(Message message) {
+        if (message.getStatus() == Status.MESSAGE) {
+            message.setSequence(conversationSequencer.next(
+                    ChatMessage.conversationKey(message.getSenderName(), message.getReceiverName())));
+        }
+    }
 
-        chatMessageRepository.save(new ChatMessage(
-                message.getSenderName(),
-                message.getReceiverName(),
-                message.getMessage(),
-                message.getMedia(),
-                message.getMediaType(),
-                message.getStatus(),
-                System.currentTimeMillis()
-        ));
+    /**
+     * Übergibt eine Nachricht zur Speicherung und legt sie im Verlaufs-Cache ab. Nach dem
+     * Speichern (mit vergebener ID) wird sie in den Suchindex und die Posteingänge aufgenommen, die
+     * Konversation für {@link ReadYourWrites} vermerkt und die Zeit seit dem Eintreffen erfasst.
+     *
+     * <p>Schlägt das Speichern fehl, wird der Verlaufs-Cache der Konversation verworfen und der
+     * Absender über {@code /user/{name}/errors} mit einem {@link SendFailure} benachrichtigt.</p>
+     *
+     * @param message die empfangene Nachricht
+     * @param type    {@link MessageMetrics#PUBLIC} oder {@link MessageMetrics#PRIVATE}
+     * @param headers Header des Frames mit dem Empfangszeitpunkt
+     * @return das Future der Speicherung
+     */
+    private CompletableFuture<ChatMessage> persist(Message message, String type, SimpMessageHeaderAccessor headers) {
+        long receivedNanos = MessageMetrics.receivedNanos(headers);
+        ChatMessage chatMessage = ChatMessage.from(message, message.getTimestamp());
+        conversationCache.append(chatMessage);
+        CompletableFuture<ChatMessage> future = chatMessageWriter.write(chatMessage);
+        future.whenComplete((saved, error) -> {
+            if (error != null) {
+                log.warn("Nachricht von {} konnte nicht gespeichert werden", message.getSenderName(), error);
+                conversationCache.invalidate(chatMessage.getConversationId());
+                simpMessagingTemplate.convertAndSendToUser(message.getSenderName(), "/errors",
+                        new SendFailure(message.getReceiverName(), message.getSequence(), message.getTimestamp(),
+                                "Message could not be stored"));
+                return;
+            }
+            messageMetrics.persisted(type, receivedNanos);
+            readYourWrites.written(saved.getConversationId());
+            inboxService.messageSent(saved);
+            messageSearchIndex.index(saved);
+        });
+        return future;
     }
 
     /**
      * Führt die Benutzeranmeldung durch und gibt einen JWT zurück.
      *
      * @param loginRequest enthält Benutzername und Passwort
-     * @return JWT als String bei Erfolg, sonst Fehlerstatus
+     * @return JWT als String bei Erfolg, 503 wenn die Passwortprüfung ausgelastet ist, sonst 401
      */
     @PostMapping("/jwt-login")
     public ResponseEntity<?> jwtLogin(@RequestBody LoginRequest loginRequest) {
@@ -170,24 +419,51 @@ public class ChatController {
                     loginRequest.getPassword()
             );
             return ResponseEntity.ok(Map.of("token", token));
+        } catch (PasswordHasher.SaturatedException ex) {
+            return serviceUnavailable();
         } catch (RuntimeException ex) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Falsche Anmeldedaten");
         }
     }
 
     /**
-     * Ruft den gesamten Chatverlauf zwischen zwei Benutzern ab.
+     * Ruft eine Seite des Chatverlaufs zwischen zwei Benutzern ab.
      *
-     * @param user1 Benutzername des ersten Benutzers
-     * @param user2 Benutzername des zweiten Benutzers
-     * @return Liste der zwischen beiden Benutzern ausgetauschten Nachrichten
+     * <p>Ohne Cursor wird die neueste Seite geliefert. Mit {@code before} bzw. {@code after}
+     * (aus einer vorherigen Antwort) wird zu älteren bzw. neueren Nachrichten geblättert.</p>
+     *
+     * @param user1  Benutzername des ersten Benutzers
+     * @param user2  Benutzername des zweiten Benutzers
+     * @param before Cursor für ältere Nachrichten (optional)
+     * @param after  Cursor für neuere Nachrichten (optional)
+     * @param limit  maximale Anzahl Nachrichten pro Seite (optional)
+     * @return die Seite mit Nachrichten und Cursorn, 400 bei ungültigem Cursor
      */
     @GetMapping("/history/{user1}/{user2}")
-    public ResponseEntity<List<ChatMessage>> getChatHistory(
+    public ResponseEntity<?> getChatHistory(
             @PathVariable String user1,
-            @PathVariable String user2
+            @PathVariable String user2,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit
     ) {
-        List<ChatMessage> messages = chatMessageRepository.findByReceiverNameOrSenderName(user1, user2);
-        return ResponseEntity.ok(messages);
+        try {
+            return ResponseEntity.ok(chatHistoryService.getConversation(user1, user2, before, after, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Liefert die Empfangs- und Lesestände beider Teilnehmer einer Konversation, z. B. um beim
+     * Öffnen des Verlaufs die Häkchen anzuzeigen.
+     *
+     * @param user1 Benutzername des ersten Benutzers
+     * @param user2 Benutzername des zweiten Benutzers
+     * @return ein Eintrag pro Teilnehmer, der bereits etwas bestätigt hat
+     */
+    @GetMapping("/receipts/{user1}/{user2}")
+    public List<Receipt> getReceipts(@PathVariable String user1, @PathVariable String user2) {
+        return receiptService.receipts(user1, user2);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package com.chat.controller;
+
+import com.chat.service.InboxService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+/**
+ * REST-Controller für den Posteingang.
+ *
+ * <p>Liegt unter {@code /api/secure/}, damit nur Anfragen mit gültigem JWT durchkommen; geliefert
+ * wird immer der Posteingang des angemeldeten Benutzers.</p>
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/secure/inbox")
+public class InboxController {
+
+    private final InboxService inboxService;
+
+    /**
+     * Liefert die privaten Konversationen des angemeldeten Benutzers mit letzter Nachricht und
+     * Anzahl ungelesener Nachrichten, zuletzt aktive zuerst. Mit dem Cursor {@code before} aus einer
+     * vorherigen Antwort wird weitergeblättert.
+     *
+     * @param before    Cursor für ältere Konversationen (optional)
+     * @param limit     maximale Anzahl Konversationen pro Seite (optional)
+     * @param principal der angemeldete Benutzer
+     * @return die Seite mit Konversationen und Cursor, 400 bei ungültigem Cursor
+     */
+    @GetMapping
+    public ResponseEntity<?> getInbox(@RequestParam(required = false) String before,
+                                      @RequestParam(required = false) Integer limit,
+                                      Principal principal) {
+        try {
+            return ResponseEntity.ok(inboxService.inbox(principal.getName(), before, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.chat.controller;
+
+import com.chat.service.MediaStore;
+import com.chat.service.MediaStore.StoredMedia;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * REST-Controller für das Hochladen und Ausliefern von Medien (Bilder, Dateien).
+ *
+ * <p>Medien werden einmalig hochgeladen und im {@link MediaStore} unter ihrem Inhalts-Hash
+ * abgelegt. Chatnachrichten enthalten danach nur noch diese Referenz.</p>
+ *
+ * <p>Beim Ausliefern werden {@code ETag}/{@code If-None-Match} und einfache {@code Range}-Anfragen
+ * unterstützt. Wenn der Servlet-Container es anbietet (Tomcat NIO), wird die Datei per
+ * {@code sendfile} ohne Kopie durch den Java-Heap übertragen.</p>
+ *
+ * <p>Den Medientyp gibt der Hochladende an. Damit hochgeladenes HTML oder SVG nicht im Kontext
+ * dieser Anwendung ausgeführt wird, werden nur Rasterbilder aus {@link #INLINE_TYPES} mit ihrem
+ * Typ und inline ausgeliefert; alles andere als {@code application/octet-stream} zum Herunterladen.</p>
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/media")
+public class MediaController {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Medientypen, die inline angezeigt werden dürfen. SVG fehlt bewusst, da es Skripte enthalten kann.
+     */
+    private static final Set<String> INLINE_TYPES = Set.of(
+            "image/png", "image/jpeg", "image/gif", "image/webp", "image/avif");
+
+    private final MediaStore mediaStore;
+
+    /**
+     * Lädt eine Datei in den Medienspeicher hoch.
+     *
+     * @param file die hochgeladene Datei
+     * @return Referenz, Medientyp und Größe; 413 wenn die Datei zu groß ist
+     */
+    @PostMapping
+    public ResponseEntity<?> upload(@RequestParam("file") MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            StoredMedia stored = mediaStore.store(in, file.getContentType());
+            return ResponseEntity.ok(stored);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(ex.getMessage());
+        } catch (IOException ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Upload failed");
+        }
+    }
+
+    /**
+     * Liefert eine gespeicherte Datei aus.
+     *
+     * <p>Da sich der Inhalt einer Referenz nie ändert, ist der Hash gleichzeitig der ETag und
+     * die Antwort darf unbegrenzt zwischengespeichert werden.</p>
+     *
+     * @param reference der Hash des Inhalts
+     * @param request   HTTP-Anfrage (für {@code Range} und {@code If-None-Match})
+     * @param response  HTTP-Antwort
+     * @throws IOException bei Fehlern beim Lesen oder Schreiben
+     */
+    @GetMapping("/{reference}")
+    public void download(@PathVariable String reference,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Path path = mediaStore.resolve(reference);
+        if (path == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + reference + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = Files.size(path);
+        long start = 0;
+        long end = length - 1;
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        long count = end - start + 1;
+        String mediaType = baseType(mediaStore.mediaTypeOf(reference));
+        if (INLINE_TYPES.contains(mediaType)) {
+            response.setContentType(mediaType);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline");
+        } else {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + reference + "\"");
+        }
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Der Container überträgt die Datei direkt aus dem Page-Cache in den Socket
+            request.setAttribute(SENDFILE_FILENAME, path.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, target);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * @return der Medientyp ohne Parameter und in Kleinbuchstaben, z. B. {@code image/png}
+     */
+    private static String baseType(String mediaType) {
+        int semicolon = mediaType.indexOf(';');
+        return (semicolon < 0 ? mediaType : mediaType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Wertet einen einzelnen Byte-Bereich aus ({@code bytes=a-b}, {@code bytes=a-}, {@code bytes=-n}).
+     * Mehrere Bereiche werden nicht unterstützt.
+     *
+     * @return {@code [start, end]} inklusive oder {@code null}, wenn der Bereich nicht erfüllbar ist
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.contains(",") || length == 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (from.isEmpty()) {
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(from);
+                end = to.isEmpty() ? length - 1 : Math.min(Long.parseLong(to), length - 1);
+            }
+            return start <= end && start < length ? new long[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chat.controller;
+
+import com.chat.model.PresenceSnapshot;
+import com.chat.service.PresenceRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST-Controller für den aktuellen Anwesenheitsstand.
+ *
+ * <p>Clients laden den Snapshot einmal nach dem Verbinden und folgen danach den
+ * Änderungsmeldungen auf {@code /chatroom/presence}.</p>
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    private final PresenceRegistry presenceRegistry;
+
+    /**
+     * @return alle Benutzer, die gerade online sind, mit der Version der letzten Änderungsmeldung
+     */
+    @GetMapping
+    public PresenceSnapshot snapshot() {
+        return presenceRegistry.snapshot();
+    }
+}
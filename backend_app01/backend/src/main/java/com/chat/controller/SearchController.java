@@ -0,0 +1,63 @@
+package com.chat.controller;
+
+import com.chat.model.MessageSearchPage;
+import com.chat.service.MessageSearchIndex;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+/**
+ * REST-Controller für die Volltextsuche im Nachrichtenverlauf.
+ *
+ * <p>Liegt unter {@code /api/secure/}, damit nur Anfragen mit gültigem JWT durchkommen; gesucht
+ * wird immer im Namen des angemeldeten Benutzers.</p>
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/secure/messages")
+public class SearchController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final MessageSearchIndex messageSearchIndex;
+
+    /**
+     * Durchsucht die Nachrichten des angemeldeten Benutzers und den öffentlichen Chatroom.
+     *
+     * @param q         Suchbegriffe
+     * @param page      Seite, beginnend bei 0
+     * @param size      Treffer pro Seite (höchstens {@value #MAX_PAGE_SIZE})
+     * @param principal der angemeldete Benutzer
+     * @return die Treffer, nach Relevanz sortiert
+     */
+    @GetMapping("/search")
+    public MessageSearchPage search(@RequestParam String q,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size,
+                                    Principal principal) {
+        return messageSearchIndex.search(principal.getName(), q, page, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Startet den Neuaufbau des Suchindex aus der Datenbank im Hintergrund.
+     *
+     * @return 202 mit dem Fortschritt, 409 wenn bereits ein Neuaufbau läuft
+     */
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<MessageSearchIndex.RebuildStatus> rebuild() {
+        boolean started = messageSearchIndex.startRebuild();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(messageSearchIndex.rebuildStatus());
+    }
+
+    /**
+     * @return der Fortschritt der aktuellen oder letzten Neuindizierung
+     */
+    @GetMapping("/search/rebuild")
+    public MessageSearchIndex.RebuildStatus rebuildStatus() {
+        return messageSearchIndex.rebuildStatus();
+    }
+}
@@ -0,0 +1,149 @@
+package com.chat.controller;
+
+import com.chat.configuration.HttpRateLimitFilter;
+import com.chat.configuration.MessageMetrics;
+import com.chat.configuration.OutboundSessionPolicy;
+import com.chat.configuration.StompRateLimitInterceptor;
+import com.chat.configuration.WebSocketCompression;
+import com.chat.service.ArchiveService;
+import com.chat.service.BroadcastBatcher;
+import com.chat.service.ConversationCache;
+import com.chat.service.InboxService;
+import com.chat.service.ReceiptService;
+import com.chat.service.UserCache;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * REST-Controller für Laufzeitstatistiken der Caches und der WebSocket-Verteilung.
+ *
+ * <p>Die Werte dienen zur Dimensionierung der Caches (Trefferquote, Speicherverbrauch) und zur
+ * Abwägung zwischen Bandbreite und CPU bei der Kompression.</p>
+ *
+ * <p>Nur lokal oder für Administratoren erreichbar, siehe {@link com.chat.configuration.SecurityConfig}.</p>
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/stats")
+public class StatsController {
+
+    private final ConversationCache conversationCache;
+    private final UserCache userCache;
+    private final WebSocketCompression webSocketCompression;
+    private final BroadcastBatcher broadcastBatcher;
+    private final OutboundSessionPolicy outboundSessionPolicy;
+    private final StompRateLimitInterceptor stompRateLimitInterceptor;
+    private final HttpRateLimitFilter httpRateLimitFilter;
+    private final MessageMetrics messageMetrics;
+    private final ReceiptService receiptService;
+    private final ArchiveService archiveService;
+    private final InboxService inboxService;
+
+    /**
+     * Liefert die Zählerstände des Verlaufs-Caches.
+     *
+     * @return Treffer, Fehlschläge, Verdrängungen und Speicherverbrauch
+     */
+    @GetMapping("/history-cache")
+    public ConversationCache.Stats historyCache() {
+        return conversationCache.stats();
+    }
+
+    /**
+     * Liefert die Zählerstände des Benutzer-Caches.
+     *
+     * @return Treffer, vom Bloom-Filter beantwortete Registrierungsprüfungen und Fehlschläge
+     */
+    @GetMapping("/user-cache")
+    public UserCache.Stats userCache() {
+        return userCache.stats();
+    }
+
+    /**
+     * Liefert die Laufzeitwerte der WebSocket-Kompression.
+     *
+     * @return komprimierte Sitzungen, abgelehnte Handshakes, Kompressionsverhältnis und CPU-Kosten
+     */
+    @GetMapping("/websocket-compression")
+    public WebSocketCompression.Stats webSocketCompression() {
+        return webSocketCompression.stats();
+    }
+
+    /**
+     * Liefert die Zählerstände der gebündelten Broadcasts.
+     *
+     * @return Anzahl Nachrichten, Anzahl Bündel und mittlere Bündelgröße
+     */
+    @GetMapping("/broadcast-batches")
+    public BroadcastBatcher.Stats broadcastBatches() {
+        return broadcastBatcher.stats();
+    }
+
+    /**
+     * Liefert den Zustand der Ausgangswarteschlangen aller WebSocket-Sitzungen.
+     *
+     * @return Füllstände, verworfene Nachrichten, getrennte Sitzungen und die langsamsten Sitzungen
+     */
+    @GetMapping("/websocket-sessions")
+    public OutboundSessionPolicy.Stats webSocketSessions() {
+        return outboundSessionPolicy.stats();
+    }
+
+    /**
+     * Liefert die Zählerstände der Ratenbegrenzung für STOMP-Nachrichten und Anmeldeendpunkte.
+     *
+     * @return abgewiesene Anfragen und gespeicherte Budgets, getrennt nach {@code stomp} und {@code http}
+     */
+    @GetMapping("/rate-limits")
+    public Map<String, Object> rateLimits() {
+        return Map.of("stomp", stompRateLimitInterceptor.stats(), "http", httpRateLimitFilter.stats());
+    }
+
+    /**
+     * Liefert eine Übersicht für das Betriebs-Dashboard: Sitzungen, Abonnements sowie Durchsatz und
+     * Latenzen (p50/p95/p99) der öffentlichen und privaten Nachrichten. Die vollständigen Metriken
+     * stehen unter {@code /actuator/prometheus} zum Abruf bereit.
+     *
+     * @return Sitzungen, Abonnements und Kennzahlen je Nachrichtentyp
+     */
+    @GetMapping("/messages")
+    public MessageMetrics.Stats messages() {
+        return messageMetrics.stats();
+    }
+
+    /**
+     * Liefert die Zählerstände der Empfangs- und Lesebestätigungen. Das Verhältnis von
+     * Bestätigungen zu geschriebenen Zeilen zeigt, wie viel die Zusammenführung einspart.
+     *
+     * @return empfangene Bestätigungen, geschriebene Zeilen, Schreibvorgänge und ausstehende Stände
+     */
+    @GetMapping("/receipts")
+    public ReceiptService.Stats receipts() {
+        return receiptService.stats();
+    }
+
+    /**
+     * Liefert die Zählerstände der Archivierung und die Belegung des Archivs.
+     *
+     * @return archivierte und gelöschte Nachrichten, Segmente, Blöcke und Größe
+     */
+    @GetMapping("/archive")
+    public ArchiveService.Stats archive() {
+        return archiveService.stats();
+    }
+
+    /**
+     * Liefert die Zählerstände des Posteingangs. Das Verhältnis von Änderungen zu geschriebenen
+     * Zeilen zeigt, wie viel die Zusammenführung einspart.
+     *
+     * @return entgegengenommene Änderungen, geschriebene Zeilen, Schreibvorgänge und ausstehende Änderungen
+     */
+    @GetMapping("/inbox")
+    public InboxService.Stats inbox() {
+        return inboxService.stats();
+    }
+}
@@ -1,5 +1,6 @@
 package com.chat.entity;
 
+import com.chat.model.Message;
 import com.chat.model.Status;
 import jakarta.persistence.*;
 import lombok.Data;
@@ -17,13 +18,33 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_chat_message_conversation", columnList = "conversationId, timestamp, id"),
+        @Index(name = "uk_chat_message_sequence", columnList = "conversationId, sequence", unique = true),
+        @Index(name = "idx_chat_message_timestamp", columnList = "timestamp")
+})
 public class ChatMessage {
 
+    /**
+     * Schlüssel der Konversation für Nachrichten ohne Empfänger (öffentlicher Chatroom).
+     */
+    public static final String PUBLIC_CONVERSATION = "#public";
+
+    /**
+     * Trennzeichen zwischen den Teilnehmern im Schlüssel einer Konversation; darf in Benutzernamen
+     * nicht vorkommen.
+     */
+    public static final char KEY_SEPARATOR = ':';
+
     /**
      * Die eindeutige ID der Nachricht (Primärschlüssel).
+     * <p>
+     * Die IDs werden blockweise aus einer Sequenz reserviert statt per {@code IDENTITY}
+     * vergeben, damit Hibernate mehrere Inserts zu einem JDBC-Batch zusammenfassen kann.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_message_seq")
+    @SequenceGenerator(name = "chat_message_seq", sequenceName = "chat_message_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -36,13 +57,28 @@ public class ChatMessage {
      */
     private String receiverName;
 
+    /**
+     * Kanonischer Schlüssel der Konversation (beide Teilnehmer sortiert), siehe {@link #conversationKey}.
+     * Bildet zusammen mit Zeitstempel und ID den Index für die Verlaufsabfrage.
+     */
+    private String conversationId;
+
+    /**
+     * Fortlaufende Nummer innerhalb der Konversation, vergeben beim Empfang durch den
+     * {@link com.chat.service.ConversationSequencer} und per Index eindeutig. Clients melden beim erneuten Verbinden die
+     * zuletzt gesehene Nummer und erhalten nur die verpassten Nachrichten. Nachrichten aus der Zeit
+     * vor Einführung der Nummern haben keine.
+     */
+    private Long sequence;
+
     /**
      * Der eigentliche Nachrichtentext.
      */
     private String message;
 
     /**
-     * Optional: Pfad oder URL zu einem beigefügten Medium (z. B. Bild, Video, Datei).
+     * Optional: Referenz (SHA-256-Hash) eines beigefügten Mediums im Medienspeicher,
+     * abrufbar über {@code /api/media/{media}}.
      */
     private String media;
 
@@ -52,7 +88,8 @@ public class ChatMessage {
     private String mediaType;
 
     /**
-     * Status der Nachricht (z. B. GESENDET, EMPFANGEN, GELESEN).
+     * Art der Nachricht (in der Regel {@code MESSAGE}). Empfang und Lesen werden nicht pro
+     * Nachricht, sondern kumulativ pro Leser und Konversation in {@link ReadReceipt} gespeichert.
      */
     @Enumerated(EnumType.STRING)
     private Status status;
@@ -70,19 +107,86 @@ public class ChatMessage {
      * @param senderName   Benutzername des Absenders
      * @param receiverName Benutzername des Empfängers
      * @param message      Inhalt der Nachricht
-     * @param media        Pfad/URL zum Medium (optional)
+     * @param media        Referenz des Mediums (optional)
      * @param mediaType    Medientyp (optional)
      * @param status       Status der Nachricht
      * @param timestamp    Zeitpunkt der Nachricht (in Millisekunden)
      */
     public ChatMessage(String senderName, String receiverName, String message, String media,
                        String mediaType, Status status, Long timestamp) {
+        this(senderName, receiverName, message, media, mediaType, status, timestamp, null);
+    }
+
+    /**
+     * Konstruktor zum Erstellen einer neuen Chatnachricht mit Sequenznummer.
+     *
+     * @param senderName   Benutzername des Absenders
+     * @param receiverName Benutzername des Empfängers
+     * @param message      Inhalt der Nachricht
+     * @param media        Referenz des Mediums (optional)
+     * @param mediaType    Medientyp (optional)
+     * @param status       Status der Nachricht
+     * @param timestamp    Zeitpunkt der Nachricht (in Millisekunden)
+     * @param sequence     Nummer innerhalb der Konversation (optional)
+     */
+    public ChatMessage(String senderName, String receiverName, String message, String media,
+                       String mediaType, Status status, Long timestamp, Long sequence) {
         this.senderName = senderName;
         this.receiverName = receiverName;
+        this.conversationId = conversationKey(senderName, receiverName);
         this.message = message;
         this.media = media;
         this.mediaType = mediaType;
         this.status = status;
         this.timestamp = timestamp;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Bildet den kanonischen Schlüssel einer Konversation zwischen zwei Benutzern.
+     * <p>
+     * Die Namen werden sortiert, sodass {@code (a, b)} und {@code (b, a)} denselben Schlüssel ergeben.
+     * Fehlt einer der beiden Namen, gehört die Nachricht zum öffentlichen Chatroom. Eindeutig ist der
+     * Schlüssel nur für Namen, die {@link #isValidParticipant} erfüllen; sonst ergäben etwa
+     * {@code (a:b, c)} und {@code (a, b:c)} beide {@code a:b:c}.
+     * </p>
+     *
+     * @param user1 erster Teilnehmer
+     * @param user2 zweiter Teilnehmer
+     * @return der Schlüssel der Konversation
+     */
+    public static String conversationKey(String user1, String user2) {
+        if (user1 == null || user2 == null) {
+            return PUBLIC_CONVERSATION;
+        }
+        return user1.compareTo(user2) <= 0 ? user1 + KEY_SEPARATOR + user2 : user2 + KEY_SEPARATOR + user1;
+    }
+
+    /**
+     * @param name ein Benutzername
+     * @return ob der Name nicht leer ist und kein {@link #KEY_SEPARATOR} enthält
+     */
+    public static boolean isValidParticipant(String name) {
+        return name != null && !name.isBlank() && name.indexOf(KEY_SEPARATOR) < 0;
+    }
+
+    /**
+     * Erstellt eine neue Chatnachricht aus einer über WebSocket empfangenen {@link Message}.
+     *
+     * @param message   die empfangene Nachricht
+     * @param timestamp Zeitpunkt der Nachricht (in Millisekunden)
+     * @return die noch nicht gespeicherte Entität
+     */
+    public static ChatMessage from(Message message, long timestamp) {
+        return new ChatMessage(
+                message.getSenderName(),
+                message.getReceiverName(),
+                message.getMessage(),
+                message.getMedia(),
+                message.getMediaType(),
+                message.getStatus(),
+                timestamp,
+                message.getSequence()
+        );
     }
 }
@@ -0,0 +1,40 @@
+package com.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Befristete Zuständigkeit eines Cluster-Knotens für eine Aufgabe, die nur ein Knoten ausführen
+ * darf, z. B. die Archivierung (siehe {@link com.chat.service.ArchiveService}).
+ *
+ * <p>Der Knoten verlängert die Zuständigkeit bei jedem Lauf. Fällt er aus, übernimmt ein anderer,
+ * sobald {@code expiresAt} verstrichen ist.</p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class ClusterLease {
+
+    /**
+     * Name der Aufgabe.
+     */
+    @Id
+    private String name;
+
+    /**
+     * ID des zuständigen Knotens.
+     */
+    @Column(nullable = false)
+    private String owner;
+
+    /**
+     * Ende der Zuständigkeit (in Millisekunden).
+     */
+    @Column(nullable = false)
+    private long expiresAt;
+}
@@ -0,0 +1,33 @@
+package com.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Zuletzt vergebene Sequenznummer einer Konversation.
+ *
+ * <p>Im Cluster vergeben alle Knoten die Nummern aus dieser Zeile, die sie dafür sperren (siehe
+ * {@link com.chat.service.ConversationSequencer}). Ohne Cluster wird die Tabelle nicht benutzt.</p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+public class ConversationCounter {
+
+    /**
+     * Schlüssel der Konversation, siehe {@link ChatMessage#conversationKey}.
+     */
+    @Id
+    private String conversationId;
+
+    /**
+     * Zuletzt vergebene Sequenznummer ({@code 0} = noch keine).
+     */
+    @Column(nullable = false)
+    private long lastSequence;
+}
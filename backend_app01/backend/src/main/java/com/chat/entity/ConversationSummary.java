@@ -0,0 +1,136 @@
+package com.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+
+/**
+ * Eintrag im Posteingang eines Teilnehmers: Zusammenfassung einer privaten Konversation.
+ *
+ * <p>Pro Konversation gibt es eine Zeile je Teilnehmer mit Gegenüber, Vorschau der letzten
+ * Nachricht, deren Zeitstempel, dem eigenen Lesestand und der Anzahl ungelesener Nachrichten. Die
+ * Zeilen werden beim Senden und bei Lesebestätigungen fortgeschrieben, statt sie aus
+ * {@link ChatMessage} zu gruppieren; der Index {@code (participant, lastTimestamp, conversationId)}
+ * liefert eine Seite des Posteingangs nach Aktualität, unabhängig von der Anzahl der Nachrichten.</p>
+ *
+ * <p>Wie bei {@link ReadReceipt} vergibt die Anwendung den Schlüssel; {@link Persistable} erlaubt
+ * das Einfügen neuer Zeilen ohne vorheriges {@code SELECT}.</p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@IdClass(ConversationSummary.Key.class)
+@Table(indexes = {
+        @Index(name = "idx_conversation_summary_recency", columnList = "participant, lastTimestamp, conversationId")
+})
+public class ConversationSummary implements Persistable<ConversationSummary.Key> {
+
+    /**
+     * Höchstlänge der Vorschau in Zeichen.
+     */
+    public static final int PREVIEW_LENGTH = 200;
+
+    /**
+     * Zusammengesetzter Schlüssel aus Teilnehmer und Konversation.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String participant;
+        private String conversationId;
+    }
+
+    /**
+     * Benutzername des Teilnehmers, dessen Posteingang die Zeile gehört.
+     */
+    @Id
+    private String participant;
+
+    /**
+     * Schlüssel der Konversation, siehe {@link ChatMessage#conversationKey}.
+     */
+    @Id
+    private String conversationId;
+
+    /**
+     * Benutzername des Gegenübers.
+     */
+    @Column(nullable = false)
+    private String peer;
+
+    /**
+     * Absender der letzten Nachricht.
+     */
+    private String lastSender;
+
+    /**
+     * Gekürzter Text der letzten Nachricht.
+     */
+    @Column(length = PREVIEW_LENGTH)
+    private String lastPreview;
+
+    /**
+     * Zeitstempel der letzten Nachricht.
+     */
+    @Column(nullable = false)
+    private long lastTimestamp;
+
+    /**
+     * Sequenznummer der letzten Nachricht ({@code 0} = unbekannt).
+     */
+    @Column(nullable = false)
+    private long lastSequence;
+
+    /**
+     * Sequenznummer der neuesten vom Teilnehmer gelesenen Nachricht ({@code 0} = keine).
+     */
+    @Column(nullable = false)
+    private long readUpTo;
+
+    /**
+     * Nachrichten des Gegenübers nach {@code readUpTo}.
+     */
+    @Column(nullable = false)
+    private int unread;
+
+    @Transient
+    private boolean newEntry;
+
+    /**
+     * Erstellt einen neuen, noch nicht gespeicherten Eintrag ohne Nachrichten.
+     *
+     * @param participant    Benutzername des Teilnehmers
+     * @param conversationId Schlüssel der Konversation
+     * @param peer           Benutzername des Gegenübers
+     */
+    public ConversationSummary(String participant, String conversationId, String peer) {
+        this.participant = participant;
+        this.conversationId = conversationId;
+        this.peer = peer;
+        this.newEntry = true;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(participant, conversationId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntry;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markStored() {
+        newEntry = false;
+    }
+}
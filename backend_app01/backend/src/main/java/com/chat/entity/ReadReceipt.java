@@ -0,0 +1,97 @@
+package com.chat.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+
+/**
+ * Stand der Empfangs- und Lesebestätigungen eines Benutzers in einer Konversation.
+ *
+ * <p>Statt eines Status pro {@link ChatMessage} wird pro Leser und Konversation nur eine Zeile mit
+ * zwei Wasserständen gespeichert: alle Nachrichten der Konversation mit einer Sequenznummer bis
+ * einschließlich {@code deliveredUpTo} gelten als empfangen, bis {@code readUpTo} als gelesen.
+ * 500 gelesene Nachrichten kosten so eine kleine Aktualisierung statt 500.</p>
+ *
+ * <p>Der Schlüssel wird von der Anwendung vergeben. {@link Persistable} teilt Spring Data mit, ob
+ * die Zeile neu ist, damit neue Einträge ohne vorheriges {@code SELECT} eingefügt und im
+ * JDBC-Batch geschrieben werden.</p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@IdClass(ReadReceipt.Key.class)
+public class ReadReceipt implements Persistable<ReadReceipt.Key> {
+
+    /**
+     * Zusammengesetzter Schlüssel aus Konversation und Leser.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String conversationId;
+        private String reader;
+    }
+
+    /**
+     * Schlüssel der Konversation, siehe {@link ChatMessage#conversationKey}.
+     */
+    @Id
+    private String conversationId;
+
+    /**
+     * Benutzername des Lesenden.
+     */
+    @Id
+    private String reader;
+
+    /**
+     * Sequenznummer der neuesten Nachricht, deren Empfang bestätigt ist ({@code 0} = keine).
+     */
+    @Column(nullable = false)
+    private long deliveredUpTo;
+
+    /**
+     * Sequenznummer der neuesten gelesenen Nachricht ({@code 0} = keine).
+     */
+    @Column(nullable = false)
+    private long readUpTo;
+
+    @Transient
+    private boolean newEntry;
+
+    /**
+     * Erstellt einen neuen, noch nicht gespeicherten Eintrag ohne Bestätigungen.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param reader         Benutzername des Lesenden
+     */
+    public ReadReceipt(String conversationId, String reader) {
+        this.conversationId = conversationId;
+        this.reader = reader;
+        this.newEntry = true;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(conversationId, reader);
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntry;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markStored() {
+        newEntry = false;
+    }
+}
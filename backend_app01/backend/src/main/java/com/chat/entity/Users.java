@@ -1,5 +1,6 @@
 package com.chat.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -51,9 +52,11 @@ public class Users {
     private String email;
 
     /**
-     * Das Passwort des Benutzers. 
-     * (Hinweis: In einer echten Anwendung sollte es gehasht gespeichert werden.)
+     * Der BCrypt-Hash des Passworts (siehe {@link com.chat.service.PasswordHasher}).
+     * Ältere Einträge können noch Klartext enthalten und werden beim nächsten Login ersetzt.
+     * Wird nie serialisiert.
      */
+    @JsonIgnore
     @Column(nullable = false)
     private String password;
 
@@ -0,0 +1,12 @@
+package com.chat.model;
+
+/**
+ * Eine zwischen Cluster-Knoten weitergeleitete Broker-Nachricht.
+ *
+ * @param origin      ID des Knotens, auf dem die Nachricht entstanden ist
+ * @param destination STOMP-Ziel, z. B. {@code /chatroom/public} oder {@code /user/bob/private}
+ * @param contentType Medientyp des Inhalts, z. B. {@code application/json}
+ * @param payload     bereits serialisierter Inhalt der Nachricht
+ */
+public record ClusterFrame(String origin, String destination, String contentType, byte[] payload) {
+}
@@ -0,0 +1,36 @@
+package com.chat.model;
+
+import com.chat.entity.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Eine Seite des Chatverlaufs zwischen zwei Benutzern.
+ *
+ * <p>Die Nachrichten sind chronologisch aufsteigend sortiert. {@code before} zeigt auf ältere,
+ * {@code after} auf neuere Nachrichten; ist ein Cursor {@code null}, gibt es in dieser Richtung
+ * keine weiteren Nachrichten.</p>
+ */
+public class HistoryPage {
+    private final List<ChatMessage> messages;
+    private final String before;
+    private final String after;
+
+    public HistoryPage(List<ChatMessage> messages, String before, String after) {
+        this.messages = messages;
+        this.before = before;
+        this.after = after;
+    }
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    public String getBefore() {
+        return before;
+    }
+
+    public String getAfter() {
+        return after;
+    }
+}
@@ -0,0 +1,26 @@
+package com.chat.model;
+
+import java.util.List;
+
+/**
+ * Eine Seite des Posteingangs, nach der letzten Nachricht absteigend sortiert.
+ *
+ * @param conversations die Konversationen dieser Seite
+ * @param before        Cursor für die nächste (ältere) Seite, {@code null} wenn es keine weitere gibt
+ */
+public record InboxPage(List<InboxEntry> conversations, String before) {
+
+    /**
+     * Eine Konversation im Posteingang.
+     *
+     * @param peer          Benutzername des Gegenübers
+     * @param lastSender    Absender der letzten Nachricht
+     * @param lastPreview   gekürzter Text der letzten Nachricht
+     * @param lastTimestamp Zeitpunkt der letzten Nachricht (Epoch-Millisekunden)
+     * @param readUpTo      eigener Lesestand (Sequenznummer)
+     * @param unread        ungelesene Nachrichten des Gegenübers
+     */
+    public record InboxEntry(String peer, String lastSender, String lastPreview, long lastTimestamp,
+                             long readUpTo, int unread) {
+    }
+}
@@ -1,5 +1,16 @@
 package com.chat.model;
 
+/**
+ * Über STOMP übertragene Chatnachricht.
+ *
+ * <p>{@code media} enthält nur die Referenz (Inhalts-Hash) einer über {@code /api/media}
+ * hochgeladenen Datei, {@code mediaType} deren Medientyp.</p>
+ *
+ * <p>{@code timestamp} vergibt der Server beim Empfang; er wird so auch gespeichert. {@code sequence}
+ * ist die fortlaufende Nummer innerhalb der Konversation für den Abgleich nach einem
+ * Verbindungsabbruch (siehe {@link ResyncRequest}) und dient Clients als Position für
+ * Lesebestätigungen (siehe {@link Receipt}).</p>
+ */
 public class Message {
     private String senderName;
     private String receiverName;
@@ -7,6 +18,8 @@ public class Message {
     private String media;
     private Status status;
     private String mediaType;
+    private Long timestamp;
+    private Long sequence;
 
     public String getSenderName() {
         return senderName;
@@ -55,4 +68,20 @@ public class Message {
     public void setMediaType(String mediaType) {
         this.mediaType = mediaType;
     }
-}
\ No newline at end of file
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+}
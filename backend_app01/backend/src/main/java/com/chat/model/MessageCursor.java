@@ -0,0 +1,45 @@
+package com.chat.model;
+
+/**
+ * Cursor für die Keyset-Paginierung des Chatverlaufs.
+ *
+ * <p>Eine Position im Verlauf ist eindeutig durch Zeitstempel und ID einer Nachricht bestimmt.
+ * Nach außen wird der Cursor als undurchsichtiger String der Form {@code <timestamp>_<id>} übergeben.</p>
+ *
+ * @param timestamp Zeitstempel der Nachricht (in Millisekunden)
+ * @param id        ID der Nachricht
+ */
+public record MessageCursor(long timestamp, long id) {
+
+    /**
+     * Liest einen Cursor aus seiner String-Darstellung.
+     *
+     * @param value der Cursor als String, darf {@code null} oder leer sein
+     * @return der Cursor oder {@code null}, falls kein Wert übergeben wurde
+     * @throws IllegalArgumentException wenn der Wert kein gültiger Cursor ist
+     */
+    public static MessageCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        int separator = value.indexOf('_');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return new MessageCursor(
+                    Long.parseLong(value.substring(0, separator)),
+                    Long.parseLong(value.substring(separator + 1))
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * @return die String-Darstellung dieses Cursors
+     */
+    public String encode() {
+        return timestamp + "_" + id;
+    }
+}
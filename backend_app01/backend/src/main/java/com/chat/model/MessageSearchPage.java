@@ -0,0 +1,29 @@
+package com.chat.model;
+
+import java.util.List;
+
+/**
+ * Eine Seite von Treffern der Volltextsuche im Nachrichtenverlauf.
+ *
+ * @param total Gesamtzahl der Treffer
+ * @param page  Nummer der Seite, beginnend bei 0
+ * @param size  Treffer pro Seite
+ * @param hits  die Treffer dieser Seite, nach Relevanz sortiert
+ */
+public record MessageSearchPage(long total, int page, int size, List<MessageHit> hits) {
+
+    /**
+     * Ein einzelner Treffer.
+     *
+     * @param id             ID der Nachricht
+     * @param conversationId Schlüssel der Konversation
+     * @param senderName     Absender
+     * @param receiverName   Empfänger, {@code null} bei öffentlichen Nachrichten
+     * @param message        Text der Nachricht
+     * @param timestamp      Zeitpunkt des Sendens (Epoch-Millisekunden)
+     * @param score          Relevanz nach BM25
+     */
+    public record MessageHit(long id, String conversationId, String senderName, String receiverName,
+                             String message, long timestamp, float score) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.chat.model;
+
+import java.util.List;
+
+/**
+ * Zusammengefasste Änderungen der Anwesenheit seit der letzten Meldung, gesendet an
+ * {@code /chatroom/presence}.
+ *
+ * @param version fortlaufende Nummer der Meldung
+ * @param joined  Benutzer, die seitdem online gekommen sind
+ * @param left    Benutzer, die seitdem offline gegangen sind
+ */
+public record PresenceDelta(long version, List<String> joined, List<String> left) {
+}
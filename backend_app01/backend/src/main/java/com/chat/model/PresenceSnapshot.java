@@ -0,0 +1,13 @@
+package com.chat.model;
+
+import java.util.List;
+
+/**
+ * Vollständiger Stand der Anwesenheit. Clients laden ihn einmal und wenden danach alle
+ * {@link PresenceDelta}s mit größerer Version an.
+ *
+ * @param version Version der zuletzt gesendeten Änderungsmeldung
+ * @param online  alle Benutzer mit mindestens einer offenen Sitzung
+ */
+public record PresenceSnapshot(long version, List<String> online) {
+}
@@ -0,0 +1,24 @@
+package com.chat.model;
+
+/**
+ * Empfangs- und Lesebestätigung innerhalb einer privaten Konversation.
+ *
+ * <p>Bestätigt wird kumulativ: {@code readUpTo} bedeutet „alle Nachrichten der Konversation bis
+ * einschließlich dieser Sequenznummer gelesen“. Die Nummern vergibt der Server pro Konversation
+ * (siehe {@link Message}); anders als Zeitstempel sind sie eindeutig und hängen nicht von der Uhr
+ * des Clients ab.</p>
+ *
+ * <p>Clients senden die Bestätigung an {@code /app/receipt}. Der Lesende ist der angemeldete
+ * Benutzer bzw. der Name, an den eine anonyme Sitzung gebunden ist; ein abweichender
+ * {@code senderName} wird ignoriert. {@code receiverName} ist der Absender der bestätigten
+ * Nachrichten. Dieser erhält den neuen Stand mit {@code status = RECEIPT} über
+ * {@code /user/{name}/private}.</p>
+ *
+ * @param status        {@link Status#RECEIPT} in Meldungen des Servers, beim Senden optional
+ * @param senderName    der Lesende
+ * @param receiverName  das Gegenüber, dessen Nachrichten bestätigt werden
+ * @param deliveredUpTo empfangen bis zu dieser Sequenznummer (optional)
+ * @param readUpTo      gelesen bis zu dieser Sequenznummer (optional, schließt „empfangen“ ein)
+ */
+public record Receipt(Status status, String senderName, String receiverName, Long deliveredUpTo, Long readUpTo) {
+}
@@ -0,0 +1,18 @@
+package com.chat.model;
+
+import com.chat.entity.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Verpasste Nachrichten einer Konversation als Antwort auf eine {@link ResyncRequest}.
+ *
+ * <p>Die Menge pro Antwort ist begrenzt. Ist {@code complete} {@code false}, fragt der Client mit der
+ * höchsten erhaltenen Sequenznummer erneut an.</p>
+ *
+ * @param conversation Gegenüber bzw. {@code #public}, wie in der Anfrage angegeben
+ * @param messages     die Nachrichten, nach Sequenznummer aufsteigend
+ * @param complete     ob damit alle verpassten Nachrichten übertragen sind
+ */
+public record ResyncBatch(String conversation, List<ChatMessage> messages, boolean complete) {
+}
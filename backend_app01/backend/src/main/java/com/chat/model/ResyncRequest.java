@@ -0,0 +1,17 @@
+package com.chat.model;
+
+import java.util.Map;
+
+/**
+ * Abgleich nach einem Verbindungsabbruch: der Client meldet pro Konversation die zuletzt gesehene
+ * Sequenznummer und erhält nur die Nachrichten danach.
+ *
+ * <p>Clients senden die Anfrage an {@code /app/resync} und abonnieren vorher
+ * {@code /user/{name}/resync}. Die Antwort ist eine Liste von {@link ResyncBatch}, eine pro
+ * angefragter Konversation.</p>
+ *
+ * @param user          der anfragende Benutzer; nur informativ, der Server nimmt den Benutzer der Sitzung
+ * @param conversations Gegenüber bzw. {@code #public} → zuletzt gesehene Sequenznummer (0 = keine)
+ */
+public record ResyncRequest(String user, Map<String, Long> conversations) {
+}
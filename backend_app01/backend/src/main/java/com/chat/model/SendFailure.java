@@ -0,0 +1,14 @@
+package com.chat.model;
+
+/**
+ * Hinweis an den Absender, dass seine Nachricht abgelehnt wurde oder nicht gespeichert werden
+ * konnte, gesendet an {@code /user/{name}/errors}. Abgelehnte Nachrichten werden nicht zugestellt,
+ * im Modus {@code GROUP_COMMIT} auch nicht gespeicherte.
+ *
+ * @param receiverName Empfänger der Nachricht, {@code null} für den öffentlichen Chatroom
+ * @param sequence     Sequenznummer der Nachricht in ihrer Konversation, {@code null} wenn abgelehnt
+ * @param timestamp    vom Server vergebener Zeitstempel der Nachricht
+ * @param reason       Grund in Klartext
+ */
+public record SendFailure(String receiverName, Long sequence, Long timestamp, String reason) {
+}
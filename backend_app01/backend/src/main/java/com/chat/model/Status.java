@@ -3,5 +3,6 @@ package com.chat.model;
 public enum Status {
     JOIN,
     MESSAGE,
-    LEAVE
+    LEAVE,
+    RECEIPT
 }
@@ -0,0 +1,11 @@
+package com.chat.model;
+
+/**
+ * Hinweis an einen Client, dessen Nachricht wegen Überschreitung seines Budgets verworfen wurde,
+ * gesendet an {@code /user/queue/throttle}.
+ *
+ * @param destination  das Ziel der verworfenen Nachricht (z. B. {@code /app/message})
+ * @param retryAfterMs Wartezeit in Millisekunden, bis wieder gesendet werden darf
+ */
+public record ThrottleNotice(String destination, long retryAfterMs) {
+}
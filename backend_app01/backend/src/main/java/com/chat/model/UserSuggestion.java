@@ -0,0 +1,11 @@
+package com.chat.model;
+
+/**
+ * Schlanke Sicht auf einen Benutzer für die Typeahead-Suche, ohne E-Mail und Passwort.
+ *
+ * @param id       ID des Benutzers
+ * @param username Benutzername
+ * @param name     Anzeigename
+ */
+public record UserSuggestion(Long id, String username, String name) {
+}
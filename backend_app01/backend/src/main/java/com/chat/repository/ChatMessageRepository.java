@@ -1,7 +1,11 @@
 package com.chat.repository;
 
 import com.chat.entity.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -9,15 +13,158 @@ import java.util.List;
  * Repository-Schnittstelle für den Zugriff auf Chat-Nachrichten.
  * 
  * <p>Erweitert JpaRepository, um CRUD-Operationen für {@link ChatMessage} zu ermöglichen.</p>
+ *
+ * <p>Die Verlaufsabfragen arbeiten mit Keyset-Paginierung über den Index
+ * {@code (conversationId, timestamp, id)}: statt eines Offsets wird die Position der letzten
+ * gelesenen Nachricht übergeben, sodass jede Seite unabhängig von der Länge des Verlaufs
+ * gleich schnell geladen wird.</p>
+ *
+ * <p>Die Abfragen laufen in schreibgeschützten Transaktionen und damit, falls konfiguriert, über
+ * das Lese-Replikat (siehe {@link com.chat.configuration.ReadReplicaConfig}).</p>
  */
+@Transactional(readOnly = true)
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
     /**
-     * Findet alle Chatnachrichten, bei denen der Benutzer entweder Empfänger oder Absender ist.
+     * Liefert die neuesten Nachrichten einer Konversation, absteigend sortiert.
      *
-     * @param receiverName der Name des Empfängers
-     * @param senderName   der Name des Absenders
-     * @return Liste der gefundenen Chatnachrichten
+     * @param conversationId Schlüssel der Konversation
+     * @param pageable       begrenzt die Anzahl der Ergebnisse
+     * @return die neuesten Nachrichten, neueste zuerst
      */
-    List<ChatMessage> findByReceiverNameOrSenderName(String receiverName, String senderName);
+    @Query("select m from ChatMessage m where m.conversationId = :conversationId "
+            + "order by m.timestamp desc, m.id desc")
+    List<ChatMessage> findLatest(@Param("conversationId") String conversationId, Pageable pageable);
+
+    /**
+     * Liefert Nachrichten einer Konversation, die älter als die angegebene Position sind.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param timestamp      Zeitstempel der Cursor-Nachricht
+     * @param id             ID der Cursor-Nachricht
+     * @param pageable       begrenzt die Anzahl der Ergebnisse
+     * @return ältere Nachrichten, neueste zuerst
+     */
+    @Query("select m from ChatMessage m where m.conversationId = :conversationId "
+            + "and (m.timestamp < :timestamp or (m.timestamp = :timestamp and m.id < :id)) "
+            + "order by m.timestamp desc, m.id desc")
+    List<ChatMessage> findBefore(@Param("conversationId") String conversationId,
+                                 @Param("timestamp") long timestamp,
+                                 @Param("id") long id,
+                                 Pageable pageable);
+
+    /**
+     * Liefert Nachrichten einer Konversation, die neuer als die angegebene Position sind.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param timestamp      Zeitstempel der Cursor-Nachricht
+     * @param id             ID der Cursor-Nachricht
+     * @param pageable       begrenzt die Anzahl der Ergebnisse
+     * @return neuere Nachrichten, älteste zuerst
+     */
+    @Query("select m from ChatMessage m where m.conversationId = :conversationId "
+            + "and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id)) "
+            + "order by m.timestamp asc, m.id asc")
+    List<ChatMessage> findAfter(@Param("conversationId") String conversationId,
+                                @Param("timestamp") long timestamp,
+                                @Param("id") long id,
+                                Pageable pageable);
+
+    /**
+     * Liefert Nachrichten einer Konversation mit einer höheren Sequenznummer als angegeben, über den
+     * Index {@code (conversationId, sequence)}. Nachrichten ohne Sequenznummer werden nicht geliefert.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param sequence       zuletzt bekannte Sequenznummer
+     * @param pageable       begrenzt die Anzahl der Ergebnisse
+     * @return neuere Nachrichten, nach Sequenznummer aufsteigend
+     */
+    @Query("select m from ChatMessage m where m.conversationId = :conversationId "
+            + "and m.sequence > :sequence order by m.sequence asc")
+    List<ChatMessage> findSequencedAfter(@Param("conversationId") String conversationId,
+                                         @Param("sequence") long sequence,
+                                         Pageable pageable);
+
+    /**
+     * Liefert die höchste vergebene Sequenznummer einer Konversation.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @return die höchste Nummer oder {@code null}, wenn noch keine vergeben wurde
+     */
+    @Query("select max(m.sequence) from ChatMessage m where m.conversationId = :conversationId")
+    Long maxSequence(@Param("conversationId") String conversationId);
+
+    /**
+     * Liefert Konversationen mit Nachrichten vor einem Zeitpunkt, z. B. für die Archivierung.
+     *
+     * @param cutoff   Zeitstempel in Millisekunden
+     * @param pageable begrenzt die Anzahl der Ergebnisse
+     * @return Schlüssel der Konversationen
+     */
+    @Query("select distinct m.conversationId from ChatMessage m "
+            + "where m.timestamp < :cutoff and m.conversationId is not null")
+    List<String> findConversationsOlderThan(@Param("cutoff") long cutoff, Pageable pageable);
+
+    /**
+     * Liefert die IDs von Nachrichten einer Konversation vor einem Zeitpunkt, z. B. für das Löschen
+     * in Batches nach Ablauf der Aufbewahrungsfrist.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param cutoff         Zeitstempel in Millisekunden
+     * @param pageable       begrenzt die Anzahl der Ergebnisse
+     * @return die IDs
+     */
+    @Query("select m.id from ChatMessage m where m.conversationId = :conversationId and m.timestamp < :cutoff")
+    List<Long> findIdsOlderThan(@Param("conversationId") String conversationId,
+                                @Param("cutoff") long cutoff,
+                                Pageable pageable);
+
+    /**
+     * Liefert die ältesten Nachrichten einer Konversation vor einem Zeitpunkt.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param cutoff         Zeitstempel in Millisekunden
+     * @param pageable       begrenzt die Anzahl der Ergebnisse
+     * @return die Nachrichten, älteste zuerst
+     */
+    @Query("select m from ChatMessage m where m.conversationId = :conversationId and m.timestamp < :cutoff "
+            + "order by m.timestamp asc, m.id asc")
+    List<ChatMessage> findOldest(@Param("conversationId") String conversationId,
+                                 @Param("cutoff") long cutoff,
+                                 Pageable pageable);
+
+    /**
+     * Liefert Nachrichten aus der Zeit vor Einführung von {@code conversationId}, die noch keinen
+     * Konversationsschlüssel besitzen.
+     *
+     * @param pageable begrenzt die Anzahl der Ergebnisse
+     * @return Nachrichten ohne Konversationsschlüssel
+     */
+    List<ChatMessage> findByConversationIdIsNull(Pageable pageable);
+
+    /**
+     * Liefert Nachrichten in aufsteigender ID-Reihenfolge ab einer ID, z. B. für den Neuaufbau des
+     * Suchindex in Batches.
+     *
+     * @param id       nur Nachrichten mit größerer ID
+     * @param pageable begrenzt die Anzahl der Ergebnisse
+     * @return die nächsten Nachrichten
+     */
+    List<ChatMessage> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Zählt die Nachrichten eines Absenders in einer Konversation nach einer Sequenznummer, z. B.
+     * die ungelesenen Nachrichten des Gegenübers nach dem Lesestand. Nutzt den Index
+     * {@code (conversationId, sequence)}.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param senderName     Absender
+     * @param sequence       nur Nachrichten mit größerer Sequenznummer
+     * @return Anzahl der Nachrichten
+     */
+    @Query("select count(m) from ChatMessage m where m.conversationId = :conversationId "
+            + "and m.senderName = :senderName and m.sequence > :sequence")
+    long countFromSenderAfter(@Param("conversationId") String conversationId,
+                              @Param("senderName") String senderName,
+                              @Param("sequence") long sequence);
 }
@@ -0,0 +1,29 @@
+package com.chat.repository;
+
+import com.chat.entity.ClusterLease;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Repository für die Zuständigkeiten der Cluster-Knoten.
+ */
+@Transactional(readOnly = true)
+public interface ClusterLeaseRepository extends JpaRepository<ClusterLease, String> {
+
+    /**
+     * Liest eine Zuständigkeit und sperrt die Zeile bis zum Ende der Transaktion. Muss innerhalb
+     * einer schreibenden Transaktion laufen.
+     *
+     * @param name Name der Aufgabe
+     * @return die Zuständigkeit, falls bereits angelegt
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from ClusterLease l where l.name = :name")
+    Optional<ClusterLease> lockById(@Param("name") String name);
+}
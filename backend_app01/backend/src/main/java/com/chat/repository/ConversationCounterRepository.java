@@ -0,0 +1,29 @@
+package com.chat.repository;
+
+import com.chat.entity.ConversationCounter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Repository für die Zähler der Sequenznummern pro Konversation.
+ */
+@Transactional(readOnly = true)
+public interface ConversationCounterRepository extends JpaRepository<ConversationCounter, String> {
+
+    /**
+     * Liest den Zähler einer Konversation und sperrt die Zeile bis zum Ende der Transaktion
+     * ({@code SELECT ... FOR UPDATE}). Muss innerhalb einer schreibenden Transaktion laufen.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @return der Zähler, falls bereits angelegt
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from ConversationCounter c where c.conversationId = :conversationId")
+    Optional<ConversationCounter> lockById(@Param("conversationId") String conversationId);
+}
@@ -0,0 +1,48 @@
+package com.chat.repository;
+
+import com.chat.entity.ConversationSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository für die Posteingänge, siehe {@link ConversationSummary}.
+ *
+ * <p>Geblättert wird wie im Verlauf per Keyset über {@code (lastTimestamp, conversationId)}.
+ * Einträge, die bisher nur einen Lesestand und keine Nachricht kennen, werden ausgelassen.</p>
+ */
+@Transactional(readOnly = true)
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, ConversationSummary.Key> {
+
+    /**
+     * Liefert die zuletzt aktiven Konversationen eines Teilnehmers.
+     *
+     * @param participant Benutzername des Teilnehmers
+     * @param pageable    begrenzt die Anzahl der Ergebnisse
+     * @return die Einträge, neueste zuerst
+     */
+    @Query("select s from ConversationSummary s where s.participant = :participant and s.lastSender is not null "
+            + "order by s.lastTimestamp desc, s.conversationId desc")
+    List<ConversationSummary> findLatest(@Param("participant") String participant, Pageable pageable);
+
+    /**
+     * Liefert die Konversationen eines Teilnehmers, die vor der angegebenen Position liegen.
+     *
+     * @param participant    Benutzername des Teilnehmers
+     * @param timestamp      Zeitstempel der letzten Nachricht des zuletzt gelieferten Eintrags
+     * @param conversationId Konversation des zuletzt gelieferten Eintrags
+     * @param pageable       begrenzt die Anzahl der Ergebnisse
+     * @return die Einträge, neueste zuerst
+     */
+    @Query("select s from ConversationSummary s where s.participant = :participant and s.lastSender is not null "
+            + "and (s.lastTimestamp < :timestamp or (s.lastTimestamp = :timestamp and s.conversationId < :conversationId)) "
+            + "order by s.lastTimestamp desc, s.conversationId desc")
+    List<ConversationSummary> findBefore(@Param("participant") String participant,
+                                         @Param("timestamp") long timestamp,
+                                         @Param("conversationId") String conversationId,
+                                         Pageable pageable);
+}
@@ -0,0 +1,22 @@
+package com.chat.repository;
+
+import com.chat.entity.ReadReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository für die Bestätigungsstände pro Leser und Konversation.
+ */
+@Transactional(readOnly = true)
+public interface ReadReceiptRepository extends JpaRepository<ReadReceipt, ReadReceipt.Key> {
+
+    /**
+     * Liefert die Stände aller Teilnehmer einer Konversation.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @return höchstens ein Eintrag pro Teilnehmer
+     */
+    List<ReadReceipt> findByConversationId(String conversationId);
+}
@@ -2,13 +2,21 @@ package com.chat.repository;
 
 
 import com.chat.entity.Users;
+import com.chat.model.UserSuggestion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 /**
  * Repository-Schnittstelle für den Zugriff auf Benutzer (Users).
  *
  * <p>Erweitert JpaRepository, um CRUD-Operationen für {@link Users} zu ermöglichen.</p>
  */
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<Users, Long> {
 
     /**
@@ -26,4 +34,40 @@ public interface UserRepository extends JpaRepository<Users, Long> {
      * @return der Benutzer mit der angegebenen E-Mail oder {@code null}, falls nicht gefunden
      */
     Users findByEmail(String email);
+
+    /**
+     * Liefert alle Benutzernamen, z. B. zum Befüllen des Bloom-Filters im {@code UserCache}.
+     *
+     * @return alle Benutzernamen
+     */
+    @Query("select u.username from Users u")
+    List<String> findAllUsernames();
+
+    /**
+     * Liefert alle E-Mail-Adressen, z. B. zum Befüllen des Bloom-Filters im {@code UserCache}.
+     *
+     * @return alle E-Mail-Adressen
+     */
+    @Query("select u.email from Users u")
+    List<String> findAllEmails();
+
+    /**
+     * Liefert alle Benutzer als schlanke Projektion für den Typeahead-Index.
+     *
+     * @return ID, Benutzername und Anzeigename aller Benutzer
+     */
+    @Query("select new com.chat.model.UserSuggestion(u.id, u.username, u.name) from Users u")
+    List<UserSuggestion> findAllSuggestions();
+
+    /**
+     * Ersetzt nur den Passwort-Hash eines Benutzers, ohne die übrigen Felder zu überschreiben.
+     *
+     * @param id       die ID des Benutzers
+     * @param password der neue Hash
+     * @return Anzahl der geänderten Zeilen
+     */
+    @Modifying
+    @Transactional
+    @Query("update Users u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
 }
@@ -0,0 +1,311 @@
+package com.chat.service;
+
+import com.chat.configuration.ReadYourWrites;
+import com.chat.entity.ChatMessage;
+import com.chat.entity.ClusterLease;
+import com.chat.model.ClusterFrame;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.repository.ClusterLeaseRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verschiebt alte Nachrichten aus der Datenbank in das {@link MessageArchive} und setzt die
+ * Aufbewahrungsfrist durch.
+ *
+ * <p>Alle {@code intervalMillis} werden Nachrichten, die älter als {@code hotDays} Tage sind,
+ * konversationsweise in Blöcken zu {@code blockMessages} Nachrichten archiviert: erst wird der
+ * Block dauerhaft ins Segment geschrieben, dann werden die Zeilen per Batch-Delete entfernt. So
+ * bleiben die Tabelle und ihre Indizes auf die aktiven Nachrichten beschränkt. Bricht der Knoten
+ * dazwischen ab, liegen Nachrichten kurzzeitig in beiden Stufen; der Verlauf filtert Doppelte.</p>
+ *
+ * <p>Ist {@code retentionDays} größer als 0, werden ältere Nachrichten gelöscht: in der Datenbank
+ * in Batches, im Archiv als ganze Segmente, dazu im Suchindex und im Verlaufs-Cache. Referenzierte
+ * Medien bleiben erhalten, da sie inhaltsadressiert von mehreren Nachrichten geteilt werden können.</p>
+ *
+ * <p>Die Abfragen laufen immer gegen die Primärdatenbank; ein nachhinkendes Replikat würde bereits
+ * verschobene Zeilen ein zweites Mal archivieren.</p>
+ *
+ * <p>Im Cluster (mit {@link ClusterBus}) teilen sich alle Knoten das Archivverzeichnis. Archiviert
+ * wird nur von dem Knoten, der die {@link ClusterLease} {@value #LEASE} hält; er verlängert sie bei
+ * jedem Lauf um zwei Intervalle. Danach meldet er an {@value #CLUSTER_DESTINATION}, welche
+ * Konversationen betroffen sind, und die anderen Knoten lesen das Archiv neu ein und verwerfen
+ * diese Konversationen aus ihrem Cache.</p>
+ */
+@Service
+public class ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int CONVERSATIONS_PER_QUERY = 1000;
+
+    static final String LEASE = "archive";
+    static final String CLUSTER_DESTINATION = ClusterBus.INTERNAL_PREFIX + "archive";
+
+    /**
+     * Zählerstände der Archivierung.
+     *
+     * @param runs            abgeschlossene Durchläufe
+     * @param archived        ins Archiv verschobene Nachrichten
+     * @param purged          nach Ablauf der Aufbewahrungsfrist aus der Datenbank gelöschte Nachrichten
+     * @param lastRunMillis   Dauer des letzten Durchlaufs
+     * @param archive         Belegung des Archivs
+     */
+    public record Stats(long runs, long archived, long purged, long lastRunMillis, MessageArchive.Stats archive) {
+    }
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final MessageArchive messageArchive;
+    private final MessageSearchIndex messageSearchIndex;
+    private final ConversationCache conversationCache;
+    private final ReadYourWrites readYourWrites;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterLeaseRepository clusterLeaseRepository;
+    private final ClusterBus clusterBus;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int hotDays;
+    private final int retentionDays;
+    private final long intervalMillis;
+    private final int blockMessages;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+    private final AtomicLong lastRunMillis = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public ArchiveService(ChatMessageRepository chatMessageRepository,
+                          MessageArchive messageArchive,
+                          MessageSearchIndex messageSearchIndex,
+                          ConversationCache conversationCache,
+                          ReadYourWrites readYourWrites,
+                          TransactionTemplate transactionTemplate,
+                          ClusterLeaseRepository clusterLeaseRepository,
+                          ObjectProvider<ClusterBus> clusterBus,
+                          ObjectMapper objectMapper,
+                          @Value("${chat.archive.enabled:true}") boolean enabled,
+                          @Value("${chat.archive.hot-days:30}") int hotDays,
+                          @Value("${chat.archive.retention-days:0}") int retentionDays,
+                          @Value("${chat.archive.interval-ms:3600000}") long intervalMillis,
+                          @Value("${chat.archive.block-messages:500}") int blockMessages) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.messageArchive = messageArchive;
+        this.messageSearchIndex = messageSearchIndex;
+        this.conversationCache = conversationCache;
+        this.readYourWrites = readYourWrites;
+        this.transactionTemplate = transactionTemplate;
+        this.clusterLeaseRepository = clusterLeaseRepository;
+        this.clusterBus = clusterBus.getIfAvailable();
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.hotDays = hotDays;
+        this.retentionDays = retentionDays;
+        this.intervalMillis = intervalMillis;
+        this.blockMessages = blockMessages;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (clusterBus != null) {
+            clusterBus.onReceive(this::receive);
+        }
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "archive");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Löscht abgelaufene Nachrichten und archiviert alte. Läuft sonst periodisch im Hintergrund.
+     * Im Cluster geschieht das nur, wenn dieser Knoten die Zuständigkeit erhält.
+     */
+    public synchronized void runOnce() {
+        if (clusterBus != null) {
+            if (!acquireLease()) {
+                return;
+            }
+            // Ein anderer Knoten könnte zuvor archiviert haben
+            messageArchive.reload();
+        }
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long purgedRows = 0;
+        Set<String> invalidated = new HashSet<>();
+        if (retentionDays > 0) {
+            purgedRows = purgeHot(now - retentionDays * DAY_MILLIS, invalidated);
+        }
+        long moved = archive(now - hotDays * DAY_MILLIS);
+        if (retentionDays > 0) {
+            long cutoff = now - retentionDays * DAY_MILLIS;
+            invalidated.addAll(messageArchive.purgeBefore(cutoff));
+            messageSearchIndex.deleteOlderThan(cutoff);
+        }
+        invalidated.forEach(conversationCache::invalidate);
+        if (clusterBus != null && (moved > 0 || !invalidated.isEmpty())) {
+            publish(invalidated);
+        }
+        runs.incrementAndGet();
+        lastRunMillis.set((System.nanoTime() - start) / 1_000_000);
+        if (moved > 0 || purgedRows > 0) {
+            log.info("{} Nachrichten archiviert, {} abgelaufene gelöscht in {} ms", moved, purgedRows, lastRunMillis.get());
+        }
+    }
+
+    /**
+     * @return aktuelle Zählerstände
+     */
+    public Stats stats() {
+        return new Stats(runs.get(), archived.get(), purged.get(), lastRunMillis.get(), messageArchive.stats());
+    }
+
+    /**
+     * Übernimmt oder verlängert die Zuständigkeit für die Archivierung.
+     *
+     * @return ob dieser Knoten archivieren darf
+     */
+    private boolean acquireLease() {
+        String node = clusterBus.nodeId();
+        long now = System.currentTimeMillis();
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                ClusterLease lease = clusterLeaseRepository.lockById(LEASE)
+                        .orElseGet(() -> new ClusterLease(LEASE, node, 0));
+                if (!node.equals(lease.getOwner()) && lease.getExpiresAt() > now) {
+                    return false;
+                }
+                lease.setOwner(node);
+                lease.setExpiresAt(now + 2 * intervalMillis);
+                clusterLeaseRepository.saveAndFlush(lease);
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // Ein anderer Knoten hat die Zuständigkeit gleichzeitig angelegt
+            return false;
+        }
+    }
+
+    private void publish(Set<String> invalidated) {
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(List.copyOf(invalidated));
+            clusterBus.publish(new ClusterFrame(clusterBus.nodeId(), CLUSTER_DESTINATION, "application/json", payload));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Archivierung konnte den anderen Knoten nicht gemeldet werden", e);
+        }
+    }
+
+    /**
+     * Liest nach dem Lauf eines anderen Knotens das Archiv neu ein und verwirft die betroffenen
+     * Konversationen aus dem Cache.
+     */
+    private void receive(ClusterFrame frame) {
+        if (!CLUSTER_DESTINATION.equals(frame.destination())) {
+            return;
+        }
+        try {
+            String[] invalidated = objectMapper.readValue(frame.payload(), String[].class);
+            messageArchive.reload();
+            for (String conversationId : invalidated) {
+                conversationCache.invalidate(conversationId);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Archiv konnte nach dem Lauf von Knoten {} nicht neu gelesen werden", frame.origin(), e);
+        }
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            log.warn("Archivierung fehlgeschlagen, neuer Versuch im nächsten Intervall", e);
+        }
+    }
+
+    private long archive(long cutoff) {
+        long moved = 0;
+        List<String> conversations;
+        do {
+            conversations = readYourWrites.primary(
+                    () -> chatMessageRepository.findConversationsOlderThan(cutoff, PageRequest.of(0, CONVERSATIONS_PER_QUERY)));
+            for (String conversationId : conversations) {
+                List<ChatMessage> rows;
+                do {
+                    rows = readYourWrites.primary(
+                            () -> chatMessageRepository.findOldest(conversationId, cutoff, PageRequest.of(0, blockMessages)));
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    messageArchive.append(conversationId, rows);
+                    List<Long> ids = rows.stream().map(ChatMessage::getId).toList();
+                    transactionTemplate.executeWithoutResult(status -> chatMessageRepository.deleteAllByIdInBatch(ids));
+                    moved += rows.size();
+                    archived.addAndGet(rows.size());
+                } while (rows.size() == blockMessages);
+            }
+        } while (conversations.size() == CONVERSATIONS_PER_QUERY);
+        return moved;
+    }
+
+    private long purgeHot(long cutoff, Set<String> invalidated) {
+        long deleted = 0;
+        List<String> conversations;
+        do {
+            conversations = readYourWrites.primary(
+                    () -> chatMessageRepository.findConversationsOlderThan(cutoff, PageRequest.of(0, CONVERSATIONS_PER_QUERY)));
+            for (String conversationId : conversations) {
+                List<Long> ids;
+                do {
+                    ids = readYourWrites.primary(
+                            () -> chatMessageRepository.findIdsOlderThan(conversationId, cutoff, PageRequest.of(0, blockMessages)));
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+                    List<Long> batch = ids;
+                    transactionTemplate.executeWithoutResult(status -> chatMessageRepository.deleteAllByIdInBatch(batch));
+                    deleted += ids.size();
+                    purged.addAndGet(ids.size());
+                } while (ids.size() == blockMessages);
+                invalidated.add(conversationId);
+            }
+        } while (conversations.size() == CONVERSATIONS_PER_QUERY);
+        return deleted;
+    }
+}
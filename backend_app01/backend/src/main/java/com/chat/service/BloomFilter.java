@@ -0,0 +1,95 @@
+package com.chat.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Einfacher, threadsicherer Bloom-Filter für Zeichenketten.
+ *
+ * <p>Beantwortet die Frage „ist dieser Wert sicher nicht enthalten?“ ohne falsch-negative
+ * Antworten. Falsch-positive Antworten treten mit etwa der beim Erzeugen angegebenen Rate auf,
+ * solange nicht mehr als {@code expectedInsertions} Werte eingefügt wurden.</p>
+ *
+ * <p>Die Positionen werden per Double-Hashing aus zwei 64-Bit-Hashes abgeleitet. Einfügen ist
+ * lock-frei, Werte können nicht entfernt werden.</p>
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    /**
+     * @param expectedInsertions erwartete Anzahl Werte
+     * @param falsePositiveRate  gewünschte Rate falsch-positiver Antworten, z. B. {@code 0.01}
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, (m + 63) / 64 * 64);
+        this.bits = new AtomicLongArray((int) (bitCount / 64));
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * Fügt einen Wert hinzu.
+     *
+     * @param value der Wert
+     */
+    public void put(String value) {
+        long h1 = hash(value, 0xcbf29ce484222325L);
+        long h2 = hash(value, 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * @param value der Wert
+     * @return {@code false}, wenn der Wert sicher nie eingefügt wurde
+     */
+    public boolean mightContain(String value) {
+        long h1 = hash(value, 0xcbf29ce484222325L);
+        long h2 = hash(value, 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Größe des Filters in Bits
+     */
+    public long bitCount() {
+        return bitCount;
+    }
+
+    /**
+     * FNV-1a über die UTF-16-Zeichen mit anschließendem Mischen der Bits.
+     */
+    private static long hash(String value, long seed) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
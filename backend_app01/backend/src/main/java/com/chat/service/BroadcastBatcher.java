@@ -0,0 +1,185 @@
+package com.chat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bündelt Broadcasts an stark abonnierte Ziele wie {@code /chatroom/public} (opt-in).
+ *
+ * <p>Ohne Bündelung erzeugt jede Nachricht ein Frame pro Abonnent; bei N Abonnenten und M
+ * Nachrichten sind das N×M kleine Schreibvorgänge. Im gebündelten Modus werden Nachrichten
+ * {@code windowMillis} lang oder bis {@code maxMessages} gesammelt und als ein JSON-Array
+ * verschickt – also ein Frame pro Abonnent und Fenster. Jede Nachricht wird beim Einreihen genau
+ * einmal serialisiert; das Array wird einmal zusammengesetzt und vom Broker für alle Abonnenten
+ * wiederverwendet.</p>
+ *
+ * <p>Clients müssen auf dem Ziel sowohl einzelne Objekte als auch Arrays verstehen. Im Cluster
+ * gelangt das Array unverändert über das Broker-Relay zu den anderen Knoten.</p>
+ */
+@Service
+public class BroadcastBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(BroadcastBatcher.class);
+
+    /**
+     * Zählerstände der Bündelung.
+     */
+    public record Stats(boolean enabled, long messages, long batches, double averageBatchSize) {
+    }
+
+    private static final class Batch {
+        final List<byte[]> pending = new ArrayList<>();
+    }
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxMessages;
+
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder batchesSent = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    public BroadcastBatcher(@Lazy SimpMessagingTemplate simpMessagingTemplate,
+                            ObjectMapper objectMapper,
+                            @Value("${chat.broadcast.batch.enabled:false}") boolean enabled,
+                            @Value("${chat.broadcast.batch.window-ms:20}") long windowMillis,
+                            @Value("${chat.broadcast.batch.max-messages:50}") int maxMessages) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.maxMessages = maxMessages;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "broadcast-batch");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            flush();
+        }
+    }
+
+    /**
+     * @return ob Broadcasts gebündelt werden
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reiht eine Nachricht für das Ziel ein. Ist das Bündel voll, wird es sofort verschickt.
+     *
+     * @param destination das Broadcast-Ziel
+     * @param payload     die Nachricht, wird sofort als JSON serialisiert
+     */
+    public void publish(String destination, Object payload) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Message cannot be serialized", e);
+        }
+        messages.increment();
+        Batch batch = batches.computeIfAbsent(destination, key -> new Batch());
+        synchronized (batch) {
+            batch.pending.add(json);
+            if (batch.pending.size() >= maxMessages) {
+                send(destination, batch);
+            }
+        }
+    }
+
+    /**
+     * Verschickt alle offenen Bündel.
+     */
+    public void flush() {
+        batches.forEach((destination, batch) -> {
+            try {
+                synchronized (batch) {
+                    send(destination, batch);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Gebündelter Broadcast an {} fehlgeschlagen", destination, e);
+            }
+        });
+    }
+
+    /**
+     * @return aktuelle Zählerstände
+     */
+    public Stats stats() {
+        long sent = batchesSent.sum();
+        long total = messages.sum();
+        return new Stats(enabled, total, sent, sent > 0 ? (double) total / sent : 0);
+    }
+
+    /**
+     * Setzt das Array aus den bereits serialisierten Nachrichten zusammen und übergibt es dem Broker.
+     * Läuft unter der Sperre des Bündels, damit die Reihenfolge der Nachrichten erhalten bleibt.
+     */
+    private void send(String destination, Batch batch) {
+        if (batch.pending.isEmpty()) {
+            return;
+        }
+        int size = 2 + batch.pending.size();
+        for (byte[] json : batch.pending) {
+            size += json.length;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < batch.pending.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(batch.pending.get(i));
+        }
+        out.write(']');
+        batch.pending.clear();
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        simpMessagingTemplate.send(destination, MessageBuilder.createMessage(out.toByteArray(),
+                accessor.getMessageHeaders()));
+        batchesSent.increment();
+    }
+}
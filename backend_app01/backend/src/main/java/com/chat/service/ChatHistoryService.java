@@ -0,0 +1,297 @@
+package com.chat.service;
+
+import com.chat.configuration.ReadYourWrites;
+import com.chat.entity.ChatMessage;
+import com.chat.model.HistoryPage;
+import com.chat.model.MessageCursor;
+import com.chat.model.ResyncBatch;
+import com.chat.repository.ChatMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service-Klasse für den Chatverlauf zwischen zwei Benutzern.
+ *
+ * <p>Der Verlauf wird seitenweise per Keyset-Paginierung geladen. Eine Seite wird über die
+ * Cursor {@code before} (ältere Nachrichten) bzw. {@code after} (neuere Nachrichten) adressiert;
+ * ohne Cursor wird die neueste Seite geliefert. Die neueste Seite kommt, wenn möglich, aus dem
+ * {@link ConversationCache}; ältere und neuere Seiten werden immer aus der Datenbank gelesen.</p>
+ *
+ * <p>Nachrichten, die der {@link ArchiveService} in das {@link MessageArchive} verschoben hat, sind
+ * älter als alle Zeilen der Datenbank. Reicht die Datenbank für eine Seite nicht aus, wird der Rest
+ * aus dem Archiv ergänzt; Cursor funktionieren über beide Stufen hinweg gleich.</p>
+ *
+ * <p>Nach einem Verbindungsabbruch liefert {@link #resync} nur die Nachrichten nach der zuletzt
+ * gesehenen Sequenznummer, bevorzugt aus dem Cache, sonst über den Index
+ * {@code (conversationId, sequence)} und, falls sie schon archiviert sind, aus dem Archiv.
+ * Nachrichten ohne Sequenznummer (vor deren Einführung
+ * gespeichert) erreicht man weiterhin nur über den Verlauf.</p>
+ *
+ * <p>Ist ein Lese-Replikat konfiguriert, lesen beide Wege vom Replikat, außer die Konversation wurde
+ * gerade beschrieben; dann liest {@link ReadYourWrites} von der Primärdatenbank.</p>
+ */
+@Service
+public class ChatHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatHistoryService.class);
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ConversationCache conversationCache;
+    private final MessageArchive messageArchive;
+    private final ReadYourWrites readYourWrites;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int resyncBatchSize;
+
+    public ChatHistoryService(ChatMessageRepository chatMessageRepository,
+                              ConversationCache conversationCache,
+                              MessageArchive messageArchive,
+                              ReadYourWrites readYourWrites,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${chat.history.default-page-size:50}") int defaultPageSize,
+                              @Value("${chat.history.max-page-size:200}") int maxPageSize,
+                              @Value("${chat.resync.batch-size:200}") int resyncBatchSize) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.conversationCache = conversationCache;
+        this.messageArchive = messageArchive;
+        this.readYourWrites = readYourWrites;
+        this.transactionTemplate = transactionTemplate;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.resyncBatchSize = resyncBatchSize;
+    }
+
+    /**
+     * Lädt eine Seite des Verlaufs zwischen zwei Benutzern.
+     *
+     * @param user1  erster Teilnehmer
+     * @param user2  zweiter Teilnehmer
+     * @param before Cursor für ältere Nachrichten (optional)
+     * @param after  Cursor für neuere Nachrichten (optional)
+     * @param limit  gewünschte Seitengröße (optional, wird auf {@code maxPageSize} begrenzt)
+     * @return die Seite, chronologisch aufsteigend sortiert
+     * @throws IllegalArgumentException bei ungültigem Cursor oder wenn beide Cursor gesetzt sind
+     */
+    public HistoryPage getConversation(String user1, String user2, String before, String after, Integer limit) {
+        MessageCursor beforeCursor = MessageCursor.parse(before);
+        MessageCursor afterCursor = MessageCursor.parse(after);
+        if (beforeCursor != null && afterCursor != null) {
+            throw new IllegalArgumentException("Only one of before/after may be set");
+        }
+
+        String conversationId = ChatMessage.conversationKey(user1, user2);
+        int size = pageSize(limit);
+        return readYourWrites.read(conversationId, () -> page(conversationId, beforeCursor, afterCursor, size));
+    }
+
+    private HistoryPage page(String conversationId, MessageCursor beforeCursor, MessageCursor afterCursor, int size) {
+        // Eine Nachricht mehr laden, um zu erkennen, ob es weitere Seiten gibt
+        int fetch = size + 1;
+
+        if (afterCursor != null) {
+            List<ChatMessage> newer = newerThan(conversationId, afterCursor, fetch);
+            boolean hasNewer = newer.size() > size;
+            List<ChatMessage> messages = hasNewer ? newer.subList(0, size) : newer;
+            return toPage(messages, true, hasNewer);
+        }
+
+        if (beforeCursor == null) {
+            ConversationCache.CachedPage cached = conversationCache.latest(conversationId, size);
+            if (cached != null && (cached.hasOlder() || !messageArchive.contains(conversationId))) {
+                return toPage(cached.messages(), cached.hasOlder(), false);
+            }
+        }
+
+        List<ChatMessage> older = olderThan(conversationId, beforeCursor, fetch);
+        boolean hasOlder = older.size() > size;
+        List<ChatMessage> messages = new ArrayList<>(hasOlder ? older.subList(0, size) : older);
+        Collections.reverse(messages);
+        return toPage(messages, hasOlder, beforeCursor != null);
+    }
+
+    /**
+     * Liefert die verpassten Nachrichten mehrerer Konversationen eines Benutzers. Insgesamt werden
+     * höchstens {@code resyncBatchSize} Nachrichten geliefert; Konversationen, die nicht mehr
+     * hineinpassen, werden als unvollständig gemeldet und vom Client erneut angefragt.
+     *
+     * @param user          der anfragende Benutzer
+     * @param conversations Gegenüber bzw. {@link ChatMessage#PUBLIC_CONVERSATION} → zuletzt gesehene
+     *                      Sequenznummer
+     * @return eine Antwort pro angefragter Konversation, in Reihenfolge der Anfrage
+     */
+    public List<ResyncBatch> resync(String user, Map<String, Long> conversations) {
+        List<ResyncBatch> batches = new ArrayList<>();
+        if (conversations == null) {
+            return batches;
+        }
+        int budget = resyncBatchSize;
+        for (Map.Entry<String, Long> entry : conversations.entrySet()) {
+            String peer = entry.getKey();
+            String conversationId = ChatMessage.PUBLIC_CONVERSATION.equals(peer)
+                    ? ChatMessage.PUBLIC_CONVERSATION
+                    : ChatMessage.conversationKey(user, peer);
+            long sequence = entry.getValue() != null ? Math.max(0, entry.getValue()) : 0;
+
+            int limit = budget + 1;
+            List<ChatMessage> missed = budget > 0
+                    ? readYourWrites.read(conversationId, () -> missedMessages(conversationId, sequence, limit))
+                    : List.of();
+            boolean complete = budget > 0 && missed.size() <= budget;
+            List<ChatMessage> messages = complete ? missed : missed.subList(0, Math.min(budget, missed.size()));
+            budget -= messages.size();
+            batches.add(new ResyncBatch(peer, messages, complete));
+        }
+        return batches;
+    }
+
+    /**
+     * Lädt bis zu {@code limit} Nachrichten nach {@code sequence}: zuerst bereits archivierte, dann
+     * die aus der Datenbank. Nachrichten, die noch auf ihre Speicherung warten, werden aus dem Cache
+     * ergänzt.
+     */
+    private List<ChatMessage> missedMessages(String conversationId, long sequence, int limit) {
+        List<ChatMessage> cached = conversationCache.after(conversationId, sequence);
+        if (cached != null) {
+            return cached.size() > limit ? cached.subList(0, limit) : cached;
+        }
+        List<ChatMessage> merged = new ArrayList<>();
+        long last = sequence;
+        if (messageArchive.maxSequence(conversationId) > sequence) {
+            merged.addAll(messageArchive.afterSequence(conversationId, sequence, limit));
+            if (merged.size() == limit) {
+                return merged;
+            }
+            if (!merged.isEmpty()) {
+                last = merged.get(merged.size() - 1).getSequence();
+            }
+        }
+        List<ChatMessage> stored = chatMessageRepository.findSequencedAfter(
+                conversationId, last, PageRequest.of(0, limit - merged.size()));
+        merged.addAll(stored);
+        if (merged.size() == limit) {
+            return merged;
+        }
+        if (!stored.isEmpty()) {
+            last = stored.get(stored.size() - 1).getSequence();
+        }
+        List<ChatMessage> unsaved = conversationCache.after(conversationId, last);
+        if (unsaved != null && !unsaved.isEmpty()) {
+            merged.addAll(unsaved.subList(0, Math.min(unsaved.size(), limit - merged.size())));
+        }
+        return merged;
+    }
+
+    /**
+     * Lädt Nachrichten vor dem Cursor (ohne Cursor die neuesten), neueste zuerst. Das Archiv wird
+     * nur gelesen, wenn die Datenbank nicht genug ältere Nachrichten hat.
+     */
+    private List<ChatMessage> olderThan(String conversationId, MessageCursor cursor, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        List<ChatMessage> hot = cursor != null
+                ? chatMessageRepository.findBefore(conversationId, cursor.timestamp(), cursor.id(), page)
+                : chatMessageRepository.findLatest(conversationId, page);
+        if (hot.size() >= limit || !messageArchive.contains(conversationId)) {
+            return hot;
+        }
+        long timestamp = cursor != null ? cursor.timestamp() : Long.MAX_VALUE;
+        long id = cursor != null ? cursor.id() : Long.MAX_VALUE;
+        if (!hot.isEmpty()) {
+            ChatMessage oldest = hot.get(hot.size() - 1);
+            timestamp = oldest.getTimestamp();
+            id = oldest.getId();
+        }
+        List<ChatMessage> merged = new ArrayList<>(hot);
+        merged.addAll(messageArchive.before(conversationId, timestamp, id, limit - hot.size()));
+        return merged;
+    }
+
+    /**
+     * Lädt Nachrichten nach dem Cursor, älteste zuerst: zuerst aus dem Archiv, falls der Cursor
+     * dorthin zeigt, danach aus der Datenbank. Doppelte aus einer unterbrochenen Archivierung werden
+     * übersprungen.
+     */
+    private List<ChatMessage> newerThan(String conversationId, MessageCursor cursor, int limit) {
+        List<ChatMessage> cold = messageArchive.contains(conversationId)
+                ? messageArchive.after(conversationId, cursor.timestamp(), cursor.id(), limit)
+                : List.of();
+        if (cold.size() >= limit) {
+            return cold;
+        }
+        long timestamp = cursor.timestamp();
+        long id = cursor.id();
+        if (!cold.isEmpty()) {
+            ChatMessage newest = cold.get(cold.size() - 1);
+            timestamp = newest.getTimestamp();
+            id = newest.getId();
+        }
+        List<ChatMessage> merged = new ArrayList<>(cold);
+        merged.addAll(chatMessageRepository.findAfter(conversationId, timestamp, id, PageRequest.of(0, limit - cold.size())));
+        return merged;
+    }
+
+    /**
+     * Begrenzt die angeforderte Seitengröße auf den erlaubten Bereich.
+     *
+     * @param limit gewünschte Seitengröße oder {@code null}
+     * @return die tatsächlich verwendete Seitengröße
+     */
+    public int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    /**
+     * Vergibt beim Start Konversationsschlüssel an Nachrichten, die vor Einführung von
+     * {@code conversationId} gespeichert wurden, damit sie im Verlauf erscheinen.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillConversationIds() {
+        int updated = 0;
+        List<ChatMessage> batch;
+        do {
+            batch = transactionTemplate.execute(status -> {
+                List<ChatMessage> rows = chatMessageRepository.findByConversationIdIsNull(
+                        PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                rows.forEach(m -> m.setConversationId(
+                        ChatMessage.conversationKey(m.getSenderName(), m.getReceiverName())));
+                return rows;
+            });
+            updated += batch.size();
+        } while (batch.size() == BACKFILL_BATCH_SIZE);
+
+        if (updated > 0) {
+            log.info("Konversationsschlüssel für {} bestehende Nachrichten vergeben", updated);
+        }
+    }
+
+    private static HistoryPage toPage(List<ChatMessage> messages, boolean hasOlder, boolean hasNewer) {
+        if (messages.isEmpty()) {
+            return new HistoryPage(messages, null, null);
+        }
+        String before = hasOlder ? cursorOf(messages.get(0)) : null;
+        String after = hasNewer ? cursorOf(messages.get(messages.size() - 1)) : null;
+        return new HistoryPage(messages, before, after);
+    }
+
+    private static String cursorOf(ChatMessage message) {
+        // Noch nicht gespeicherte Nachrichten aus dem Cache haben keine ID
+        long id = message.getId() != null ? message.getId() : Long.MAX_VALUE;
+        return new MessageCursor(message.getTimestamp(), id).encode();
+    }
+}
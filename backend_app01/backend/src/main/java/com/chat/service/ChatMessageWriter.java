@@ -0,0 +1,273 @@
+package com.chat.service;
+
+import com.chat.entity.ChatMessage;
+import com.chat.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchrone Write-Behind-Persistierung für Chatnachrichten.
+ *
+ * <p>Nachrichten werden nicht mehr einzeln auf dem STOMP-Thread gespeichert, sondern in eine
+ * begrenzte Warteschlange gestellt. Ein eigener Hintergrund-Thread leert diese Warteschlange
+ * und schreibt die Nachrichten in JDBC-Batches, sobald entweder {@code batchSize} Nachrichten
+ * gesammelt wurden oder {@code flushIntervalMillis} verstrichen ist.</p>
+ *
+ * <p>Das Verhalten wird über {@link DurabilityMode} gesteuert:</p>
+ * <ul>
+ *     <li>{@code SYNC} – jede Nachricht wird sofort in einer eigenen Transaktion gespeichert (bisheriges Verhalten)</li>
+ *     <li>{@code GROUP_COMMIT} – die Nachricht wird erst nach dem Commit ihres Batches zugestellt
+ *     (siehe {@link #deliversAfterCommit()}); der aufrufende STOMP-Thread wartet dabei nicht</li>
+ *     <li>{@code ASYNC} – der Aufrufer kehrt sofort zurück, die Nachricht wird später geschrieben</li>
+ * </ul>
+ *
+ * <p>Ist die Warteschlange voll, wartet der Aufrufer höchstens {@code offerTimeoutMillis} und
+ * speichert die Nachricht danach selbst (Back-Pressure). Beim Herunterfahren wird die
+ * Warteschlange vollständig geleert; wer erst danach einreiht, nimmt seine Nachricht wieder heraus
+ * und speichert sie selbst.</p>
+ *
+ * <p>Metriken: {@code chat.persistence.write} misst jeden Schreibvorgang (Batch oder einzeln) inklusive
+ * Commit, {@code chat.persistence.batch.size} die Anzahl Nachrichten pro Schreibvorgang und
+ * {@code chat.persistence.pending} die Länge der Warteschlange.</p>
+ */
+@Service
+public class ChatMessageWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMessageWriter.class);
+
+    /**
+     * Haltbarkeitsgarantie, die {@link #write(ChatMessage)} dem Aufrufer gibt.
+     */
+    public enum DurabilityMode {
+        SYNC,
+        GROUP_COMMIT,
+        ASYNC
+    }
+
+    /**
+     * Eine Nachricht in der Warteschlange zusammen mit dem Future, das nach dem Commit erfüllt wird.
+     */
+    private record PendingWrite(ChatMessage message, CompletableFuture<ChatMessage> done) {
+    }
+
+    /**
+     * Markierung, die beim Herunterfahren eingereiht wird, um den wartenden Thread zu wecken.
+     */
+    private static final PendingWrite WAKE_UP = new PendingWrite(null, null);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DurabilityMode mode;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread flusher;
+    private final Timer writeTimer;
+    private final DistributionSummary batchSizes;
+
+    /** Übergebene, aber noch nicht abgeschlossene Nachrichten, einschließlich des laufenden Batches. */
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public ChatMessageWriter(ChatMessageRepository chatMessageRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${chat.persistence.mode:ASYNC}") DurabilityMode mode,
+                             @Value("${chat.persistence.batch-size:200}") int batchSize,
+                             @Value("${chat.persistence.flush-interval-ms:50}") long flushIntervalMillis,
+                             @Value("${chat.persistence.queue-capacity:10000}") int queueCapacity,
+                             @Value("${chat.persistence.offer-timeout-ms:100}") long offerTimeoutMillis,
+                             MeterRegistry meterRegistry) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::runFlusher, "chat-message-writer");
+        this.flusher.setDaemon(true);
+        this.writeTimer = Timer.builder("chat.persistence.write")
+                .description("Schreibvorgang inklusive Commit")
+                .tag("mode", mode.name())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("chat.persistence.batch.size")
+                .description("Nachrichten pro Schreibvorgang")
+                .register(meterRegistry);
+        Gauge.builder("chat.persistence.pending", queue, BlockingQueue::size)
+                .description("Nachrichten, die auf ihre Speicherung warten")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Startet den Hintergrund-Thread, sofern nicht im {@code SYNC}-Modus gearbeitet wird.
+     */
+    @PostConstruct
+    public void start() {
+        if (mode != DurabilityMode.SYNC) {
+            flusher.start();
+        }
+    }
+
+    /**
+     * Übergibt eine Nachricht zur Speicherung.
+     *
+     * @param message die zu speichernde Nachricht
+     * @return ein Future, das nach dem Commit mit der gespeicherten Nachricht erfüllt oder bei einem
+     *         Fehler ausnahmsweise abgeschlossen wird; {@code write} selbst wirft nicht
+     */
+    public CompletableFuture<ChatMessage> write(ChatMessage message) {
+        if (mode == DurabilityMode.SYNC || !running) {
+            try {
+                return CompletableFuture.completedFuture(saveOne(message));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        PendingWrite pending = new PendingWrite(message, new CompletableFuture<>());
+        unfinished.incrementAndGet();
+        boolean queued;
+        try {
+            queued = queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        if (!queued) {
+            // Warteschlange voll: der Aufrufer schreibt selbst und wird dadurch gebremst
+            flush(List.of(pending));
+        } else if (!running && queue.remove(pending)) {
+            // Nach dem letzten Leeren durch shutdown() eingereiht: niemand holt die Nachricht mehr ab
+            flush(List.of(pending));
+        }
+        return pending.done();
+    }
+
+    /**
+     * @return ob Nachrichten erst nach dem Commit zugestellt werden sollen ({@code GROUP_COMMIT});
+     *         der Aufrufer hängt die Zustellung dann an das Future aus {@link #write(ChatMessage)}
+     */
+    public boolean deliversAfterCommit() {
+        return mode == DurabilityMode.GROUP_COMMIT;
+    }
+
+    /**
+     * @return Anzahl der Nachrichten, die noch auf ihre Speicherung warten, einschließlich des
+     *         Batches, der gerade geschrieben wird
+     */
+    public int pendingCount() {
+        return unfinished.get();
+    }
+
+    /**
+     * Stoppt die Annahme neuer Nachrichten für die Warteschlange und schreibt alle
+     * ausstehenden Nachrichten, bevor die Anwendung beendet wird.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        queue.offer(WAKE_UP);
+        if (flusher.isAlive()) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Nachrichten, die zwischen Abbruch des Threads und Stopp eingereiht wurden
+        List<PendingWrite> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += batchSize) {
+            flush(rest.subList(i, Math.min(i + batchSize, rest.size())));
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null || first == WAKE_UP) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - batch.size());
+
+                // Batch bis zur Größe oder bis zum Ablauf des Intervalls auffüllen
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (running && batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null || next == WAKE_UP) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        batch = batch.stream().filter(p -> p != WAKE_UP).toList();
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<ChatMessage> messages = batch.stream().map(PendingWrite::message).toList();
+        batchSizes.record(messages.size());
+        try {
+            writeTimer.record(() -> transactionTemplate.executeWithoutResult(status -> chatMessageRepository.saveAll(messages)));
+            batch.forEach(p -> p.done().complete(p.message()));
+        } catch (RuntimeException batchFailure) {
+            log.warn("Batch mit {} Nachrichten fehlgeschlagen, speichere einzeln", batch.size(), batchFailure);
+            // Einzeln wiederholen, damit eine fehlerhafte Nachricht nicht den ganzen Batch verwirft
+            for (PendingWrite p : batch) {
+                try {
+                    // Im abgebrochenen Batch vergebene ID verwerfen
+                    p.message().setId(null);
+                    p.done().complete(saveOne(p.message()));
+                } catch (RuntimeException e) {
+                    log.error("Nachricht von {} konnte nicht gespeichert werden", p.message().getSenderName(), e);
+                    p.done().completeExceptionally(e);
+                }
+            }
+        } finally {
+            unfinished.addAndGet(-batch.size());
+        }
+    }
+
+    private ChatMessage saveOne(ChatMessage message) {
+        return writeTimer.record(() -> transactionTemplate.execute(status -> chatMessageRepository.save(message)));
+    }
+}
@@ -0,0 +1,46 @@
+package com.chat.service;
+
+import com.chat.model.ClusterFrame;
+
+import java.util.function.Consumer;
+
+/**
+ * Nachrichtenbus zwischen mehreren Backend-Instanzen.
+ *
+ * <p>Über den Bus werden Broadcasts und private Nachrichten an alle anderen Knoten verteilt,
+ * damit sie auch Sitzungen erreichen, die mit einem anderen Knoten verbunden sind. Ohne
+ * Implementierung (Standard) läuft die Anwendung als einzelner Knoten.</p>
+ */
+public interface ClusterBus {
+
+    /**
+     * Präfix für Ziele, die nicht an den Broker gehen, sondern von Diensten wie dem Suchindex
+     * selbst verarbeitet werden, z. B. {@code /cluster/search-index}.
+     */
+    String INTERNAL_PREFIX = "/cluster/";
+
+    /**
+     * Header für Nachrichten an den Broker, die nur die Sitzungen dieses Knotens erreichen und
+     * nicht an die anderen Knoten weitergeleitet werden sollen.
+     */
+    String LOCAL_HEADER = "cluster-local";
+
+    /**
+     * @return die eindeutige ID dieses Knotens
+     */
+    String nodeId();
+
+    /**
+     * Verteilt eine Nachricht an alle anderen Knoten. Darf den Aufrufer nicht blockieren.
+     *
+     * @param frame die zu verteilende Nachricht
+     */
+    void publish(ClusterFrame frame);
+
+    /**
+     * Registriert einen Empfänger für Nachrichten anderer Knoten.
+     *
+     * @param listener wird für jede empfangene Nachricht aufgerufen
+     */
+    void onReceive(Consumer<ClusterFrame> listener);
+}
@@ -0,0 +1,384 @@
+package com.chat.service;
+
+import com.chat.entity.ChatMessage;
+import com.chat.repository.ChatMessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Begrenzter In-Memory-Cache der neuesten Nachrichten pro Konversation.
+ *
+ * <p>Für jede Konversation wird ein Ringpuffer mit den letzten {@code messagesPerConversation}
+ * Nachrichten gehalten. Die Sendepfade hängen neue Nachrichten direkt an; beim ersten Lesen wird
+ * der Puffer einmalig aus der Datenbank befüllt. Danach wird die neueste Verlaufsseite ohne
+ * Datenbankzugriff geliefert.</p>
+ *
+ * <p>Übersteigt der geschätzte Speicherverbrauch aller Puffer {@code maxBytes}, werden die am
+ * längsten nicht benutzten Konversationen verworfen (LRU). Jeder Puffer zählt dabei mit einem festen
+ * Grundbetrag, auch wenn er leer ist; Konversationen ohne Nachrichten werden gar nicht erst gehalten.
+ * Die Zuordnung Konversation → Puffer ist durch eine kurze Sperre geschützt, der Inhalt jedes Puffers
+ * durch eine eigene Sperre.</p>
+ */
+@Service
+public class ConversationCache {
+
+    /**
+     * Geschätzter fester Overhead einer {@link ChatMessage} inklusive Referenzen und Zahlenfelder.
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    /**
+     * Geschätzter fester Overhead eines Puffers samt Map-Eintrag, ohne Schlüssel und Nachrichten.
+     */
+    private static final int RING_OVERHEAD_BYTES = 200;
+
+    private static final Comparator<ChatMessage> CHRONOLOGICAL = Comparator
+            .comparing(ChatMessage::getTimestamp)
+            .thenComparing(ChatMessage::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * Ergebnis eines Cache-Zugriffs.
+     *
+     * @param messages die neuesten Nachrichten, chronologisch aufsteigend
+     * @param hasOlder ob es in der Datenbank ältere Nachrichten gibt
+     */
+    public record CachedPage(List<ChatMessage> messages, boolean hasOlder) {
+    }
+
+    /**
+     * Zählerstände des Caches.
+     */
+    public record Stats(long hits, long misses, long evictions, int conversations, long bytes, long maxBytes) {
+    }
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final int messagesPerConversation;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, Ring> rings = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ConversationCache(ChatMessageRepository chatMessageRepository,
+                             @Value("${chat.history.cache.messages-per-conversation:100}") int messagesPerConversation,
+                             @Value("${chat.history.cache.max-bytes:67108864}") long maxBytes) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.messagesPerConversation = messagesPerConversation;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Hängt eine gerade gesendete Nachricht an den Puffer ihrer Konversation an. Eine Nachricht,
+     * deren Sequenznummer der Puffer schon enthält (etwa die Kopie für den Absender aus dem Cluster),
+     * wird übergangen.
+     *
+     * @param message die Nachricht
+     */
+    public void append(ChatMessage message) {
+        while (true) {
+            Ring ring = ringFor(message.getConversationId());
+            synchronized (ring) {
+                if (ring.evicted) {
+                    continue;
+                }
+                bytes.addAndGet(ring.add(message));
+            }
+            break;
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Liefert die neuesten Nachrichten einer Konversation aus dem Cache.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param limit          gewünschte Anzahl Nachrichten
+     * @return die Seite oder {@code null}, wenn der Cache die Anfrage nicht beantworten kann
+     */
+    public CachedPage latest(String conversationId, int limit) {
+        if (limit > messagesPerConversation) {
+            misses.increment();
+            return null;
+        }
+
+        Ring ring = ringFor(conversationId);
+        boolean seeded;
+        synchronized (ring) {
+            seeded = ring.seeded;
+        }
+        if (seeded) {
+            hits.increment();
+        } else {
+            misses.increment();
+            // Außerhalb der Sperre laden, damit Sendepfade nicht auf die Datenbank warten
+            List<ChatMessage> rows = chatMessageRepository.findLatest(
+                    conversationId, PageRequest.of(0, messagesPerConversation));
+            synchronized (ring) {
+                if (ring.evicted) {
+                    return null;
+                }
+                if (rows.isEmpty() && ring.messages.isEmpty()) {
+                    // Keinen leeren Puffer für jede abgefragte Kombination von Namen behalten
+                    discard(conversationId, ring);
+                    return new CachedPage(List.of(), false);
+                }
+                if (!ring.seeded) {
+                    bytes.addAndGet(ring.seed(rows, rows.size() == messagesPerConversation));
+                }
+            }
+            evictIfNeeded();
+        }
+
+        synchronized (ring) {
+            return ring.evicted ? null : ring.latest(limit);
+        }
+    }
+
+    /**
+     * Liefert die Nachrichten einer Konversation mit einer höheren Sequenznummer als
+     * {@code sequence}, sofern der Puffer lückenlos bis dorthin zurückreicht: entweder enthält er die
+     * Nachricht mit der Nummer {@code sequence + 1} (oder eine ältere), oder er wurde aus der
+     * Datenbank befüllt und umfasst die ganze Konversation. Enthält auch Nachrichten, die noch auf
+     * ihre Speicherung warten.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param sequence       zuletzt bekannte Sequenznummer
+     * @return die neueren Nachrichten nach Sequenznummer sortiert oder {@code null}, wenn der Cache
+     *         die Anfrage nicht vollständig beantworten kann
+     */
+    public List<ChatMessage> after(String conversationId, long sequence) {
+        Ring ring;
+        synchronized (rings) {
+            ring = rings.get(conversationId);
+        }
+        List<ChatMessage> result = null;
+        if (ring != null) {
+            synchronized (ring) {
+                if (!ring.evicted) {
+                    result = ring.after(sequence);
+                }
+            }
+        }
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Verwirft den Puffer einer Konversation, z. B. nachdem Nachrichten gelöscht oder verschoben wurden.
+     *
+     * @param conversationId Schlüssel der Konversation
+     */
+    public void invalidate(String conversationId) {
+        Ring ring;
+        synchronized (rings) {
+            ring = rings.remove(conversationId);
+        }
+        if (ring != null) {
+            release(ring);
+        }
+    }
+
+    /**
+     * @return aktuelle Zählerstände für Treffer, Fehlschläge und Verdrängungen
+     */
+    public Stats stats() {
+        int conversations;
+        synchronized (rings) {
+            conversations = rings.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), conversations, bytes.get(), maxBytes);
+    }
+
+    private Ring ringFor(String conversationId) {
+        synchronized (rings) {
+            return rings.computeIfAbsent(conversationId, key -> {
+                Ring ring = new Ring(messagesPerConversation, RING_OVERHEAD_BYTES + 2L * key.length());
+                bytes.addAndGet(ring.bytes);
+                return ring;
+            });
+        }
+    }
+
+    /**
+     * Entfernt einen Puffer, sofern er noch der Konversation zugeordnet ist. Aufruf unter der Sperre
+     * des Puffers.
+     */
+    private void discard(String conversationId, Ring ring) {
+        synchronized (rings) {
+            rings.remove(conversationId, ring);
+        }
+        release(ring);
+    }
+
+    private void evictIfNeeded() {
+        while (bytes.get() > maxBytes) {
+            Ring eldest;
+            synchronized (rings) {
+                Iterator<Map.Entry<String, Ring>> it = rings.entrySet().iterator();
+                if (!it.hasNext()) {
+                    return;
+                }
+                eldest = it.next().getValue();
+                it.remove();
+            }
+            release(eldest);
+            evictions.increment();
+        }
+    }
+
+    private void release(Ring ring) {
+        synchronized (ring) {
+            if (ring.evicted) {
+                return;
+            }
+            ring.evicted = true;
+            bytes.addAndGet(-ring.bytes);
+            ring.bytes = 0;
+            ring.messages.clear();
+        }
+    }
+
+    private static long estimateBytes(ChatMessage m) {
+        return MESSAGE_OVERHEAD_BYTES
+                + 2L * (length(m.getSenderName()) + length(m.getReceiverName()) + length(m.getMessage())
+                + length(m.getMedia()) + length(m.getMediaType()) + length(m.getConversationId()));
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    /**
+     * Ringpuffer der neuesten Nachrichten einer Konversation. Zugriffe nur unter der Sperre des Objekts.
+     */
+    private static final class Ring {
+        private final int capacity;
+        private final long overhead;
+        private final ArrayDeque<ChatMessage> messages = new ArrayDeque<>();
+        private long bytes;
+        private boolean seeded;
+        private boolean hasOlder;
+        private boolean evicted;
+
+        Ring(int capacity, long overhead) {
+            this.capacity = capacity;
+            this.overhead = overhead;
+            this.bytes = overhead;
+        }
+
+        /**
+         * @return Änderung des Speicherverbrauchs in Bytes
+         */
+        long add(ChatMessage message) {
+            if (message.getSequence() != null) {
+                for (ChatMessage m : messages) {
+                    if (message.getSequence().equals(m.getSequence())) {
+                        return 0;
+                    }
+                }
+            }
+            long delta = estimateBytes(message);
+            messages.addLast(message);
+            if (messages.size() > capacity) {
+                delta -= estimateBytes(messages.removeFirst());
+                hasOlder = true;
+            }
+            bytes += delta;
+            return delta;
+        }
+
+        /**
+         * Führt die aus der Datenbank geladenen Nachrichten (neueste zuerst) mit bereits angehängten,
+         * eventuell noch nicht gespeicherten Nachrichten zusammen. Von anderen Knoten übernommene
+         * Nachrichten haben hier keine ID und werden über ihre Sequenznummer erkannt.
+         *
+         * @return Änderung des Speicherverbrauchs in Bytes
+         */
+        long seed(List<ChatMessage> newestFirst, boolean moreInDatabase) {
+            Set<Long> knownIds = new HashSet<>();
+            Set<Long> knownSequences = new HashSet<>();
+            for (ChatMessage m : messages) {
+                if (m.getId() != null) {
+                    knownIds.add(m.getId());
+                }
+                if (m.getSequence() != null) {
+                    knownSequences.add(m.getSequence());
+                }
+            }
+            List<ChatMessage> merged = new ArrayList<>(messages);
+            for (ChatMessage m : newestFirst) {
+                if (!knownIds.contains(m.getId()) && (m.getSequence() == null || !knownSequences.contains(m.getSequence()))) {
+                    merged.add(m);
+                }
+            }
+            merged.sort(CHRONOLOGICAL);
+
+            long before = bytes;
+            messages.clear();
+            bytes = overhead;
+            int skip = Math.max(0, merged.size() - capacity);
+            for (ChatMessage m : merged.subList(skip, merged.size())) {
+                messages.addLast(m);
+                bytes += estimateBytes(m);
+            }
+            hasOlder = moreInDatabase || skip > 0;
+            seeded = true;
+            return bytes - before;
+        }
+
+        List<ChatMessage> after(long sequence) {
+            List<ChatMessage> newer = new ArrayList<>();
+            boolean covered = seeded && !hasOlder;
+            for (ChatMessage m : messages) {
+                Long s = m.getSequence();
+                if (s == null) {
+                    continue;
+                }
+                if (s <= sequence + 1) {
+                    covered = true;
+                }
+                if (s > sequence) {
+                    newer.add(m);
+                }
+            }
+            if (!covered) {
+                return null;
+            }
+            newer.sort(Comparator.comparing(ChatMessage::getSequence));
+            return newer;
+        }
+
+        CachedPage latest(int limit) {
+            int size = messages.size();
+            int skip = Math.max(0, size - limit);
+            List<ChatMessage> page = new ArrayList<>(Math.min(limit, size));
+            Iterator<ChatMessage> it = messages.iterator();
+            for (int i = 0; it.hasNext(); i++) {
+                ChatMessage m = it.next();
+                if (i >= skip) {
+                    page.add(m);
+                }
+            }
+            return new CachedPage(page, skip > 0 || hasOlder);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.chat.service;
+
+import com.chat.configuration.ReadYourWrites;
+import com.chat.entity.ConversationCounter;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.repository.ConversationCounterRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vergibt fortlaufende Sequenznummern pro Konversation.
+ *
+ * <p>Jede Konversation hat einen Zähler im Speicher, der beim ersten Gebrauch mit der höchsten
+ * gespeicherten Nummer aus Datenbank und {@link MessageArchive} initialisiert wird. Danach kostet eine Nummer nur ein
+ * {@code incrementAndGet}. Die Nummern sind eindeutig und streng monoton, solange der Zähler im
+ * Speicher bleibt, aber nicht lückenlos: Scheitert das Speichern einer Nachricht, bleibt ihre Nummer
+ * unbenutzt. Clients nutzen sie, um nach einem Verbindungsabbruch nur die verpassten Nachrichten
+ * abzufragen, und dürfen dabei keine Lücken erwarten.</p>
+ *
+ * <p>Zähler werden erst verworfen, wenn mehr als {@code maxConversations} gehalten werden, und dann
+ * nur solche, die länger als {@code idleEvictMillis} unbenutzt sind. Der Abstand muss deutlich
+ * größer sein als die Verzögerung der Write-Behind-Speicherung, sonst könnte ein neu
+ * initialisierter Zähler eine Nummer erneut vergeben, die noch in der Warteschlange liegt.</p>
+ *
+ * <p>Im Cluster (mit {@link ClusterBus}) könnten zwei Knoten mit eigenen Zählern dieselbe Nummer
+ * vergeben. Dort wird jede Nummer deshalb aus einer {@link ConversationCounter}-Zeile in der
+ * gemeinsamen Datenbank vergeben, die dafür gesperrt wird. Damit stark genutzte Konversationen wie
+ * {@code #public} nicht jede Nachricht einzeln durch die Sperre schicken, reserviert ein Knoten in
+ * einer Transaktion so viele Nummern, wie gerade Nachrichten dieser Konversation auf ihn warten
+ * (Sammelvergabe); unter Last sinkt so die Zahl der Transaktionen, ohne dass Nummern reserviert
+ * werden, die niemand braucht. Der eindeutige Index {@code (conversationId, sequence)} der
+ * Nachrichten weist doppelte Nummern in jedem Fall ab.</p>
+ */
+@Service
+public class ConversationSequencer {
+
+    private static final class Counter {
+        final AtomicLong value;
+        volatile long lastUsed;
+
+        Counter(long value, long lastUsed) {
+            this.value = new AtomicLong(value);
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ConversationCounterRepository conversationCounterRepository;
+    private final MessageArchive messageArchive;
+    private final ReadYourWrites readYourWrites;
+    private final int maxConversations;
+    private final long idleEvictMillis;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean shared;
+
+    /**
+     * Sammelvergabe einer Konversation im Cluster; Zugriff nur unter ihrer eigenen Sperre.
+     */
+    private static final class Batch {
+        int waiting;
+        int available;
+        long next;
+        boolean allocating;
+        volatile long lastUsed;
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public ConversationSequencer(ChatMessageRepository chatMessageRepository,
+                                 ConversationCounterRepository conversationCounterRepository,
+                                 MessageArchive messageArchive,
+                                 ReadYourWrites readYourWrites,
+                                 TransactionTemplate transactionTemplate,
+                                 ObjectProvider<ClusterBus> clusterBus,
+                                 @Value("${chat.sequence.max-conversations:100000}") int maxConversations,
+                                 @Value("${chat.sequence.idle-evict-ms:600000}") long idleEvictMillis) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.conversationCounterRepository = conversationCounterRepository;
+        this.messageArchive = messageArchive;
+        this.readYourWrites = readYourWrites;
+        this.transactionTemplate = transactionTemplate;
+        this.shared = clusterBus.getIfAvailable() != null;
+        this.maxConversations = maxConversations;
+        this.idleEvictMillis = idleEvictMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sequencer");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1000, idleEvictMillis / 2);
+        scheduler.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Vergibt die nächste Nummer einer Konversation.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @return die neue Nummer, beginnend bei 1
+     */
+    public long next(String conversationId) {
+        if (shared) {
+            return allocate(conversationId);
+        }
+        long now = System.currentTimeMillis();
+        Counter counter = counters.computeIfAbsent(conversationId, id ->
+                // Vom Replikat gelesen könnte der Zähler hinter bereits vergebenen Nummern zurückliegen
+                new Counter(readYourWrites.primary(() -> highest(id)), now));
+        counter.lastUsed = now;
+        return counter.value.incrementAndGet();
+    }
+
+    /**
+     * Vergibt die nächste Nummer im Cluster. Der erste wartende Thread reserviert Nummern für alle,
+     * die zu diesem Zeitpunkt auf die Konversation warten; die übrigen bedienen sich daraus oder
+     * übernehmen die nächste Reservierung.
+     */
+    private long allocate(String conversationId) {
+        Batch batch = batches.computeIfAbsent(conversationId, id -> new Batch());
+        batch.lastUsed = System.currentTimeMillis();
+        int count;
+        synchronized (batch) {
+            batch.waiting++;
+            while (batch.available == 0 && batch.allocating) {
+                try {
+                    batch.wait();
+                } catch (InterruptedException e) {
+                    batch.waiting--;
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a sequence number", e);
+                }
+            }
+            if (batch.available > 0) {
+                return take(batch);
+            }
+            batch.allocating = true;
+            count = batch.waiting;
+        }
+
+        long first;
+        try {
+            first = reserve(conversationId, count);
+        } catch (RuntimeException e) {
+            synchronized (batch) {
+                batch.waiting--;
+                batch.allocating = false;
+                batch.notifyAll();
+            }
+            throw e;
+        }
+        synchronized (batch) {
+            batch.next = first;
+            batch.available = count;
+            batch.allocating = false;
+            batch.notifyAll();
+            return take(batch);
+        }
+    }
+
+    private static long take(Batch batch) {
+        batch.available--;
+        batch.waiting--;
+        return batch.next++;
+    }
+
+    /**
+     * Reserviert {@code count} Nummern aus der gesperrten Zählerzeile in der Datenbank. Fehlt die
+     * Zeile, wird sie mit der höchsten gespeicherten Nummer angelegt; legt ein anderer Knoten sie
+     * gleichzeitig an, wird einmal wiederholt und dann dessen Zeile gesperrt.
+     *
+     * @return die erste der reservierten Nummern
+     */
+    private long reserve(String conversationId, int count) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    ConversationCounter counter = conversationCounterRepository.lockById(conversationId)
+                            .orElseGet(() -> new ConversationCounter(conversationId, highest(conversationId)));
+                    counter.setLastSequence(counter.getLastSequence() + count);
+                    return conversationCounterRepository.saveAndFlush(counter).getLastSequence() - count + 1;
+                });
+            } catch (DataIntegrityViolationException e) {
+                if (attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return die höchste gespeicherte Nummer aus Datenbank und Archiv, {@code 0} ohne Nachrichten
+     */
+    private long highest(String conversationId) {
+        Long max = chatMessageRepository.maxSequence(conversationId);
+        return Math.max(max != null ? max : 0, messageArchive.maxSequence(conversationId));
+    }
+
+    /**
+     * @return Anzahl der gehaltenen Zähler
+     */
+    public int size() {
+        return counters.size() + batches.size();
+    }
+
+    /**
+     * Verwirft unbenutzte Zähler, sobald mehr als {@code maxConversations} gehalten werden.
+     */
+    void evictIdle() {
+        if (size() <= maxConversations) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleEvictMillis;
+        counters.entrySet().removeIf(e -> e.getValue().lastUsed < cutoff);
+        // Eine gerade entfernte Sammelvergabe schadet nicht: die Zählerzeile bleibt maßgeblich
+        batches.entrySet().removeIf(e -> e.getValue().lastUsed < cutoff);
+    }
+}
@@ -0,0 +1,293 @@
+package com.chat.service;
+
+import com.chat.entity.ChatMessage;
+import com.chat.entity.ConversationSummary;
+import com.chat.model.InboxPage;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.repository.ConversationSummaryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posteingang: pro Teilnehmer die privaten Konversationen mit letzter Nachricht und Anzahl
+ * ungelesener Nachrichten, gespeichert als {@link ConversationSummary}.
+ *
+ * <p>Gespeicherte Nachrichten und Lesestände werden wie im {@link ReceiptService} pro Teilnehmer und
+ * Konversation im Speicher zusammengeführt und alle {@code flushIntervalMillis} in einer Transaktion
+ * geschrieben. Ein Gespräch mit 500 Nachrichten innerhalb eines Intervalls kostet so zwei
+ * Zeilen-Aktualisierungen. Der Posteingang hinkt dadurch höchstens ein Intervall hinterher.</p>
+ *
+ * <p>Neue Nachrichten des Gegenübers erhöhen den Zähler der ungelesenen Nachrichten, sofern sie
+ * hinter dem Lesestand liegen. Lesestände sind wie bei den Bestätigungen Sequenznummern der
+ * Konversation. Rückt der Lesestand vor oder hat er eine neue Nachricht bereits erfasst (die
+ * Bestätigung kann vor der Speicherung eintreffen), wird der Zähler auf 0 gesetzt, wenn er die letzte
+ * Nachricht erreicht; sonst werden die Nachrichten des Gegenübers danach über den Index
+ * {@code (conversationId, sequence)} gezählt. Ein Lesestand ohne Eintrag legt den Eintrag an; er
+ * erscheint im Posteingang erst mit der ersten Nachricht.
+ * Eine Seite des Posteingangs kostet eine Indexabfrage über {@code limit + 1} Zeilen.</p>
+ *
+ * <p>Der öffentliche Chatroom erscheint nicht im Posteingang. Konversationen, deren letzte Nachricht
+ * vor Einführung des Posteingangs gesendet wurde, erscheinen mit der nächsten Nachricht. Im Cluster
+ * schreiben die Knoten unabhängig; schreiben zwei Knoten im selben Intervall dieselbe Zeile, kann
+ * eine Erhöhung des Zählers verloren gehen, bis der nächste Lesestand ihn neu berechnet.</p>
+ */
+@Service
+public class InboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(InboxService.class);
+
+    /**
+     * Zählerstände der Zusammenführung.
+     *
+     * @param changes     entgegengenommene Nachrichten und Lesestände
+     * @param rowsWritten geschriebene Zeilen (eingefügt oder aktualisiert)
+     * @param flushes     Schreibvorgänge mit mindestens einer Zeile
+     * @param pending     noch nicht geschriebene Änderungen
+     */
+    public record Stats(long changes, long rowsWritten, long flushes, int pending) {
+    }
+
+    /**
+     * Gesammelte, noch nicht gespeicherte Änderung am Eintrag eines Teilnehmers.
+     *
+     * @param received Nachrichten des Gegenübers seit dem letzten Schreiben
+     */
+    private record Change(String peer, String lastSender, String lastPreview, long lastTimestamp,
+                          long lastSequence, int received, long firstReceived, long readUpTo) {
+        Change merge(Change other) {
+            Change newest = other.lastTimestamp > lastTimestamp ? other : this;
+            return new Change(peer, newest.lastSender, newest.lastPreview, newest.lastTimestamp,
+                    Math.max(lastSequence, other.lastSequence), received + other.received,
+                    Math.min(firstReceived, other.firstReceived), Math.max(readUpTo, other.readUpTo));
+        }
+    }
+
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushIntervalMillis;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    private final Map<ConversationSummary.Key, Change> pending = new ConcurrentHashMap<>();
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public InboxService(ConversationSummaryRepository conversationSummaryRepository,
+                        ChatMessageRepository chatMessageRepository,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${chat.inbox.flush-interval-ms:500}") long flushIntervalMillis,
+                        @Value("${chat.inbox.default-page-size:20}") int defaultPageSize,
+                        @Value("${chat.inbox.max-page-size:100}") int maxPageSize) {
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inbox");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stoppt das periodische Schreiben und speichert die restlichen Änderungen.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Nimmt eine gespeicherte private Nachricht in die Posteingänge beider Teilnehmer auf.
+     * Öffentliche Nachrichten und Nachrichten an sich selbst werden ignoriert.
+     *
+     * @param message die gespeicherte Nachricht
+     */
+    public void messageSent(ChatMessage message) {
+        String sender = message.getSenderName();
+        String receiver = message.getReceiverName();
+        if (message.getStatus() != Status.MESSAGE || sender == null || receiver == null
+                || receiver.isBlank() || sender.equals(receiver) || message.getTimestamp() == null) {
+            return;
+        }
+        changes.incrementAndGet();
+        String conversationId = message.getConversationId();
+        String preview = preview(message);
+        long timestamp = message.getTimestamp();
+        long sequence = message.getSequence() != null ? message.getSequence() : 0;
+        pending.merge(new ConversationSummary.Key(sender, conversationId),
+                new Change(receiver, sender, preview, timestamp, sequence, 0, Long.MAX_VALUE, 0), Change::merge);
+        // Ohne Sequenznummer lässt sich die Nachricht nicht mit dem Lesestand vergleichen, sie zählt als ungelesen
+        pending.merge(new ConversationSummary.Key(receiver, conversationId),
+                new Change(sender, sender, preview, timestamp, sequence, 1, sequence > 0 ? sequence : Long.MAX_VALUE, 0),
+                Change::merge);
+    }
+
+    /**
+     * Übernimmt einen Lesestand. Wird nur fortgeschrieben, wenn er den gespeicherten übersteigt.
+     *
+     * @param reader   der Lesende
+     * @param peer     das Gegenüber
+     * @param readUpTo Sequenznummer der neuesten gelesenen Nachricht, {@code null} bei reinen
+     *                 Empfangsbestätigungen
+     */
+    public void read(String reader, String peer, Long readUpTo) {
+        if (reader == null || reader.isBlank() || peer == null || peer.isBlank() || reader.equals(peer)
+                || readUpTo == null || readUpTo <= 0) {
+            return;
+        }
+        changes.incrementAndGet();
+        pending.merge(new ConversationSummary.Key(reader, ChatMessage.conversationKey(reader, peer)),
+                new Change(peer, null, null, 0, 0, 0, Long.MAX_VALUE, readUpTo), Change::merge);
+    }
+
+    /**
+     * Lädt eine Seite des Posteingangs.
+     *
+     * @param participant Benutzername des Teilnehmers
+     * @param before      Cursor aus einer vorherigen Seite (optional)
+     * @param limit       gewünschte Seitengröße (optional, wird auf {@code maxPageSize} begrenzt)
+     * @return die Seite, zuletzt aktive Konversationen zuerst
+     * @throws IllegalArgumentException bei ungültigem Cursor
+     */
+    public InboxPage inbox(String participant, String before, Integer limit) {
+        int size = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        // Einen Eintrag mehr laden, um zu erkennen, ob es weitere Seiten gibt
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<ConversationSummary> rows;
+        if (before == null || before.isBlank()) {
+            rows = conversationSummaryRepository.findLatest(participant, page);
+        } else {
+            int separator = before.indexOf('_');
+            if (separator <= 0 || separator == before.length() - 1) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            long timestamp;
+            try {
+                timestamp = Long.parseLong(before.substring(0, separator));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            rows = conversationSummaryRepository.findBefore(participant, timestamp, before.substring(separator + 1), page);
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<ConversationSummary> visible = hasMore ? rows.subList(0, size) : rows;
+        List<InboxPage.InboxEntry> entries = visible.stream()
+                .map(row -> new InboxPage.InboxEntry(row.getPeer(), row.getLastSender(), row.getLastPreview(),
+                        row.getLastTimestamp(), row.getReadUpTo(), row.getUnread()))
+                .toList();
+        ConversationSummary last = hasMore ? visible.get(visible.size() - 1) : null;
+        return new InboxPage(entries, last != null ? last.getLastTimestamp() + "_" + last.getConversationId() : null);
+    }
+
+    /**
+     * @return aktuelle Zählerstände
+     */
+    public Stats stats() {
+        return new Stats(changes.get(), rowsWritten.get(), flushes.get(), pending.size());
+    }
+
+    /**
+     * Schreibt alle gesammelten Änderungen.
+     */
+    public void flush() {
+        Map<ConversationSummary.Key, Change> batch = new HashMap<>();
+        for (ConversationSummary.Key key : pending.keySet()) {
+            Change change = pending.remove(key);
+            if (change != null) {
+                batch.put(key, change);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(batch));
+        } catch (RuntimeException e) {
+            log.warn("Speichern von {} Posteingangs-Einträgen fehlgeschlagen, neuer Versuch im nächsten Intervall",
+                    batch.size(), e);
+            batch.forEach((key, change) -> pending.merge(key, change, Change::merge));
+        }
+    }
+
+    private void write(Map<ConversationSummary.Key, Change> batch) {
+        Map<ConversationSummary.Key, ConversationSummary> stored = new HashMap<>();
+        for (ConversationSummary summary : conversationSummaryRepository.findAllById(batch.keySet())) {
+            stored.put(summary.getId(), summary);
+        }
+
+        List<ConversationSummary> changed = new ArrayList<>();
+        batch.forEach((key, change) -> {
+            ConversationSummary row = stored.get(key);
+            if (row == null) {
+                row = new ConversationSummary(key.getParticipant(), key.getConversationId(), change.peer());
+            }
+            if (change.lastSender() != null && change.lastTimestamp() >= row.getLastTimestamp()) {
+                row.setLastSender(change.lastSender());
+                row.setLastPreview(change.lastPreview());
+                row.setLastTimestamp(change.lastTimestamp());
+            }
+            row.setLastSequence(Math.max(row.getLastSequence(), change.lastSequence()));
+            long readUpTo = Math.max(row.getReadUpTo(), change.readUpTo());
+            int unread = row.getUnread() + change.received();
+            if (readUpTo > row.getReadUpTo() || change.firstReceived() <= readUpTo) {
+                row.setReadUpTo(readUpTo);
+                unread = row.getLastSequence() > 0 && readUpTo >= row.getLastSequence() ? 0
+                        : (int) chatMessageRepository.countFromSenderAfter(key.getConversationId(), row.getPeer(), readUpTo);
+            }
+            row.setUnread(unread);
+            changed.add(row);
+        });
+        if (!changed.isEmpty()) {
+            conversationSummaryRepository.saveAll(changed);
+            rowsWritten.addAndGet(changed.size());
+            flushes.incrementAndGet();
+        }
+    }
+
+    private static String preview(ChatMessage message) {
+        String text = message.getMessage();
+        if (text == null || text.isBlank()) {
+            return message.getMedia() != null ? "📎" : "";
+        }
+        return text.length() > ConversationSummary.PREVIEW_LENGTH
+                ? text.substring(0, ConversationSummary.PREVIEW_LENGTH - 1) + "…"
+                : text;
+    }
+}
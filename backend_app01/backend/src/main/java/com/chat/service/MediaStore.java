@@ -0,0 +1,197 @@
+package com.chat.service;
+
+import com.chat.model.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Inhaltsadressierter Medienspeicher auf dem lokalen Dateisystem.
+ *
+ * <p>Jede Datei wird unter dem SHA-256-Hash ihres Inhalts abgelegt. Dieselbe Datei wird daher
+ * nur einmal gespeichert, egal wie oft sie hochgeladen wird. Nachrichten tragen statt der Daten
+ * nur noch diesen Hash als Referenz in {@link Message#getMedia()}.</p>
+ *
+ * <p>Layout: {@code <root>/<ersten zwei Hex-Zeichen>/<hash>} für den Inhalt und
+ * {@code <hash>.type} für den Medientyp.</p>
+ */
+@Service
+public class MediaStore {
+
+    private static final Pattern REFERENCE = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern DATA_URL = Pattern.compile("^data:([^;,]*)(;base64)?,", Pattern.CASE_INSENSITIVE);
+    private static final String DEFAULT_MEDIA_TYPE = "application/octet-stream";
+
+    /**
+     * Ergebnis einer Speicherung.
+     *
+     * @param reference Hash des Inhalts, dient als Referenz in Nachrichten
+     * @param mediaType Medientyp des Inhalts
+     * @param size      Größe in Bytes
+     */
+    public record StoredMedia(String reference, String mediaType, long size) {
+    }
+
+    private final Path root;
+    private final long maxSize;
+
+    public MediaStore(@Value("${chat.media.directory:./media}") Path root,
+                      @Value("${chat.media.max-size:20971520}") long maxSize) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.maxSize = maxSize;
+        Files.createDirectories(this.root);
+    }
+
+    /**
+     * Speichert den Inhalt eines Streams. Existiert derselbe Inhalt bereits, wird nur die
+     * bestehende Referenz zurückgegeben.
+     *
+     * @param in        der Inhalt
+     * @param mediaType Medientyp (optional)
+     * @return die gespeicherte Datei
+     * @throws IOException              bei Fehlern im Dateisystem
+     * @throws IllegalArgumentException wenn der Inhalt größer als {@code maxSize} ist
+     */
+    public StoredMedia store(InputStream in, String mediaType) throws IOException {
+        String type = mediaType == null || mediaType.isBlank() ? DEFAULT_MEDIA_TYPE : mediaType;
+        Path temp = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                size = copyLimited(in, out);
+            }
+
+            String reference = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(reference);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                Files.writeString(typePathOf(reference), type, StandardCharsets.UTF_8);
+                moveIntoPlace(temp, target);
+            }
+            return new StoredMedia(reference, type, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Ersetzt eingebettete Data-URLs ({@code data:image/png;base64,...}) älterer Clients durch
+     * eine Referenz in den Medienspeicher, damit nur noch der Hash gespeichert und verteilt wird.
+     *
+     * @param message die empfangene Nachricht, wird direkt angepasst
+     * @throws IllegalArgumentException wenn die Data-URL kein gültiges Base64 enthält oder zu groß ist
+     */
+    public void internalize(Message message) {
+        String media = message.getMedia();
+        if (media == null || media.isEmpty()) {
+            message.setMedia(null);
+            return;
+        }
+        var matcher = DATA_URL.matcher(media);
+        if (!matcher.find()) {
+            return;
+        }
+        String payload = media.substring(matcher.end());
+        byte[] bytes;
+        try {
+            bytes = matcher.group(2) != null
+                    ? Base64.getDecoder().decode(payload)
+                    : payload.getBytes(StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid base64 in media data URL", e);
+        }
+        try {
+            StoredMedia stored = store(new ByteArrayInputStream(bytes), matcher.group(1));
+            message.setMedia(stored.reference());
+            message.setMediaType(stored.mediaType());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Löst eine Referenz in den Pfad der gespeicherten Datei auf.
+     *
+     * @param reference der Hash des Inhalts
+     * @return der Pfad oder {@code null}, wenn die Referenz ungültig ist oder nicht existiert
+     */
+    public Path resolve(String reference) {
+        if (reference == null || !REFERENCE.matcher(reference).matches()) {
+            return null;
+        }
+        Path path = pathOf(reference);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * Liest den beim Hochladen angegebenen Medientyp einer gespeicherten Datei.
+     *
+     * @param reference der Hash des Inhalts
+     * @return der Medientyp, {@code application/octet-stream} falls unbekannt
+     */
+    public String mediaTypeOf(String reference) {
+        try {
+            return Files.readString(typePathOf(reference), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return DEFAULT_MEDIA_TYPE;
+        }
+    }
+
+    private long copyLimited(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxSize) {
+                throw new IllegalArgumentException("Media too large");
+            }
+            out.write(buffer, 0, read);
+        }
+        return total;
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Gleichzeitiger Upload desselben Inhalts – die vorhandene Datei ist identisch
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path pathOf(String reference) {
+        return root.resolve(reference.substring(0, 2)).resolve(reference);
+    }
+
+    private Path typePathOf(String reference) {
+        return root.resolve(reference.substring(0, 2)).resolve(reference + ".type");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,664 @@
+package com.chat.service;
+
+import com.chat.entity.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Kaltes Archiv für alte Nachrichten in komprimierten Segmentdateien auf der lokalen Festplatte.
+ *
+ * <p>Nachrichten werden konversationsweise als Blöcke angehängt: ein Block enthält bis zu einigen
+ * hundert Nachrichten einer Konversation in chronologischer Reihenfolge, als CBOR kodiert und mit
+ * Deflate komprimiert. Blöcke werden nur an das aktuelle Segment ({@code segment-NNNNNN.seg})
+ * angehängt und nie verändert; erreicht es {@code segmentMaxBytes}, beginnt ein neues.</p>
+ *
+ * <p>Zu jedem Segment gehört eine Indexdatei ({@code .idx}) mit einem Eintrag pro Block: Konversation,
+ * Lage im Segment, Prüfsumme sowie erste und letzte Position (Zeitstempel, ID). Beim Start werden
+ * alle Indexdateien in einen dünnen Index pro Konversation geladen. Eine Verlaufsseite dekomprimiert
+ * damit nur die Blöcke, die den angefragten Bereich überdecken; kürzlich gelesene Blöcke werden
+ * dekodiert vorgehalten.</p>
+ *
+ * <p>Ein Block ist erst sichtbar, wenn Segment und Index auf die Platte geschrieben sind. Ein beim
+ * Absturz halb geschriebener Eintrag am Ende wird beim Laden verworfen. Die Lebensdauer wird pro
+ * Segment verwaltet: {@link #purgeBefore(long)} löscht ganze Segmente, deren neueste Nachricht zu
+ * alt ist, und blendet ältere Nachrichten in den übrigen aus. Die Grenze dafür steht in der Datei
+ * {@code horizon} und gilt damit auch nach einem Neustart.</p>
+ *
+ * <p>Im Cluster liegt das Verzeichnis auf gemeinsamem Speicher. Geschrieben wird nur vom Knoten,
+ * der gerade archiviert (siehe {@link ArchiveService}); die anderen lesen den Index nach jedem
+ * Durchlauf mit {@link #reload()} neu ein.</p>
+ */
+@Service
+public class MessageArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchive.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String HORIZON_FILE = "horizon";
+    private static final int DECODED_BLOCKS = 64;
+
+    private static final Comparator<ChatMessage> CHRONOLOGICAL = Comparator
+            .comparing(ChatMessage::getTimestamp)
+            .thenComparing(ChatMessage::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * Eintrag des dünnen Index: ein Block einer Konversation in einem Segment.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param segment        Nummer des Segments
+     * @param offset         Position des Blocks im Segment
+     * @param length         komprimierte Länge in Bytes
+     * @param crc            CRC32 der komprimierten Bytes
+     * @param count          Anzahl Nachrichten
+     * @param firstTimestamp Zeitstempel der ältesten Nachricht
+     * @param firstId        ID der ältesten Nachricht
+     * @param lastTimestamp  Zeitstempel der neuesten Nachricht
+     * @param lastId         ID der neuesten Nachricht
+     * @param maxSequence    höchste Sequenznummer im Block (0 = keine)
+     */
+    record Block(String conversationId, int segment, long offset, int length, long crc, int count,
+                 long firstTimestamp, long firstId, long lastTimestamp, long lastId, long maxSequence) {
+
+        boolean startsBefore(long timestamp, long id) {
+            return firstTimestamp < timestamp || (firstTimestamp == timestamp && firstId < id);
+        }
+
+        boolean endsAfter(long timestamp, long id) {
+            return lastTimestamp > timestamp || (lastTimestamp == timestamp && lastId > id);
+        }
+    }
+
+    /**
+     * Belegung des Archivs.
+     *
+     * @param segments      Anzahl Segmentdateien
+     * @param blocks        Anzahl Blöcke
+     * @param messages      Anzahl archivierter Nachrichten
+     * @param bytes         Größe aller Segmente in Bytes
+     * @param conversations Anzahl Konversationen mit archivierten Nachrichten
+     * @param horizon       ältere Nachrichten sind gelöscht bzw. ausgeblendet
+     */
+    public record Stats(int segments, long blocks, long messages, long bytes, int conversations, long horizon) {
+    }
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+    /**
+     * Blöcke pro Konversation, nach erster Position sortiert. Listen werden beim Ändern ersetzt.
+     */
+    private final Map<String, List<Block>> blocks = new ConcurrentHashMap<>();
+    private final Map<Integer, FileChannel> segments = new ConcurrentHashMap<>();
+    private final Map<Block, List<ChatMessage>> decoded = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Lesen teilt sich die Sperre, Anhängen und Löschen von Segmenten halten sie exklusiv.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile long horizon = Long.MIN_VALUE;
+    private int currentSegment;
+    private FileChannel currentIndex;
+
+    public MessageArchive(@Value("${chat.archive.directory:./archive}") Path directory,
+                          @Value("${chat.archive.segment-max-bytes:67108864}") long segmentMaxBytes) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.segmentMaxBytes = segmentMaxBytes;
+    }
+
+    /**
+     * Öffnet alle vorhandenen Segmente und lädt deren Indexdateien.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        load(true);
+    }
+
+    /**
+     * Liest Segmente, Indexdateien und Grenze neu ein, etwa nachdem ein anderer Knoten archiviert
+     * hat. Unvollständige Indexeinträge bleiben dabei unangetastet, sie könnten gerade geschrieben
+     * werden.
+     *
+     * @throws UncheckedIOException wenn das Verzeichnis nicht gelesen werden konnte
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            closeQuietly(currentIndex);
+            currentIndex = null;
+            segments.values().forEach(MessageArchive::closeQuietly);
+            segments.clear();
+            blocks.clear();
+            synchronized (decoded) {
+                decoded.clear();
+            }
+            load(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load(boolean repair) throws IOException {
+        Path horizonPath = directory.resolve(HORIZON_FILE);
+        if (Files.exists(horizonPath)) {
+            horizon = Math.max(horizon, Long.parseLong(Files.readString(horizonPath).trim()));
+        }
+        List<Integer> numbers;
+        try (Stream<Path> files = Files.list(directory)) {
+            numbers = files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("segment-") && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(8, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        Map<String, List<Block>> loaded = new HashMap<>();
+        for (int number : numbers) {
+            FileChannel segment;
+            try {
+                segment = FileChannel.open(segmentPath(number), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (NoSuchFileException e) {
+                // Seit dem Auflisten von einem anderen Knoten gelöscht
+                continue;
+            }
+            segments.put(number, segment);
+            for (Block block : readIndex(number, segment.size(), repair)) {
+                loaded.computeIfAbsent(block.conversationId(), k -> new ArrayList<>()).add(block);
+            }
+            currentSegment = number;
+        }
+        loaded.forEach((conversationId, list) -> blocks.put(conversationId, sorted(list)));
+        if (repair && !numbers.isEmpty()) {
+            log.info("Archiv mit {} Segmenten und {} Konversationen geladen", numbers.size(), blocks.size());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closeQuietly(currentIndex);
+            currentIndex = null;
+            segments.values().forEach(MessageArchive::closeQuietly);
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hängt Nachrichten einer Konversation als einen Block an und schreibt ihn dauerhaft.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param messages       die Nachrichten, alle mit ID
+     * @throws UncheckedIOException wenn der Block nicht geschrieben werden konnte
+     */
+    public void append(String conversationId, List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        List<ChatMessage> chronological = new ArrayList<>(messages);
+        chronological.sort(CHRONOLOGICAL);
+        byte[] compressed = compress(chronological);
+        CRC32 crc = new CRC32();
+        crc.update(compressed);
+
+        lock.writeLock().lock();
+        try {
+            FileChannel segment = writableSegment();
+            long offset = segment.size();
+            ByteBuffer buffer = ByteBuffer.wrap(compressed);
+            while (buffer.hasRemaining()) {
+                segment.write(buffer, offset + buffer.position());
+            }
+            segment.force(false);
+
+            ChatMessage first = chronological.get(0);
+            ChatMessage last = chronological.get(chronological.size() - 1);
+            long maxSequence = chronological.stream()
+                    .map(ChatMessage::getSequence)
+                    .filter(s -> s != null)
+                    .mapToLong(Long::longValue)
+                    .max().orElse(0);
+            Block block = new Block(conversationId, currentSegment, offset, compressed.length, crc.getValue(),
+                    chronological.size(), first.getTimestamp(), first.getId(), last.getTimestamp(), last.getId(),
+                    maxSequence);
+            writeIndexEntry(block);
+
+            List<Block> list = new ArrayList<>(blocks.getOrDefault(conversationId, List.of()));
+            list.add(block);
+            blocks.put(conversationId, sorted(list));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param conversationId Schlüssel der Konversation
+     * @return ob für die Konversation archivierte Nachrichten vorliegen
+     */
+    public boolean contains(String conversationId) {
+        return blocks.containsKey(conversationId);
+    }
+
+    /**
+     * Liefert archivierte Nachrichten, die älter als die angegebene Position sind.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param timestamp      Zeitstempel der Position
+     * @param id             ID der Position
+     * @param limit          maximale Anzahl
+     * @return ältere Nachrichten, neueste zuerst
+     */
+    public List<ChatMessage> before(String conversationId, long timestamp, long id, int limit) {
+        List<Block> list = blocks.getOrDefault(conversationId, List.of());
+        List<ChatMessage> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int i = list.size() - 1; i >= 0; i--) {
+                Block block = list.get(i);
+                if (!block.startsBefore(timestamp, id)) {
+                    continue;
+                }
+                // Blöcke überlappen nur nach einem Absturz; dann noch den nächsten mitnehmen
+                if (result.size() >= limit && isOlder(block, result.get(limit - 1))) {
+                    break;
+                }
+                for (ChatMessage m : read(block)) {
+                    if (isBefore(m, timestamp, id) && visible(m)) {
+                        result.add(m);
+                    }
+                }
+                result.sort(CHRONOLOGICAL.reversed());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return distinct(result, limit);
+    }
+
+    /**
+     * Liefert archivierte Nachrichten, die neuer als die angegebene Position sind.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param timestamp      Zeitstempel der Position
+     * @param id             ID der Position
+     * @param limit          maximale Anzahl
+     * @return neuere Nachrichten, älteste zuerst
+     */
+    public List<ChatMessage> after(String conversationId, long timestamp, long id, int limit) {
+        List<Block> list = blocks.getOrDefault(conversationId, List.of());
+        List<ChatMessage> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Block block : list) {
+                if (!block.endsAfter(timestamp, id)) {
+                    continue;
+                }
+                if (result.size() >= limit && !block.startsBefore(
+                        result.get(limit - 1).getTimestamp(), result.get(limit - 1).getId())) {
+                    break;
+                }
+                for (ChatMessage m : read(block)) {
+                    if (isBefore(m, timestamp, id) || (m.getTimestamp() == timestamp && m.getId() == id) || !visible(m)) {
+                        continue;
+                    }
+                    result.add(m);
+                }
+                result.sort(CHRONOLOGICAL);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return distinct(result, limit);
+    }
+
+    /**
+     * @param conversationId Schlüssel der Konversation
+     * @return höchste archivierte Sequenznummer oder 0
+     */
+    public long maxSequence(String conversationId) {
+        return blocks.getOrDefault(conversationId, List.of()).stream()
+                .mapToLong(Block::maxSequence)
+                .max().orElse(0);
+    }
+
+    /**
+     * Liefert archivierte Nachrichten nach einer Sequenznummer, z. B. für den Abgleich nach einem
+     * Verbindungsabbruch. Gelesen werden nur Blöcke, deren höchste Nummer darüber liegt.
+     *
+     * @param conversationId Schlüssel der Konversation
+     * @param sequence       zuletzt gesehene Sequenznummer
+     * @param limit          maximale Anzahl
+     * @return neuere Nachrichten, nach Sequenznummer aufsteigend
+     */
+    public List<ChatMessage> afterSequence(String conversationId, long sequence, int limit) {
+        List<Block> list = blocks.getOrDefault(conversationId, List.of());
+        List<ChatMessage> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Block block : list) {
+                if (block.maxSequence() <= sequence) {
+                    continue;
+                }
+                for (ChatMessage m : read(block)) {
+                    if (m.getSequence() != null && m.getSequence() > sequence && visible(m)) {
+                        result.add(m);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparing(ChatMessage::getSequence));
+        return distinct(result, limit);
+    }
+
+    /**
+     * Löscht alle Segmente, deren neueste Nachricht älter als {@code cutoff} ist, und blendet ältere
+     * Nachrichten in den übrigen Segmenten aus. Die Grenze wird vorher dauerhaft geschrieben.
+     *
+     * @param cutoff Zeitstempel in Millisekunden
+     * @return die Konversationen, aus denen Blöcke entfernt wurden
+     * @throws UncheckedIOException wenn die Grenze oder ein Segment nicht geschrieben bzw. gelöscht werden konnte
+     */
+    public Set<String> purgeBefore(long cutoff) {
+        if (cutoff > horizon) {
+            writeHorizon(cutoff);
+            horizon = cutoff;
+        }
+        Map<Integer, Long> newestPerSegment = new TreeMap<>();
+        blocks.values().forEach(list -> list.forEach(b -> newestPerSegment.merge(b.segment(), b.lastTimestamp(), Math::max)));
+        segments.keySet().forEach(number -> newestPerSegment.putIfAbsent(number, Long.MIN_VALUE));
+
+        Set<String> affected = new HashSet<>();
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Integer, Long> entry : newestPerSegment.entrySet()) {
+                int number = entry.getKey();
+                if (entry.getValue() >= cutoff) {
+                    continue;
+                }
+                if (number == currentSegment) {
+                    closeQuietly(currentIndex);
+                    currentIndex = null;
+                    currentSegment++;
+                }
+                closeQuietly(segments.remove(number));
+                Files.deleteIfExists(segmentPath(number));
+                Files.deleteIfExists(indexPath(number));
+                for (Map.Entry<String, List<Block>> conversation : blocks.entrySet()) {
+                    if (conversation.getValue().stream().anyMatch(b -> b.segment() == number)) {
+                        affected.add(conversation.getKey());
+                    }
+                }
+                blocks.replaceAll((conversationId, list) -> list.stream().filter(b -> b.segment() != number).toList());
+                blocks.values().removeIf(List::isEmpty);
+                synchronized (decoded) {
+                    decoded.keySet().removeIf(b -> b.segment() == number);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return affected;
+    }
+
+    /**
+     * @return aktuelle Belegung
+     */
+    public Stats stats() {
+        long blockCount = 0;
+        long messages = 0;
+        for (List<Block> list : blocks.values()) {
+            blockCount += list.size();
+            for (Block block : list) {
+                messages += block.count();
+            }
+        }
+        long bytes = 0;
+        for (FileChannel segment : segments.values()) {
+            try {
+                bytes += segment.size();
+            } catch (IOException e) {
+                // Segment wurde gerade gelöscht
+            }
+        }
+        return new Stats(segments.size(), blockCount, messages, bytes, blocks.size(), horizon);
+    }
+
+    private boolean visible(ChatMessage message) {
+        return message.getTimestamp() >= horizon;
+    }
+
+    private static boolean isBefore(ChatMessage m, long timestamp, long id) {
+        return m.getTimestamp() < timestamp || (m.getTimestamp() == timestamp && m.getId() < id);
+    }
+
+    private static boolean isOlder(Block block, ChatMessage message) {
+        return block.lastTimestamp() < message.getTimestamp()
+                || (block.lastTimestamp() == message.getTimestamp() && block.lastId() < message.getId());
+    }
+
+    private static List<ChatMessage> distinct(List<ChatMessage> messages, int limit) {
+        Set<Long> ids = new HashSet<>();
+        List<ChatMessage> result = new ArrayList<>(Math.min(limit, messages.size()));
+        for (ChatMessage m : messages) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (ids.add(m.getId())) {
+                result.add(m);
+            }
+        }
+        return result;
+    }
+
+    private static List<Block> sorted(List<Block> list) {
+        return list.stream()
+                .sorted(Comparator.comparingLong(Block::firstTimestamp).thenComparingLong(Block::firstId))
+                .toList();
+    }
+
+    private List<ChatMessage> read(Block block) {
+        synchronized (decoded) {
+            List<ChatMessage> cached = decoded.get(block);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        FileChannel segment = segments.get(block.segment());
+        if (segment == null) {
+            return List.of();
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(block.length());
+            while (buffer.hasRemaining()) {
+                if (segment.read(buffer, block.offset() + buffer.position()) < 0) {
+                    throw new EOFException("Block beyond end of segment " + block.segment());
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array());
+            if (crc.getValue() != block.crc()) {
+                throw new IOException("Checksum mismatch in segment " + block.segment() + " at " + block.offset());
+            }
+            List<ChatMessage> messages;
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(buffer.array()))) {
+                messages = Arrays.asList(cbor.readValue(in, ChatMessage[].class));
+            }
+            synchronized (decoded) {
+                decoded.put(block, messages);
+                if (decoded.size() > DECODED_BLOCKS) {
+                    decoded.remove(decoded.keySet().iterator().next());
+                }
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] compress(List<ChatMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            cbor.writeValue(out, messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private FileChannel writableSegment() throws IOException {
+        FileChannel segment = segments.get(currentSegment);
+        if (segment != null && segment.size() >= segmentMaxBytes) {
+            closeQuietly(currentIndex);
+            currentIndex = null;
+            currentSegment++;
+            segment = null;
+        }
+        if (segment == null) {
+            segment = FileChannel.open(segmentPath(currentSegment),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.put(currentSegment, segment);
+        }
+        if (currentIndex == null) {
+            currentIndex = FileChannel.open(indexPath(currentSegment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return segment;
+    }
+
+    private void writeIndexEntry(Block block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(block.conversationId());
+            out.writeLong(block.offset());
+            out.writeInt(block.length());
+            out.writeLong(block.crc());
+            out.writeInt(block.count());
+            out.writeLong(block.firstTimestamp());
+            out.writeLong(block.firstId());
+            out.writeLong(block.lastTimestamp());
+            out.writeLong(block.lastId());
+            out.writeLong(block.maxSequence());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            currentIndex.write(buffer);
+        }
+        currentIndex.force(false);
+    }
+
+    /**
+     * Liest die Indexdatei eines Segments. Ein abgeschnittener Eintrag oder ein Block, der über das
+     * Segmentende hinausreicht, beendet das Lesen; die Datei wird auf den gültigen Teil gekürzt, damit
+     * spätere Einträge lesbar bleiben.
+     */
+    private void writeHorizon(long value) {
+        try {
+            Path temp = directory.resolve(HORIZON_FILE + ".tmp");
+            Files.writeString(temp, Long.toString(value));
+            Files.move(temp, directory.resolve(HORIZON_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Block> readIndex(int segment, long segmentSize, boolean repair) throws IOException {
+        Path path = indexPath(segment);
+        List<Block> result = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return result;
+        }
+        byte[] content = Files.readAllBytes(path);
+        ByteArrayInputStream bytes = new ByteArrayInputStream(content);
+        DataInputStream in = new DataInputStream(bytes);
+        long valid = 0;
+        try {
+            while (bytes.available() > 0) {
+                Block block = new Block(in.readUTF(), segment, in.readLong(), in.readInt(), in.readLong(), in.readInt(),
+                        in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+                if (block.offset() + block.length() > segmentSize) {
+                    break;
+                }
+                result.add(block);
+                valid = content.length - bytes.available();
+            }
+        } catch (EOFException e) {
+            // Abgeschnittener letzter Eintrag
+        }
+        if (valid < content.length && repair) {
+            log.warn("Unvollständiger Indexeintrag in Segment {} wird verworfen", segment);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return result;
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("segment-%06d%s", number, SEGMENT_SUFFIX));
+    }
+
+    private Path indexPath(int number) {
+        return directory.resolve(String.format("segment-%06d%s", number, INDEX_SUFFIX));
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Schließen fehlgeschlagen", e);
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.chat.service;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.ClusterFrame;
+import com.chat.model.MessageSearchPage;
+import com.chat.model.MessageSearchPage.MessageHit;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Volltextindex (Lucene) über den Nachrichtenverlauf auf der lokalen Festplatte.
+ *
+ * <p>Nachrichten werden nach dem Speichern über {@link #index(ChatMessage)} einzeln in den Index
+ * geschrieben. Neue Dokumente werden alle {@code refreshMillis} für die Suche sichtbar und alle
+ * {@code commitMillis} dauerhaft festgeschrieben; Schlüssel ist die Nachrichten-ID, sodass
+ * mehrfaches Indizieren derselben Nachricht nur das Dokument ersetzt.</p>
+ *
+ * <p>Jeder Benutzer findet nur Nachrichten aus Konversationen, an denen er beteiligt war, sowie
+ * Nachrichten im öffentlichen Chatroom. Die Treffer werden nach BM25 sortiert und seitenweise
+ * geliefert.</p>
+ *
+ * <p>Jeder Knoten führt einen eigenen Index. Im Cluster verteilt {@link #index(ChatMessage)} die
+ * gespeicherte Nachricht samt ID zusätzlich über den {@link ClusterBus} an
+ * {@value #CLUSTER_DESTINATION}; die anderen Knoten nehmen sie in ihren Index auf, sodass auch dort
+ * Nachrichten gefunden werden, die über andere Knoten gesendet wurden.</p>
+ *
+ * <p>{@link #startRebuild()} indiziert bestehende Nachrichten im Hintergrund in Batches aus der
+ * Datenbank neu, ohne den laufenden Betrieb zu blockieren.</p>
+ */
+@Service
+public class MessageSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    private static final String ID = "id";
+    private static final String CONVERSATION = "conversation";
+    private static final String PARTICIPANT = "participant";
+    private static final String TEXT = "text";
+    private static final String SENDER = "sender";
+    private static final String RECEIVER = "receiver";
+    private static final String TIMESTAMP = "timestamp";
+
+    static final String CLUSTER_DESTINATION = ClusterBus.INTERNAL_PREFIX + "search-index";
+
+    /**
+     * Die indizierten Felder einer Nachricht, wie sie zwischen den Knoten verteilt werden.
+     */
+    private record IndexedMessage(Long id, String senderName, String receiverName, String message,
+                                  Long timestamp, Long sequence) {
+    }
+
+    /**
+     * Fortschritt einer Neuindizierung.
+     *
+     * @param running ob gerade neu indiziert wird
+     * @param indexed Anzahl der bisher neu indizierten Nachrichten
+     * @param lastId  ID der zuletzt indizierten Nachricht
+     */
+    public record RebuildStatus(boolean running, long indexed, long lastId) {
+    }
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final Path directory;
+    private final long refreshMillis;
+    private final long commitMillis;
+    private final int rebuildBatchSize;
+    private final long rebuildPauseMillis;
+    private final int maxResults;
+    private final ClusterBus clusterBus;
+    private final ObjectMapper objectMapper;
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong rebuildIndexed = new AtomicLong();
+    private final AtomicLong rebuildLastId = new AtomicLong();
+
+    private FSDirectory fsDirectory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService scheduler;
+
+    public MessageSearchIndex(ChatMessageRepository chatMessageRepository,
+                              @Value("${chat.search.directory:./search-index}") Path directory,
+                              @Value("${chat.search.refresh-ms:1000}") long refreshMillis,
+                              @Value("${chat.search.commit-ms:30000}") long commitMillis,
+                              @Value("${chat.search.rebuild-batch-size:500}") int rebuildBatchSize,
+                              @Value("${chat.search.rebuild-pause-ms:20}") long rebuildPauseMillis,
+                              @Value("${chat.search.max-results:1000}") int maxResults,
+                              ObjectProvider<ClusterBus> clusterBus,
+                              ObjectMapper objectMapper) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.directory = directory.toAbsolutePath().normalize();
+        this.refreshMillis = refreshMillis;
+        this.commitMillis = commitMillis;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.rebuildPauseMillis = rebuildPauseMillis;
+        this.maxResults = maxResults;
+        this.clusterBus = clusterBus.getIfAvailable();
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        fsDirectory = FSDirectory.open(directory);
+        writer = new IndexWriter(fsDirectory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "search-index");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::commit, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+
+        if (clusterBus != null) {
+            clusterBus.onReceive(this::indexRemote);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        rebuilding.set(false);
+        scheduler.shutdownNow();
+        searcherManager.close();
+        writer.close();
+        fsDirectory.close();
+    }
+
+    /**
+     * Nimmt eine gespeicherte Nachricht in den Index auf oder ersetzt ihr bestehendes Dokument und
+     * verteilt sie im Cluster an die Indizes der anderen Knoten. Fehler werden nur protokolliert,
+     * damit der Sendepfad nicht scheitert.
+     *
+     * @param message die Nachricht, muss eine ID besitzen
+     */
+    public void index(ChatMessage message) {
+        if (!indexLocally(message) || clusterBus == null) {
+            return;
+        }
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(new IndexedMessage(message.getId(), message.getSenderName(),
+                    message.getReceiverName(), message.getMessage(), message.getTimestamp(), message.getSequence()));
+            clusterBus.publish(new ClusterFrame(clusterBus.nodeId(), CLUSTER_DESTINATION, "application/json", payload));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Nachricht {} konnte nicht an die anderen Knoten verteilt werden", message.getId(), e);
+        }
+    }
+
+    /**
+     * Nimmt eine von einem anderen Knoten gespeicherte Nachricht in den Index auf.
+     */
+    private void indexRemote(ClusterFrame frame) {
+        if (!CLUSTER_DESTINATION.equals(frame.destination())) {
+            return;
+        }
+        try {
+            IndexedMessage remote = objectMapper.readValue(frame.payload(), IndexedMessage.class);
+            ChatMessage message = new ChatMessage(remote.senderName(), remote.receiverName(), remote.message(),
+                    null, null, Status.MESSAGE, remote.timestamp(), remote.sequence());
+            message.setId(remote.id());
+            indexLocally(message);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Nachricht von Knoten {} konnte nicht indiziert werden", frame.origin(), e);
+        }
+    }
+
+    /**
+     * @return ob die Nachricht indizierbar war
+     */
+    private boolean indexLocally(ChatMessage message) {
+        if (message.getId() == null || message.getMessage() == null || message.getMessage().isBlank()) {
+            return false;
+        }
+        try {
+            writer.updateDocument(new Term(ID, message.getId().toString()), toDocument(message));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Nachricht {} konnte nicht indiziert werden", message.getId(), e);
+        }
+        return true;
+    }
+
+    /**
+     * Entfernt alle Nachrichten vor einem Zeitpunkt aus dem Index, z. B. nach Ablauf der
+     * Aufbewahrungsfrist. Wird mit dem nächsten Festschreiben dauerhaft.
+     *
+     * @param cutoff Zeitstempel in Millisekunden
+     */
+    public void deleteOlderThan(long cutoff) {
+        try {
+            writer.deleteDocuments(LongPoint.newRangeQuery(TIMESTAMP, Long.MIN_VALUE, cutoff - 1));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Alte Nachrichten konnten nicht aus dem Suchindex entfernt werden", e);
+        }
+    }
+
+    /**
+     * Durchsucht die Nachrichten, die ein Benutzer sehen darf.
+     *
+     * @param username der suchende Benutzer
+     * @param text     Suchbegriffe; alle müssen vorkommen
+     * @param page     Seite, beginnend bei 0
+     * @param size     Treffer pro Seite
+     * @return die Seite der Treffer, nach Relevanz sortiert
+     */
+    public MessageSearchPage search(String username, String text, int page, int size) {
+        List<String> terms = analyze(text);
+        if (terms.isEmpty() || size <= 0 || page < 0) {
+            return new MessageSearchPage(0, page, size, List.of());
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            query.add(new TermQuery(new Term(TEXT, term)), BooleanClause.Occur.MUST);
+        }
+        query.add(visibleTo(username), BooleanClause.Occur.FILTER);
+
+        // In long rechnen: page * size darf bei großen Werten nicht ins Negative überlaufen
+        long start = (long) page * size;
+        if (start >= maxResults) {
+            return new MessageSearchPage(0, page, size, List.of());
+        }
+        int offset = (int) start;
+        int wanted = (int) Math.min(start + size, maxResults);
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(query.build(), wanted);
+                List<MessageHit> hits = new ArrayList<>(wanted - offset);
+                var storedFields = searcher.storedFields();
+                for (int i = offset; i < top.scoreDocs.length; i++) {
+                    ScoreDoc scoreDoc = top.scoreDocs[i];
+                    hits.add(toHit(storedFields.document(scoreDoc.doc), scoreDoc.score));
+                }
+                return new MessageSearchPage(top.totalHits.value, page, size, hits);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Startet die Neuindizierung aller gespeicherten Nachrichten in einem Hintergrund-Thread.
+     *
+     * @return {@code false}, wenn bereits eine Neuindizierung läuft
+     */
+    public boolean startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildIndexed.set(0);
+        rebuildLastId.set(0);
+        Thread.ofPlatform().daemon().name("search-rebuild").start(this::rebuild);
+        return true;
+    }
+
+    /**
+     * @return der Fortschritt der aktuellen oder letzten Neuindizierung
+     */
+    public RebuildStatus rebuildStatus() {
+        return new RebuildStatus(rebuilding.get(), rebuildIndexed.get(), rebuildLastId.get());
+    }
+
+    /**
+     * Macht neu indizierte Dokumente für die Suche sichtbar.
+     */
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Suchindex konnte nicht aktualisiert werden", e);
+        }
+    }
+
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Suchindex konnte nicht festgeschrieben werden", e);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        try {
+            long lastId = 0;
+            List<ChatMessage> batch;
+            do {
+                batch = chatMessageRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, rebuildBatchSize));
+                for (ChatMessage message : batch) {
+                    indexLocally(message);
+                    lastId = message.getId();
+                }
+                rebuildIndexed.addAndGet(batch.size());
+                rebuildLastId.set(lastId);
+                // Zwischen den Batches Datenbank und CPU für den laufenden Betrieb freigeben
+                Thread.sleep(rebuildPauseMillis);
+            } while (rebuilding.get() && batch.size() == rebuildBatchSize);
+            commit();
+            refresh();
+            log.info("Suchindex mit {} Nachrichten in {} ms neu aufgebaut",
+                    rebuildIndexed.get(), (System.nanoTime() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Neuaufbau des Suchindex abgebrochen", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private static Query visibleTo(String username) {
+        return new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(PARTICIPANT, username)), BooleanClause.Occur.SHOULD)
+                .add(new TermQuery(new Term(CONVERSATION, ChatMessage.PUBLIC_CONVERSATION)), BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    private static Document toDocument(ChatMessage message) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, message.getId().toString(), Field.Store.YES));
+        String conversation = message.getConversationId() != null
+                ? message.getConversationId()
+                : ChatMessage.conversationKey(message.getSenderName(), message.getReceiverName());
+        doc.add(new StringField(CONVERSATION, conversation, Field.Store.YES));
+        if (message.getSenderName() != null) {
+            doc.add(new StringField(PARTICIPANT, message.getSenderName(), Field.Store.NO));
+            doc.add(new StoredField(SENDER, message.getSenderName()));
+        }
+        if (message.getReceiverName() != null) {
+            doc.add(new StringField(PARTICIPANT, message.getReceiverName(), Field.Store.NO));
+            doc.add(new StoredField(RECEIVER, message.getReceiverName()));
+        }
+        doc.add(new TextField(TEXT, message.getMessage(), Field.Store.YES));
+        doc.add(new LongPoint(TIMESTAMP, message.getTimestamp()));
+        doc.add(new StoredField(TIMESTAMP, message.getTimestamp()));
+        return doc;
+    }
+
+    private static MessageHit toHit(Document doc, float score) {
+        return new MessageHit(
+                Long.parseLong(doc.get(ID)),
+                doc.get(CONVERSATION),
+                doc.get(SENDER),
+                doc.get(RECEIVER),
+                doc.get(TEXT),
+                doc.getField(TIMESTAMP).numericValue().longValue(),
+                score);
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(TEXT, text)) {
+            CharTermAttribute attribute = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(attribute.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+}
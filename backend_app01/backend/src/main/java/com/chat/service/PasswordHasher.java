@@ -0,0 +1,199 @@
+package com.chat.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Berechnet und prüft Passwort-Hashes (BCrypt) auf einem eigenen, begrenzten Thread-Pool.
+ *
+ * <p>Ein einzelner Hash kostet absichtlich einige zehn Millisekunden CPU. Damit eine Welle von
+ * Anmeldungen nicht alle Kerne belegt und den Chat-Verkehr ausbremst, laufen die Berechnungen auf
+ * höchstens {@code threads} Threads mit einer Warteschlange fester Größe. Ist sie voll, wird die
+ * Anfrage sofort mit {@link SaturatedException} abgewiesen statt zu warten.</p>
+ *
+ * <p>Der BCrypt-Kostenfaktor wird beim Start so gewählt, dass ein Hash etwa {@code targetMillis}
+ * dauert. Bestehende Hashes mit kleinerem Faktor sowie alte Klartext-Passwörter werden über
+ * {@link #needsUpgrade(String)} erkannt und beim nächsten Login ersetzt.</p>
+ */
+@Service
+public class PasswordHasher {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private static final int CALIBRATION_COST = 8;
+
+    /**
+     * Wird geworfen, wenn die Warteschlange des Hash-Pools voll ist.
+     */
+    public static class SaturatedException extends RuntimeException {
+        public SaturatedException() {
+            super("Password hashing is saturated");
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long targetMillis;
+    private final int minCost;
+    private final int maxCost;
+
+    private volatile int cost;
+
+    public PasswordHasher(@Value("${chat.password.threads:0}") int threads,
+                          @Value("${chat.password.queue-capacity:64}") int queueCapacity,
+                          @Value("${chat.password.target-millis:100}") long targetMillis,
+                          @Value("${chat.password.min-cost:10}") int minCost,
+                          @Value("${chat.password.max-cost:14}") int maxCost) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.targetMillis = targetMillis;
+        this.minCost = minCost;
+        this.maxCost = maxCost;
+        this.cost = minCost;
+    }
+
+    /**
+     * Misst die Dauer eines Hashes mit kleinem Kostenfaktor und leitet daraus den Faktor ab,
+     * der {@code targetMillis} am nächsten kommt. Jede Stufe verdoppelt den Aufwand.
+     */
+    @PostConstruct
+    public void calibrate() {
+        String salt = BCrypt.gensalt(CALIBRATION_COST);
+        BCrypt.hashpw("calibration", salt);
+        long start = System.nanoTime();
+        BCrypt.hashpw("calibration", salt);
+        double millis = Math.max(0.01, (System.nanoTime() - start) / 1_000_000.0);
+
+        int tuned = CALIBRATION_COST + (int) Math.round(Math.log(targetMillis / millis) / Math.log(2));
+        cost = Math.max(minCost, Math.min(maxCost, tuned));
+        log.info("BCrypt-Kostenfaktor {} gewählt (Kosten {} dauern {} ms, Ziel {} ms)",
+                cost, CALIBRATION_COST, String.format("%.1f", millis), targetMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Berechnet den Hash eines Passworts mit dem aktuellen Kostenfaktor.
+     *
+     * @param rawPassword das Passwort im Klartext
+     * @return der BCrypt-Hash
+     * @throws SaturatedException wenn der Hash-Pool ausgelastet ist
+     */
+    public String hash(String rawPassword) {
+        int currentCost = cost;
+        return call(() -> BCrypt.hashpw(rawPassword, BCrypt.gensalt(currentCost)));
+    }
+
+    /**
+     * Prüft ein Passwort gegen einen gespeicherten Wert. Werte ohne BCrypt-Präfix gelten als
+     * Klartext aus der Zeit vor der Umstellung und werden in konstanter Zeit verglichen.
+     *
+     * @param rawPassword das eingegebene Passwort
+     * @param stored      der gespeicherte Hash oder Klartext
+     * @return {@code true}, wenn das Passwort passt
+     * @throws SaturatedException wenn der Hash-Pool ausgelastet ist
+     */
+    public boolean matches(String rawPassword, String stored) {
+        if (rawPassword == null || stored == null) {
+            return false;
+        }
+        if (!isBcrypt(stored)) {
+            return MessageDigest.isEqual(rawPassword.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        return call(() -> BCrypt.checkpw(rawPassword, stored));
+    }
+
+    /**
+     * @param stored der gespeicherte Hash oder Klartext
+     * @return {@code true}, wenn der Wert Klartext ist oder mit einem kleineren Kostenfaktor erzeugt wurde
+     */
+    public boolean needsUpgrade(String stored) {
+        if (!isBcrypt(stored)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(stored.substring(4, 6)) < cost;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Berechnet im Hintergrund einen neuen Hash mit dem aktuellen Kostenfaktor, z. B. um einen
+     * veralteten Hash nach erfolgreichem Login zu ersetzen. Ist der Pool ausgelastet, wird nichts
+     * getan; die Aufwertung erfolgt dann beim nächsten Login.
+     *
+     * @param rawPassword das Passwort im Klartext
+     * @param onHashed    erhält den neuen Hash, läuft im Hash-Pool
+     * @return {@code true}, wenn die Aufgabe angenommen wurde
+     */
+    public boolean rehashLater(String rawPassword, Consumer<String> onHashed) {
+        int currentCost = cost;
+        try {
+            executor.execute(() -> onHashed.accept(BCrypt.hashpw(rawPassword, BCrypt.gensalt(currentCost))));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return der aktuell verwendete BCrypt-Kostenfaktor
+     */
+    public int cost() {
+        return cost;
+    }
+
+    private <T> T call(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new SaturatedException();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static boolean isBcrypt(String stored) {
+        return stored != null && stored.length() == 60 && stored.startsWith("$2");
+    }
+}
@@ -0,0 +1,355 @@
+package com.chat.service;
+
+import com.chat.model.ClusterFrame;
+import com.chat.model.PresenceDelta;
+import com.chat.model.PresenceSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verzeichnis der angemeldeten Benutzer und ihrer STOMP-Sitzungen.
+ *
+ * <p>Ein Benutzer kann mehrere Sitzungen (Geräte, Tabs) haben und gilt als online, solange
+ * mindestens eine davon offen ist. Die Zuordnung Benutzer → Sitzungen liegt in einer
+ * {@link ConcurrentHashMap}; Änderungen an einem Benutzer laufen atomar über {@code compute},
+ * sodass sich gleichzeitige Verbindungen verschiedener Benutzer nicht gegenseitig sperren.</p>
+ *
+ * <p>Wechsel zwischen online und offline werden nicht einzeln verschickt, sondern gesammelt und
+ * alle {@code broadcastIntervalMillis} als ein {@link PresenceDelta} an
+ * {@code /chatroom/presence} gesendet. Wer innerhalb eines Intervalls geht und wiederkommt, erzeugt
+ * gar keine Meldung. Sitzungen, von denen länger als {@code sessionTimeoutMillis} kein Frame und
+ * kein Heartbeat kam, werden dabei entfernt.</p>
+ *
+ * <p>Im Cluster verteilt jeder Knoten die Menge seiner lokal angemeldeten Benutzer über den
+ * {@link ClusterBus} an {@value #CLUSTER_DESTINATION}, sobald sie sich ändert und sonst
+ * regelmäßig als Lebenszeichen. Ein Benutzer gilt als online, solange er auf irgendeinem Knoten
+ * eine Sitzung hat; {@code left} wird erst gemeldet, wenn seine letzte Sitzung im gesamten Cluster
+ * geschlossen ist. Meldet sich ein Knoten länger als {@code sessionTimeoutMillis} nicht, gelten
+ * seine Benutzer als gegangen. Da jeder Knoten dieselbe clusterweite Sicht berechnet, gehen die
+ * Änderungsmeldungen nur an die eigenen Clients und tragen dazu den Header
+ * {@link ClusterBus#LOCAL_HEADER}.</p>
+ */
+@Service
+public class PresenceRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    public static final String DESTINATION = "/chatroom/presence";
+
+    static final String CLUSTER_DESTINATION = ClusterBus.INTERNAL_PREFIX + "presence";
+
+    /**
+     * Die lokal angemeldeten Benutzer eines Knotens, wie sie zwischen den Knoten verteilt werden.
+     */
+    private record NodePresence(List<String> users) {
+    }
+
+    /**
+     * Zuletzt empfangener Stand eines anderen Knotens.
+     */
+    private record RemoteNode(Set<String> users, long receivedAt) {
+    }
+
+    private static final class Session {
+        final String user;
+        volatile long lastSeen;
+
+        Session(String user, long lastSeen) {
+            this.user = user;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final long broadcastIntervalMillis;
+    private final long sessionTimeoutMillis;
+    private final ClusterBus clusterBus;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    /**
+     * Benutzer, deren Zustand sich seit der letzten Meldung geändert haben könnte.
+     */
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    /**
+     * Benutzer, die zuletzt als online gemeldet wurden; nur vom Melde-Thread benutzt.
+     */
+    private final Set<String> announced = new HashSet<>();
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, RemoteNode> remoteNodes = new ConcurrentHashMap<>();
+    /**
+     * Zuletzt an die anderen Knoten verteilte lokale Benutzer; nur vom Melde-Thread benutzt.
+     */
+    private Set<String> published = Set.of();
+    private long publishedAt;
+    /**
+     * Gesetzt, wenn ein bisher unbekannter Knoten auftaucht, der den eigenen Stand noch nicht kennt.
+     */
+    private volatile boolean publishRequested;
+
+    private ScheduledExecutorService scheduler;
+
+    public PresenceRegistry(@Lazy SimpMessagingTemplate simpMessagingTemplate,
+                            @Value("${chat.presence.broadcast-interval-ms:1000}") long broadcastIntervalMillis,
+                            @Value("${chat.presence.session-timeout-ms:60000}") long sessionTimeoutMillis,
+                            ObjectProvider<ClusterBus> clusterBus,
+                            ObjectMapper objectMapper) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.broadcastIntervalMillis = broadcastIntervalMillis;
+        this.sessionTimeoutMillis = sessionTimeoutMillis;
+        this.clusterBus = clusterBus.getIfAvailable();
+        this.objectMapper = objectMapper;
+        if (this.clusterBus != null) {
+            this.clusterBus.onReceive(this::receive);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, broadcastIntervalMillis, broadcastIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        if (clusterBus != null) {
+            // Die anderen Knoten sollen die Benutzer dieses Knotens nicht erst nach Ablauf der Frist austragen
+            sessionsByUser.clear();
+            publishRequested = true;
+            publishLocalUsers();
+        }
+    }
+
+    /**
+     * Ordnet eine Sitzung einem Benutzer zu. Ein erneuter Aufruf für dieselbe Sitzung ist harmlos.
+     *
+     * @param sessionId ID der STOMP-Sitzung
+     * @param user      der Benutzer
+     */
+    public void connect(String sessionId, String user) {
+        if (sessionId == null || user == null || user.isBlank()) {
+            return;
+        }
+        Session previous = sessions.put(sessionId, new Session(user, System.currentTimeMillis()));
+        if (previous != null && !previous.user.equals(user)) {
+            removeFromUser(previous.user, sessionId);
+        }
+        sessionsByUser.compute(user, (key, set) -> {
+            Set<String> result = set != null ? set : ConcurrentHashMap.newKeySet();
+            if (result.add(sessionId) && result.size() == 1) {
+                dirty.add(user);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Entfernt eine Sitzung, z. B. beim Trennen der Verbindung.
+     *
+     * @param sessionId ID der STOMP-Sitzung
+     */
+    public void disconnect(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            removeFromUser(session.user, sessionId);
+        }
+    }
+
+    /**
+     * Vermerkt ein Lebenszeichen (Frame oder Heartbeat) einer Sitzung.
+     *
+     * @param sessionId ID der STOMP-Sitzung
+     */
+    public void touch(String sessionId) {
+        Session session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session != null) {
+            session.lastSeen = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @param user der Benutzer
+     * @return ob der Benutzer auf diesem oder einem anderen Knoten mindestens eine offene Sitzung hat
+     */
+    public boolean isOnline(String user) {
+        if (sessionsByUser.containsKey(user)) {
+            return true;
+        }
+        for (RemoteNode node : remoteNodes.values()) {
+            if (node.users().contains(user)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return alle Benutzer, die gerade im Cluster online sind, mit der Version der letzten Meldung
+     */
+    public PresenceSnapshot snapshot() {
+        Set<String> online = new TreeSet<>(sessionsByUser.keySet());
+        remoteNodes.values().forEach(node -> online.addAll(node.users()));
+        return new PresenceSnapshot(version.get(), new ArrayList<>(online));
+    }
+
+    /**
+     * @return Anzahl offener Sitzungen auf diesem Knoten
+     */
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Entfernt abgelaufene Sitzungen und sendet die gesammelten Änderungen als eine Meldung.
+     */
+    public void flush() {
+        try {
+            expireSessions();
+            expireRemoteNodes();
+            publishLocalUsers();
+
+            List<String> joined = new ArrayList<>();
+            List<String> left = new ArrayList<>();
+            for (String user : List.copyOf(dirty)) {
+                dirty.remove(user);
+                if (isOnline(user)) {
+                    if (announced.add(user)) {
+                        joined.add(user);
+                    }
+                } else if (announced.remove(user)) {
+                    left.add(user);
+                }
+            }
+            if (!joined.isEmpty() || !left.isEmpty()) {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                accessor.setHeader(ClusterBus.LOCAL_HEADER, true);
+                accessor.setLeaveMutable(true);
+                simpMessagingTemplate.convertAndSend(DESTINATION,
+                        new PresenceDelta(version.incrementAndGet(), joined, left), accessor.getMessageHeaders());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Anwesenheitsmeldung fehlgeschlagen", e);
+        }
+    }
+
+    private void expireSessions() {
+        long deadline = System.currentTimeMillis() - sessionTimeoutMillis;
+        sessions.forEach((sessionId, session) -> {
+            if (session.lastSeen < deadline && sessions.remove(sessionId, session)) {
+                removeFromUser(session.user, sessionId);
+            }
+        });
+    }
+
+    /**
+     * Verteilt die lokal angemeldeten Benutzer, wenn sie sich geändert haben, ein anderer Knoten
+     * neu hinzugekommen ist oder seit einem Drittel der Sitzungs-Zeitüberschreitung nichts
+     * verteilt wurde.
+     */
+    private void publishLocalUsers() {
+        if (clusterBus == null) {
+            return;
+        }
+        Set<String> users = Set.copyOf(sessionsByUser.keySet());
+        long now = System.currentTimeMillis();
+        if (users.equals(published) && !publishRequested && now - publishedAt < sessionTimeoutMillis / 3) {
+            return;
+        }
+        publishRequested = false;
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(new NodePresence(List.copyOf(users)));
+            clusterBus.publish(new ClusterFrame(clusterBus.nodeId(), CLUSTER_DESTINATION, "application/json", payload));
+            published = users;
+            publishedAt = now;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Anwesenheit konnte nicht an die anderen Knoten verteilt werden", e);
+        }
+    }
+
+    /**
+     * Übernimmt den Stand eines anderen Knotens und vermerkt alle Benutzer, die dort hinzugekommen
+     * oder gegangen sind.
+     */
+    private void receive(ClusterFrame frame) {
+        if (!CLUSTER_DESTINATION.equals(frame.destination())) {
+            return;
+        }
+        try {
+            NodePresence presence = objectMapper.readValue(frame.payload(), NodePresence.class);
+            Set<String> users = Set.copyOf(presence.users());
+            RemoteNode previous = remoteNodes.put(frame.origin(), new RemoteNode(users, System.currentTimeMillis()));
+            if (previous == null) {
+                publishRequested = true;
+                dirty.addAll(users);
+                return;
+            }
+            for (String user : users) {
+                if (!previous.users().contains(user)) {
+                    dirty.add(user);
+                }
+            }
+            for (String user : previous.users()) {
+                if (!users.contains(user)) {
+                    dirty.add(user);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Anwesenheit von Knoten {} nicht lesbar", frame.origin(), e);
+        }
+    }
+
+    private void expireRemoteNodes() {
+        long deadline = System.currentTimeMillis() - sessionTimeoutMillis;
+        remoteNodes.forEach((nodeId, node) -> {
+            if (node.receivedAt() < deadline && remoteNodes.remove(nodeId, node)) {
+                log.info("Knoten {} meldet keine Anwesenheit mehr, {} Benutzer gelten als gegangen",
+                        nodeId, node.users().size());
+                dirty.addAll(node.users());
+            }
+        });
+    }
+
+    private void removeFromUser(String user, String sessionId) {
+        sessionsByUser.computeIfPresent(user, (key, set) -> {
+            set.remove(sessionId);
+            if (set.isEmpty()) {
+                dirty.add(user);
+                return null;
+            }
+            return set;
+        });
+    }
+}
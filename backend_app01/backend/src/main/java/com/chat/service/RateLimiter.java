@@ -0,0 +1,116 @@
+package com.chat.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-Bucket-Ratenbegrenzung pro Schlüssel (z. B. Benutzer und Ziel).
+ *
+ * <p>Umgesetzt als Generic Cell Rate Algorithm: Pro Schlüssel wird nur ein Zeitpunkt gespeichert,
+ * ab dem der Eimer wieder voll wäre. Eine Anfrage verschiebt ihn um das Intervall eines Tokens und
+ * wird abgelehnt, wenn er dadurch mehr als {@code capacity} Intervalle in der Zukunft läge. Das
+ * Aktualisieren ist ein einzelnes Compare-and-Set auf einem {@link AtomicLong}, das Nachschlagen
+ * des Schlüssels in einer {@link ConcurrentHashMap} kommt ohne gemeinsame Sperre aus.</p>
+ *
+ * <p>Schlüssel, deren Eimer wieder voll ist, entsprechen dem Ausgangszustand und werden entfernt,
+ * sobald mehr als {@code maxKeys} Schlüssel gespeichert sind. Das Aufräumen übernimmt jeweils nur
+ * ein Thread, der alle Schlüssel einmal durchläuft; die nächste Runde beginnt erst, wenn sich die
+ * Zahl der verbliebenen Schlüssel verdoppelt hat. Ein neuer Schlüssel kostet daher im Mittel
+ * konstante Zeit, auch wenn kaum ein Eimer voll ist. Ein entfernter Eimer wird zuvor als
+ * {@link #EVICTED} markiert, damit eine gleichzeitige Anfrage ihn nicht mehr verbraucht.</p>
+ */
+public class RateLimiter {
+
+    /**
+     * Markierung eines entfernten Eimers.
+     */
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    /**
+     * Anzahl Schlüssel, ab der die nächste Aufräumrunde beginnt.
+     */
+    private volatile int evictAt;
+
+    /**
+     * @param capacity     maximale Anzahl Tokens (erlaubte Spitze)
+     * @param perSecond    nachgefüllte Tokens pro Sekunde
+     * @param maxKeys      Anzahl Schlüssel, ab der volle Eimer entfernt werden
+     */
+    public RateLimiter(int capacity, double perSecond, int maxKeys) {
+        if (capacity < 1 || perSecond <= 0) {
+            throw new IllegalArgumentException("capacity must be >= 1 and perSecond > 0");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / perSecond);
+        this.burstNanos = intervalNanos * capacity;
+        this.maxKeys = maxKeys;
+        this.evictAt = maxKeys;
+    }
+
+    /**
+     * Entnimmt ein Token für den Schlüssel.
+     *
+     * @param key der Schlüssel
+     * @return {@code 0}, wenn das Token entnommen wurde, sonst die Wartezeit in Nanosekunden bis
+     *         zum nächsten verfügbaren Token
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = bucket(key, now);
+        while (true) {
+            long full = bucket.get();
+            if (full == EVICTED) {
+                bucket = bucket(key, now);
+                continue;
+            }
+            long next = Math.max(full, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return next - now - burstNanos;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return Anzahl gespeicherter Schlüssel
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucket(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null && bucket.get() != EVICTED) {
+            return bucket;
+        }
+        if (buckets.size() >= evictAt) {
+            evictIdle(now);
+        }
+        return buckets.compute(key, (k, current) ->
+                current != null && current.get() != EVICTED ? current : new AtomicLong(now));
+    }
+
+    private void evictIdle(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buckets.forEach((key, bucket) -> {
+                long full = bucket.get();
+                if (full != EVICTED && full - now <= 0 && bucket.compareAndSet(full, EVICTED)) {
+                    buckets.remove(key, bucket);
+                }
+            });
+            evictAt = Math.max(maxKeys, 2 * buckets.size());
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
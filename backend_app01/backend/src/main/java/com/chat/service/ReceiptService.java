@@ -0,0 +1,235 @@
+package com.chat.service;
+
+import com.chat.configuration.ReadYourWrites;
+import com.chat.entity.ChatMessage;
+import com.chat.entity.ReadReceipt;
+import com.chat.model.Receipt;
+import com.chat.model.Status;
+import com.chat.repository.ReadReceiptRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kumulative Empfangs- und Lesebestätigungen für private Konversationen.
+ *
+ * <p>Bestätigungen werden nicht sofort gespeichert, sondern pro Leser und Konversation im
+ * Speicher zusammengeführt; es zählt jeweils nur der höchste Wasserstand. Alle
+ * {@code flushIntervalMillis} werden die gesammelten Stände in einer Transaktion geschrieben
+ * (bestehende Zeilen gemeinsam geladen, geänderte und neue im JDBC-Batch gespeichert). Wer
+ * innerhalb eines Intervalls 500 Nachrichten liest, erzeugt damit genau eine Aktualisierung.</p>
+ *
+ * <p>Nur Stände, die tatsächlich vorrücken, werden gespeichert und dem Absender der bestätigten
+ * Nachrichten als {@link Receipt} über {@code /user/{name}/private} gemeldet. Ein Lesestand schließt
+ * den Empfangsstand ein.</p>
+ *
+ * <p>Schlägt das Schreiben fehl, werden die Stände wieder eingereiht und beim nächsten Intervall
+ * erneut versucht. Im Cluster schreiben die Knoten unabhängig; melden sich zwei Geräte desselben
+ * Lesers im selben Intervall auf verschiedenen Knoten, kann der niedrigere Stand kurzzeitig gewinnen,
+ * bis die nächste Bestätigung ihn überholt.</p>
+ */
+@Service
+public class ReceiptService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptService.class);
+
+    /**
+     * Zählerstände der Zusammenführung.
+     *
+     * @param acknowledgements empfangene Bestätigungen
+     * @param rowsWritten      geschriebene Zeilen (eingefügt oder aktualisiert)
+     * @param flushes          Schreibvorgänge mit mindestens einer Zeile
+     * @param pending          noch nicht geschriebene Stände
+     */
+    public record Stats(long acknowledgements, long rowsWritten, long flushes, int pending) {
+    }
+
+    /**
+     * Gesammelter, noch nicht gespeicherter Stand eines Lesers.
+     */
+    private record Mark(String peer, long deliveredUpTo, long readUpTo) {
+        Mark max(Mark other) {
+            return new Mark(peer, Math.max(deliveredUpTo, other.deliveredUpTo), Math.max(readUpTo, other.readUpTo));
+        }
+    }
+
+    private final ReadReceiptRepository readReceiptRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadYourWrites readYourWrites;
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final long flushIntervalMillis;
+
+    private final Map<ReadReceipt.Key, Mark> pending = new ConcurrentHashMap<>();
+    private final AtomicLong acknowledgements = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public ReceiptService(ReadReceiptRepository readReceiptRepository,
+                          TransactionTemplate transactionTemplate,
+                          ReadYourWrites readYourWrites,
+                          @Lazy SimpMessagingTemplate simpMessagingTemplate,
+                          @Value("${chat.receipts.flush-interval-ms:500}") long flushIntervalMillis) {
+        this.readReceiptRepository = readReceiptRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.readYourWrites = readYourWrites;
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "receipts");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stoppt das periodische Schreiben und speichert die restlichen Stände.
+     */
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Nimmt eine Bestätigung entgegen. Sie wird mit noch ausstehenden Ständen desselben Lesers
+     * zusammengeführt und beim nächsten Intervall geschrieben. Bestätigungen ohne Leser, ohne
+     * Gegenüber oder an sich selbst werden ignoriert.
+     *
+     * @param reader  der Lesende
+     * @param receipt die Bestätigung; {@code receiverName} ist das Gegenüber
+     */
+    public void acknowledge(String reader, Receipt receipt) {
+        String peer = receipt.receiverName();
+        long read = receipt.readUpTo() != null ? receipt.readUpTo() : 0;
+        long delivered = Math.max(read, receipt.deliveredUpTo() != null ? receipt.deliveredUpTo() : 0);
+        if (reader == null || reader.isBlank() || peer == null || peer.isBlank() || reader.equals(peer) || delivered <= 0) {
+            return;
+        }
+        acknowledgements.incrementAndGet();
+        ReadReceipt.Key key = new ReadReceipt.Key(ChatMessage.conversationKey(reader, peer), reader);
+        pending.merge(key, new Mark(peer, delivered, read), Mark::max);
+    }
+
+    /**
+     * Liefert die Bestätigungsstände beider Teilnehmer einer Konversation, einschließlich noch
+     * nicht geschriebener Stände.
+     *
+     * @param user1 erster Teilnehmer
+     * @param user2 zweiter Teilnehmer
+     * @return ein Eintrag pro Teilnehmer, der bereits etwas bestätigt hat
+     */
+    public List<Receipt> receipts(String user1, String user2) {
+        String conversationId = ChatMessage.conversationKey(user1, user2);
+        Map<String, Receipt> byReader = new HashMap<>();
+        List<ReadReceipt> rows = readYourWrites.read(conversationId,
+                () -> readReceiptRepository.findByConversationId(conversationId));
+        for (ReadReceipt stored : rows) {
+            String peer = stored.getReader().equals(user1) ? user2 : user1;
+            byReader.put(stored.getReader(), new Receipt(Status.RECEIPT, stored.getReader(), peer,
+                    stored.getDeliveredUpTo(), stored.getReadUpTo()));
+        }
+        for (String reader : List.of(user1, user2)) {
+            Mark mark = pending.get(new ReadReceipt.Key(conversationId, reader));
+            if (mark != null) {
+                byReader.merge(reader, new Receipt(Status.RECEIPT, reader, mark.peer(), mark.deliveredUpTo(), mark.readUpTo()),
+                        (a, b) -> new Receipt(Status.RECEIPT, reader, a.receiverName(),
+                                Math.max(a.deliveredUpTo(), b.deliveredUpTo()), Math.max(a.readUpTo(), b.readUpTo())));
+            }
+        }
+        return new ArrayList<>(byReader.values());
+    }
+
+    /**
+     * @return aktuelle Zählerstände
+     */
+    public Stats stats() {
+        return new Stats(acknowledgements.get(), rowsWritten.get(), flushes.get(), pending.size());
+    }
+
+    /**
+     * Schreibt alle gesammelten Stände und meldet die vorgerückten den Absendern.
+     */
+    public void flush() {
+        Map<ReadReceipt.Key, Mark> batch = new HashMap<>();
+        for (ReadReceipt.Key key : pending.keySet()) {
+            Mark mark = pending.remove(key);
+            if (mark != null) {
+                batch.put(key, mark);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Receipt> advanced;
+        try {
+            advanced = transactionTemplate.execute(status -> write(batch));
+        } catch (RuntimeException e) {
+            log.warn("Speichern von {} Bestätigungen fehlgeschlagen, neuer Versuch im nächsten Intervall", batch.size(), e);
+            batch.forEach((key, mark) -> pending.merge(key, mark, Mark::max));
+            return;
+        }
+        batch.keySet().forEach(key -> readYourWrites.written(key.getConversationId()));
+        for (Receipt receipt : advanced) {
+            try {
+                simpMessagingTemplate.convertAndSendToUser(receipt.receiverName(), "/private", receipt);
+            } catch (RuntimeException e) {
+                log.warn("Bestätigung an {} konnte nicht zugestellt werden", receipt.receiverName(), e);
+            }
+        }
+    }
+
+    private List<Receipt> write(Map<ReadReceipt.Key, Mark> batch) {
+        Map<ReadReceipt.Key, ReadReceipt> stored = new HashMap<>();
+        for (ReadReceipt receipt : readReceiptRepository.findAllById(batch.keySet())) {
+            stored.put(receipt.getId(), receipt);
+        }
+
+        List<ReadReceipt> changed = new ArrayList<>();
+        List<Receipt> advanced = new ArrayList<>();
+        batch.forEach((key, mark) -> {
+            ReadReceipt row = stored.computeIfAbsent(key, k -> new ReadReceipt(k.getConversationId(), k.getReader()));
+            if (mark.deliveredUpTo() <= row.getDeliveredUpTo() && mark.readUpTo() <= row.getReadUpTo()) {
+                return;
+            }
+            row.setDeliveredUpTo(Math.max(row.getDeliveredUpTo(), mark.deliveredUpTo()));
+            row.setReadUpTo(Math.max(row.getReadUpTo(), mark.readUpTo()));
+            changed.add(row);
+            advanced.add(new Receipt(Status.RECEIPT, key.getReader(), mark.peer(), row.getDeliveredUpTo(), row.getReadUpTo()));
+        });
+        if (!changed.isEmpty()) {
+            readReceiptRepository.saveAll(changed);
+            rowsWritten.addAndGet(changed.size());
+            flushes.incrementAndGet();
+        }
+        return advanced;
+    }
+}
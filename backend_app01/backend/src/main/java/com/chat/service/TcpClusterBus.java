@@ -0,0 +1,383 @@
+package com.chat.service;
+
+import com.chat.model.ClusterFrame;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * {@link ClusterBus} über direkte TCP-Verbindungen zwischen den Knoten.
+ *
+ * <p>Jeder Knoten lauscht auf {@code chat.cluster.bind-address}:{@code chat.cluster.port} (Standard
+ * nur Loopback) und baut zu jedem Eintrag in
+ * {@code chat.cluster.peers} eine ausgehende Verbindung auf. Nachrichten werden pro Peer in eine
+ * begrenzte Warteschlange gestellt und von einem eigenen Thread gesendet; ist die Warteschlange
+ * voll oder der Peer nicht erreichbar, wird die Nachricht verworfen statt den Sender zu blockieren.</p>
+ *
+ * <p>Jede Verbindung beginnt mit einem gegenseitigen Challenge-Response über das gemeinsame Geheimnis
+ * {@code chat.cluster.secret} (HMAC-SHA256 über beide Zufallswerte). Erst danach werden Frames
+ * gelesen; Verbindungen ohne gültige Antwort werden geschlossen. Die Frames selbst sind nicht
+ * verschlüsselt, das Cluster-Netz muss also vertrauenswürdig sein oder getunnelt werden.</p>
+ *
+ * <p>Frame-Format: {@code origin, destination, contentType} (jeweils {@code writeUTF}),
+ * danach Länge und Inhalt der Nutzdaten.</p>
+ *
+ * <p>Wird nur mit {@code chat.cluster.mode=tcp} aktiviert und benötigt keine externe Infrastruktur.</p>
+ */
+@Service
+@ConditionalOnProperty(name = "chat.cluster.mode", havingValue = "tcp")
+public class TcpClusterBus implements ClusterBus {
+
+    private static final Logger log = LoggerFactory.getLogger(TcpClusterBus.class);
+
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final int NONCE_BYTES = 32;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String nodeId;
+    private final InetAddress bindAddress;
+    private final int port;
+    private final SecretKeySpec secret;
+    private final List<InetSocketAddress> peers;
+    private final int queueCapacity;
+    private final List<Consumer<ClusterFrame>> listeners = new CopyOnWriteArrayList<>();
+    private final List<PeerLink> links = new ArrayList<>();
+    private final List<Socket> inbound = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running;
+    private ServerSocket server;
+
+    public TcpClusterBus(@Value("${chat.cluster.node-id:}") String nodeId,
+                         @Value("${chat.cluster.bind-address:127.0.0.1}") String bindAddress,
+                         @Value("${chat.cluster.port:7601}") int port,
+                         @Value("${chat.cluster.secret:}") String secret,
+                         @Value("${chat.cluster.peers:}") List<String> peers,
+                         @Value("${chat.cluster.queue-capacity:10000}") int queueCapacity) throws IOException {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("chat.cluster.secret must be set when chat.cluster.mode=tcp");
+        }
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.bindAddress = InetAddress.getByName(bindAddress);
+        this.port = port;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.peers = peers.stream()
+                .filter(p -> !p.isBlank())
+                .map(TcpClusterBus::parseAddress)
+                .toList();
+        this.queueCapacity = queueCapacity;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        running = true;
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(bindAddress, port));
+        Thread.ofPlatform().daemon().name("cluster-accept").start(this::acceptLoop);
+
+        for (InetSocketAddress peer : peers) {
+            PeerLink link = new PeerLink(peer);
+            links.add(link);
+            link.thread.start();
+        }
+        log.info("Cluster-Knoten {} lauscht auf {}, Peers: {}", nodeId, server.getLocalSocketAddress(), peers);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeQuietly(server);
+        links.forEach(PeerLink::close);
+        inbound.forEach(TcpClusterBus::closeQuietly);
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(ClusterFrame frame) {
+        for (PeerLink link : links) {
+            if (!link.queue.offer(frame)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    @Override
+    public void onReceive(Consumer<ClusterFrame> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return Anzahl der Nachrichten, die wegen voller Warteschlangen verworfen wurden
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return Anzahl der eingehenden Verbindungen, die den Challenge-Response nicht bestanden haben
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+                Thread.ofVirtual().name("cluster-read").start(() -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Fehler beim Annehmen einer Cluster-Verbindung", e);
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            if (!acceptHandshake(socket, in)) {
+                rejected.increment();
+                log.warn("Cluster-Verbindung von {} abgelehnt: ungültige Authentifizierung", socket.getRemoteSocketAddress());
+                return;
+            }
+            while (running) {
+                ClusterFrame frame = read(in);
+                if (!nodeId.equals(frame.origin())) {
+                    for (Consumer<ClusterFrame> listener : listeners) {
+                        // Ein fehlerhafter Empfänger darf weder die anderen noch die Verbindung treffen
+                        try {
+                            listener.accept(frame);
+                        } catch (RuntimeException e) {
+                            log.warn("Cluster-Nachricht von {} an {} nicht verarbeitet", frame.origin(),
+                                    frame.destination(), e);
+                        }
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            // Peer hat die Verbindung geschlossen
+        } catch (IOException e) {
+            if (running) {
+                log.warn("Cluster-Verbindung von {} unterbrochen", socket.getRemoteSocketAddress(), e);
+            }
+        } finally {
+            inbound.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Serverseite des Challenge-Response: sendet einen Zufallswert, prüft die Antwort des Peers und
+     * beweist danach seinerseits die Kenntnis des Geheimnisses.
+     *
+     * @return {@code true}, wenn der Peer das Geheimnis kennt
+     */
+    private boolean acceptHandshake(Socket socket, DataInputStream in) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        byte[] serverNonce = nonce();
+        out.write(serverNonce);
+        out.flush();
+
+        byte[] clientNonce = new byte[NONCE_BYTES];
+        in.readFully(clientNonce);
+        byte[] proof = new byte[32];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, hmac("client", serverNonce, clientNonce))) {
+            return false;
+        }
+        out.write(hmac("server", clientNonce, serverNonce));
+        out.flush();
+        socket.setSoTimeout(0);
+        return true;
+    }
+
+    /**
+     * Clientseite des Challenge-Response, siehe {@link #acceptHandshake(Socket, DataInputStream)}.
+     *
+     * @throws IOException wenn der Peer das Geheimnis nicht kennt oder nicht antwortet
+     */
+    private void connectHandshake(Socket socket, DataOutputStream out) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] serverNonce = new byte[NONCE_BYTES];
+        in.readFully(serverNonce);
+        byte[] clientNonce = nonce();
+        out.write(clientNonce);
+        out.write(hmac("client", serverNonce, clientNonce));
+        out.flush();
+
+        byte[] proof = new byte[32];
+        in.readFully(proof);
+        if (!MessageDigest.isEqual(proof, hmac("server", clientNonce, serverNonce))) {
+            throw new IOException("Peer failed cluster authentication");
+        }
+        socket.setSoTimeout(0);
+    }
+
+    private byte[] hmac(String role, byte[] first, byte[] second) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secret);
+            mac.update(role.getBytes(StandardCharsets.UTF_8));
+            mac.update(first);
+            return mac.doFinal(second);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] nonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    private static ClusterFrame read(DataInputStream in) throws IOException {
+        String origin = in.readUTF();
+        String destination = in.readUTF();
+        String contentType = in.readUTF();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new ClusterFrame(origin, destination, contentType.isEmpty() ? null : contentType, payload);
+    }
+
+    private static void write(DataOutputStream out, ClusterFrame frame) throws IOException {
+        out.writeUTF(frame.origin());
+        out.writeUTF(frame.destination());
+        out.writeUTF(frame.contentType() == null ? "" : frame.contentType());
+        out.writeInt(frame.payload().length);
+        out.write(frame.payload());
+    }
+
+    private static InetSocketAddress parseAddress(String value) {
+        String trimmed = value.trim();
+        int colon = trimmed.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Invalid cluster peer " + value);
+        }
+        return InetSocketAddress.createUnresolved(trimmed.substring(0, colon),
+                Integer.parseInt(trimmed.substring(colon + 1)));
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // beim Herunterfahren ohne Bedeutung
+        }
+    }
+
+    /**
+     * Ausgehende Verbindung zu einem Peer mit eigener Warteschlange und Sende-Thread.
+     */
+    private final class PeerLink {
+        private final InetSocketAddress address;
+        private final BlockingQueue<ClusterFrame> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread thread;
+        private volatile Socket socket;
+
+        PeerLink(InetSocketAddress address) {
+            this.address = address;
+            this.thread = Thread.ofPlatform().daemon().name("cluster-send-" + address).unstarted(this::sendLoop);
+        }
+
+        private void sendLoop() {
+            List<ClusterFrame> batch = new ArrayList<>();
+            while (running) {
+                try (Socket s = new Socket(address.getHostString(), address.getPort())) {
+                    s.setTcpNoDelay(true);
+                    socket = s;
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+                    connectHandshake(s, out);
+                    log.info("Cluster-Verbindung zu {} hergestellt", address);
+                    while (running) {
+                        ClusterFrame first = queue.poll(RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                        queue.drainTo(batch);
+                        for (ClusterFrame frame : batch) {
+                            write(out, frame);
+                        }
+                        batch.clear();
+                        out.flush();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException e) {
+                    if (!running) {
+                        return;
+                    }
+                    dropped.add(batch.size());
+                    batch.clear();
+                    log.debug("Peer {} nicht erreichbar: {}", address, e.getMessage());
+                    // Solange der Peer fehlt, sollen sich keine veralteten Nachrichten ansammeln
+                    int pending = queue.size();
+                    queue.clear();
+                    dropped.add(pending);
+                    try {
+                        Thread.sleep(RECONNECT_DELAY_MILLIS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        void close() {
+            thread.interrupt();
+            closeQuietly(socket);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.chat.service;
+
+import com.chat.entity.Users;
+import com.chat.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-Through-Cache für Benutzer, adressiert über Benutzername und E-Mail.
+ *
+ * <p>Gefundene Benutzer werden {@code ttlMillis} lang gehalten. Nicht gefundene Namen werden nicht
+ * zwischengespeichert: Ein Benutzer, den ein anderer Knoten gerade angelegt hat, muss sich sofort
+ * anmelden und gefunden werden können. Schreibzugriffe über den {@link UserService} aktualisieren
+ * bzw. verwerfen die Einträge sofort.</p>
+ *
+ * <p>Zusätzlich enthält ein {@link BloomFilter} alle auf diesem Knoten bekannten Benutzernamen und
+ * E-Mails. Er wird beim Start aus der Datenbank befüllt und nur bei der Registrierung befragt
+ * ({@link #isUsernameTaken}, {@link #isEmailTaken}): „sicher nicht vorhanden“ spart dort die Abfrage.
+ * Benutzer, die ein anderer Knoten anlegt, kennt der Filter nicht; in diesem Fall greift beim
+ * Speichern die Eindeutigkeitsbedingung der Datenbank. Lesende Zugriffe fragen bei einem
+ * Cache-Fehlschlag immer die Datenbank.</p>
+ */
+@Service
+public class UserCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UserCache.class);
+
+    private static final String USERNAME = "u:";
+    private static final String EMAIL = "e:";
+
+    /**
+     * Zählerstände des Caches.
+     */
+    public record Stats(long hits, long filterRejections, long misses,
+                        int entries, long filterBits, boolean filterReady) {
+    }
+
+    private record Entry(Users user, long expiresAt) {
+    }
+
+    private final UserRepository userRepository;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final BloomFilter filter;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder filterRejections = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile boolean filterReady;
+
+    public UserCache(UserRepository userRepository,
+                     @Value("${chat.users.cache.ttl-ms:60000}") long ttlMillis,
+                     @Value("${chat.users.cache.max-entries:10000}") int maxEntries,
+                     @Value("${chat.users.filter.expected-users:100000}") long expectedUsers,
+                     @Value("${chat.users.filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        // Benutzername und E-Mail werden getrennt eingetragen
+        this.filter = new BloomFilter(2 * expectedUsers, falsePositiveRate);
+    }
+
+    /**
+     * Befüllt den Bloom-Filter mit allen vorhandenen Benutzernamen und E-Mails. Bis dahin
+     * beantwortet er keine Anfragen.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFilter() {
+        List<String> usernames = userRepository.findAllUsernames();
+        usernames.forEach(name -> filter.put(USERNAME + name));
+        userRepository.findAllEmails().forEach(email -> filter.put(EMAIL + email));
+        filterReady = true;
+        log.info("Bloom-Filter mit {} Benutzern befüllt ({} Bits)", usernames.size(), filter.bitCount());
+    }
+
+    /**
+     * @param username der Benutzername
+     * @return der Benutzer oder {@code null}, falls nicht vorhanden
+     */
+    public Users findByUsername(String username) {
+        return find(USERNAME, username, userRepository::findByUsername);
+    }
+
+    /**
+     * @param email die E-Mail-Adresse
+     * @return der Benutzer oder {@code null}, falls nicht vorhanden
+     */
+    public Users findByEmail(String email) {
+        return find(EMAIL, email, userRepository::findByEmail);
+    }
+
+    /**
+     * Prüft bei der Registrierung, ob ein Benutzername vergeben ist. Kennt der Bloom-Filter den Namen
+     * sicher nicht, entfällt die Datenbankabfrage.
+     *
+     * @param username der gewünschte Benutzername
+     * @return ob der Name bereits vergeben ist, soweit dieser Knoten es weiß
+     */
+    public boolean isUsernameTaken(String username) {
+        return isTaken(USERNAME, username, userRepository::findByUsername);
+    }
+
+    /**
+     * Wie {@link #isUsernameTaken(String)} für E-Mail-Adressen.
+     *
+     * @param email die gewünschte E-Mail-Adresse
+     * @return ob die Adresse bereits vergeben ist, soweit dieser Knoten es weiß
+     */
+    public boolean isEmailTaken(String email) {
+        return isTaken(EMAIL, email, userRepository::findByEmail);
+    }
+
+    /**
+     * Trägt einen gerade gespeicherten Benutzer ein.
+     *
+     * @param user der gespeicherte Benutzer
+     */
+    public void put(Users user) {
+        filter.put(USERNAME + user.getUsername());
+        filter.put(EMAIL + user.getEmail());
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        entries.put(USERNAME + user.getUsername(), new Entry(user, expiresAt));
+        entries.put(EMAIL + user.getEmail(), new Entry(user, expiresAt));
+        trim();
+    }
+
+    /**
+     * Verwirft die Einträge eines Benutzers, z. B. nachdem sich sein Passwort-Hash geändert hat.
+     *
+     * @param user der geänderte Benutzer
+     */
+    public void invalidate(Users user) {
+        entries.remove(USERNAME + user.getUsername());
+        entries.remove(EMAIL + user.getEmail());
+    }
+
+    /**
+     * @return aktuelle Zählerstände
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), filterRejections.sum(), misses.sum(),
+                entries.size(), filter.bitCount(), filterReady);
+    }
+
+    private boolean isTaken(String prefix, String value, Function<String, Users> loader) {
+        if (filterReady && !filter.mightContain(prefix + value)) {
+            filterRejections.increment();
+            return false;
+        }
+        return find(prefix, value, loader) != null;
+    }
+
+    private Users find(String prefix, String value, Function<String, Users> loader) {
+        if (value == null) {
+            return null;
+        }
+        String key = prefix + value;
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt() > now) {
+            hits.increment();
+            return entry.user();
+        }
+
+        misses.increment();
+        Users user = loader.apply(value);
+        if (user != null) {
+            entries.put(key, new Entry(user, now + ttlMillis));
+            trim();
+        }
+        return user;
+    }
+
+    private void trim() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> e.expiresAt() <= now);
+        // Reicht das nicht, beliebige Einträge verwerfen – sie werden bei Bedarf neu geladen
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > maxEntries * 9 / 10 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
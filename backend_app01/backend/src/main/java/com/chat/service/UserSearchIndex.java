@@ -0,0 +1,255 @@
+package com.chat.service;
+
+import com.chat.entity.Users;
+import com.chat.model.UserSuggestion;
+import com.chat.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-Memory-Präfixindex über Benutzernamen und Anzeigenamen für die Typeahead-Suche.
+ *
+ * <p>Jeder Benutzer erzeugt einen Suchbegriff für den Benutzernamen und einen für jedes Wort des
+ * Anzeigenamens, jeweils in Kleinbuchstaben. Die Begriffe liegen in einem sortierten Array; eine
+ * Präfixsuche ist eine binäre Suche mit anschließendem Vorwärtslesen. Sortierte Arrays brauchen
+ * deutlich weniger Speicher als ein Trie mit einem Objekt pro Knoten.</p>
+ *
+ * <p>Neue Benutzer landen zunächst in einem kleinen, sortierten Delta. Überschreitet es
+ * {@code mergeThreshold} Einträge, wird es mit dem Array zu einem neuen Snapshot zusammengeführt.
+ * Leser arbeiten ohne Sperre auf dem jeweils aktuellen Snapshot.</p>
+ *
+ * <p>Der Index wird beim Start vollständig aus der Datenbank aufgebaut und bei Registrierungen auf
+ * diesem Knoten ergänzt. Benutzer, die auf anderen Knoten angelegt werden, erscheinen erst nach dem
+ * nächsten Neustart.</p>
+ */
+@Service
+public class UserSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Unveränderlicher Stand des Index. {@code terms[i]} verweist über {@code refs[i]} auf einen Benutzer.
+     */
+    private record Snapshot(String[] terms, int[] refs, UserSuggestion[] users) {
+        static final Snapshot EMPTY = new Snapshot(new String[0], new int[0], new UserSuggestion[0]);
+    }
+
+    private final UserRepository userRepository;
+    private final int mergeThreshold;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    /**
+     * Noch nicht zusammengeführte Begriffe; der Schlüssel enthält die ID, damit gleiche Begriffe
+     * verschiedener Benutzer nebeneinander bestehen.
+     */
+    private final ConcurrentSkipListMap<String, UserSuggestion> delta = new ConcurrentSkipListMap<>();
+
+    public UserSearchIndex(UserRepository userRepository,
+                           @Value("${chat.users.index.merge-threshold:1024}") int mergeThreshold) {
+        this.userRepository = userRepository;
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    /**
+     * Baut den Index beim Start aus allen vorhandenen Benutzern auf.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        List<UserSuggestion> users = userRepository.findAllSuggestions();
+        rebuild(users);
+        log.info("Typeahead-Index mit {} Benutzern und {} Begriffen in {} ms aufgebaut",
+                users.size(), snapshot.terms().length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Ersetzt das sortierte Array durch die angegebenen Benutzer. Das Delta bleibt erhalten, damit
+     * während des Ladens registrierte Benutzer nicht verloren gehen.
+     *
+     * @param users alle Benutzer
+     */
+    public synchronized void rebuild(Collection<UserSuggestion> users) {
+        snapshot = build(users.toArray(UserSuggestion[]::new));
+    }
+
+    /**
+     * Nimmt einen neu registrierten Benutzer in den Index auf.
+     *
+     * @param user der gespeicherte Benutzer
+     */
+    public void add(Users user) {
+        UserSuggestion suggestion = new UserSuggestion(user.getId(), user.getUsername(), user.getName());
+        for (String term : termsOf(suggestion)) {
+            delta.put(term + '\u0000' + user.getId(), suggestion);
+        }
+        if (delta.size() >= mergeThreshold) {
+            merge();
+        }
+    }
+
+    /**
+     * Sucht Benutzer, deren Benutzername oder ein Wort des Anzeigenamens mit {@code prefix} beginnt.
+     *
+     * @param prefix der eingegebene Anfang, Groß-/Kleinschreibung egal
+     * @param limit  maximale Anzahl Treffer
+     * @return höchstens {@code limit} Benutzer, nach Suchbegriff sortiert
+     */
+    public List<UserSuggestion> search(String prefix, int limit) {
+        String p = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+        if (p.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Snapshot s = snapshot;
+        List<UserSuggestion> result = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+
+        int i = lowerBound(s.terms(), p);
+        var pending = delta.tailMap(p).entrySet().iterator();
+        Map.Entry<String, UserSuggestion> next = pending.hasNext() ? pending.next() : null;
+
+        // Array und Delta sind beide sortiert und werden wie beim Merge-Sort gemeinsam gelesen
+        while (result.size() < limit) {
+            boolean arrayHas = i < s.terms().length && s.terms()[i].startsWith(p);
+            boolean deltaHas = next != null && next.getKey().startsWith(p);
+            if (!arrayHas && !deltaHas) {
+                break;
+            }
+            UserSuggestion candidate;
+            if (arrayHas && (!deltaHas || s.terms()[i].compareTo(next.getKey()) <= 0)) {
+                candidate = s.users()[s.refs()[i++]];
+            } else {
+                candidate = next.getValue();
+                next = pending.hasNext() ? pending.next() : null;
+            }
+            if (seen.add(candidate.id())) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Anzahl der Suchbegriffe im Array und im Delta
+     */
+    public int size() {
+        return snapshot.terms().length + delta.size();
+    }
+
+    /**
+     * Führt das Delta in linearer Zeit mit dem sortierten Array zusammen, ohne neu zu sortieren.
+     */
+    private synchronized void merge() {
+        if (delta.size() < mergeThreshold) {
+            return;
+        }
+        Snapshot s = snapshot;
+        List<Map.Entry<String, UserSuggestion>> pending = new ArrayList<>(delta.entrySet());
+
+        Map<Long, Integer> newRefs = new HashMap<>();
+        List<UserSuggestion> users = new ArrayList<>(s.users().length + pending.size());
+        users.addAll(Arrays.asList(s.users()));
+        int[] pendingRefs = new int[pending.size()];
+        for (int j = 0; j < pending.size(); j++) {
+            UserSuggestion u = pending.get(j).getValue();
+            pendingRefs[j] = newRefs.computeIfAbsent(u.id(), id -> {
+                users.add(u);
+                return users.size() - 1;
+            });
+        }
+
+        int total = s.terms().length + pending.size();
+        String[] terms = new String[total];
+        int[] refs = new int[total];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < total; k++) {
+            String pendingTerm = j < pending.size() ? termOf(pending.get(j).getKey()) : null;
+            if (pendingTerm == null || (i < s.terms().length && s.terms()[i].compareTo(pendingTerm) <= 0)) {
+                terms[k] = s.terms()[i];
+                refs[k] = s.refs()[i++];
+            } else {
+                terms[k] = pendingTerm;
+                refs[k] = pendingRefs[j++];
+            }
+        }
+        snapshot = new Snapshot(terms, refs, users.toArray(UserSuggestion[]::new));
+        // Nur die übernommenen Einträge entfernen; parallel hinzugefügte bleiben im Delta
+        pending.forEach(e -> delta.remove(e.getKey()));
+    }
+
+    private static String termOf(String deltaKey) {
+        return deltaKey.substring(0, deltaKey.lastIndexOf('\u0000'));
+    }
+
+    private record TermRef(String term, int ref) {
+    }
+
+    private static Snapshot build(UserSuggestion[] users) {
+        List<TermRef> entries = new ArrayList<>(users.length * 3);
+        for (int ref = 0; ref < users.length; ref++) {
+            for (String term : termsOf(users[ref])) {
+                entries.add(new TermRef(term, ref));
+            }
+        }
+        entries.sort(Comparator.comparing(TermRef::term));
+
+        String[] terms = new String[entries.size()];
+        int[] refs = new int[entries.size()];
+        for (int k = 0; k < terms.length; k++) {
+            terms[k] = entries.get(k).term();
+            refs[k] = entries.get(k).ref();
+        }
+        return new Snapshot(terms, refs, users);
+    }
+
+    private static String[] termsOf(UserSuggestion user) {
+        List<String> terms = new ArrayList<>(3);
+        if (user.username() != null && !user.username().isBlank()) {
+            // toLowerCase liefert dieselbe Instanz, wenn sich nichts ändert – kein zusätzlicher String
+            terms.add(user.username().toLowerCase(Locale.ROOT));
+        }
+        if (user.name() != null) {
+            for (String word : WHITESPACE.split(user.name().trim())) {
+                String term = word.toLowerCase(Locale.ROOT);
+                if (!term.isEmpty() && !terms.contains(term)) {
+                    terms.add(term);
+                }
+            }
+        }
+        return terms.toArray(String[]::new);
+    }
+
+    private static int lowerBound(String[] terms, String key) {
+        int lo = 0;
+        int hi = terms.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -1,11 +1,16 @@
 package com.chat.service;
 
+import com.chat.entity.ChatMessage;
 import com.chat.entity.Users;
+import com.chat.model.UserSuggestion;
 import com.chat.repository.UserRepository;
 import com.chat.configuration.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * Service-Klasse für Benutzerverwaltung.
  * 
@@ -18,6 +23,15 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
     /**
      * Registriert einen neuen Benutzer.
      * 
@@ -27,31 +41,65 @@ public class UserService {
      * @param username der gewünschte Benutzername
      * @param name     der vollständige Name des Benutzers
      * @param email    die E-Mail-Adresse des Benutzers
-     * @param password das Passwort des Benutzers
+     * @param password das Passwort des Benutzers, wird nur als Hash gespeichert
      * @return das gespeicherte {@link Users}-Objekt
-     * @throws RuntimeException wenn Benutzername oder E-Mail bereits vergeben sind
+     * @throws RuntimeException wenn der Benutzername ungültig ist (leer oder mit
+     *                          {@link ChatMessage#KEY_SEPARATOR}) oder Benutzername oder E-Mail bereits
+     *                          vergeben sind
+     * @throws PasswordHasher.SaturatedException wenn der Hash-Pool ausgelastet ist
      */
     public Users signUpUser(String username, String name, String email, String password) {
-        if (userRepository.findByUsername(username) != null) {
+        if (!ChatMessage.isValidParticipant(username)) {
+            throw new RuntimeException("Username must not be blank or contain '" + ChatMessage.KEY_SEPARATOR + "'");
+        }
+        // Neue Namen beantwortet der Bloom-Filter im Cache meist ohne Datenbankabfrage
+        if (userCache.isUsernameTaken(username)) {
             throw new RuntimeException("Username already exists");
         }
-        if (userRepository.findByEmail(email) != null) {
+        if (userCache.isEmailTaken(email)) {
             throw new RuntimeException("Email already exists");
         }
 
-        Users newUser = new Users(username, name, email, password);
+        Users newUser = new Users(username, name, email, passwordHasher.hash(password));
 
-        return userRepository.save(newUser);
+        Users saved;
+        try {
+            saved = userRepository.save(newUser);
+        } catch (DataIntegrityViolationException e) {
+            // Gleichzeitig oder auf einem anderen Knoten angelegt
+            throw new RuntimeException("Username or email already exists");
+        }
+        userCache.put(saved);
+        userSearchIndex.add(saved);
+        return saved;
     }
 
+    /**
+     * Prüft Benutzername und Passwort.
+     *
+     * <p>Ist das gespeicherte Passwort noch Klartext oder mit einem veralteten Kostenfaktor
+     * gehasht, wird es nach erfolgreicher Prüfung im Hintergrund durch einen neuen Hash ersetzt.</p>
+     *
+     * @param username der Benutzername
+     * @param password das eingegebene Passwort
+     * @return der angemeldete Benutzer
+     * @throws RuntimeException wenn der Benutzer nicht existiert oder das Passwort falsch ist
+     * @throws PasswordHasher.SaturatedException wenn der Hash-Pool ausgelastet ist
+     */
     public Users authenticate(String username, String password) {
-        Users user = userRepository.findByUsername(username);
+        Users user = userCache.findByUsername(username);
         if (user == null) {
             throw new RuntimeException("User not found");
         }
-        if (!user.getPassword().equals(password)) {
+        if (!passwordHasher.matches(password, user.getPassword())) {
             throw new RuntimeException("Invalid password");
         }
+        if (passwordHasher.needsUpgrade(user.getPassword())) {
+            passwordHasher.rehashLater(password, hash -> {
+                userRepository.updatePassword(user.getId(), hash);
+                userCache.invalidate(user);
+            });
+        }
         return user;
     }
 
@@ -62,10 +110,21 @@ public class UserService {
      * @return das gefundene {@link Users}-Objekt oder {@code null}, falls nicht gefunden
      */
     public Users findByUsername(String username) {
-        return userRepository.findByUsername(username);
+        return userCache.findByUsername(username);
     }
 
 
+    /**
+     * Sucht Benutzer für die Typeahead-Suche.
+     *
+     * @param prefix Anfang des Benutzernamens oder eines Wortes im Anzeigenamen
+     * @param limit  maximale Anzahl Treffer
+     * @return die Treffer ohne E-Mail und Passwort
+     */
+    public List<UserSuggestion> suggest(String prefix, int limit) {
+        return userSearchIndex.search(prefix, limit);
+    }
+
     public String authenticateAndGenerateToken(String username, String password) {
         Users user = authenticate(username, password);
         return JwtUtil.generateToken(user.getUsername());
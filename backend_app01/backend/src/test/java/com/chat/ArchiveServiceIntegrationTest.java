@@ -0,0 +1,119 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.HistoryPage;
+import com.chat.model.ResyncBatch;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.service.ArchiveService;
+import com.chat.service.ChatHistoryService;
+
+/**
+ * Prüft Archivierung und Aufbewahrungsfrist an einer laufenden Instanz. Der periodische Lauf ist so
+ * langsam eingestellt, dass der Test ihn mit {@link ArchiveService#runOnce()} selbst auslöst.
+ */
+public class ArchiveServiceIntegrationTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static ChatTestServer server;
+    private static ChatMessageRepository repository;
+    private static ArchiveService archiveService;
+    private static ChatHistoryService history;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("archive", "chat.archive.interval-ms=3600000", "chat.archive.hot-days=30",
+                "chat.archive.retention-days=365", "chat.archive.block-messages=4");
+        repository = server.context().getBean(ChatMessageRepository.class);
+        archiveService = server.context().getBean(ArchiveService.class);
+        history = server.context().getBean(ChatHistoryService.class);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static List<ChatMessage> messages(String sender, String receiver, long timestamp, int count) {
+        List<ChatMessage> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new ChatMessage(sender, receiver, "nachricht " + i, null, null, Status.MESSAGE, timestamp + i));
+        }
+        return list;
+    }
+
+    @Test
+    public void oldMessages_MoveToArchiveAndHistoryReadsAcrossTiers() {
+        long now = System.currentTimeMillis();
+        repository.saveAll(messages("mia", "noah", now - 400 * DAY, 3));
+        repository.saveAll(messages("mia", "noah", now - 40 * DAY, 10));
+        repository.saveAll(messages("mia", "noah", now - 1000, 5));
+        String conversationId = ChatMessage.conversationKey("mia", "noah");
+        ArchiveService.Stats before = archiveService.stats();
+
+        archiveService.runOnce();
+
+        ArchiveService.Stats stats = archiveService.stats();
+        assertEquals(10, stats.archived() - before.archived());
+        assertEquals(3, stats.purged() - before.purged());
+        assertEquals(3, stats.archive().blocks() - before.archive().blocks());
+        assertEquals(5, repository.findLatest(conversationId, PageRequest.of(0, 100)).size());
+
+        List<Long> timestamps = new ArrayList<>();
+        HistoryPage page = history.getConversation("noah", "mia", null, null, 4);
+        timestamps.addAll(0, page.getMessages().stream().map(ChatMessage::getTimestamp).toList());
+        while (page.getBefore() != null) {
+            page = history.getConversation("noah", "mia", page.getBefore(), null, 4);
+            timestamps.addAll(0, page.getMessages().stream().map(ChatMessage::getTimestamp).toList());
+        }
+        assertEquals(15, timestamps.size());
+        assertEquals(now - 40 * DAY, timestamps.get(0));
+        assertEquals(timestamps.stream().sorted().toList(), timestamps);
+
+        // Vorwärts aus dem Archiv über die Grenze in die Datenbank blättern
+        page = history.getConversation("noah", "mia", null, null, 4);
+        while (page.getBefore() != null) {
+            page = history.getConversation("noah", "mia", page.getBefore(), null, 4);
+        }
+        List<Long> forward = new ArrayList<>(page.getMessages().stream().map(ChatMessage::getTimestamp).toList());
+        while (page.getAfter() != null) {
+            page = history.getConversation("noah", "mia", null, page.getAfter(), 4);
+            forward.addAll(page.getMessages().stream().map(ChatMessage::getTimestamp).toList());
+        }
+        assertEquals(timestamps, forward);
+    }
+
+    @Test
+    public void resync_ReadsArchivedMessages() {
+        long now = System.currentTimeMillis();
+        List<ChatMessage> list = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            long timestamp = i <= 6 ? now - 40 * DAY + i : now - 1000 + i;
+            list.add(new ChatMessage("olga", "paul", "nachricht " + i, null, null, Status.MESSAGE, timestamp, (long) i));
+        }
+        repository.saveAll(list);
+
+        archiveService.runOnce();
+
+        List<ResyncBatch> batches = history.resync("paul", Map.of("olga", 2L));
+        assertEquals(1, batches.size());
+        assertTrue(batches.get(0).complete());
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L, 8L),
+                batches.get(0).messages().stream().map(ChatMessage::getSequence).toList());
+    }
+}
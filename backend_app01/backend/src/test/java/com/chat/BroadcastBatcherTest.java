@@ -0,0 +1,63 @@
+package com.chat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.chat.service.BroadcastBatcher;
+
+public class BroadcastBatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private JsonNode sentBatch(int index) throws Exception {
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(template, atLeast(index + 1)).send(eq("/chatroom/public"), captor.capture());
+        return objectMapper.readTree((byte[]) captor.getAllValues().get(index).getPayload());
+    }
+
+    @Test
+    public void flush_SendsCollectedMessagesAsOneArrayInOrder() throws Exception {
+        BroadcastBatcher batcher = new BroadcastBatcher(template, objectMapper, true, 1000, 50);
+        for (int i = 0; i < 3; i++) {
+            batcher.publish("/chatroom/public", ChatTestServer.message("alice", null, "m" + i));
+        }
+        verify(template, never()).send(any(String.class), any());
+
+        batcher.flush();
+
+        JsonNode batch = sentBatch(0);
+        assertTrue(batch.isArray());
+        assertEquals(3, batch.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("m" + i, batch.get(i).get("message").asText());
+        }
+
+        batcher.flush();
+        verify(template, times(1)).send(any(String.class), any());
+    }
+
+    @Test
+    public void publish_SendsImmediatelyWhenBatchIsFull() throws Exception {
+        BroadcastBatcher batcher = new BroadcastBatcher(template, objectMapper, true, 1000, 2);
+
+        batcher.publish("/chatroom/public", ChatTestServer.message("alice", null, "a"));
+        batcher.publish("/chatroom/public", ChatTestServer.message("bob", null, "b"));
+        batcher.publish("/chatroom/public", ChatTestServer.message("carol", null, "c"));
+
+        assertEquals(2, sentBatch(0).size());
+        BroadcastBatcher.Stats stats = batcher.stats();
+        assertEquals(3, stats.messages());
+        assertEquals(1, stats.batches());
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.http.ResponseEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.servlet.http.HttpSession;
 
@@ -14,6 +15,7 @@ import static org.mockito.Mockito.*;
 import com.chat.controller.ChatController;
 import com.chat.entity.Users;
 import com.chat.model.LoginRequest;
+import com.chat.model.UserSuggestion;
 import com.chat.repository.UserRepository;
 import com.chat.service.UserService;
 
@@ -60,9 +62,20 @@ public class ChatControllerTest {
 
         when(userService.findByUsername(username)).thenReturn(null);
 
-        ResponseEntity<Users> response = chatController.findByUsername(username);
+        ResponseEntity<UserSuggestion> response = chatController.findByUsername(username);
 
         assertEquals(404, response.getStatusCodeValue());
         assertNull(response.getBody());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findByUsername_ExposesNoPassword() throws Exception {
+        Users user = new Users("alice", "Alice", "alice@example.com", "geheim");
+        when(userService.findByUsername("alice")).thenReturn(user);
+
+        ResponseEntity<UserSuggestion> response = chatController.findByUsername("alice");
+
+        assertEquals("alice", response.getBody().username());
+        assertFalse(new ObjectMapper().writeValueAsString(user).contains("geheim"));
+    }
+}
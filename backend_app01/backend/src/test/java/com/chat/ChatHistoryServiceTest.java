@@ -0,0 +1,166 @@
+package com.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.chat.configuration.ReadYourWrites;
+import com.chat.entity.ChatMessage;
+import com.chat.model.HistoryPage;
+import com.chat.model.ResyncBatch;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.service.ChatHistoryService;
+import com.chat.service.ConversationCache;
+import com.chat.service.MessageArchive;
+
+public class ChatHistoryServiceTest {
+
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final ConversationCache conversationCache = new ConversationCache(chatMessageRepository, 5, 1_000_000);
+    private final ChatHistoryService chatHistoryService = new ChatHistoryService(chatMessageRepository, conversationCache,
+            mock(MessageArchive.class), new ReadYourWrites(null, false, 0),
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), 2, 3, 4);
+
+    private static ChatMessage message(long id) {
+        ChatMessage m = new ChatMessage("alice", "bob", "msg " + id, null, null, Status.MESSAGE, id * 10);
+        m.setId(id);
+        return m;
+    }
+
+    /** Nachrichten mit absteigenden IDs, wie sie die Datenbank für "neueste zuerst" liefert. */
+    private static List<ChatMessage> descending(long from, long to) {
+        List<ChatMessage> list = new ArrayList<>();
+        for (long id = from; id >= to; id--) {
+            list.add(message(id));
+        }
+        return list;
+    }
+
+    @Test
+    public void conversationKey_IsOrderIndependent() {
+        assertEquals(ChatMessage.conversationKey("alice", "bob"), ChatMessage.conversationKey("bob", "alice"));
+        assertEquals(ChatMessage.PUBLIC_CONVERSATION, ChatMessage.conversationKey("alice", null));
+    }
+
+    @Test
+    public void latestPage_ReturnsChronologicalOrderAndBeforeCursor() {
+        when(chatMessageRepository.findLatest(eq("alice:bob"), any(Pageable.class))).thenReturn(descending(10, 8));
+
+        HistoryPage page = chatHistoryService.getConversation("bob", "alice", null, null, null);
+
+        assertEquals(List.of(9L, 10L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertEquals("90_9", page.getBefore());
+        assertNull(page.getAfter());
+    }
+
+    @Test
+    public void beforeCursor_QueriesOlderMessages() {
+        when(chatMessageRepository.findBefore(eq("alice:bob"), eq(90L), eq(9L), any(Pageable.class)))
+                .thenReturn(descending(8, 7));
+
+        HistoryPage page = chatHistoryService.getConversation("alice", "bob", "90_9", null, 5);
+
+        assertEquals(List.of(7L, 8L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertNull(page.getBefore());
+        assertEquals("80_8", page.getAfter());
+        verify(chatMessageRepository).findBefore(eq("alice:bob"), eq(90L), eq(9L),
+                argThat(p -> p.getPageSize() == 4));
+    }
+
+    @Test
+    public void invalidCursor_IsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> chatHistoryService.getConversation("alice", "bob", "abc", null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> chatHistoryService.getConversation("alice", "bob", "1_1", "2_2", null));
+    }
+
+    @Test
+    public void latestPage_IsServedFromCacheAfterFirstRead() {
+        when(chatMessageRepository.findLatest(eq("alice:bob"), any(Pageable.class))).thenReturn(descending(3, 1));
+        chatHistoryService.getConversation("alice", "bob", null, null, 3);
+
+        ChatMessage sent = new ChatMessage("bob", "alice", "neu", null, null, Status.MESSAGE, 1000L);
+        conversationCache.append(sent);
+        HistoryPage page = chatHistoryService.getConversation("alice", "bob", null, null, 3);
+
+        assertEquals(List.of(2L, 3L), page.getMessages().subList(0, 2).stream().map(ChatMessage::getId).toList());
+        assertSame(sent, page.getMessages().get(2));
+        assertEquals("20_2", page.getBefore());
+        verify(chatMessageRepository, times(1)).findLatest(eq("alice:bob"), any(Pageable.class));
+        assertEquals(1, conversationCache.stats().hits());
+        assertEquals(1, conversationCache.stats().misses());
+    }
+
+    @Test
+    public void cache_EvictsLeastRecentlyUsedConversations() {
+        ConversationCache small = new ConversationCache(chatMessageRepository, 5, 600);
+        for (String peer : List.of("bob", "carol", "dave")) {
+            small.append(new ChatMessage("alice", peer, "hallo", null, null, Status.MESSAGE, 1L));
+        }
+
+        assertTrue(small.stats().bytes() <= 600);
+        assertTrue(small.stats().evictions() > 0);
+    }
+
+    @Test
+    public void cache_KeepsNoRingsForEmptyConversations() {
+        for (int i = 0; i < 1_000; i++) {
+            chatHistoryService.getConversation("alice", "peer" + i, null, null, null);
+        }
+
+        assertEquals(0, conversationCache.stats().conversations());
+        assertEquals(0, conversationCache.stats().bytes());
+    }
+
+    private static ChatMessage sequenced(String sender, String receiver, long sequence) {
+        ChatMessage m = new ChatMessage(sender, receiver, "msg " + sequence, null, null, Status.MESSAGE,
+                sequence * 10, sequence);
+        m.setId(sequence);
+        return m;
+    }
+
+    @Test
+    public void resync_IsServedFromCacheWhenItCoversTheGap() {
+        for (long seq = 1; seq <= 5; seq++) {
+            conversationCache.append(sequenced("bob", "alice", seq));
+        }
+
+        List<ResyncBatch> batches = chatHistoryService.resync("alice", Map.of("bob", 2L));
+
+        assertEquals(1, batches.size());
+        assertTrue(batches.get(0).complete());
+        assertEquals(List.of(3L, 4L, 5L), batches.get(0).messages().stream().map(ChatMessage::getSequence).toList());
+        verify(chatMessageRepository, never()).findSequencedAfter(any(), anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void resync_FallsBackToDatabaseAndSharesTheBatchLimit() {
+        when(chatMessageRepository.findSequencedAfter(eq("alice:bob"), eq(10L), any(Pageable.class)))
+                .thenReturn(List.of(sequenced("bob", "alice", 11), sequenced("bob", "alice", 12),
+                        sequenced("bob", "alice", 13)));
+        when(chatMessageRepository.findSequencedAfter(eq(ChatMessage.PUBLIC_CONVERSATION), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(sequenced("carol", null, 1), sequenced("carol", null, 2)));
+        Map<String, Long> request = new LinkedHashMap<>();
+        request.put("bob", 10L);
+        request.put(ChatMessage.PUBLIC_CONVERSATION, 0L);
+
+        List<ResyncBatch> batches = chatHistoryService.resync("alice", request);
+
+        assertTrue(batches.get(0).complete());
+        assertEquals(3, batches.get(0).messages().size());
+        assertFalse(batches.get(1).complete());
+        assertEquals(List.of(1L), batches.get(1).messages().stream().map(ChatMessage::getSequence).toList());
+    }
+}
@@ -0,0 +1,37 @@
+package com.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+
+/**
+ * Prüft, dass die ID-Sequenz nach der Umstellung von {@code IDENTITY} nicht mit den IDs
+ * bestehender Nachrichten kollidiert.
+ */
+public class ChatMessageIdMigrationTest {
+
+    @Test
+    public void restart_MovesSequenceAboveExistingIds() throws Exception {
+        try (ChatTestServer server = ChatTestServer.start("idmigration")) {
+            JdbcTemplate jdbc = new JdbcTemplate(server.context().getBean(DataSource.class));
+            // Zustand nach der Umstellung: Altbestand mit Auto-Increment-IDs, frisch angelegte Sequenz
+            jdbc.update("insert into chat_message (id, sender_name, receiver_name, conversation_id, message, status, timestamp) "
+                    + "values (1000, 'alt', 'neu', 'alt|neu', 'aus der Zeit vor der Sequenz', 'MESSAGE', 1)");
+            jdbc.execute("alter sequence chat_message_seq restart with 1");
+        }
+
+        try (ChatTestServer server = ChatTestServer.start("idmigration")) {
+            ChatMessageRepository messages = server.context().getBean(ChatMessageRepository.class);
+            ChatMessage saved = messages.save(new ChatMessage("alt", "neu", "hallo", null, null, Status.MESSAGE, 2L));
+            assertTrue(saved.getId() > 1000, "Neue ID " + saved.getId() + " kollidiert mit dem Altbestand");
+            assertEquals(2, messages.count());
+        }
+    }
+}
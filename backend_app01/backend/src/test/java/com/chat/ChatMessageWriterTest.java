@@ -0,0 +1,119 @@
+package com.chat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.service.ChatMessageWriter;
+import com.chat.service.ChatMessageWriter.DurabilityMode;
+
+public class ChatMessageWriterTest {
+
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final TransactionTemplate transactionTemplate =
+            new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    private ChatMessageWriter writer;
+
+    @AfterEach
+    public void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    private ChatMessageWriter newWriter(DurabilityMode mode, int batchSize, long flushIntervalMillis, int capacity) {
+        ChatMessageWriter w = new ChatMessageWriter(chatMessageRepository, transactionTemplate,
+                mode, batchSize, flushIntervalMillis, capacity, 10, new SimpleMeterRegistry());
+        w.start();
+        return w;
+    }
+
+    private static ChatMessage message(int i) {
+        return new ChatMessage("alice", "bob", "msg " + i, null, null, Status.MESSAGE, (long) i);
+    }
+
+    @Test
+    public void syncMode_SavesOnCallerThread() {
+        writer = newWriter(DurabilityMode.SYNC, 10, 50, 100);
+        ChatMessage msg = message(1);
+        when(chatMessageRepository.save(msg)).thenReturn(msg);
+
+        CompletableFuture<ChatMessage> result = writer.write(msg);
+
+        assertTrue(result.isDone());
+        verify(chatMessageRepository, times(1)).save(msg);
+        verify(chatMessageRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void asyncMode_FlushesInBatches() throws Exception {
+        writer = newWriter(DurabilityMode.ASYNC, 5, 200, 100);
+        List<CompletableFuture<ChatMessage>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            futures.add(writer.write(message(i)));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        ArgumentCaptor<List<ChatMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatMessageRepository, atLeast(3)).saveAll(captor.capture());
+        int total = captor.getAllValues().stream().mapToInt(List::size).sum();
+        assertEquals(12, total);
+        assertTrue(captor.getAllValues().stream().allMatch(batch -> batch.size() <= 5));
+        verify(chatMessageRepository, never()).save(any());
+    }
+
+    @Test
+    public void shutdown_FlushesPendingMessages() {
+        writer = newWriter(DurabilityMode.ASYNC, 100, 10_000, 100);
+        CompletableFuture<ChatMessage> result = writer.write(message(1));
+
+        writer.shutdown();
+
+        assertTrue(result.isDone());
+        assertEquals(0, writer.pendingCount());
+        verify(chatMessageRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    public void writesRacingShutdown_AreAllCompleted() throws Exception {
+        writer = newWriter(DurabilityMode.ASYNC, 10, 10_000, 100_000);
+        List<CompletableFuture<ChatMessage>> futures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    futures.add(writer.write(message(i)));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Thread.sleep(1);
+        writer.shutdown();
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+
+        assertEquals(8_000, futures.size());
+        assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(0, writer.pendingCount());
+    }
+}
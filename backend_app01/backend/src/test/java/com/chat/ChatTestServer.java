@@ -0,0 +1,133 @@
+package com.chat;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.chat.model.Message;
+import com.chat.model.Status;
+
+/**
+ * Startet eine vollständige Instanz der Anwendung mit H2-In-Memory-Datenbank für Integrationstests
+ * und stellt STOMP-Clients für den Endpunkt {@code /ws} bereit.
+ */
+public class ChatTestServer implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final WebSocketStompClient stompClient;
+
+    private ChatTestServer(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        this.stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    /**
+     * Startet eine Instanz mit eigener Datenbank, eigenem Medienverzeichnis und Suchindex.
+     *
+     * @param name       Name der Instanz (für Datenbank und Verzeichnis)
+     * @param properties zusätzliche Eigenschaften im Format {@code key=value}
+     * @return die gestartete Instanz
+     */
+    public static ChatTestServer start(String name, String... properties) throws IOException {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.show-sql=false",
+                "--spring.devtools.restart.enabled=false",
+                "--chat.media.directory=" + Files.createTempDirectory("media-" + name),
+                "--chat.search.directory=" + Files.createTempDirectory("search-" + name),
+                "--chat.archive.directory=" + Files.createTempDirectory("archive-" + name),
+                "--chat.websocket.require-auth=false"
+        ));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new ChatTestServer(new SpringApplicationBuilder(ChatApplication.class).run(args.toArray(String[]::new)));
+    }
+
+    /**
+     * @return der HTTP-Port der Instanz
+     */
+    public int port() {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    /**
+     * @return der Spring-Kontext der Instanz
+     */
+    public ConfigurableApplicationContext context() {
+        return context;
+    }
+
+    /**
+     * Baut eine STOMP-Sitzung über WebSocket auf.
+     *
+     * @return die verbundene Sitzung
+     */
+    public StompSession connect() throws Exception {
+        return stompClient.connectAsync("ws://localhost:" + port() + "/ws/websocket", new StompSessionHandlerAdapter() {
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    /**
+     * Erstellt einen Handler, der empfangene {@link Message}-Objekte an den Consumer übergibt.
+     */
+    public static StompFrameHandler handler(Consumer<Message> consumer) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Message.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                consumer.accept((Message) payload);
+            }
+        };
+    }
+
+    /**
+     * Erstellt eine Textnachricht.
+     */
+    public static Message message(String sender, String receiver, String text) {
+        Message message = new Message();
+        message.setSenderName(sender);
+        message.setReceiverName(receiver);
+        message.setMessage(text);
+        message.setStatus(Status.MESSAGE);
+        return message;
+    }
+
+    /**
+     * @return ein aktuell freier lokaler TCP-Port
+     */
+    public static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.configuration.ReadYourWrites;
+import com.chat.model.Message;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.repository.ConversationCounterRepository;
+import com.chat.service.ClusterBus;
+import com.chat.service.ConversationCache;
+import com.chat.service.ConversationSequencer;
+import com.chat.service.MessageArchive;
+import com.chat.service.MessageSearchIndex;
+import com.chat.service.TcpClusterBus;
+
+/**
+ * Startet zwei Instanzen im Cluster-Modus {@code tcp} und prüft, dass Broadcasts und private
+ * Nachrichten Sitzungen auf dem jeweils anderen Knoten erreichen.
+ */
+public class ClusterRelayIntegrationTest {
+
+    private static final String SECRET = "test-geheimnis";
+
+    private static ChatTestServer node1;
+    private static ChatTestServer node2;
+
+    @BeforeAll
+    public static void startNodes() throws Exception {
+        int clusterPort1 = ChatTestServer.freePort();
+        int clusterPort2 = ChatTestServer.freePort();
+        node1 = startNode("node1", clusterPort1, clusterPort2);
+        node2 = startNode("node2", clusterPort2, clusterPort1);
+    }
+
+    @AfterAll
+    public static void stopNodes() {
+        if (node1 != null) {
+            node1.close();
+        }
+        if (node2 != null) {
+            node2.close();
+        }
+    }
+
+    @Test
+    public void publicMessage_ReachesSubscriberOnOtherNode() throws Exception {
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        StompSession receiver = node1.connect();
+        receiver.subscribe("/chatroom/public", ChatTestServer.handler(received::add));
+
+        StompSession sender = node2.connect();
+        Message message = ChatTestServer.message("alice", null, "hallo cluster");
+
+        assertEquals("hallo cluster", sendUntilReceived(sender, "/app/message", message, received).getMessage());
+    }
+
+    @Test
+    public void privateMessage_ReachesUserOnOtherNode() throws Exception {
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        StompSession receiver = node2.connect();
+        receiver.subscribe("/user/bob/private", ChatTestServer.handler(received::add));
+
+        StompSession sender = node1.connect();
+        Message message = ChatTestServer.message("alice", "bob", "nur für bob");
+
+        assertEquals("nur für bob", sendUntilReceived(sender, "/app/private-message", message, received).getMessage());
+    }
+
+    @Test
+    public void failingListener_DoesNotBreakTheConnection() throws Exception {
+        node2.context().getBean(ClusterBus.class).onReceive(frame -> {
+            throw new IllegalStateException("Empfänger defekt");
+        });
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        StompSession receiver = node2.connect();
+        receiver.subscribe("/user/ines/private", ChatTestServer.handler(received::add));
+        StompSession sender = node1.connect();
+        sendUntilReceived(sender, "/app/private-message", ChatTestServer.message("jonas", "ines", "erste"), received);
+
+        sender.send("/app/private-message", ChatTestServer.message("jonas", "ines", "zweite"));
+
+        // Wiederholte Sendungen der ersten Nachricht überspringen
+        Message next;
+        do {
+            next = received.poll(10, TimeUnit.SECONDS);
+        } while (next != null && !"zweite".equals(next.getMessage()));
+        assertNotNull(next, "Verbindung nach fehlerhaftem Empfänger abgebrochen");
+    }
+
+    @Test
+    public void relayedMessage_IsAddedToConversationCache() throws Exception {
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        StompSession receiver = node2.connect();
+        receiver.subscribe("/user/dora/private", ChatTestServer.handler(received::add));
+
+        StompSession sender = node1.connect();
+        Message delivered = sendUntilReceived(sender, "/app/private-message",
+                ChatTestServer.message("carl", "dora", "auch im cache"), received);
+
+        List<ChatMessage> cached = node2.context().getBean(ConversationCache.class)
+                .after(ChatMessage.conversationKey("carl", "dora"), delivered.getSequence() - 1);
+        assertNotNull(cached);
+        assertTrue(cached.stream().anyMatch(m -> "auch im cache".equals(m.getMessage())));
+    }
+
+    @Test
+    public void relayedSenderCopy_IsNotCachedTwice() throws Exception {
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        BlockingQueue<Message> copies = new LinkedBlockingQueue<>();
+        node2.connect().subscribe("/user/lena/private", ChatTestServer.handler(received::add));
+        node2.connect().subscribe("/user/kai/private", ChatTestServer.handler(copies::add));
+
+        Message delivered = sendUntilReceived(node1.connect(), "/app/private-message",
+                ChatTestServer.message("kai", "lena", "nur einmal"), received);
+        Message copy;
+        do {
+            copy = copies.poll(10, TimeUnit.SECONDS);
+        } while (copy != null && !delivered.getSequence().equals(copy.getSequence()));
+        assertNotNull(copy, "Kopie für den Absender nicht angekommen");
+
+        List<ChatMessage> cached = node2.context().getBean(ConversationCache.class)
+                .after(ChatMessage.conversationKey("kai", "lena"), delivered.getSequence() - 1);
+        assertNotNull(cached);
+        assertEquals(cached.size(), cached.stream().map(ChatMessage::getSequence).distinct().count());
+        assertEquals(1, cached.stream().filter(m -> delivered.getSequence().equals(m.getSequence())).count());
+    }
+
+    @Test
+    public void savedMessage_IsIndexedOnOtherNode() throws Exception {
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        StompSession receiver = node2.connect();
+        receiver.subscribe("/user/erik/private", ChatTestServer.handler(received::add));
+        sendUntilReceived(node1.connect(), "/app/private-message",
+                ChatTestServer.message("fiona", "erik", "überall auffindbar"), received);
+
+        MessageSearchIndex index = node2.context().getBean(MessageSearchIndex.class);
+        long deadline = System.currentTimeMillis() + 10_000;
+        long total = 0;
+        while (total == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            index.refresh();
+            total = index.search("erik", "auffindbar", 0, 10).total();
+        }
+        assertTrue(total > 0, "Nachricht wurde auf dem anderen Knoten nicht indiziert");
+    }
+
+    @Test
+    public void sequencersOnSharedDatabase_NeverRepeatNumbers() throws Exception {
+        // Zwei Sequenzer auf derselben Datenbank verhalten sich wie zwei Knoten mit gemeinsamer Datenbank
+        ConversationSequencer first = node1.context().getBean(ConversationSequencer.class);
+        ConversationSequencer second = sequencer(node1.context());
+        String conversationId = ChatMessage.conversationKey("gustav", "hanna");
+        ConcurrentLinkedQueue<Long> numbers = new ConcurrentLinkedQueue<>();
+        // Mehrere Threads pro Sequenzer, damit die Sammelvergabe greift
+        List<Thread> threads = new ArrayList<>();
+        for (ConversationSequencer sequencer : List.of(first, second, first, second)) {
+            threads.add(new Thread(() -> { for (int i = 0; i < 25; i++) numbers.add(sequencer.next(conversationId)); }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(30_000);
+        }
+
+        Set<Long> unique = new HashSet<>(numbers);
+        assertEquals(100, numbers.size());
+        assertEquals(100, unique.size());
+        assertEquals(Set.copyOf(LongStream.rangeClosed(1, 100).boxed().toList()), unique);
+    }
+
+    private static ConversationSequencer sequencer(ApplicationContext context) {
+        return new ConversationSequencer(context.getBean(ChatMessageRepository.class),
+                context.getBean(ConversationCounterRepository.class), context.getBean(MessageArchive.class),
+                context.getBean(ReadYourWrites.class), context.getBean(TransactionTemplate.class),
+                context.getBeanProvider(ClusterBus.class), 100, 60_000);
+    }
+
+    @Test
+    public void peerWithWrongSecret_IsRejected() throws Exception {
+        TcpClusterBus bus = node1.context().getBean(TcpClusterBus.class);
+        long before = bus.rejectedCount();
+        TcpClusterBus intruder = new TcpClusterBus("intruder", "127.0.0.1", ChatTestServer.freePort(), "falsch",
+                List.of("localhost:" + node1.context().getEnvironment().getProperty("chat.cluster.port")), 10);
+        intruder.start();
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (bus.rejectedCount() == before && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(bus.rejectedCount() > before, "Verbindung mit falschem Geheimnis wurde angenommen");
+        } finally {
+            intruder.stop();
+        }
+    }
+
+    private static ChatTestServer startNode(String name, int clusterPort, int peerPort) throws Exception {
+        return ChatTestServer.start(name,
+                "chat.cluster.mode=tcp",
+                "chat.cluster.node-id=" + name,
+                "chat.cluster.port=" + clusterPort,
+                "chat.cluster.secret=" + SECRET,
+                "chat.cluster.peers=localhost:" + peerPort);
+    }
+
+    /**
+     * Sendet wiederholt, bis die Nachricht ankommt – Abonnement und Cluster-Verbindung werden
+     * asynchron aufgebaut.
+     */
+    private static Message sendUntilReceived(StompSession sender, String destination, Message message,
+                                             BlockingQueue<Message> received) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (System.currentTimeMillis() < deadline) {
+            sender.send(destination, message);
+            Message result = received.poll(300, TimeUnit.MILLISECONDS);
+            if (result != null) {
+                return result;
+            }
+        }
+        return fail("Nachricht wurde auf dem anderen Knoten nicht zugestellt");
+    }
+}
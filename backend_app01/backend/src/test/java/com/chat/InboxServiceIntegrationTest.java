@@ -0,0 +1,173 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.JwtUtil;
+import com.chat.entity.ChatMessage;
+import com.chat.model.InboxPage;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.service.InboxService;
+
+/**
+ * Prüft den Posteingang an einer laufenden Instanz. Wie bei den Bestätigungen ist das periodische
+ * Schreiben so langsam eingestellt, dass der Test es mit {@link InboxService#flush()} auslöst.
+ */
+public class InboxServiceIntegrationTest {
+
+    private static ChatTestServer server;
+    private static InboxService inbox;
+    private static ChatMessageRepository messages;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("inbox", "chat.inbox.flush-interval-ms=3600000");
+        inbox = server.context().getBean(InboxService.class);
+        messages = server.context().getBean(ChatMessageRepository.class);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /** Speichert eine Nachricht und meldet sie dem Posteingang, wie es der Controller nach dem Speichern tut. */
+    private static ChatMessage send(String sender, String receiver, String text, long timestamp, long sequence) {
+        ChatMessage saved = messages.save(new ChatMessage(sender, receiver, text, null, null, Status.MESSAGE,
+                timestamp, sequence));
+        inbox.messageSent(saved);
+        return saved;
+    }
+
+    private static InboxPage.InboxEntry only(String participant) {
+        List<InboxPage.InboxEntry> entries = inbox.inbox(participant, null, null).conversations();
+        assertEquals(1, entries.size());
+        return entries.get(0);
+    }
+
+    @Test
+    public void unreadCount_FollowsMessagesAndReadAcknowledgements() {
+        send("bob", "alice", "eins", 100, 1);
+        send("bob", "alice", "zwei", 200, 2);
+        send("bob", "alice", "drei", 300, 3);
+        send("alice", "bob", "antwort", 400, 4);
+        InboxService.Stats before = inbox.stats();
+        inbox.flush();
+        assertEquals(2, inbox.stats().rowsWritten() - before.rowsWritten());
+
+        InboxPage.InboxEntry alice = only("alice");
+        assertEquals("bob", alice.peer());
+        assertEquals("alice", alice.lastSender());
+        assertEquals("antwort", alice.lastPreview());
+        assertEquals(400, alice.lastTimestamp());
+        assertEquals(3, alice.unread());
+        assertEquals(1, only("bob").unread());
+
+        inbox.read("alice", "bob", 2L);
+        inbox.flush();
+        assertEquals(1, only("alice").unread());
+
+        send("bob", "alice", "vier", 500, 5);
+        inbox.flush();
+        assertEquals(2, only("alice").unread());
+
+        inbox.read("alice", "bob", 5L);
+        inbox.read("alice", "bob", 3L);
+        inbox.flush();
+        assertEquals(0, only("alice").unread());
+        assertEquals("vier", only("alice").lastPreview());
+    }
+
+    @Test
+    public void readAcknowledgementBeforeMessage_LeavesNoPhantomUnread() {
+        // Der Empfänger bestätigt, bevor der Posteingang die gespeicherte Nachricht sieht
+        inbox.read("ida", "jan", 2L);
+        inbox.flush();
+        assertTrue(inbox.inbox("ida", null, null).conversations().isEmpty());
+
+        send("jan", "ida", "eins", 100, 1);
+        send("jan", "ida", "zwei", 200, 2);
+        inbox.flush();
+        assertEquals(0, only("ida").unread());
+        assertEquals(2, only("ida").readUpTo());
+
+        send("jan", "ida", "drei", 300, 3);
+        inbox.read("ida", "jan", 3L);
+        send("jan", "ida", "vier", 400, 4);
+        inbox.flush();
+        assertEquals(1, only("ida").unread());
+    }
+
+    @Test
+    public void pages_AreSortedByRecency() {
+        for (int i = 0; i < 5; i++) {
+            send("peer" + i, "carol", "hallo " + i, 1000 + i, 1);
+        }
+        inbox.flush();
+
+        List<String> peers = new ArrayList<>();
+        String cursor = null;
+        do {
+            InboxPage page = inbox.inbox("carol", cursor, 2);
+            assertTrue(page.conversations().size() <= 2);
+            page.conversations().forEach(entry -> peers.add(entry.peer()));
+            cursor = page.before();
+        } while (cursor != null);
+        assertEquals(List.of("peer4", "peer3", "peer2", "peer1", "peer0"), peers);
+        assertThrows(IllegalArgumentException.class, () -> inbox.inbox("carol", "kein-cursor", 2));
+    }
+
+    @Test
+    public void privateMessage_AppearsInBothInboxes() throws Exception {
+        StompSession session = server.connect();
+        session.send("/app/private-message", ChatTestServer.message("dave", "erin", "hallo erin"));
+
+        List<InboxPage.InboxEntry> entries = List.of();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (entries.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            inbox.flush();
+            entries = inbox.inbox("erin", null, null).conversations();
+        }
+        assertEquals(1, entries.size(), "Nachricht ist nicht im Posteingang angekommen");
+        assertEquals("dave", entries.get(0).peer());
+        assertEquals("hallo erin", entries.get(0).lastPreview());
+        assertEquals(1, entries.get(0).unread());
+        assertEquals("erin", only("dave").peer());
+        session.disconnect();
+    }
+
+    @Test
+    public void endpoint_ReturnsInboxOfAuthenticatedUser() throws Exception {
+        send("kurt", "lena", "hallo lena", 100, 1);
+        inbox.flush();
+
+        assertEquals(401, get(null).statusCode());
+        HttpResponse<String> response = get("lena");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"peer\":\"kurt\""), response.body());
+        assertFalse(get("mallory").body().contains("kurt"));
+    }
+
+    private static HttpResponse<String> get(String user) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/api/secure/inbox"));
+        if (user != null) {
+            request.header("Authorization", "Bearer " + JwtUtil.generateToken(user));
+        }
+        return HttpClient.newHttpClient().send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
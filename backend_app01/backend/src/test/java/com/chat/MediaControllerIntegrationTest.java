@@ -0,0 +1,116 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.model.Message;
+import com.chat.model.SendFailure;
+import com.chat.service.MediaStore;
+
+/**
+ * Prüft das Ausliefern hochgeladener Medien und das Ablehnen ungültiger Data-URLs.
+ */
+public class MediaControllerIntegrationTest {
+
+    private static ChatTestServer server;
+    private static final HttpClient http = HttpClient.newHttpClient();
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("media");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static String upload(String content, String mediaType) throws Exception {
+        String boundary = "grenze";
+        String body = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"datei\"\r\n"
+                + "Content-Type: " + mediaType + "\r\n\r\n"
+                + content + "\r\n--" + boundary + "--\r\n";
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/api/media"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return response.body().replaceAll(".*\"reference\":\"([0-9a-f]+)\".*", "$1");
+    }
+
+    private static HttpResponse<String> download(String reference) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/api/media/" + reference)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void html_IsServedAsAttachment() throws Exception {
+        HttpResponse<String> response = download(upload("<script>alert(1)</script>", "text/html"));
+        assertEquals(200, response.statusCode());
+        assertEquals("application/octet-stream", response.headers().firstValue("Content-Type").orElse(null));
+        assertTrue(response.headers().firstValue("Content-Disposition").orElse("").startsWith("attachment"));
+        assertEquals("nosniff", response.headers().firstValue("X-Content-Type-Options").orElse(null));
+    }
+
+    @Test
+    public void image_IsServedInline() throws Exception {
+        HttpResponse<String> response = download(upload("kein echtes png", "image/png; charset=binary"));
+        assertEquals("image/png", response.headers().firstValue("Content-Type").orElse(null));
+        assertEquals("inline", response.headers().firstValue("Content-Disposition").orElse(null));
+    }
+
+    @Test
+    public void invalidBase64_IsRejected() throws Exception {
+        StompSession session = server.connect();
+        CompletableFuture<SendFailure> failure = new CompletableFuture<>();
+        session.subscribe("/user/frank/errors", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return SendFailure.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                failure.complete((SendFailure) payload);
+            }
+        });
+        Thread.sleep(200);
+
+        Message message = ChatTestServer.message("frank", "gina", "bild");
+        message.setMedia("data:image/png;base64,%%%kein-base64%%%");
+        session.send("/app/private-message", message);
+
+        SendFailure received = failure.get(10, TimeUnit.SECONDS);
+        assertEquals("gina", received.receiverName());
+        assertNull(received.sequence());
+        assertNotNull(received.reason());
+        session.disconnect();
+    }
+
+    @Test
+    public void dataUrl_IsMovedIntoMediaStore() {
+        Message message = ChatTestServer.message("frank", "gina", "bild");
+        message.setMedia("data:image/gif;base64,R0lGODlhAQABAAAAACw=");
+        server.context().getBean(MediaStore.class).internalize(message);
+        assertTrue(message.getMedia().matches("[0-9a-f]{64}"));
+        assertEquals("image/gif", message.getMediaType());
+    }
+}
@@ -0,0 +1,147 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.Status;
+import com.chat.service.MessageArchive;
+
+public class MessageArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private MessageArchive archive;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        archive = new MessageArchive(directory, 1024);
+        archive.open();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        archive.close();
+    }
+
+    private MessageArchive reopen() throws Exception {
+        archive.close();
+        archive = new MessageArchive(directory, 1024);
+        archive.open();
+        return archive;
+    }
+
+    /** Nachrichten mit IDs {@code from..to}, Zeitstempel = ID × 10. */
+    private static List<ChatMessage> messages(long from, long to) {
+        List<ChatMessage> list = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ChatMessage m = new ChatMessage("alice", "bob", "nachricht " + id, null, null, Status.MESSAGE, id * 10, id);
+            m.setId(id);
+            list.add(m);
+        }
+        return list;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    public void pagesAcrossBlocksInBothDirections() throws Exception {
+        archive.append("alice:bob", messages(1, 5));
+        archive.append("alice:bob", messages(6, 10));
+        archive.append("carol:dave", messages(100, 101));
+
+        assertEquals(List.of(7L, 6L, 5L, 4L), ids(archive.before("alice:bob", 80, 8, 4)));
+        assertEquals(List.of(10L, 9L), ids(archive.before("alice:bob", Long.MAX_VALUE, Long.MAX_VALUE, 2)));
+        assertEquals(List.of(4L, 5L, 6L), ids(archive.after("alice:bob", 30, 3, 3)));
+        assertEquals(List.of(), archive.before("alice:bob", 10, 1, 10));
+        assertEquals(10, archive.maxSequence("alice:bob"));
+
+        reopen();
+        assertTrue(archive.contains("carol:dave"));
+        assertEquals(List.of(3L, 2L, 1L), ids(archive.before("alice:bob", 40, 4, 10)));
+        assertEquals(12, archive.stats().messages());
+    }
+
+    @Test
+    public void truncatedIndexEntry_IsDiscardedOnOpen() throws Exception {
+        archive.append("alice:bob", messages(1, 3));
+        Path index;
+        try (var files = Files.list(directory)) {
+            index = files.filter(p -> p.toString().endsWith(".idx")).findFirst().orElseThrow();
+        }
+        Files.write(index, new byte[]{0, 9, 'a', 'l'}, StandardOpenOption.APPEND);
+
+        reopen();
+        archive.append("alice:bob", messages(4, 5));
+        reopen();
+
+        assertEquals(List.of(5L, 4L, 3L, 2L, 1L), ids(archive.before("alice:bob", Long.MAX_VALUE, Long.MAX_VALUE, 10)));
+    }
+
+    @Test
+    public void purge_DeletesWholeSegmentsAndHidesOlderMessages() throws Exception {
+        // Segmente von 1 KiB: jeder größere Block beginnt ein neues Segment
+        for (long from = 1; from <= 400; from += 100) {
+            archive.append("alice:bob", messages(from, from + 99));
+        }
+        int segmentsBefore = archive.stats().segments();
+        assertTrue(segmentsBefore > 1);
+
+        archive.purgeBefore(2005);
+
+        assertTrue(archive.stats().segments() < segmentsBefore);
+        List<ChatMessage> remaining = archive.before("alice:bob", Long.MAX_VALUE, Long.MAX_VALUE, 1000);
+        assertEquals(201, remaining.get(remaining.size() - 1).getId());
+        assertEquals(200, remaining.size());
+
+        // Die Grenze gilt auch nach einem Neustart
+        reopen();
+        assertEquals(2005, archive.stats().horizon());
+        assertEquals(200, archive.before("alice:bob", Long.MAX_VALUE, Long.MAX_VALUE, 1000).size());
+    }
+
+    @Test
+    public void afterSequence_ReturnsNewerMessagesInOrder() {
+        archive.append("alice:bob", messages(1, 5));
+        archive.append("alice:bob", messages(6, 10));
+
+        assertEquals(List.of(4L, 5L, 6L), ids(archive.afterSequence("alice:bob", 3, 3)));
+        assertEquals(List.of(10L), ids(archive.afterSequence("alice:bob", 9, 10)));
+        assertEquals(List.of(), archive.afterSequence("alice:bob", 10, 10));
+    }
+
+    @Test
+    public void reload_SeesBlocksWrittenByAnotherInstance() {
+        MessageArchive writer = new MessageArchive(directory, 1024);
+        try {
+            writer.open();
+            writer.append("alice:bob", messages(1, 3));
+            assertFalse(archive.contains("alice:bob"));
+
+            archive.reload();
+            assertEquals(List.of(3L, 2L, 1L), ids(archive.before("alice:bob", Long.MAX_VALUE, Long.MAX_VALUE, 10)));
+
+            writer.purgeBefore(25);
+            archive.reload();
+            assertEquals(25, archive.stats().horizon());
+            assertEquals(List.of(3L), ids(archive.before("alice:bob", Long.MAX_VALUE, Long.MAX_VALUE, 10)));
+        } catch (Exception e) {
+            fail(e);
+        } finally {
+            writer.close();
+        }
+    }
+}
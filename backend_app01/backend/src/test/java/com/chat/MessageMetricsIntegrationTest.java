@@ -0,0 +1,87 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.MessageMetrics;
+import com.chat.model.Message;
+
+/**
+ * Prüft die Nachrichtenmetriken an einer laufenden Instanz: Eine öffentliche Nachricht erscheint als
+ * gezählt, gespeichert und ausgeliefert in der Übersicht und im Prometheus-Endpunkt.
+ */
+public class MessageMetricsIntegrationTest {
+
+    private static ChatTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("metrics", "chat.persistence.mode=SYNC");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void publicMessage_IsCountedPersistedAndDelivered() throws Exception {
+        StompSession session = server.connect();
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        session.subscribe("/chatroom/public", ChatTestServer.handler(received::add));
+
+        Message result = null;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (result == null && System.currentTimeMillis() < deadline) {
+            session.send("/app/message", ChatTestServer.message("alice", null, "gemessen"));
+            result = received.poll(300, TimeUnit.MILLISECONDS);
+        }
+        assertNotNull(result, "Nachricht wurde nicht zugestellt");
+
+        // Zugestellt wird nach der Übergabe an die Sitzung gezählt, also evtl. erst nach dem Empfang
+        MessageMetrics metrics = server.context().getBean(MessageMetrics.class);
+        MessageMetrics.Stats stats = metrics.stats();
+        deadline = System.currentTimeMillis() + 10_000;
+        while (stats.types().get(MessageMetrics.PUBLIC).delivered() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            stats = metrics.stats();
+        }
+        MessageMetrics.TypeStats publicStats = stats.types().get(MessageMetrics.PUBLIC);
+        assertEquals(1, stats.sessions());
+        assertEquals(1, stats.subscriptions().get(MessageMetrics.PUBLIC));
+        assertTrue(publicStats.received() >= 1);
+        assertTrue(publicStats.persisted() >= 1);
+        assertTrue(publicStats.delivered() >= 1);
+        assertEquals(0, stats.types().get(MessageMetrics.PRIVATE).received());
+
+        String prometheus = get("/actuator/prometheus");
+        assertTrue(prometheus.contains("chat_message_deliver_seconds_count{type=\"public\",}"));
+        assertTrue(prometheus.contains("chat_message_persist_seconds{type=\"public\",quantile=\"0.99\",}"));
+        assertTrue(prometheus.contains("chat_channel_queued{channel=\"inbound\",}"));
+        assertTrue(prometheus.contains("chat_channel_queued{channel=\"outbound\",}"));
+        assertTrue(get("/api/stats/messages").contains("\"p99\""));
+        session.disconnect();
+    }
+
+    private static String get(String path) throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), path);
+        return response.body();
+    }
+}
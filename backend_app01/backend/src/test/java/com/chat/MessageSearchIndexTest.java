@@ -0,0 +1,113 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.MessageSearchPage;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.service.ClusterBus;
+import com.chat.service.MessageSearchIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+public class MessageSearchIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private MessageSearchIndex index;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        index = new MessageSearchIndex(chatMessageRepository, directory, 60_000, 60_000, 2, 0, 1000,
+                new StaticListableBeanFactory().getBeanProvider(ClusterBus.class), new ObjectMapper());
+        index.open();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    private static ChatMessage message(long id, String sender, String receiver, String text) {
+        ChatMessage m = new ChatMessage(sender, receiver, text, null, null, Status.MESSAGE, id * 10);
+        m.setId(id);
+        return m;
+    }
+
+    private static List<Long> ids(MessageSearchPage page) {
+        return page.hits().stream().map(MessageSearchPage.MessageHit::id).toList();
+    }
+
+    @Test
+    public void search_IsScopedToParticipantsAndPublicRoom() {
+        index.index(message(1, "alice", "bob", "Treffen wir uns morgen im Büro?"));
+        index.index(message(2, "carol", "dave", "Morgen ist das Büro geschlossen"));
+        index.index(message(3, "erin", null, "Wer kommt morgen ins Büro"));
+        index.refresh();
+
+        assertEquals(List.of(1L, 3L), ids(index.search("bob", "morgen büro", 0, 10)).stream().sorted().toList());
+        assertEquals(List.of(2L, 3L), ids(index.search("dave", "MORGEN", 0, 10)).stream().sorted().toList());
+        assertTrue(index.search("bob", "geschlossen", 0, 10).hits().isEmpty());
+    }
+
+    @Test
+    public void search_RanksAndPaginates() {
+        index.index(message(1, "alice", "bob", "pizza"));
+        index.index(message(2, "alice", "bob", "pizza pizza pizza heute abend"));
+        index.index(message(3, "alice", "bob", "lieber pasta als pizza essen gehen heute"));
+        index.index(message(4, "alice", "bob", "pasta"));
+        index.refresh();
+
+        MessageSearchPage first = index.search("alice", "pizza", 0, 2);
+        MessageSearchPage second = index.search("alice", "pizza", 1, 2);
+
+        assertEquals(3, first.total());
+        assertEquals(2, first.hits().size());
+        assertEquals(1, second.hits().size());
+        assertTrue(first.hits().get(0).score() >= first.hits().get(1).score());
+        assertTrue(first.hits().get(1).score() >= second.hits().get(0).score());
+    }
+
+    @Test
+    public void search_LargePageDoesNotOverflow() {
+        index.index(message(1, "alice", "bob", "pizza"));
+        index.refresh();
+
+        assertTrue(index.search("alice", "pizza", Integer.MAX_VALUE, 2).hits().isEmpty());
+        assertTrue(index.search("alice", "pizza", 2, Integer.MAX_VALUE).hits().isEmpty());
+        assertEquals(1, index.search("alice", "pizza", 0, Integer.MAX_VALUE).hits().size());
+    }
+
+    @Test
+    public void rebuild_ReindexesStoredMessagesInBatches() throws Exception {
+        when(chatMessageRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(message(1, "alice", "bob", "hallo welt"), message(2, "bob", "alice", "hallo zurück")));
+        when(chatMessageRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Pageable.class)))
+                .thenReturn(List.of(message(3, "alice", "bob", "noch ein hallo")));
+        index.index(message(1, "alice", "bob", "hallo welt"));
+
+        assertTrue(index.startRebuild());
+        for (int i = 0; i < 100 && index.rebuildStatus().running(); i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(3, index.rebuildStatus().indexed());
+        MessageSearchPage page = index.search("alice", "hallo", 0, 10);
+        assertEquals(3, page.total());
+    }
+}
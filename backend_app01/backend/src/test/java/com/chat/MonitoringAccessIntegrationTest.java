@@ -0,0 +1,55 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.JwtUtil;
+
+/**
+ * Prüft, dass Statistiken und Metriken ohne freigegebene Client-Adresse nur Administratoren
+ * zugänglich sind. Die Instanz läuft ohne freigegebene Adressen, damit auch lokale Anfragen die
+ * Rolle brauchen.
+ */
+public class MonitoringAccessIntegrationTest {
+
+    private static ChatTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("monitoring", "chat.security.admins=root",
+                "chat.security.monitoring-addresses=");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static int get(String path, String user) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path));
+        if (user != null) {
+            request.header("Authorization", "Bearer " + JwtUtil.generateToken(user));
+        }
+        return HttpClient.newHttpClient().send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Test
+    public void statsAndMetrics_RequireAdminRoleFromOtherAddresses() throws Exception {
+        for (String path : new String[]{"/api/stats/websocket-sessions", "/api/stats/messages", "/actuator/prometheus"}) {
+            assertEquals(403, get(path, null), path);
+            assertEquals(403, get(path, "alice"), path);
+            assertEquals(200, get(path, "root"), path);
+        }
+        assertEquals(200, get("/actuator/health", null));
+    }
+}
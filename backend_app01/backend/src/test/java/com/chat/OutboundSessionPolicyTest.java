@@ -0,0 +1,134 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.chat.configuration.OutboundSessionPolicy;
+import com.chat.configuration.OutboundSessionPolicy.Overflow;
+
+public class OutboundSessionPolicyTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch firstSendStarted = new CountDownLatch(1);
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private OutboundSessionPolicy policy;
+
+    @AfterEach
+    public void stop() {
+        release.countDown();
+        if (policy != null) {
+            policy.stop();
+        }
+    }
+
+    private static TextMessage frame(String destination, String body) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\nsubscription:sub-0\n\n" + body + "\0");
+    }
+
+    /**
+     * Baut eine Sitzung, deren erster Sendevorgang bis {@link #release} hängt – ein langsamer Client.
+     */
+    private WebSocketSession connect(Overflow overflow, int maxMessages) throws Exception {
+        policy = new OutboundSessionPolicy(maxMessages, 1 << 20, overflow, List.of("/chatroom/presence"), 10_000);
+        policy.start();
+
+        WebSocketSession raw = mock(WebSocketSession.class);
+        when(raw.getId()).thenReturn("s1");
+        doAnswer(invocation -> {
+            firstSendStarted.countDown();
+            release.await();
+            TextMessage message = invocation.getArgument(0);
+            String payload = message.getPayload();
+            delivered.add(payload.substring(payload.indexOf("\n\n") + 2, payload.length() - 1));
+            return null;
+        }).when(raw).sendMessage(any());
+
+        WebSocketHandler inner = mock(WebSocketHandler.class);
+        policy.decorate(inner).afterConnectionEstablished(raw);
+        ArgumentCaptor<WebSocketSession> captor = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(inner).afterConnectionEstablished(captor.capture());
+
+        WebSocketSession session = captor.getValue();
+        session.sendMessage(frame("/chatroom/public", "m0"));
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        return session;
+    }
+
+    private void awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delivered.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void dropOldest_KeepsNewestMessages() throws Exception {
+        WebSocketSession session = connect(Overflow.DROP_OLDEST, 2);
+        for (int i = 1; i <= 4; i++) {
+            session.sendMessage(frame("/chatroom/public", "m" + i));
+        }
+        assertEquals(2, policy.stats().queuedMessages());
+        assertEquals(2, policy.stats().dropped());
+
+        release.countDown();
+        awaitDelivered(3);
+        assertEquals(List.of("m0", "m3", "m4"), delivered);
+    }
+
+    @Test
+    public void dropNonEssential_SacrificesPresenceBeforeChat() throws Exception {
+        WebSocketSession session = connect(Overflow.DROP_NON_ESSENTIAL, 2);
+        session.sendMessage(frame("/chatroom/presence", "p1"));
+        session.sendMessage(frame("/chatroom/public", "m1"));
+        session.sendMessage(frame("/chatroom/public", "m2"));
+        session.sendMessage(frame("/chatroom/presence", "p2"));
+
+        OutboundSessionPolicy.Stats stats = policy.stats();
+        assertEquals(2, stats.droppedNonEssential());
+        assertEquals(0, stats.disconnected());
+
+        release.countDown();
+        awaitDelivered(3);
+        assertEquals(List.of("m0", "m1", "m2"), delivered);
+    }
+
+    @Test
+    public void dropNonEssential_DisconnectsWhenOnlyChatIsQueued() throws Exception {
+        WebSocketSession session = connect(Overflow.DROP_NON_ESSENTIAL, 1);
+        session.sendMessage(frame("/chatroom/public", "m1"));
+        session.sendMessage(frame("/chatroom/public", "m2"));
+
+        assertEquals(1, policy.stats().disconnected());
+        WebSocketSession raw = ((WebSocketSessionDecorator) session).getDelegate();
+        verify(raw, timeout(5000)).close(OutboundSessionPolicy.SLOW_CONSUMER);
+    }
+
+    @Test
+    public void inspect_RaisesScoreOfBackloggedSession() throws Exception {
+        WebSocketSession session = connect(Overflow.DISCONNECT, 4);
+        for (int i = 1; i <= 4; i++) {
+            session.sendMessage(frame("/chatroom/public", "m" + i));
+        }
+        policy.inspect();
+        policy.inspect();
+
+        OutboundSessionPolicy.SessionStats slowest = policy.stats().slowest().get(0);
+        assertEquals("s1", slowest.sessionId());
+        assertEquals(4, slowest.queuedMessages());
+        assertTrue(slowest.score() > 0.3);
+    }
+}
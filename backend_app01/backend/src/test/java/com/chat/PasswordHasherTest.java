@@ -0,0 +1,71 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.service.PasswordHasher;
+
+public class PasswordHasherTest {
+
+    private PasswordHasher hasher;
+
+    @AfterEach
+    public void tearDown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    public void hash_MatchesOnlyOriginalPassword() {
+        hasher = new PasswordHasher(1, 4, 100, 4, 4);
+
+        String hash = hasher.hash("secret");
+
+        assertNotEquals("secret", hash);
+        assertTrue(hasher.matches("secret", hash));
+        assertFalse(hasher.matches("wrong", hash));
+        assertFalse(hasher.needsUpgrade(hash));
+    }
+
+    @Test
+    public void legacyPlaintextAndWeakerHashes_NeedUpgrade() {
+        hasher = new PasswordHasher(1, 4, 100, 4, 4);
+        String weak = hasher.hash("secret");
+        hasher.shutdown();
+
+        hasher = new PasswordHasher(1, 4, 100, 5, 5);
+
+        assertTrue(hasher.matches("secret", "secret"));
+        assertTrue(hasher.needsUpgrade("secret"));
+        assertTrue(hasher.matches("secret", weak));
+        assertTrue(hasher.needsUpgrade(weak));
+    }
+
+    @Test
+    public void fullQueue_FailsFast() throws InterruptedException {
+        hasher = new PasswordHasher(1, 1, 100, 4, 4);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hasher.rehashLater("a", hash -> {
+            running.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertTrue(hasher.rehashLater("b", hash -> { }));
+
+        assertThrows(PasswordHasher.SaturatedException.class, () -> hasher.hash("c"));
+        release.countDown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
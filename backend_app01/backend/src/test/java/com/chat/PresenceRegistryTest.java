@@ -0,0 +1,202 @@
+package com.chat;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.chat.model.ClusterFrame;
+import com.chat.model.PresenceDelta;
+import com.chat.service.ClusterBus;
+import com.chat.service.PresenceRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class PresenceRegistryTest {
+
+    private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+
+    /**
+     * Bus, der die Nachrichten eines Knotens direkt an die Empfänger der anderen Knoten übergibt.
+     */
+    private static final class InMemoryBus implements ClusterBus {
+        private final String nodeId;
+        private final List<InMemoryBus> cluster;
+        private final List<Consumer<ClusterFrame>> listeners = new ArrayList<>();
+
+        InMemoryBus(String nodeId, List<InMemoryBus> cluster) {
+            this.nodeId = nodeId;
+            this.cluster = cluster;
+            cluster.add(this);
+        }
+
+        @Override
+        public String nodeId() {
+            return nodeId;
+        }
+
+        @Override
+        public void publish(ClusterFrame frame) {
+            cluster.stream().filter(bus -> bus != this).forEach(bus -> bus.listeners.forEach(l -> l.accept(frame)));
+        }
+
+        @Override
+        public void onReceive(Consumer<ClusterFrame> listener) {
+            listeners.add(listener);
+        }
+    }
+
+    private static ObjectProvider<ClusterBus> provider(ClusterBus bus) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (bus != null) {
+            beanFactory.addBean("clusterBus", bus);
+        }
+        return beanFactory.getBeanProvider(ClusterBus.class);
+    }
+
+    private PresenceRegistry registry(long sessionTimeoutMillis) {
+        return new PresenceRegistry(template, 1000, sessionTimeoutMillis, provider(null), new ObjectMapper());
+    }
+
+    private static List<PresenceDelta> deltas(SimpMessagingTemplate template) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(template, atLeastOnce()).convertAndSend(eq(PresenceRegistry.DESTINATION), captor.capture(), anyMap());
+        return captor.getAllValues().stream().map(PresenceDelta.class::cast).toList();
+    }
+
+    private PresenceDelta lastDelta() {
+        List<PresenceDelta> deltas = deltas(template);
+        return deltas.get(deltas.size() - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> lastHeaders(SimpMessagingTemplate template) {
+        ArgumentCaptor<Map<String, Object>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(template, atLeastOnce()).convertAndSend(eq(PresenceRegistry.DESTINATION), any(Object.class), captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void userStaysOnlineUntilLastSessionCloses() {
+        PresenceRegistry registry = registry(60_000);
+        registry.connect("s1", "alice");
+        registry.connect("s2", "alice");
+        registry.flush();
+        assertEquals(List.of("alice"), lastDelta().joined());
+
+        registry.disconnect("s1");
+        registry.flush();
+        assertTrue(registry.isOnline("alice"));
+        verify(template, times(1)).convertAndSend(eq(PresenceRegistry.DESTINATION), any(Object.class), anyMap());
+
+        registry.disconnect("s2");
+        registry.flush();
+        PresenceDelta delta = lastDelta();
+        assertEquals(List.of("alice"), delta.left());
+        assertEquals(2, delta.version());
+        assertTrue(registry.snapshot().online().isEmpty());
+    }
+
+    @Test
+    public void reconnectWithinIntervalIsCoalesced() {
+        PresenceRegistry registry = registry(60_000);
+        registry.connect("s1", "alice");
+        registry.flush();
+
+        for (int i = 0; i < 1000; i++) {
+            registry.disconnect("s" + (i + 1));
+            registry.connect("s" + (i + 2), "alice");
+        }
+        registry.connect("b1", "bob");
+        registry.flush();
+
+        // Eine Meldung für alice beim ersten Flush, eine für bob – die Reconnects erzeugen keine
+        verify(template, times(2)).convertAndSend(eq(PresenceRegistry.DESTINATION), any(Object.class), anyMap());
+        PresenceDelta delta = lastDelta();
+        assertEquals(List.of("bob"), delta.joined());
+        assertTrue(delta.left().isEmpty());
+        assertEquals(List.of("alice", "bob"), registry.snapshot().online());
+    }
+
+    @Test
+    public void silentSessionsExpire() throws InterruptedException {
+        PresenceRegistry registry = registry(20);
+        registry.connect("s1", "alice");
+        registry.flush();
+
+        Thread.sleep(50);
+        registry.flush();
+
+        assertFalse(registry.isOnline("alice"));
+        assertEquals(List.of("alice"), lastDelta().left());
+        assertEquals(0, registry.sessionCount());
+    }
+
+    @Test
+    public void userStaysOnlineWhileSessionOnOtherNodeIsOpen() {
+        List<InMemoryBus> cluster = new ArrayList<>();
+        SimpMessagingTemplate templateB = mock(SimpMessagingTemplate.class);
+        PresenceRegistry nodeA = new PresenceRegistry(template, 1000, 60_000,
+                provider(new InMemoryBus("a", cluster)), new ObjectMapper());
+        PresenceRegistry nodeB = new PresenceRegistry(templateB, 1000, 60_000,
+                provider(new InMemoryBus("b", cluster)), new ObjectMapper());
+
+        nodeA.connect("a1", "alice");
+        nodeB.connect("b1", "alice");
+        nodeB.connect("b2", "bob");
+        nodeA.flush();
+        nodeB.flush();
+        nodeA.flush();
+
+        assertEquals(List.of("alice", "bob"), nodeA.snapshot().online());
+        assertTrue(nodeA.isOnline("bob"));
+        assertEquals(true, lastHeaders(template).get(ClusterBus.LOCAL_HEADER));
+
+        // alice schließt ihre Sitzung auf Knoten a, ist auf Knoten b aber weiter verbunden
+        nodeA.disconnect("a1");
+        nodeA.flush();
+        nodeB.flush();
+        assertTrue(nodeA.isOnline("alice"));
+        assertTrue(nodeB.isOnline("alice"));
+        assertTrue(deltas(template).stream().noneMatch(delta -> delta.left().contains("alice")));
+        assertTrue(deltas(templateB).stream().noneMatch(delta -> delta.left().contains("alice")));
+
+        nodeB.disconnect("b1");
+        nodeB.flush();
+        nodeA.flush();
+        assertFalse(nodeA.isOnline("alice"));
+        assertEquals(List.of("alice"), lastDelta().left());
+        assertEquals(List.of("alice"), deltas(templateB).get(deltas(templateB).size() - 1).left());
+        assertEquals(List.of("bob"), nodeA.snapshot().online());
+    }
+
+    @Test
+    public void usersOfSilentNodeExpire() throws InterruptedException {
+        List<InMemoryBus> cluster = new ArrayList<>();
+        PresenceRegistry nodeA = new PresenceRegistry(template, 1000, 50,
+                provider(new InMemoryBus("a", cluster)), new ObjectMapper());
+        PresenceRegistry nodeB = new PresenceRegistry(mock(SimpMessagingTemplate.class), 1000, 60_000,
+                provider(new InMemoryBus("b", cluster)), new ObjectMapper());
+
+        nodeB.connect("b1", "bob");
+        nodeB.flush();
+        nodeA.flush();
+        assertTrue(nodeA.isOnline("bob"));
+
+        Thread.sleep(100);
+        nodeA.flush();
+        assertFalse(nodeA.isOnline("bob"));
+        assertEquals(List.of("bob"), lastDelta().left());
+    }
+}
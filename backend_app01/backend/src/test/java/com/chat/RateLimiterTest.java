@@ -0,0 +1,114 @@
+package com.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.HttpRateLimitFilter;
+import com.chat.service.RateLimiter;
+
+public class RateLimiterTest {
+
+    @Test
+    public void tryAcquire_AllowsBurstThenReportsWaitTime() {
+        RateLimiter limiter = new RateLimiter(3, 1, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("alice"));
+        }
+        long wait = limiter.tryAcquire("alice");
+        assertTrue(wait > 0 && wait <= 1_000_000_000L, "Wartezeit " + wait);
+        assertEquals(0, limiter.tryAcquire("bob"));
+    }
+
+    @Test
+    public void tryAcquire_RefillsOverTime() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1, 50, 100);
+        assertEquals(0, limiter.tryAcquire("alice"));
+        assertTrue(limiter.tryAcquire("alice") > 0);
+
+        Thread.sleep(40);
+        assertEquals(0, limiter.tryAcquire("alice"));
+    }
+
+    @Test
+    public void tryAcquire_GrantsExactlyCapacityUnderContention() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1000, 0.001, 100);
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (limiter.tryAcquire("alice") == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, granted.get());
+    }
+
+    @Test
+    public void tryAcquire_KeepsLimitWhileOtherKeysAreEvicted() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1000, 0.001, 4);
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int id = t;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (limiter.tryAcquire("alice") == 0) {
+                        granted.incrementAndGet();
+                    }
+                    limiter.tryAcquire("gast-" + id + "-" + i);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, granted.get());
+    }
+
+    @Test
+    public void tryAcquire_EvictsRefilledKeys() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1, 100, 2);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        Thread.sleep(20);
+
+        limiter.tryAcquire("c");
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    public void httpFilter_RejectsLoginFloodWith429() throws Exception {
+        HttpRateLimitFilter filter = new HttpRateLimitFilter(true, List.of("/api/users/login"), 2, 0.1, 100);
+
+        assertEquals(200, login(filter, "10.0.0.1").getStatus());
+        assertEquals(200, login(filter, "10.0.0.1").getStatus());
+        MockHttpServletResponse rejected = login(filter, "10.0.0.1");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("10", rejected.getHeader("Retry-After"));
+        assertEquals(200, login(filter, "10.0.0.2").getStatus());
+        assertEquals(1, filter.stats().rejected());
+    }
+
+    private static MockHttpServletResponse login(HttpRateLimitFilter filter, String address) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users/login");
+        request.setRemoteAddr(address);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
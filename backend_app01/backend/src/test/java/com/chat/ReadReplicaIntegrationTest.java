@@ -0,0 +1,97 @@
+package com.chat;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.ReadYourWrites;
+import com.chat.entity.ChatMessage;
+import com.chat.entity.Users;
+import com.chat.model.Status;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.repository.UserRepository;
+import com.chat.service.ChatHistoryService;
+
+/**
+ * Prüft die Aufteilung auf Primärdatenbank und Lese-Replikat mit zwei getrennten H2-Datenbanken.
+ * Da zwischen ihnen nichts repliziert wird, verhält sich das Replikat wie eines, das unbegrenzt
+ * nachhinkt: Was geschrieben wurde, ist nur über die Primärdatenbank sichtbar.
+ */
+public class ReadReplicaIntegrationTest {
+
+    private static ChatTestServer server;
+    private static JdbcTemplate primary;
+    private static JdbcTemplate replica;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        // Legt das Schema in der Replikat-Datenbank an; sie bleibt dank DB_CLOSE_DELAY=-1 erhalten
+        ChatTestServer.start("rwreplica").close();
+        server = ChatTestServer.start("rwprimary",
+                "chat.datasource.replica.enabled=true",
+                "chat.datasource.replica.url=jdbc:h2:mem:rwreplica;DB_CLOSE_DELAY=-1",
+                "chat.datasource.primary.pool-size=3",
+                "chat.datasource.replica.pool-size=2",
+                "chat.datasource.replica.read-your-writes-ms=60000");
+        primary = new JdbcTemplate(server.context().getBean("primaryDataSource", HikariDataSource.class));
+        replica = new JdbcTemplate(server.context().getBean("replicaDataSource", HikariDataSource.class));
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static ChatMessage save(String sender, String receiver) {
+        ChatMessage message = new ChatMessage(sender, receiver, "hallo", null, null, Status.MESSAGE, System.currentTimeMillis());
+        return server.context().getBean(ChatMessageRepository.class).save(message);
+    }
+
+    private static int rows(JdbcTemplate database, String conversationId) {
+        return database.queryForObject("select count(*) from chat_message where conversation_id = ?", Integer.class, conversationId);
+    }
+
+    @Test
+    public void pools_AreSizedSeparately() {
+        HikariDataSource primaryPool = server.context().getBean("primaryDataSource", HikariDataSource.class);
+        HikariDataSource replicaPool = server.context().getBean("replicaDataSource", HikariDataSource.class);
+        assertEquals(3, primaryPool.getMaximumPoolSize());
+        assertEquals(2, replicaPool.getMaximumPoolSize());
+        assertTrue(replicaPool.isReadOnly());
+    }
+
+    @Test
+    public void writes_GoToPrimary_ReadOnlyQueriesToReplica() {
+        ChatMessage saved = save("amy", "ben");
+        assertEquals(1, rows(primary, saved.getConversationId()));
+        assertEquals(0, rows(replica, saved.getConversationId()));
+
+        UserRepository users = server.context().getBean(UserRepository.class);
+        users.save(new Users("replica-user", "Replica", "replica@example.com", "x"));
+        assertNull(users.findByUsername("replica-user"));
+        assertNotNull(server.context().getBean(ReadYourWrites.class).primary(() -> users.findByUsername("replica-user")));
+    }
+
+    @Test
+    public void history_OfRecentlyWrittenConversation_IsReadFromPrimary() {
+        ChatHistoryService history = server.context().getBean(ChatHistoryService.class);
+        ReadYourWrites readYourWrites = server.context().getBean(ReadYourWrites.class);
+
+        save("cat", "dan");
+        assertEquals(List.of(), history.getConversation("cat", "dan", null, null, 10).getMessages());
+
+        ChatMessage saved = save("eve", "fay");
+        readYourWrites.written(saved.getConversationId());
+        assertTrue(readYourWrites.recentlyWritten(saved.getConversationId()));
+        List<ChatMessage> messages = history.getConversation("fay", "eve", null, null, 10).getMessages();
+        assertEquals(List.of(saved.getId()), messages.stream().map(ChatMessage::getId).toList());
+    }
+}
@@ -0,0 +1,149 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.entity.ReadReceipt;
+import com.chat.model.Receipt;
+import com.chat.model.Status;
+import com.chat.repository.ReadReceiptRepository;
+import com.chat.service.ReceiptService;
+
+/**
+ * Prüft die kumulativen Bestätigungen an einer laufenden Instanz. Das periodische Schreiben ist so
+ * langsam eingestellt, dass der Test es mit {@link ReceiptService#flush()} selbst auslöst.
+ */
+public class ReceiptServiceIntegrationTest {
+
+    private static ChatTestServer server;
+    private static ReceiptService receipts;
+    private static ReadReceiptRepository repository;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("receipts", "chat.receipts.flush-interval-ms=3600000");
+        receipts = server.context().getBean(ReceiptService.class);
+        repository = server.context().getBean(ReadReceiptRepository.class);
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static ReadReceipt stored(String reader, String peer) {
+        return repository.findById(new ReadReceipt.Key(ChatMessage.conversationKey(reader, peer), reader)).orElseThrow();
+    }
+
+    @Test
+    public void manyAcknowledgements_AreWrittenAsOneRow() {
+        ReceiptService.Stats before = receipts.stats();
+        for (long sequence = 1; sequence <= 500; sequence++) {
+            receipts.acknowledge("carol", new Receipt(null, "carol", "dave", null, sequence));
+        }
+        receipts.flush();
+
+        ReceiptService.Stats after = receipts.stats();
+        assertEquals(500, after.acknowledgements() - before.acknowledgements());
+        assertEquals(1, after.rowsWritten() - before.rowsWritten());
+        assertEquals(0, after.pending());
+        assertEquals(500, stored("carol", "dave").getReadUpTo());
+        assertEquals(500, stored("carol", "dave").getDeliveredUpTo());
+    }
+
+    @Test
+    public void watermark_NeverMovesBackwards() {
+        receipts.acknowledge("erin", new Receipt(null, "erin", "frank", 200L, 100L));
+        receipts.flush();
+        long written = receipts.stats().rowsWritten();
+
+        receipts.acknowledge("erin", new Receipt(null, "erin", "frank", 150L, 50L));
+        receipts.flush();
+        assertEquals(written, receipts.stats().rowsWritten());
+
+        receipts.acknowledge("erin", new Receipt(null, "erin", "frank", null, 120L));
+        assertEquals(List.of(new Receipt(Status.RECEIPT, "erin", "frank", 200L, 120L)),
+                receipts.receipts("erin", "frank"));
+        receipts.flush();
+        assertEquals(200, stored("erin", "frank").getDeliveredUpTo());
+        assertEquals(120, stored("erin", "frank").getReadUpTo());
+    }
+
+    /** Abonniert die privaten Nachrichten eines Benutzers und sammelt die Bestätigungen darin. */
+    private static void subscribe(StompSession session, String user, BlockingQueue<Receipt> received) {
+        session.subscribe("/user/" + user + "/private", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Receipt.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((Receipt) payload);
+            }
+        });
+    }
+
+    @Test
+    public void readAcknowledgement_IsPushedToSender() throws Exception {
+        StompSession sender = server.connect();
+        StompSession reader = server.connect();
+        BlockingQueue<Receipt> received = new LinkedBlockingQueue<>();
+        subscribe(sender, "alice", received);
+        subscribe(reader, "bob", new LinkedBlockingQueue<>());
+
+        Receipt result = null;
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (long sequence = 1000; result == null && System.currentTimeMillis() < deadline; sequence++) {
+            reader.send("/app/receipt", new Receipt(null, "bob", "alice", null, sequence));
+            Thread.sleep(100);
+            receipts.flush();
+            result = received.poll(300, TimeUnit.MILLISECONDS);
+        }
+        assertNotNull(result, "Bestätigung wurde nicht zugestellt");
+        assertEquals(Status.RECEIPT, result.status());
+        assertEquals("bob", result.senderName());
+        assertEquals("alice", result.receiverName());
+        assertEquals(result.readUpTo(), result.deliveredUpTo());
+        sender.disconnect();
+        reader.disconnect();
+    }
+
+    @Test
+    public void anonymousAcknowledgement_CountsForBoundName() throws Exception {
+        StompSession sender = server.connect();
+        StompSession mallory = server.connect();
+        BlockingQueue<Receipt> received = new LinkedBlockingQueue<>();
+        subscribe(sender, "gina", received);
+        subscribe(mallory, "mallory", new LinkedBlockingQueue<>());
+
+        Receipt result = null;
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (long sequence = 1; result == null && System.currentTimeMillis() < deadline; sequence++) {
+            mallory.send("/app/receipt", new Receipt(null, "hugo", "gina", null, sequence));
+            Thread.sleep(100);
+            receipts.flush();
+            result = received.poll(300, TimeUnit.MILLISECONDS);
+        }
+        assertNotNull(result, "Bestätigung wurde nicht zugestellt");
+        assertEquals("mallory", result.senderName());
+        assertTrue(repository.findById(new ReadReceipt.Key(ChatMessage.conversationKey("hugo", "gina"), "hugo")).isEmpty());
+        sender.disconnect();
+        mallory.disconnect();
+    }
+}
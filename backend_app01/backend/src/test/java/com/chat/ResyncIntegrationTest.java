@@ -0,0 +1,148 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.Message;
+import com.chat.model.ResyncBatch;
+import com.chat.model.ResyncRequest;
+import com.chat.service.ChatMessageWriter;
+import com.chat.service.ConversationCache;
+
+/**
+ * Prüft Sequenznummern und den Abgleich nach einem Verbindungsabbruch an einer laufenden Instanz.
+ */
+public class ResyncIntegrationTest {
+
+    private static ChatTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("resync", "chat.resync.batch-size=3");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Sendet private Nachrichten und wartet, bis der Empfänger sie erhalten hat.
+     */
+    private static List<Message> sendPrivate(String sender, String receiver, int count) throws Exception {
+        StompSession session = server.connect();
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        session.subscribe("/user/" + receiver + "/private", ChatTestServer.handler(received::add));
+        Thread.sleep(200);
+        for (int i = 0; i < count; i++) {
+            session.send("/app/private-message", ChatTestServer.message(sender, receiver, "nachricht " + i));
+        }
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = received.poll(10, TimeUnit.SECONDS);
+            assertNotNull(message, "Nachricht " + i + " wurde nicht zugestellt");
+            messages.add(message);
+        }
+        session.disconnect();
+        return messages;
+    }
+
+    private static ResyncBatch[] resync(String user, Map<String, Long> conversations) throws Exception {
+        return resync(user, user, conversations);
+    }
+
+    /**
+     * @param user          Name, an den sich die anonyme Sitzung durch ihr Abonnement bindet
+     * @param requestedUser Name, den die Anfrage angibt
+     */
+    private static ResyncBatch[] resync(String user, String requestedUser, Map<String, Long> conversations)
+            throws Exception {
+        StompSession session = server.connect();
+        BlockingQueue<ResyncBatch[]> received = new LinkedBlockingQueue<>();
+        session.subscribe("/user/" + user + "/resync", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ResyncBatch[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((ResyncBatch[]) payload);
+            }
+        });
+        Thread.sleep(200);
+        session.send("/app/resync", new ResyncRequest(requestedUser, conversations));
+        ResyncBatch[] batches = received.poll(10, TimeUnit.SECONDS);
+        session.disconnect();
+        assertNotNull(batches, "Keine Antwort auf den Abgleich");
+        return batches;
+    }
+
+    private static List<Long> sequences(ResyncBatch batch) {
+        return batch.messages().stream().map(ChatMessage::getSequence).toList();
+    }
+
+    @Test
+    public void privateMessages_AreNumberedPerConversation() throws Exception {
+        List<Message> messages = sendPrivate("gina", "hank", 4);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), messages.stream().map(Message::getSequence).sorted().toList());
+    }
+
+    @Test
+    public void resync_StreamsOnlyTheMissedDeltaInBoundedBatches() throws Exception {
+        sendPrivate("ivan", "judy", 5);
+
+        ResyncBatch[] first = resync("judy", Map.of("ivan", 1L));
+        assertEquals(1, first.length);
+        assertEquals("ivan", first[0].conversation());
+        assertFalse(first[0].complete());
+        assertEquals(List.of(2L, 3L, 4L), sequences(first[0]));
+
+        ResyncBatch[] second = resync("judy", Map.of("ivan", 4L));
+        assertTrue(second[0].complete());
+        assertEquals(List.of(5L), sequences(second[0]));
+    }
+
+    @Test
+    public void resync_AnonymousSessionOnlyGetsItsBoundConversations() throws Exception {
+        sendPrivate("olaf", "nina", 2);
+
+        ResyncBatch[] batches = resync("mallory", "nina", Map.of("olaf", 0L));
+        assertTrue(batches[0].messages().isEmpty());
+    }
+
+    @Test
+    public void resync_ReadsFromDatabaseWhenConversationIsNotCached() throws Exception {
+        sendPrivate("kate", "leo", 3);
+        String conversationId = ChatMessage.conversationKey("kate", "leo");
+        ChatMessageWriter writer = server.context().getBean(ChatMessageWriter.class);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (writer.pendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        server.context().getBean(ConversationCache.class).invalidate(conversationId);
+
+        ResyncBatch[] batches = resync("leo", Map.of("kate", 1L));
+        assertTrue(batches[0].complete());
+        assertEquals(List.of(2L, 3L), sequences(batches[0]));
+        assertTrue(batches[0].messages().stream().allMatch(m -> m.getId() != null));
+    }
+}
@@ -0,0 +1,51 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.JwtUtil;
+
+/**
+ * Prüft, dass nur Administratoren den Neuaufbau des Suchindex starten dürfen.
+ */
+public class SearchControllerIntegrationTest {
+
+    private static ChatTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("search", "chat.security.admins=root");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static int post(String path, String user) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path))
+                .POST(HttpRequest.BodyPublishers.noBody());
+        if (user != null) {
+            request.header("Authorization", "Bearer " + JwtUtil.generateToken(user));
+        }
+        return HttpClient.newHttpClient().send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Test
+    public void rebuild_RequiresAdminRole() throws Exception {
+        assertEquals(401, post("/api/secure/messages/search/rebuild", null));
+        assertEquals(403, post("/api/secure/messages/search/rebuild", "alice"));
+        int status = post("/api/secure/messages/search/rebuild", "root");
+        assertTrue(status == 202 || status == 409, "Status " + status);
+    }
+}
@@ -0,0 +1,111 @@
+package com.chat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.chat.configuration.JwtUtil;
+import com.chat.configuration.StompAuthInterceptor;
+import com.chat.service.UserCache;
+
+public class StompAuthInterceptorTest {
+
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final UserCache userCache = mock(UserCache.class);
+
+    private static Message<byte[]> connect(String authorization) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        if (authorization != null) {
+            accessor.addNativeHeader("Authorization", authorization);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @Test
+    public void connect_WithValidToken_BindsUser() {
+        Message<byte[]> message = connect("Bearer " + JwtUtil.generateToken("alice"));
+
+        Message<?> result = new StompAuthInterceptor(true, userCache).preSend(message, channel);
+
+        assertEquals("alice", StompHeaderAccessor.wrap(result).getUser().getName());
+    }
+
+    @Test
+    public void connect_WithInvalidToken_IsRejected() {
+        Message<byte[]> message = connect("Bearer invalid.token.value");
+
+        assertThrows(MessageDeliveryException.class,
+                () -> new StompAuthInterceptor(false, userCache).preSend(message, channel));
+    }
+
+    @Test
+    public void connect_WithoutToken_DependsOnRequireAuth() {
+        assertNotNull(new StompAuthInterceptor(false, userCache).preSend(connect(null), channel));
+        assertThrows(MessageDeliveryException.class,
+                () -> new StompAuthInterceptor(true, userCache).preSend(connect(null), channel));
+    }
+
+    private static Message<byte[]> subscribe(String user, Map<String, Object> session, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setSessionAttributes(session);
+        if (user != null) {
+            accessor.setUser(new UsernamePasswordAuthenticationToken(user, null));
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @Test
+    public void subscribe_ToOwnDestination_IsAllowed() {
+        StompAuthInterceptor interceptor = new StompAuthInterceptor(true, userCache);
+
+        assertNotNull(interceptor.preSend(subscribe("alice", new HashMap<>(), "/user/alice/private"), channel));
+        assertNotNull(interceptor.preSend(subscribe("alice", new HashMap<>(), "/user/queue/throttle"), channel));
+        assertNotNull(interceptor.preSend(subscribe("alice", new HashMap<>(), "/chatroom/public"), channel));
+    }
+
+    @Test
+    public void subscribe_ToOtherUsersDestination_IsRejected() {
+        assertThrows(MessageDeliveryException.class,
+                () -> new StompAuthInterceptor(false, userCache).preSend(subscribe("mallory", new HashMap<>(), "/user/alice/private"), channel));
+        assertThrows(MessageDeliveryException.class,
+                () -> new StompAuthInterceptor(true, userCache).preSend(subscribe(null, new HashMap<>(), "/user/alice/private"), channel));
+    }
+
+    @Test
+    public void subscribe_Anonymous_IsBoundToFirstName() {
+        StompAuthInterceptor interceptor = new StompAuthInterceptor(false, userCache);
+        Map<String, Object> session = new HashMap<>();
+
+        assertNotNull(interceptor.preSend(subscribe(null, session, "/user/alice/private"), channel));
+        assertNotNull(interceptor.preSend(subscribe(null, session, "/user/alice/resync"), channel));
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(subscribe(null, session, "/user/bob/private"), channel));
+    }
+
+    @Test
+    public void subscribe_Anonymous_CannotBindToRegisteredName() {
+        when(userCache.isUsernameTaken("alice")).thenReturn(true);
+        StompAuthInterceptor interceptor = new StompAuthInterceptor(false, userCache);
+        Map<String, Object> session = new HashMap<>();
+
+        assertThrows(MessageDeliveryException.class,
+                () -> interceptor.preSend(subscribe(null, session, "/user/alice/private"), channel));
+        assertNull(StompAuthInterceptor.anonymousName(session));
+        assertNotNull(interceptor.preSend(subscribe(null, session, "/user/guest/private"), channel));
+    }
+}
@@ -0,0 +1,119 @@
+package com.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.chat.configuration.StompRateLimitInterceptor;
+import com.chat.model.ThrottleNotice;
+
+public class StompRateLimitInterceptorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MessageChannel outbound = mock(MessageChannel.class);
+    private final MessageChannel inbound = mock(MessageChannel.class);
+    private final Map<String, Object> sessionAttributes = new HashMap<>();
+    private final StompRateLimitInterceptor interceptor = new StompRateLimitInterceptor(outbound, objectMapper, true,
+            List.of("/app/message", "/app/private-message"), 2, 0.001, 1, 0.001, 100);
+
+    private Message<byte[]> frame(StompCommand command, String destination, String body) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("s1");
+        accessor.setSessionAttributes(sessionAttributes);
+        accessor.setDestination(destination);
+        if (command != StompCommand.SEND) {
+            accessor.setSubscriptionId("sub-7");
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private Message<?> send(String destination, String body) {
+        return interceptor.preSend(frame(StompCommand.SEND, destination, body), inbound);
+    }
+
+    @Test
+    public void send_TextAndMediaHaveSeparateBudgets() {
+        String text = "{\"senderName\":\"alice\",\"message\":\"hi\",\"media\":null}";
+        String media = "{\"senderName\":\"alice\",\"media\":\"abc123\"}";
+
+        assertNotNull(send("/app/message", text));
+        assertNotNull(send("/app/message", text));
+        assertNull(send("/app/message", text));
+
+        assertNotNull(send("/app/message", media));
+        assertNull(send("/app/message", media));
+
+        assertNotNull(send("/app/private-message", text));
+        assertEquals(2, interceptor.stats().rejected());
+    }
+
+    @Test
+    public void send_OverBudgetWithoutSubscription_SendsError() {
+        for (int i = 0; i < 3; i++) {
+            send("/app/message", "{}");
+        }
+
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(outbound).send(captor.capture());
+        StompHeaderAccessor error = StompHeaderAccessor.wrap(captor.getValue());
+        assertEquals(StompCommand.ERROR, error.getCommand());
+        assertEquals("s1", error.getSessionId());
+        assertNotNull(error.getFirstNativeHeader("retry-after-ms"));
+    }
+
+    @Test
+    public void send_OverBudgetWithSubscription_SendsNotice() throws Exception {
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, StompRateLimitInterceptor.THROTTLE_DESTINATION, ""), inbound);
+        for (int i = 0; i < 3; i++) {
+            send("/app/message", "{}");
+        }
+
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(outbound).send(captor.capture());
+        StompHeaderAccessor notice = StompHeaderAccessor.wrap(captor.getValue());
+        assertEquals(StompCommand.MESSAGE, notice.getCommand());
+        assertEquals("sub-7", notice.getSubscriptionId());
+        ThrottleNotice body = objectMapper.readValue((byte[]) captor.getValue().getPayload(), ThrottleNotice.class);
+        assertEquals("/app/message", body.destination());
+        assertTrue(body.retryAfterMs() > 0);
+
+        interceptor.preSend(frame(StompCommand.UNSUBSCRIBE, null, ""), inbound);
+        send("/app/message", "{}");
+        verify(outbound, times(2)).send(any());
+        assertTrue(sessionAttributes.isEmpty());
+    }
+
+    @Test
+    public void send_AnonymousSessionsFromSameAddressShareBudget() {
+        for (int i = 0; i < 3; i++) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+            accessor.setSessionId("anon-" + i);
+            accessor.setSessionAttributes(new HashMap<>(Map.of(StompRateLimitInterceptor.REMOTE_ADDRESS_ATTRIBUTE, "10.0.0.1")));
+            accessor.setDestination("/app/message");
+            Message<byte[]> frame = MessageBuilder.createMessage("{}".getBytes(StandardCharsets.UTF_8),
+                    accessor.getMessageHeaders());
+            Message<?> result = interceptor.preSend(frame, inbound);
+            if (i < 2) {
+                assertNotNull(result);
+            } else {
+                assertNull(result, "Neue Verbindung darf das Budget nicht erneuern");
+            }
+        }
+        assertEquals(1, interceptor.stats().rejected());
+    }
+}
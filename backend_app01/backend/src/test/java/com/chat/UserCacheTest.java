@@ -0,0 +1,103 @@
+package com.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.chat.entity.Users;
+import com.chat.repository.UserRepository;
+import com.chat.service.BloomFilter;
+import com.chat.service.UserCache;
+
+public class UserCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    private UserCache newCache() {
+        return new UserCache(userRepository, 60_000, 100, 1000, 0.01);
+    }
+
+    @Test
+    public void findByUsername_CachesHitsButNotMisses() {
+        Users alice = new Users("alice", "Alice", "alice@example.com", "x");
+        when(userRepository.findByUsername("alice")).thenReturn(alice);
+        UserCache cache = newCache();
+
+        assertSame(alice, cache.findByUsername("alice"));
+        assertSame(alice, cache.findByUsername("alice"));
+        assertNull(cache.findByUsername("ghost"));
+        assertNull(cache.findByUsername("ghost"));
+
+        verify(userRepository, times(1)).findByUsername("alice");
+        verify(userRepository, times(2)).findByUsername("ghost");
+        UserCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(3, stats.misses());
+    }
+
+    @Test
+    public void loadedFilter_AnswersSignupChecksWithoutQuery() {
+        when(userRepository.findAllUsernames()).thenReturn(List.of("alice"));
+        when(userRepository.findAllEmails()).thenReturn(List.of("alice@example.com"));
+        UserCache cache = newCache();
+        cache.loadFilter();
+
+        assertFalse(cache.isUsernameTaken("bob"));
+        assertFalse(cache.isEmailTaken("bob@example.com"));
+
+        verify(userRepository, never()).findByUsername("bob");
+        verify(userRepository, never()).findByEmail("bob@example.com");
+        assertEquals(2, cache.stats().filterRejections());
+    }
+
+    @Test
+    public void loadedFilter_DoesNotHideUsersCreatedOnOtherNodes() {
+        when(userRepository.findAllUsernames()).thenReturn(List.of("alice"));
+        when(userRepository.findAllEmails()).thenReturn(List.of("alice@example.com"));
+        UserCache cache = newCache();
+        cache.loadFilter();
+        assertNull(cache.findByUsername("carol"));
+
+        // carol registriert sich auf einem anderen Knoten und meldet sich hier an
+        Users carol = new Users("carol", "Carol", "carol@example.com", "x");
+        when(userRepository.findByUsername("carol")).thenReturn(carol);
+
+        assertSame(carol, cache.findByUsername("carol"));
+        assertEquals(0, cache.stats().filterRejections());
+    }
+
+    @Test
+    public void put_IsVisibleWithoutQuery() {
+        UserCache cache = newCache();
+        assertNull(cache.findByUsername("bob"));
+
+        Users bob = new Users("bob", "Bob", "bob@example.com", "x");
+        cache.put(bob);
+
+        assertSame(bob, cache.findByUsername("bob"));
+        assertSame(bob, cache.findByEmail("bob@example.com"));
+        assertTrue(cache.isUsernameTaken("bob"));
+        verify(userRepository, times(1)).findByUsername("bob");
+    }
+
+    @Test
+    public void bloomFilter_HasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("user" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("user" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,56 @@
+package com.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import com.chat.entity.Users;
+import com.chat.model.UserSuggestion;
+import com.chat.repository.UserRepository;
+import com.chat.service.UserSearchIndex;
+
+public class UserSearchIndexTest {
+
+    private static Users user(long id, String username, String name) {
+        Users u = new Users(username, name, username + "@example.com", "x");
+        u.setId(id);
+        return u;
+    }
+
+    private static List<String> usernames(List<UserSuggestion> suggestions) {
+        return suggestions.stream().map(UserSuggestion::username).toList();
+    }
+
+    @Test
+    public void search_MatchesUsernameAndNameWordsCaseInsensitive() {
+        UserSearchIndex index = new UserSearchIndex(mock(UserRepository.class), 100);
+        index.rebuild(List.of(
+                new UserSuggestion(1L, "alice", "Alice Smith"),
+                new UserSuggestion(2L, "bob", "Bob Alder"),
+                new UserSuggestion(3L, "carol", "Carol Jones")));
+
+        // Sortiert nach Suchbegriff: "alder" vor "alice"
+        assertEquals(List.of("bob", "alice"), usernames(index.search("AL", 10)));
+        assertEquals(List.of("alice"), usernames(index.search("smi", 10)));
+        assertEquals(List.of("bob"), usernames(index.search("al", 1)));
+        assertTrue(index.search("x", 10).isEmpty());
+        assertTrue(index.search(" ", 10).isEmpty());
+    }
+
+    @Test
+    public void add_IsSearchableBeforeAndAfterMerge() {
+        UserSearchIndex index = new UserSearchIndex(mock(UserRepository.class), 4);
+        index.rebuild(List.of(new UserSuggestion(1L, "anna", "Anna")));
+
+        index.add(user(2L, "andreas", "Andreas Meier"));
+        assertEquals(List.of("andreas", "anna"), usernames(index.search("an", 10)));
+
+        // Überschreitet die Schwelle und führt das Delta in das Array über
+        index.add(user(3L, "anton", "Anton Berg"));
+        assertEquals(List.of("andreas", "anna", "anton"), usernames(index.search("an", 10)));
+        assertEquals(List.of("anton"), usernames(index.search("berg", 10)));
+    }
+}
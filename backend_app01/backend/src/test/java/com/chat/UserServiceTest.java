@@ -0,0 +1,49 @@
+package com.chat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.chat.entity.ChatMessage;
+import com.chat.repository.UserRepository;
+import com.chat.service.PasswordHasher;
+import com.chat.service.UserCache;
+import com.chat.service.UserSearchIndex;
+import com.chat.service.UserService;
+
+public class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private UserSearchIndex userSearchIndex;
+
+    @InjectMocks
+    private UserService userService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void signUp_RejectsSeparatorInUsername() {
+        // (a:b, c) und (a, b:c) ergäben sonst denselben Konversationsschlüssel
+        assertEquals(ChatMessage.conversationKey("a:b", "c"), ChatMessage.conversationKey("a", "b:c"));
+
+        assertThrows(RuntimeException.class, () -> userService.signUpUser("a:b", "A", "a@example.com", "pw"));
+        assertThrows(RuntimeException.class, () -> userService.signUpUser(" ", "A", "a@example.com", "pw"));
+        verify(userRepository, never()).save(any());
+        verifyNoInteractions(passwordHasher);
+    }
+}
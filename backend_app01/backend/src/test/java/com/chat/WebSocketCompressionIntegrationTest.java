@@ -0,0 +1,110 @@
+package com.chat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.WebSocketCompression;
+
+/**
+ * Prüft die Aushandlung von {@code permessage-deflate} mit einem Limit von einer komprimierten
+ * Verbindung: Der erste Handshake erhält Kompression, der zweite nicht mehr.
+ */
+public class WebSocketCompressionIntegrationTest {
+
+    private static ChatTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("compression", "chat.websocket.compression.max-sessions=1");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private record Handshake(Socket socket, String status, String extensions) {
+    }
+
+    private static Handshake handshake(String offeredExtensions) throws Exception {
+        Socket socket = new Socket("localhost", server.port());
+        byte[] nonce = new byte[16];
+        ThreadLocalRandom.current().nextBytes(nonce);
+        String request = "GET /ws/websocket HTTP/1.1\r\n"
+                + "Host: localhost:" + server.port() + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(nonce) + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Extensions: " + offeredExtensions + "\r\n"
+                + "\r\n";
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String status = in.readLine();
+        String extensions = null;
+        for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+            if (line.toLowerCase().startsWith("sec-websocket-extensions:")) {
+                extensions = line.substring(line.indexOf(':') + 1).trim();
+            }
+        }
+        return new Handshake(socket, status, extensions);
+    }
+
+    @Test
+    public void compressionIsLimitedToMaxSessions() throws Exception {
+        WebSocketCompression compression = server.context().getBean(WebSocketCompression.class);
+
+        Handshake first = handshake("permessage-deflate; client_max_window_bits");
+        assertTrue(first.status().contains("101"), first.status());
+        assertNotNull(first.extensions());
+        assertTrue(first.extensions().startsWith("permessage-deflate"));
+        waitFor(() -> compression.stats().compressedSessions() == 1);
+
+        Handshake second = handshake("permessage-deflate; client_max_window_bits");
+        assertTrue(second.status().contains("101"), second.status());
+        assertNull(second.extensions());
+        assertEquals(1, compression.stats().declinedHandshakes());
+
+        first.socket().close();
+        second.socket().close();
+        waitFor(() -> compression.stats().compressedSessions() == 0);
+    }
+
+    @Test
+    public void sampleEstimatesCompressedSize() {
+        WebSocketCompression compression = new WebSocketCompression(true, 10, 1);
+        byte[] frame = "MESSAGE\ndestination:/chatroom/public\ncontent-type:application/json\n\n{\"senderName\":\"alice\",\"message\":\"hallo hallo hallo hallo\"}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        int compressed = compression.sample(frame);
+
+        assertTrue(compressed > 0 && compressed < frame.length);
+        assertEquals(1, compression.stats().sampledFrames());
+        assertTrue(compression.stats().compressionRatio() < 1.0);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Bedingung nicht rechtzeitig erfüllt");
+            Thread.sleep(20);
+        }
+    }
+}
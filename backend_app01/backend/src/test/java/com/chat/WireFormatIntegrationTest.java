@@ -0,0 +1,119 @@
+package com.chat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.chat.configuration.WireFormatInterceptor;
+
+/**
+ * Prüft CBOR an einer laufenden Instanz: Ein Client, der beim {@code CONNECT} CBOR wählt, erhält
+ * Chatnachrichten als binäre WebSocket-Frames, deren Inhalt sich als CBOR dekodieren lässt.
+ */
+public class WireFormatIntegrationTest {
+
+    private static ChatTestServer server;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        server = ChatTestServer.start("wire-format");
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Sammelt alle empfangenen WebSocket-Nachrichten.
+     */
+    private static final class RecordingHandler extends AbstractWebSocketHandler {
+        final BlockingQueue<WebSocketMessage<?>> received = new LinkedBlockingQueue<>();
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+            received.add(message);
+        }
+
+        @Override
+        protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+            received.add(message);
+        }
+    }
+
+    private static TextMessage stomp(String frame) {
+        return new TextMessage(frame + "\n\0");
+    }
+
+    @Test
+    public void cborClient_ReceivesBinaryFrames() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        WebSocketSession raw = new StandardWebSocketClient()
+                .execute(handler, "ws://localhost:" + server.port() + "/ws/websocket")
+                .get(10, TimeUnit.SECONDS);
+        raw.sendMessage(stomp("CONNECT\naccept-version:1.2\nhost:localhost\nheart-beat:0,0\n"
+                + "content-type:application/cbor\n"));
+        WebSocketMessage<?> connected = handler.received.poll(10, TimeUnit.SECONDS);
+        assertInstanceOf(TextMessage.class, connected);
+        assertTrue(((TextMessage) connected).getPayload().startsWith("CONNECTED"));
+        raw.sendMessage(stomp("SUBSCRIBE\nid:sub-0\ndestination:/chatroom/public\n"));
+
+        // Der einfache Broker bestätigt SUBSCRIBE nicht; gesendet wird, bis die erste Nachricht ankommt
+        StompSession sender = server.connect();
+        BinaryMessage frame = null;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (frame == null && System.currentTimeMillis() < deadline) {
+            sender.send("/app/message", ChatTestServer.message("alice", null, "hallo in cbor"));
+            WebSocketMessage<?> next = handler.received.poll(500, TimeUnit.MILLISECONDS);
+            if (next instanceof BinaryMessage binary) {
+                frame = binary;
+            } else {
+                assertFalse(next instanceof TextMessage text && text.getPayload().startsWith("MESSAGE"),
+                        "Chatnachricht kam als Text-Frame");
+            }
+        }
+        assertNotNull(frame, "Kein binärer Frame empfangen");
+
+        ByteBuffer payload = frame.getPayload();
+        List<Message<byte[]>> decoded = new StompDecoder().decode(payload);
+        assertEquals(1, decoded.size());
+        StompHeaderAccessor headers = MessageHeaderAccessor.getAccessor(decoded.get(0), StompHeaderAccessor.class);
+        assertEquals(StompCommand.MESSAGE, headers.getCommand());
+        assertEquals("cbor", MimeType.valueOf(headers.getFirstNativeHeader("content-type")).getParameter("format"));
+
+        JsonNode body = new CBORMapper().readTree(decoded.get(0).getPayload());
+        JsonNode message = body.isArray() ? body.get(0) : body;
+        assertEquals("alice", message.get("senderName").asText());
+        assertEquals("hallo in cbor", message.get("message").asText());
+        assertFalse(new String(decoded.get(0).getPayload(), StandardCharsets.ISO_8859_1).contains("\"senderName\""));
+
+        sender.disconnect();
+        raw.close();
+    }
+}
@@ -0,0 +1,133 @@
+package com.chat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import com.chat.configuration.WireFormatInterceptor;
+
+public class WireFormatInterceptorTest {
+
+    private static final byte[] JSON =
+            "{\"senderName\":\"alice\",\"receiverName\":null,\"message\":\"hi\",\"status\":\"MESSAGE\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final WireFormatInterceptor interceptor = new WireFormatInterceptor();
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId, String subscriptionId,
+                                         String contentType) {
+        return frame(command, sessionId, subscriptionId, contentType, true);
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId, String subscriptionId,
+                                         String contentType, boolean nativeWebSocket) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        Map<String, Object> attributes = new HashMap<>();
+        if (nativeWebSocket) {
+            attributes.put(WireFormatInterceptor.NATIVE_WEBSOCKET, Boolean.TRUE);
+        }
+        accessor.setSessionAttributes(attributes);
+        if (subscriptionId != null) {
+            accessor.setSubscriptionId(subscriptionId);
+            accessor.setDestination("/chatroom/public");
+        }
+        if (contentType != null) {
+            accessor.addNativeHeader("content-type", contentType);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> broadcast(byte[] payload, String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/chatroom/public");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    @Test
+    public void withoutNegotiation_PayloadStaysJson() {
+        interceptor.preSend(frame(StompCommand.CONNECT, "s1", null, null), channel);
+
+        Message<?> result = interceptor.preSend(broadcast(JSON, "s1", "sub-0"), channel);
+
+        assertSame(JSON, result.getPayload());
+        assertEquals(0, interceptor.encodingCount());
+    }
+
+    @Test
+    public void cborOnConnect_TranscodesAndDropsNulls() throws Exception {
+        interceptor.preSend(frame(StompCommand.CONNECT, "s1", null, "application/cbor"), channel);
+
+        Message<?> result = interceptor.preSend(broadcast(JSON, "s1", "sub-0"), channel);
+
+        assertEquals(WireFormatInterceptor.CBOR_FRAME_TYPE, result.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        // Nur mit einem zu application/octet-stream passenden Inhaltstyp sendet Spring einen binären Frame
+        assertTrue(MimeTypeUtils.APPLICATION_OCTET_STREAM.isCompatibleWith(WireFormatInterceptor.CBOR_FRAME_TYPE));
+        JsonNode decoded = new CBORMapper().readTree((byte[]) result.getPayload());
+        assertEquals("alice", decoded.get("senderName").asText());
+        assertFalse(decoded.has("receiverName"));
+        assertTrue(((byte[]) result.getPayload()).length < JSON.length);
+    }
+
+    @Test
+    public void sockJsSession_StaysJson() {
+        interceptor.preSend(frame(StompCommand.CONNECT, "s1", null, "application/cbor", false), channel);
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, "s1", "sub-cbor", "application/cbor", false), channel);
+
+        assertSame(JSON, interceptor.preSend(broadcast(JSON, "s1", "sub-0"), channel).getPayload());
+        assertSame(JSON, interceptor.preSend(broadcast(JSON, "s1", "sub-cbor"), channel).getPayload());
+        assertEquals(0, interceptor.encodingCount());
+    }
+
+    @Test
+    public void subscriptionHeader_OverridesSessionDefault() {
+        interceptor.preSend(frame(StompCommand.CONNECT, "s1", null, "application/cbor"), channel);
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, "s1", "sub-json", "application/json"), channel);
+        interceptor.preSend(frame(StompCommand.CONNECT, "s2", null, null), channel);
+        interceptor.preSend(frame(StompCommand.SUBSCRIBE, "s2", "sub-cbor", "application/cbor"), channel);
+
+        assertSame(JSON, interceptor.preSend(broadcast(JSON, "s1", "sub-json"), channel).getPayload());
+        assertNotSame(JSON, interceptor.preSend(broadcast(JSON, "s1", "sub-other"), channel).getPayload());
+        assertNotSame(JSON, interceptor.preSend(broadcast(JSON, "s2", "sub-cbor"), channel).getPayload());
+
+        interceptor.preSend(frame(StompCommand.UNSUBSCRIBE, "s2", "sub-cbor", null), channel);
+        assertSame(JSON, interceptor.preSend(broadcast(JSON, "s2", "sub-cbor"), channel).getPayload());
+    }
+
+    @Test
+    public void sameBroadcast_IsEncodedOncePerFormat() {
+        for (int i = 0; i < 100; i++) {
+            interceptor.preSend(frame(StompCommand.CONNECT, "s" + i, null, "application/cbor"), channel);
+        }
+
+        byte[] first = (byte[]) interceptor.preSend(broadcast(JSON, "s0", "sub-0"), channel).getPayload();
+        for (int i = 1; i < 100; i++) {
+            assertSame(first, interceptor.preSend(broadcast(JSON, "s" + i, "sub-0"), channel).getPayload());
+        }
+        assertEquals(1, interceptor.encodingCount());
+
+        // Eine neue Nachricht mit gleichem Inhalt ist ein anderes Array und wird neu kodiert
+        interceptor.preSend(broadcast(JSON.clone(), "s0", "sub-0"), channel);
+        assertEquals(2, interceptor.encodingCount());
+    }
+}
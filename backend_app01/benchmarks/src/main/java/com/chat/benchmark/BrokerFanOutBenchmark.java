@@ -0,0 +1,130 @@
+package com.chat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.chat.model.Message;
+import com.chat.service.BroadcastBatcher;
+
+/**
+ * Verteilung einer Nachricht an {@code /chatroom/public} durch den einfachen Broker an N Abonnenten.
+ *
+ * <p>Die Kanäle arbeiten synchron; jedes Frame wird wie in {@code StompSubProtocolHandler} mit dem
+ * {@link StompEncoder} kodiert, das Schreiben auf den Socket entfällt. Gemessen wird die Zeit pro
+ * verteilter Nachricht (alle Abonnenten).</p>
+ *
+ * <p>{@code fanOut} übergibt fertig serialisierte Bytes, {@code fanOutSingle} geht wie der
+ * ungebündelte Pfad über das {@link SimpMessagingTemplate} und {@code fanOutBatched} über den
+ * {@link BroadcastBatcher}, der je {@value #BATCH} Nachrichten als ein Frame pro Abonnent verschickt.
+ * Das Zeitfenster des Batchers bleibt außen vor: er wird nicht gestartet und verschickt nur volle
+ * Bündel.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BrokerFanOutBenchmark {
+
+    private static final String DESTINATION = "/chatroom/public";
+    private static final int BATCH = 50;
+
+    @Param({"10", "100", "1000"})
+    public int subscribers;
+
+    private SimpleBrokerMessageHandler broker;
+    private org.springframework.messaging.Message<byte[]> message;
+    private Message sample;
+    private SimpMessagingTemplate template;
+    private BroadcastBatcher batcher;
+    private long encodedBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        StompEncoder encoder = new StompEncoder();
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(frame -> {
+            if (SimpMessageHeaderAccessor.getMessageType(frame.getHeaders()) != SimpMessageType.MESSAGE) {
+                return;
+            }
+            StompHeaderAccessor stomp = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            stomp.setSubscriptionId(SimpMessageHeaderAccessor.getSubscriptionId(frame.getHeaders()));
+            stomp.setDestination(DESTINATION);
+            stomp.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            encodedBytes += encoder.encode(stomp.getMessageHeaders(), (byte[]) frame.getPayload()).length;
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/chatroom"));
+        broker.start();
+        for (int i = 0; i < subscribers; i++) {
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId("s" + i);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId("s" + i);
+            subscribe.setSubscriptionId("sub-" + i);
+            subscribe.setDestination(DESTINATION);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setDestination(DESTINATION);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        sample = SampleMessages.of("public");
+        message = MessageBuilder.createMessage(new ObjectMapper().writeValueAsBytes(sample),
+                headers.getMessageHeaders());
+
+        template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        batcher = new BroadcastBatcher(template, new ObjectMapper(), true, 1_000, BATCH);
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public long fanOut() {
+        broker.handleMessage(message);
+        return encodedBytes;
+    }
+
+    @Benchmark
+    public long fanOutSingle() {
+        template.convertAndSend(DESTINATION, sample);
+        return encodedBytes;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long fanOutBatched() {
+        for (int i = 0; i < BATCH; i++) {
+            batcher.publish(DESTINATION, sample);
+        }
+        return encodedBytes;
+    }
+}
@@ -0,0 +1,67 @@
+package com.chat.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Vergleicht zwei JMH-Ergebnisdateien ({@code -rf json}) und gibt pro Benchmark und Parametersatz
+ * die Werte beider Läufe sowie die Änderung aus. Abweichungen, die größer als die Summe der beiden
+ * Fehlerbalken (99,9 %) sind, werden markiert.
+ *
+ * <p>Aufruf: {@code CompareResults <alt.json> <neu.json>}</p>
+ */
+public final class CompareResults {
+
+    private record Score(double value, double error, String unit) {
+    }
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Aufruf: CompareResults <alt.json> <neu.json>");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> candidate = read(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "alt", "neu", "Delta");
+        for (Map.Entry<String, Score> entry : candidate.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s  %s%n", entry.getKey(), "-", after.value(), "neu", after.unit());
+                continue;
+            }
+            double change = (after.value() - before.value()) / before.value() * 100;
+            boolean significant = Math.abs(after.value() - before.value()) > before.error() + after.error();
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), before.value(), after.value(),
+                    change, after.unit(), significant ? "  *" : "");
+        }
+    }
+
+    private static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.get("benchmark").asText().replace("com.chat.benchmark.", ""));
+            JsonNode params = run.get("params");
+            if (params != null) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            JsonNode metric = run.get("primaryMetric");
+            double error = metric.get("scoreError").isNumber() ? metric.get("scoreError").asDouble() : 0;
+            scores.put(key.toString(), new Score(metric.get("score").asDouble(), error, metric.get("scoreUnit").asText()));
+        }
+        return scores;
+    }
+}
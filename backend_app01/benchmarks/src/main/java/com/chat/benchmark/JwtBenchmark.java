@@ -0,0 +1,63 @@
+package com.chat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import com.chat.configuration.JwtUtil;
+
+/**
+ * Prüfung von JWTs über {@link JwtUtil}: wiederholt geprüfter Token (Cache-Treffer), stets neue
+ * Token (HMAC und JSON-Parsing; der Vorrat übersteigt die Cache-Größe, sodass die meisten Prüfungen
+ * den Cache verfehlen) und ungültige Signatur.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final int DISTINCT_TOKENS = 50_000;
+
+    private String token;
+    private String forged;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        token = JwtUtil.generateToken("alice");
+        forged = token.substring(0, token.length() - 4) + "AAAA";
+        tokens = new String[DISTINCT_TOKENS];
+        for (int i = 0; i < DISTINCT_TOKENS; i++) {
+            tokens[i] = JwtUtil.generateToken("user" + i);
+        }
+    }
+
+    @Benchmark
+    public boolean validateToken_cached() {
+        return JwtUtil.validateToken(token);
+    }
+
+    @Benchmark
+    public String extractUsername_cached() {
+        return JwtUtil.extractUsername(token);
+    }
+
+    @Benchmark
+    public String extractUsername_uncached() {
+        String candidate = tokens[next];
+        next = next + 1 == DISTINCT_TOKENS ? 0 : next + 1;
+        return JwtUtil.extractUsername(candidate);
+    }
+
+    @Benchmark
+    public boolean validateToken_forged() {
+        return JwtUtil.validateToken(forged);
+    }
+}
@@ -0,0 +1,323 @@
+package com.chat.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.chat.ChatApplication;
+import com.chat.configuration.MessageMetrics;
+import com.chat.model.Message;
+import com.chat.model.Status;
+import com.chat.service.MediaStore;
+
+/**
+ * Lasttest des gesamten Nachrichtenpfads: startet die Anwendung mit H2-In-Memory-Datenbank,
+ * verbindet simulierte STOMP-Clients über {@code /ws} und misst die Zeit vom Senden bis zum
+ * Empfang sowie den Durchsatz.
+ *
+ * <p>Jeder Client sendet auf einem eigenen virtuellen Thread in festem Takt ({@code load.rate}
+ * Nachrichten pro Sekunde) nach der Mischung {@code load.mix}: öffentliche Nachrichten an
+ * {@code /app/message}, private an einen zufälligen anderen Client und private Nachrichten mit
+ * Medienreferenz. Die ersten {@code load.room-size} Clients haben {@code /chatroom/public}
+ * abonniert. Gemessen wird ab dem geplanten Sendezeitpunkt, damit ein blockierter Sender die
+ * Latenz nicht schönt (keine „coordinated omission“).</p>
+ *
+ * <p>Jedes Szenario aus {@code load.scenarios} ({@code name: key=value key=value; name2: ...})
+ * startet eine eigene Instanz mit diesen Eigenschaften, z. B. {@code chat.persistence.mode=SYNC},
+ * {@code chat.threads.virtual=true} oder {@code chat.broadcast.batch.enabled=true}. Die
+ * Ratenbegrenzung ist standardmäßig aus; ein Szenario kann sie wieder einschalten.</p>
+ *
+ * <p>Alle Einstellungen sind Systemeigenschaften, siehe Ausführung {@code load} in der pom.xml.</p>
+ */
+public final class LoadGenerator {
+
+    static final String PUBLIC = "public";
+    static final String PRIVATE = "private";
+    static final String MEDIA = "media";
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 1000);
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "0.2"));
+    private static final String MIX = System.getProperty("load.mix", "public:20,private:75,media:5");
+    private static final int ROOM_SIZE = Math.min(CLIENTS, Integer.getInteger("load.room-size", 100));
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup", 10);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration", 30);
+    private static final int DRAIN_SECONDS = Integer.getInteger("load.drain", 10);
+    private static final int CONNECT_CONCURRENCY = Integer.getInteger("load.connect-concurrency", 50);
+    private static final String SCENARIOS = System.getProperty("load.scenarios", "default:");
+    private static final String REPORT = System.getProperty("load.report", "target/load-report.json");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private record Scenario(String name, List<String> properties) {
+    }
+
+    /**
+     * Reicht JSON unverändert als {@code byte[]} durch; (de)serialisiert wird im Generator selbst.
+     */
+    private static final class RawJsonConverter extends ByteArrayMessageConverter {
+        RawJsonConverter() {
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+        }
+    }
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<LoadReport.ScenarioResult> results = new ArrayList<>();
+        for (Scenario scenario : parseScenarios(SCENARIOS)) {
+            System.out.printf("Szenario %s: %d Clients, %.2f Nachrichten/s je Client, Mischung %s, Raum %d%n",
+                    scenario.name(), CLIENTS, RATE, MIX, ROOM_SIZE);
+            results.add(run(scenario));
+        }
+        LoadReport.print(results, System.out);
+        LoadReport.writeJson(results, new File(REPORT));
+        System.out.println("Bericht: " + REPORT);
+        System.exit(0);
+    }
+
+    private static List<Scenario> parseScenarios(String spec) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String part : spec.split(";")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            int colon = part.indexOf(':');
+            String name = (colon < 0 ? part : part.substring(0, colon)).trim();
+            String properties = colon < 0 ? "" : part.substring(colon + 1).trim();
+            scenarios.add(new Scenario(name, properties.isEmpty() ? List.of() : Arrays.asList(properties.split("\\s+"))));
+        }
+        return scenarios;
+    }
+
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] entry = part.trim().split(":");
+            if (!List.of(PUBLIC, PRIVATE, MEDIA).contains(entry[0])) {
+                throw new IllegalArgumentException("Unknown message type in load.mix: " + entry[0]);
+            }
+            weights.put(entry[0], Integer.parseInt(entry[1]));
+        }
+        return weights;
+    }
+
+    private static ConfigurableApplicationContext start(Scenario scenario) throws IOException {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:load-" + scenario.name() + ";DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.show-sql=false",
+                "--spring.devtools.restart.enabled=false",
+                "--chat.media.directory=" + Files.createTempDirectory("load-media"),
+                "--chat.search.directory=" + Files.createTempDirectory("load-search"),
+                "--chat.archive.directory=" + Files.createTempDirectory("load-archive"),
+                "--chat.ratelimit.enabled=false",
+                "--chat.websocket.require-auth=false",
+                "--logging.level.root=WARN"
+        ));
+        for (String property : scenario.properties()) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(ChatApplication.class).run(args.toArray(String[]::new));
+    }
+
+    private static LoadReport.ScenarioResult run(Scenario scenario) throws Exception {
+        try (ConfigurableApplicationContext context = start(scenario)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            MessageMetrics metrics = context.getBean(MessageMetrics.class);
+            // Wie im Client: Medien einmal hochladen, danach nur die Referenz versenden
+            MediaStore.StoredMedia media = context.getBean(MediaStore.class)
+                    .store(new ByteArrayInputStream(new byte[16 * 1024]), "image/png");
+
+            LoadReport.Recorder recorder = new LoadReport.Recorder();
+            long connectStart = System.nanoTime();
+            List<StompSession> sessions = connect(port, recorder);
+            awaitSubscriptions(metrics);
+            double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+            long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+            recorder.window(measureFrom, measureUntil);
+
+            Map<String, Integer> mix = parseMix(MIX);
+            List<Thread> senders = new ArrayList<>(CLIENTS);
+            for (int i = 0; i < CLIENTS; i++) {
+                int client = i;
+                senders.add(Thread.ofVirtual().name("load-client-" + i).start(() ->
+                        send(sessions, client, mix, media, recorder, start, measureUntil)));
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            recorder.awaitDeliveries(ROOM_SIZE, TimeUnit.SECONDS.toNanos(DRAIN_SECONDS));
+
+            sessions.forEach(StompSession::disconnect);
+            return recorder.result(scenario.name(), scenario.properties(), CLIENTS, connectSeconds,
+                    DURATION_SECONDS, ROOM_SIZE, metrics.stats());
+        }
+    }
+
+    /**
+     * Verbindet alle Clients auf virtuellen Threads, höchstens {@code load.connect-concurrency}
+     * Handshakes gleichzeitig. Jeder Client abonniert seine private Warteschlange, die ersten
+     * {@code load.room-size} zusätzlich {@code /chatroom/public}.
+     */
+    private static List<StompSession> connect(int port, LoadReport.Recorder recorder) throws Exception {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("load-connect-");
+        executor.setVirtualThreads(true);
+        StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+        webSocketClient.setTaskExecutor(executor);
+        WebSocketStompClient stompClient = new WebSocketStompClient(webSocketClient);
+        stompClient.setMessageConverter(new RawJsonConverter());
+        stompClient.setInboundMessageSizeLimit(1024 * 1024);
+
+        String url = "ws://localhost:" + port + "/ws/websocket";
+        Semaphore permits = new Semaphore(CONNECT_CONCURRENCY);
+        List<CompletableFuture<StompSession>> futures = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            permits.acquire();
+            int client = i;
+            futures.add(stompClient.connectAsync(url, new StompSessionHandlerAdapter() {
+                    })
+                    .thenApply(session -> {
+                        session.subscribe("/user/u" + client + "/private", handler(recorder, false));
+                        if (client < ROOM_SIZE) {
+                            session.subscribe("/chatroom/public", handler(recorder, true));
+                        }
+                        return session;
+                    })
+                    .whenComplete((session, error) -> permits.release()));
+        }
+        List<StompSession> sessions = new ArrayList<>(CLIENTS);
+        for (CompletableFuture<StompSession> future : futures) {
+            sessions.add(future.get(60, TimeUnit.SECONDS));
+        }
+        return sessions;
+    }
+
+    /**
+     * Abonnements werden asynchron registriert; gewartet wird, bis der Server alle kennt.
+     */
+    private static void awaitSubscriptions(MessageMetrics metrics) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (System.nanoTime() < deadline) {
+            Map<String, Integer> subscriptions = metrics.stats().subscriptions();
+            if (subscriptions.get(MessageMetrics.PUBLIC) >= ROOM_SIZE
+                    && subscriptions.get(MessageMetrics.PRIVATE) >= CLIENTS) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("Subscriptions were not registered within 60 s");
+    }
+
+    private static void send(List<StompSession> sessions, int client, Map<String, Integer> mix,
+                             MediaStore.StoredMedia media, LoadReport.Recorder recorder,
+                             long start, long until) {
+        StompSession session = sessions.get(client);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long interval = (long) (1e9 / RATE);
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        // Zufälliger Versatz, damit nicht alle Clients im selben Augenblick senden
+        long scheduled = start + random.nextLong(interval);
+        while (scheduled < until) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String type = pick(mix, random.nextInt(totalWeight));
+            Message message = new Message();
+            message.setSenderName("u" + client);
+            message.setMessage(Long.toString(scheduled));
+            message.setStatus(Status.MESSAGE);
+            String destination = "/app/private-message";
+            if (PUBLIC.equals(type)) {
+                destination = "/app/message";
+            } else {
+                int receiver = (client + 1 + random.nextInt(CLIENTS - 1)) % CLIENTS;
+                message.setReceiverName("u" + receiver);
+                if (MEDIA.equals(type)) {
+                    message.setMedia(media.reference());
+                    message.setMediaType(media.mediaType());
+                }
+            }
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination(destination);
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            try {
+                session.send(headers, MAPPER.writeValueAsBytes(message));
+                recorder.sent(type, scheduled);
+            } catch (Exception e) {
+                recorder.failed(type, scheduled);
+            }
+            scheduled += interval;
+        }
+    }
+
+    private static String pick(Map<String, Integer> mix, int draw) {
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            draw -= entry.getValue();
+            if (draw < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty load.mix");
+    }
+
+    /**
+     * Wertet empfangene Frames aus. Im gebündelten Modus enthält {@code /chatroom/public} ein
+     * JSON-Array statt eines einzelnen Objekts.
+     */
+    private static StompFrameHandler handler(LoadReport.Recorder recorder, boolean publicRoom) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                long now = System.nanoTime();
+                try {
+                    JsonNode node = MAPPER.readTree((byte[]) payload);
+                    for (JsonNode message : node.isArray() ? node : List.of(node)) {
+                        String type = publicRoom ? PUBLIC : message.hasNonNull("media") ? MEDIA : PRIVATE;
+                        recorder.delivered(type, Long.parseLong(message.path("message").asText()), now);
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    recorder.malformed();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,213 @@
+package com.chat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.chat.configuration.MessageMetrics;
+
+/**
+ * Erfasst Sende- und Empfangszeitpunkte des {@link LoadGenerator} und gibt die Ergebnisse als
+ * Tabelle und als JSON im Format von JMH ({@code -rf json}) aus. So lassen sich Läufe
+ * verschiedener Commits mit {@link CompareResults} vergleichen.
+ */
+final class LoadReport {
+
+    private static final List<String> TYPES = List.of(LoadGenerator.PUBLIC, LoadGenerator.PRIVATE, LoadGenerator.MEDIA);
+
+    private LoadReport() {
+    }
+
+    /**
+     * Ergebnis eines Nachrichtentyps.
+     *
+     * @param type             {@code public}, {@code private} oder {@code media}
+     * @param sent             im Messzeitraum gesendete Nachrichten
+     * @param failed           Nachrichten, deren Versand clientseitig scheiterte
+     * @param expected         erwartete Zustellungen (öffentlich: gesendet × Raumgröße)
+     * @param delivered        tatsächliche Zustellungen
+     * @param deliveriesPerSec Zustellungen pro Sekunde im Messzeitraum
+     * @param latencyMs        Latenz Senden→Empfang (p50, p95, p99, p99.9, max)
+     * @param serverPersistP99 p99 Eingang→gespeichert laut Server (inkl. Aufwärmphase; Medien zählen als privat)
+     */
+    record TypeResult(String type, long sent, long failed, long expected, long delivered, double deliveriesPerSec,
+                      Map<String, Double> latencyMs, Double serverPersistP99) {
+    }
+
+    /**
+     * Ergebnis eines Szenarios.
+     */
+    record ScenarioResult(String scenario, List<String> properties, int clients, double connectSeconds,
+                          long malformed, List<TypeResult> types) {
+    }
+
+    /**
+     * Thread-sichere Erfassung während des Laufs. Gezählt werden nur Nachrichten, deren geplanter
+     * Sendezeitpunkt im Messzeitraum liegt.
+     */
+    static final class Recorder {
+
+        private final Map<String, org.HdrHistogram.Recorder> latencies = new LinkedHashMap<>();
+        private final Map<String, LongAdder> sent = new LinkedHashMap<>();
+        private final Map<String, LongAdder> failed = new LinkedHashMap<>();
+        private final Map<String, LongAdder> delivered = new LinkedHashMap<>();
+        private final LongAdder malformed = new LongAdder();
+        private volatile long from = Long.MAX_VALUE;
+        private volatile long until = Long.MIN_VALUE;
+
+        Recorder() {
+            for (String type : TYPES) {
+                latencies.put(type, new org.HdrHistogram.Recorder(3));
+                sent.put(type, new LongAdder());
+                failed.put(type, new LongAdder());
+                delivered.put(type, new LongAdder());
+            }
+        }
+
+        void window(long from, long until) {
+            this.from = from;
+            this.until = until;
+        }
+
+        private boolean measured(long scheduled) {
+            return scheduled >= from && scheduled < until;
+        }
+
+        void sent(String type, long scheduled) {
+            if (measured(scheduled)) {
+                sent.get(type).increment();
+            }
+        }
+
+        void failed(String type, long scheduled) {
+            if (measured(scheduled)) {
+                failed.get(type).increment();
+            }
+        }
+
+        void delivered(String type, long scheduled, long now) {
+            if (measured(scheduled)) {
+                latencies.get(type).recordValue(TimeUnit.NANOSECONDS.toMicros(now - scheduled));
+                delivered.get(type).increment();
+            }
+        }
+
+        void malformed() {
+            malformed.increment();
+        }
+
+        private long expected(String type, int roomSize) {
+            return sent.get(type).sum() * (LoadGenerator.PUBLIC.equals(type) ? roomSize : 1);
+        }
+
+        /**
+         * Wartet nach dem letzten Senden, bis alle erwarteten Zustellungen eingetroffen sind.
+         */
+        void awaitDeliveries(int roomSize, long timeoutNanos) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (System.nanoTime() < deadline) {
+                boolean complete = true;
+                for (String type : TYPES) {
+                    complete &= delivered.get(type).sum() >= expected(type, roomSize);
+                }
+                if (complete) {
+                    return;
+                }
+                Thread.sleep(50);
+            }
+        }
+
+        ScenarioResult result(String scenario, List<String> properties, int clients, double connectSeconds,
+                              int durationSeconds, int roomSize, MessageMetrics.Stats server) {
+            List<TypeResult> types = new ArrayList<>();
+            for (String type : TYPES) {
+                if (sent.get(type).sum() == 0) {
+                    continue;
+                }
+                Histogram histogram = latencies.get(type).getIntervalHistogram();
+                Map<String, Double> latencyMs = new LinkedHashMap<>();
+                latencyMs.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+                latencyMs.put("p95", histogram.getValueAtPercentile(95) / 1000.0);
+                latencyMs.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+                latencyMs.put("p99.9", histogram.getValueAtPercentile(99.9) / 1000.0);
+                latencyMs.put("max", histogram.getMaxValue() / 1000.0);
+
+                MessageMetrics.TypeStats serverStats = server.types()
+                        .get(LoadGenerator.PUBLIC.equals(type) ? MessageMetrics.PUBLIC : MessageMetrics.PRIVATE);
+                Double persistP99 = serverStats != null ? serverStats.persistMs().get("p99") : null;
+
+                long deliveredCount = delivered.get(type).sum();
+                types.add(new TypeResult(type, sent.get(type).sum(), failed.get(type).sum(),
+                        expected(type, roomSize), deliveredCount, (double) deliveredCount / durationSeconds,
+                        latencyMs, persistP99));
+            }
+            return new ScenarioResult(scenario, properties, clients, connectSeconds, malformed.sum(), types);
+        }
+    }
+
+    static void print(List<ScenarioResult> results, PrintStream out) {
+        out.println();
+        out.printf("%-16s %-8s %9s %11s %11s %10s %9s %9s %9s %9s %9s %11s%n", "Szenario", "Typ", "gesendet",
+                "zugestellt", "verloren", "Zust./s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms", "Persist p99");
+        for (ScenarioResult result : results) {
+            for (TypeResult type : result.types()) {
+                Map<String, Double> l = type.latencyMs();
+                out.printf("%-16s %-8s %9d %11d %11d %10.0f %9.2f %9.2f %9.2f %9.2f %9.2f %11s%n",
+                        result.scenario(), type.type(), type.sent(), type.delivered(),
+                        Math.max(0, type.expected() - type.delivered()), type.deliveriesPerSec(),
+                        l.get("p50"), l.get("p95"), l.get("p99"), l.get("p99.9"), l.get("max"),
+                        type.serverPersistP99() != null ? String.format("%.2f", type.serverPersistP99()) : "-");
+            }
+            out.printf("%-16s %d Clients in %.1f s verbunden, %d unlesbare Frames, Eigenschaften: %s%n",
+                    "", result.clients(), result.connectSeconds(), result.malformed(), result.properties());
+        }
+    }
+
+    /**
+     * Schreibt je Szenario und Typ die Latenz-Perzentile und den Durchsatz als JMH-Ergebnisse
+     * ({@code benchmark}, {@code params}, {@code primaryMetric}).
+     */
+    static void writeJson(List<ScenarioResult> results, File file) throws IOException {
+        List<Map<String, Object>> runs = new ArrayList<>();
+        for (ScenarioResult result : results) {
+            for (TypeResult type : result.types()) {
+                Map<String, String> params = new LinkedHashMap<>();
+                params.put("scenario", result.scenario());
+                params.put("type", type.type());
+                for (Map.Entry<String, Double> latency : type.latencyMs().entrySet()) {
+                    runs.add(run("LoadGenerator.latency_" + latency.getKey(), params, latency.getValue(), "ms"));
+                }
+                runs.add(run("LoadGenerator.deliveries", params, type.deliveriesPerSec(), "ops/s"));
+                runs.add(run("LoadGenerator.lost", params, Math.max(0, type.expected() - type.delivered()), "ops"));
+            }
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, runs);
+    }
+
+    private static Map<String, Object> run(String benchmark, Map<String, String> params, double score, String unit) {
+        Map<String, Object> metric = new LinkedHashMap<>();
+        metric.put("score", score);
+        metric.put("scoreError", "NaN");
+        metric.put("scoreUnit", unit);
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("benchmark", benchmark);
+        run.put("mode", "load");
+        run.put("params", params);
+        run.put("primaryMetric", metric);
+        return run;
+    }
+}
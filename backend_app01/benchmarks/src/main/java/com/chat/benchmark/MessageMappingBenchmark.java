@@ -0,0 +1,40 @@
+package com.chat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import com.chat.entity.ChatMessage;
+import com.chat.model.Message;
+
+/**
+ * Abbildung der empfangenen {@link Message} auf die Entität {@link ChatMessage}, die jede
+ * gespeicherte Nachricht durchläuft (inklusive Bildung des Konversationsschlüssels).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MessageMappingBenchmark {
+
+    @Param({"public", "private"})
+    public String kind;
+
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        message = SampleMessages.of(kind);
+    }
+
+    @Benchmark
+    public ChatMessage toChatMessage() {
+        return ChatMessage.from(message, 1_700_000_000_000L);
+    }
+}
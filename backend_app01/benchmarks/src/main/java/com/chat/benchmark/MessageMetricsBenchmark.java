@@ -0,0 +1,95 @@
+package com.chat.benchmark;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.chat.configuration.MessageMetrics;
+
+/**
+ * Mehraufwand der {@link MessageMetrics} pro Nachricht: Stempeln des eingehenden Frames, Übernahme
+ * in eine ausgehende Nachricht, Messung der Auslieferung und des Commits. {@code baseline} erzeugt
+ * dieselben Nachrichten ohne Interceptoren.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MessageMetricsBenchmark {
+
+    private static final byte[] PAYLOAD =
+            "{\"senderName\":\"alice\",\"message\":\"hallo\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final MessageChannel channel = new ExecutorSubscribableChannel();
+    private final MessageHandler handler = message -> {
+    };
+
+    private MessageMetrics metrics;
+    private ExecutorChannelInterceptor inbound;
+    private ExecutorChannelInterceptor outbound;
+
+    @Setup
+    public void setUp() {
+        metrics = new MessageMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        inbound = metrics.inbound();
+        outbound = metrics.outbound();
+    }
+
+    @Benchmark
+    public Message<?> baseline() {
+        Message<?> in = send();
+        MessageMetrics.receivedNanos(SimpMessageHeaderAccessor.wrap(in));
+        return broadcast();
+    }
+
+    @Benchmark
+    public Message<?> instrumented() {
+        Message<?> in = inbound.preSend(send(), channel);
+        inbound.beforeHandle(in, channel, handler);
+        long receivedNanos = MessageMetrics.receivedNanos(SimpMessageHeaderAccessor.wrap(in));
+
+        Message<?> out = outbound.preSend(broadcast(), channel);
+        outbound.afterMessageHandled(out, channel, handler, null);
+        inbound.afterMessageHandled(in, channel, handler, null);
+        metrics.persisted(MessageMetrics.PUBLIC, receivedNanos);
+        return out;
+    }
+
+    private static Message<byte[]> send() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination("/app/message");
+        accessor.setSessionId("s1");
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(PAYLOAD, accessor.getMessageHeaders());
+    }
+
+    /**
+     * Baut eine Nachricht an einen Abonnenten so, wie der einfache Broker sie erzeugt.
+     */
+    private static Message<byte[]> broadcast() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("s2");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/chatroom/public");
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(PAYLOAD, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,70 @@
+package com.chat.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import com.chat.configuration.WireFormatInterceptor;
+import com.chat.model.Message;
+
+/**
+ * (De-)Serialisierung von {@link Message} als JSON (Standardformat der STOMP-Frames) und CBOR
+ * (aushandelbares Binärformat), dazu die Umwandlung JSON → CBOR, die der
+ * {@link WireFormatInterceptor} einmal pro Broadcast ausführt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MessageSerializationBenchmark {
+
+    @Param({"public", "private", "media"})
+    public String kind;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final CBORMapper cbor = new CBORMapper();
+    private final WireFormatInterceptor interceptor = new WireFormatInterceptor();
+    private Message message;
+    private byte[] jsonBytes;
+    private byte[] cborBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        message = SampleMessages.of(kind);
+        jsonBytes = json.writeValueAsBytes(message);
+        cborBytes = cbor.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws Exception {
+        return json.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Message deserializeJson() throws Exception {
+        return json.readValue(jsonBytes, Message.class);
+    }
+
+    @Benchmark
+    public byte[] serializeCbor() throws Exception {
+        return cbor.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public Message deserializeCbor() throws Exception {
+        return cbor.readValue(cborBytes, Message.class);
+    }
+
+    @Benchmark
+    public byte[] transcodeJsonToCbor() {
+        return interceptor.jsonToCbor(jsonBytes);
+    }
+}
@@ -0,0 +1,93 @@
+package com.chat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.chat.ChatApplication;
+import com.chat.entity.ChatMessage;
+import com.chat.model.Message;
+import com.chat.repository.ChatMessageRepository;
+
+/**
+ * Speichern von {@link ChatMessage} über das {@link ChatMessageRepository} in eine eingebettete
+ * H2-In-Memory-Datenbank: einzeln in eigener Transaktion (Modus {@code SYNC}) und als Batch von
+ * {@value #BATCH_SIZE} Nachrichten (Write-Behind). Die Ergebnisse gelten pro Nachricht.
+ *
+ * <p>Die Anwendung wird einmal pro Fork auf einem freien Port gestartet (Spring Security setzt
+ * den MVC-Kontext voraus); vor jeder Iteration wird die Tabelle geleert, damit alle Iterationen
+ * gleich große Indizes sehen.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RepositorySaveBenchmark {
+
+    private static final int BATCH_SIZE = 200;
+
+    private ConfigurableApplicationContext context;
+    private ChatMessageRepository repository;
+    private TransactionTemplate transactionTemplate;
+    private Message message;
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        context = new SpringApplicationBuilder(ChatApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--chat.persistence.mode=SYNC",
+                        "--chat.media.directory=" + Files.createTempDirectory("bench-media"),
+                        "--chat.search.directory=" + Files.createTempDirectory("bench-search"),
+                        "--chat.archive.directory=" + Files.createTempDirectory("bench-archive"),
+                        "--logging.level.root=WARN");
+        repository = context.getBean(ChatMessageRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        message = SampleMessages.of("private");
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        repository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public ChatMessage saveOne() {
+        ChatMessage chatMessage = ChatMessage.from(message, ++timestamp);
+        return transactionTemplate.execute(status -> repository.save(chatMessage));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<ChatMessage> saveBatch() {
+        List<ChatMessage> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(ChatMessage.from(message, ++timestamp));
+        }
+        return transactionTemplate.execute(status -> repository.saveAll(batch));
+    }
+}
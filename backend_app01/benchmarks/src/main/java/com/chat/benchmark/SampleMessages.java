@@ -0,0 +1,37 @@
+package com.chat.benchmark;
+
+import com.chat.model.Message;
+import com.chat.model.Status;
+
+/**
+ * Typische Chatnachrichten als feste Eingaben der Benchmarks.
+ */
+final class SampleMessages {
+
+    private SampleMessages() {
+    }
+
+    /**
+     * @param kind {@code public}, {@code private} oder {@code media}
+     * @return eine neue Nachricht der gewünschten Art
+     */
+    static Message of(String kind) {
+        Message message = new Message();
+        message.setSenderName("alice");
+        message.setStatus(Status.MESSAGE);
+        switch (kind) {
+            case "public" -> message.setMessage("Hallo zusammen, ist heute jemand im Büro?");
+            case "private" -> {
+                message.setReceiverName("bob");
+                message.setMessage("Kannst du mir die Folien von gestern schicken?");
+            }
+            case "media" -> {
+                message.setReceiverName("bob");
+                message.setMedia("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+                message.setMediaType("image/png");
+            }
+            default -> throw new IllegalArgumentException("Unbekannte Nachrichtenart: " + kind);
+        }
+        return message;
+    }
+}
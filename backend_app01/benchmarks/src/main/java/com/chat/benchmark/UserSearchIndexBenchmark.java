@@ -0,0 +1,83 @@
+package com.chat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.chat.model.UserSuggestion;
+import com.chat.service.UserSearchIndex;
+
+/**
+ * Präfixsuche des {@link UserSearchIndex} über viele Benutzer (Top 10 zu zufälligen Präfixen mit
+ * ein bis vier Buchstaben) sowie der vollständige Neuaufbau aus bereits geladenen Benutzern.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class UserSearchIndexBenchmark {
+
+    private static final int PREFIXES = 100_000;
+
+    @Param({"100000", "1000000"})
+    public int users;
+
+    private List<UserSuggestion> suggestions;
+    private UserSearchIndex index;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        suggestions = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            String first = word(random, 4 + random.nextInt(5));
+            String last = word(random, 5 + random.nextInt(6));
+            suggestions.add(new UserSuggestion((long) i, first + i, capitalize(first) + " " + capitalize(last)));
+        }
+        // Das Repository wird nur für rebuild() ohne Argumente gebraucht
+        index = new UserSearchIndex(null, 1024);
+        index.rebuild(suggestions);
+
+        prefixes = new String[PREFIXES];
+        for (int i = 0; i < PREFIXES; i++) {
+            prefixes[i] = word(random, 1 + random.nextInt(4));
+        }
+    }
+
+    @Benchmark
+    public List<UserSuggestion> search() {
+        String prefix = prefixes[next];
+        next = next + 1 == PREFIXES ? 0 : next + 1;
+        return index.search(prefix, 10);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int rebuild() {
+        index.rebuild(suggestions);
+        return index.size();
+    }
+
+    private static String word(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
@@ -12,13 +12,51 @@ interface ChatMessage {
   receiverName?: string;
   message?: string;
   media?: string;
-  status: "JOIN" | "LEAVE" | "MESSAGE";
+  mediaType?: string;
+  timestamp?: number;
+  // Fortlaufende Nummer innerhalb der Konversation, vom Server vergeben
+  sequence?: number;
+  status: "JOIN" | "LEAVE" | "MESSAGE" | "RECEIPT";
+}
+
+// Verpasste Nachrichten einer Konversation nach einem Verbindungsabbruch
+interface ResyncBatch {
+  conversation: string;
+  messages: ChatMessage[];
+  complete: boolean;
+}
+
+const PUBLIC_CONVERSATION = "#public";
+
+// Kumulativer Stand: alle Nachrichten bis einschließlich dieser Sequenznummer empfangen bzw. gelesen
+interface Receipt {
+  senderName: string;
+  receiverName: string;
+  deliveredUpTo: number;
+  readUpTo: number;
+  status: "RECEIPT";
 }
 
 interface User {
   username: string;
 }
 
+// Eintrag im Posteingang: letzte Nachricht und ungelesene Nachrichten pro Gesprächspartner
+interface InboxEntry {
+  peer: string;
+  lastSender: string;
+  lastPreview: string;
+  lastTimestamp: number;
+  readUpTo: number;
+  unread: number;
+}
+
+interface PresenceDelta {
+  version: number;
+  joined: string[];
+  left: string[];
+}
+
 let stompClient: Client | null = null;
 
 const ChatPage: React.FC = () => {
@@ -26,11 +64,18 @@ const ChatPage: React.FC = () => {
   const [receiver, setReceiver] = useState("");
   const [message, setMessage] = useState("");
   const [media, setMedia] = useState("");
+  const [mediaType, setMediaType] = useState("");
   const [tab, setTab] = useState("CHATROOM");
   const [publicChats, setPublicChats] = useState<ChatMessage[]>([]);
   const [privateChats, setPrivateChats] = useState<Map<string, ChatMessage[]>>(new Map());
+  // Stand des Gegenübers für meine Nachrichten, pro Gesprächspartner
+  const [receipts, setReceipts] = useState<Map<string, Receipt>>(new Map());
+  const [inbox, setInbox] = useState<Map<string, InboxEntry>>(new Map());
+  const [inboxCursor, setInboxCursor] = useState<string | null>(null);
   const router = useRouter();
   const connected = useRef(false);
+  // Gesehene Sequenznummern pro Gegenüber bzw. #public, für den Abgleich und gegen Duplikate
+  const seen = useRef<Map<string, Set<number>>>(new Map());
   const username = (typeof window !== "undefined" ? localStorage.getItem("chat-username") : "") || "";
 
   useEffect(() => {
@@ -54,9 +99,11 @@ const ChatPage: React.FC = () => {
 
   const connect = () => {
     const socket = new SockJS("http://localhost:8080/ws");
+    const token = localStorage.getItem("jwt-token");
 
     stompClient = new Client({
       webSocketFactory: () => socket,
+      connectHeaders: token ? { Authorization: `Bearer ${token}` } : {},
       reconnectDelay: 5000,
       onConnect: onConnected,
       onStompError: (frame) => {
@@ -68,50 +115,219 @@ const ChatPage: React.FC = () => {
     stompClient.activate();
   };
 
+  // Der Server hat eine Nachricht wegen Überschreitung des Sendebudgets verworfen
+  const onThrottled = (payload: IMessage) => {
+    const notice = JSON.parse(payload.body);
+    console.warn(`Zu viele Nachrichten an ${notice.destination}, erneut senden in ${notice.retryAfterMs} ms`);
+  };
+
+  const onSendFailed = (payload: IMessage) => {
+    const failure = JSON.parse(payload.body);
+    console.warn(`Nachricht an ${failure.receiverName ?? "alle"} nicht zugestellt: ${failure.reason}`);
+  };
+
   const onConnected = () => {
     connected.current = true;
 
     stompClient?.subscribe("/chatroom/public", onPublicMessageReceived);
+    stompClient?.subscribe("/chatroom/presence", onPresenceChanged);
     stompClient?.subscribe(`/user/${username}/private`, onPrivateMessageReceived);
+    stompClient?.subscribe("/user/queue/throttle", onThrottled);
+    stompClient?.subscribe(`/user/${username}/resync`, onResync);
+    stompClient?.subscribe(`/user/${username}/errors`, onSendFailed);
+
+    // Nach einem erneuten Verbinden nur die verpassten Nachrichten anfordern
+    const last: Record<string, number> = {};
+    seen.current.forEach((_, key) => (last[key] = lastSequence(key)));
+    requestResync(last);
 
     stompClient?.publish({
       destination: "/app/message",
       body: JSON.stringify({ senderName: username, status: "JOIN" }),
     });
+
+    loadInbox(null);
+
+    // Aktuellen Stand einmal laden, danach nur noch die gesammelten Änderungen anwenden
+    axios.get("http://localhost:8080/api/presence").then((res) => {
+      res.data.online.forEach((user: string) => {
+        if (user !== username && !privateChats.has(user)) privateChats.set(user, []);
+      });
+      setPrivateChats(new Map(privateChats));
+    });
   };
 
-  const onPublicMessageReceived = (payload: IMessage) => {
-    const msg: ChatMessage = JSON.parse(payload.body);
-    if (msg.status === "MESSAGE") {
-      setPublicChats((prev) => [...prev, msg]);
-    } else if (msg.status === "JOIN" && msg.senderName !== username) {
-      if (!privateChats.has(msg.senderName)) {
-        privateChats.set(msg.senderName, []);
-        setPrivateChats(new Map(privateChats));
-      }
-    } else if (msg.status === "LEAVE" && msg.senderName !== username) {
-      privateChats.delete(msg.senderName);
+  // Posteingang seitenweise laden, zuletzt aktive Gespräche zuerst
+  const loadInbox = async (before: string | null) => {
+    try {
+      const token = localStorage.getItem("jwt-token");
+      if (!token) return;
+      const res = await axios.get("http://localhost:8080/api/secure/inbox", {
+        params: before ? { before } : {},
+        headers: { Authorization: `Bearer ${token}` },
+      });
+      const entries: InboxEntry[] = res.data.conversations;
+      setInbox((prev) => {
+        const next = before ? new Map(prev) : new Map<string, InboxEntry>();
+        entries.forEach((entry) => next.set(entry.peer, entry));
+        return next;
+      });
+      entries.forEach((entry) => {
+        if (!privateChats.has(entry.peer)) privateChats.set(entry.peer, []);
+      });
       setPrivateChats(new Map(privateChats));
+      setInboxCursor(res.data.before);
+    } catch (err) {
+      console.error("Fehler beim Laden des Posteingangs", err);
     }
   };
 
+  // Hält die Vorschau aktuell, bis der Posteingang das nächste Mal geladen wird
+  const updateInbox = (peer: string, msg: ChatMessage, unread: boolean) => {
+    setInbox((prev) => {
+      const entry = prev.get(peer);
+      return new Map(prev).set(peer, {
+        peer,
+        lastSender: msg.senderName,
+        lastPreview: msg.message || (msg.media ? "📎" : ""),
+        lastTimestamp: msg.timestamp || Date.now(),
+        readUpTo: entry?.readUpTo || 0,
+        unread: unread ? (entry?.unread || 0) + 1 : entry?.unread || 0,
+      });
+    });
+  };
+
+  const markRead = (peer: string) => {
+    setInbox((prev) => {
+      const entry = prev.get(peer);
+      return entry ? new Map(prev).set(peer, { ...entry, unread: 0 }) : prev;
+    });
+  };
+
+  const lastSequence = (key: string) =>
+    Array.from(seen.current.get(key) || []).reduce((max, seq) => Math.max(max, seq), 0);
+
+  // Merkt sich die Sequenznummer; false, wenn die Nachricht schon bekannt ist
+  const remember = (key: string, msg: ChatMessage) => {
+    if (!msg.sequence) return true;
+    const sequences = seen.current.get(key) || new Set<number>();
+    seen.current.set(key, sequences);
+    if (sequences.has(msg.sequence)) return false;
+    sequences.add(msg.sequence);
+    return true;
+  };
+
+  const requestResync = (last: Record<string, number>) => {
+    if (Object.keys(last).length === 0) return;
+    stompClient?.publish({
+      destination: "/app/resync",
+      body: JSON.stringify({ user: username, conversations: last }),
+    });
+  };
+
+  // Antwort auf den Abgleich; unvollständige Konversationen ab der letzten Nummer erneut anfordern
+  const onResync = (payload: IMessage) => {
+    const batches: ResyncBatch[] = JSON.parse(payload.body);
+    const more: Record<string, number> = {};
+    batches.forEach((batch) => {
+      const key = batch.conversation;
+      const fresh = batch.messages.filter((msg) => remember(key, msg));
+      if (key === PUBLIC_CONVERSATION) {
+        if (fresh.length > 0) setPublicChats((prev) => [...prev, ...fresh]);
+      } else {
+        // Eigene Nachrichten sind lokal bereits vorhanden
+        const received = fresh.filter((msg) => msg.senderName !== username);
+        if (received.length > 0) {
+          privateChats.set(key, [...(privateChats.get(key) || []), ...received]);
+          setPrivateChats(new Map(privateChats));
+          acknowledge(key, latestFrom(key), false);
+        }
+      }
+      if (!batch.complete) more[key] = lastSequence(key);
+    });
+    requestResync(more);
+  };
+
+  const onPublicMessageReceived = (payload: IMessage) => {
+    // Bei gebündelter Verteilung enthält ein Frame ein Array mehrerer Nachrichten
+    const body: ChatMessage | ChatMessage[] = JSON.parse(payload.body);
+    const msgs = (Array.isArray(body) ? body : [body])
+      .filter((msg) => msg.status === "MESSAGE")
+      .filter((msg) => remember(PUBLIC_CONVERSATION, msg));
+    if (msgs.length > 0) {
+      setPublicChats((prev) => [...prev, ...msgs]);
+    }
+  };
+
+  const onPresenceChanged = (payload: IMessage) => {
+    const delta: PresenceDelta = JSON.parse(payload.body);
+    delta.joined.forEach((user) => {
+      if (user !== username && !privateChats.has(user)) privateChats.set(user, []);
+    });
+    delta.left.forEach((user) => privateChats.delete(user));
+    setPrivateChats(new Map(privateChats));
+  };
+
   const onPrivateMessageReceived = (payload: IMessage) => {
-    const msg: ChatMessage = JSON.parse(payload.body);
-    const messages = privateChats.get(msg.senderName) || [];
-    messages.push(msg);
-    privateChats.set(msg.senderName, messages);
+    const msg: ChatMessage | Receipt = JSON.parse(payload.body);
+    if (msg.status === "RECEIPT") {
+      setReceipts((prev) => new Map(prev).set(msg.senderName, msg as Receipt));
+      return;
+    }
+    const own = msg.senderName === username;
+    const peer = own ? msg.receiverName : msg.senderName;
+    if (!peer || !remember(peer, msg)) return;
+    const messages = privateChats.get(peer) || [];
+    if (own) {
+      // Echo der eigenen Nachricht: die lokale Kopie erhält die Sequenznummer des Servers
+      const pending = messages.findIndex((m) => m.senderName === username && !m.sequence && m.message === msg.message);
+      if (pending >= 0) messages[pending] = msg;
+      else messages.push(msg);
+    } else {
+      messages.push(msg);
+    }
+    privateChats.set(peer, messages);
     setPrivateChats(new Map(privateChats));
+    if (own) return;
+    updateInbox(peer, msg, true);
+    acknowledge(peer, msg.sequence, false);
+  };
+
+  // Bestätigt kumulativ alle Nachrichten des Gegenübers bis zur Sequenznummer; der Server fasst sie zusammen
+  const acknowledge = (peer: string, upTo: number | undefined, read: boolean) => {
+    if (!upTo) return;
+    stompClient?.publish({
+      destination: "/app/receipt",
+      body: JSON.stringify(
+        read
+          ? { senderName: username, receiverName: peer, readUpTo: upTo }
+          : { senderName: username, receiverName: peer, deliveredUpTo: upTo }
+      ),
+    });
+  };
+
+  const latestFrom = (peer: string) =>
+    (privateChats.get(peer) || [])
+      .filter((msg) => msg.sequence)
+      .reduce((max, msg) => Math.max(max, msg.sequence as number), 0);
+
+  const tickFor = (msg: ChatMessage) => {
+    const receipt = msg.receiverName ? receipts.get(msg.receiverName) : undefined;
+    if (!receipt || !msg.sequence) return "";
+    if (msg.sequence <= receipt.readUpTo) return "✓✓";
+    return msg.sequence <= receipt.deliveredUpTo ? "✓" : "";
   };
 
   const sendMessage = () => {
     if (!message.trim() && !media) return;
-    const msg: ChatMessage = { senderName: username, message, media, status: "MESSAGE" };
+    const msg: ChatMessage = { senderName: username, message, media, mediaType, status: "MESSAGE" };
     stompClient?.publish({
       destination: "/app/message",
       body: JSON.stringify(msg),
     });
     setMessage("");
     setMedia("");
+    setMediaType("");
   };
 
   const sendPrivate = () => {
@@ -121,8 +337,15 @@ const ChatPage: React.FC = () => {
       receiverName: receiver,
       message,
       media,
+      mediaType,
+      // Vorläufig die lokale Zeit; der Server vergibt den endgültigen Zeitstempel
+      timestamp: Date.now(),
       status: "MESSAGE",
     };
+    // Wer antwortet, hat das Gespräch gelesen
+    acknowledge(receiver, latestFrom(receiver), true);
+    markRead(receiver);
+    updateInbox(receiver, msg, false);
     const messages = privateChats.get(receiver) || [];
     messages.push(msg);
     privateChats.set(receiver, messages);
@@ -133,6 +356,7 @@ const ChatPage: React.FC = () => {
     });
     setMessage("");
     setMedia("");
+    setMediaType("");
   };
 
   const handleLogout = () => {
@@ -144,11 +368,18 @@ const ChatPage: React.FC = () => {
     router.push("/");
   };
 
-  const base64ConversionForImages = (e: React.ChangeEvent<HTMLInputElement>) => {
-    if (e.target.files?.[0]) {
-      const reader = new FileReader();
-      reader.readAsDataURL(e.target.files[0]);
-      reader.onload = () => setMedia(reader.result as string);
+  // Datei einmalig hochladen; die Nachricht trägt danach nur noch die Referenz
+  const uploadMedia = async (e: React.ChangeEvent<HTMLInputElement>) => {
+    const file = e.target.files?.[0];
+    if (!file) return;
+    const form = new FormData();
+    form.append("file", file);
+    try {
+      const res = await axios.post("http://localhost:8080/api/media", form, { withCredentials: true });
+      setMedia(res.data.reference);
+      setMediaType(res.data.mediaType);
+    } catch (err) {
+      console.error("Fehler beim Hochladen der Datei", err);
     }
   };
 
@@ -170,9 +401,20 @@ const ChatPage: React.FC = () => {
       }
     );
     if (res.status === 200) {
-      privateChats.set(other, res.data);
+      // Neueste Seite des Verlaufs; ältere Seiten über res.data.before
+      res.data.messages.forEach((msg: ChatMessage) => remember(other, msg));
+      privateChats.set(other, res.data.messages);
       setPrivateChats(new Map(privateChats));
+      acknowledge(other, latestFrom(other), true);
+      markRead(other);
     }
+    const receiptsRes = await axios.get(`http://localhost:8080/api/users/receipts/${username}/${other}`, {
+      withCredentials: true,
+    });
+    receiptsRes.data
+      .filter((receipt: Receipt) => receipt.senderName === other)
+      .forEach((receipt: Receipt) => receipts.set(other, receipt));
+    setReceipts(new Map(receipts));
   } catch (err) {
     console.error("Fehler beim Laden des Chatverlaufs", err);
   }
@@ -189,7 +431,15 @@ const ChatPage: React.FC = () => {
               <div className={`p-2 rounded ${mine ? "bg-blue-500 text-white" : "bg-gray-200"}`}>
                 {!mine && <div className="font-bold">{msg.senderName}</div>}
                 <div>{msg.message}</div>
-                {msg.media && <img src={msg.media} alt="" className="max-h-48 mt-2 rounded" />}
+                {msg.media && (!msg.mediaType || msg.mediaType.startsWith("image/")) && (
+                  <img src={`http://localhost:8080/api/media/${msg.media}`} alt="" className="max-h-48 mt-2 rounded" />
+                )}
+                {msg.media && msg.mediaType && !msg.mediaType.startsWith("image/") && (
+                  <a href={`http://localhost:8080/api/media/${msg.media}`} className="underline mt-2 block">
+                    Datei herunterladen
+                  </a>
+                )}
+                {mine && tab !== "CHATROOM" && <div className="text-xs text-right">{tickFor(msg)}</div>}
               </div>
             </div>
           );
@@ -214,7 +464,7 @@ const ChatPage: React.FC = () => {
         </button>
         <label className="bg-gray-600 p-2 rounded text-white cursor-pointer">
           📎
-          <input type="file" className="hidden" onChange={base64ConversionForImages} />
+          <input type="file" className="hidden" onChange={uploadMedia} />
         </label>
       </div>
 
@@ -229,18 +479,33 @@ const ChatPage: React.FC = () => {
             Room Chat
         </button>
         </div>
-        {[...privateChats.keys()].map((u) => (
-          <button
-            key={u}
-            onClick={() => {
-              setTab(u);
-              fetchChatHistory(u);
-            }}
-            className={`p-2 rounded ${tab === u ? "bg-blue-400" : "bg-gray-300"}`}
-          >
-            {u}
+        {[...privateChats.keys()]
+          // Gespräche aus dem Posteingang nach Aktualität, danach die übrigen Online-Benutzer
+          .sort((a, b) => (inbox.get(b)?.lastTimestamp || 0) - (inbox.get(a)?.lastTimestamp || 0))
+          .map((u) => {
+            const entry = inbox.get(u);
+            return (
+              <button
+                key={u}
+                onClick={() => {
+                  setTab(u);
+                  fetchChatHistory(u);
+                }}
+                title={entry ? `${entry.lastSender}: ${entry.lastPreview}` : undefined}
+                className={`p-2 rounded ${tab === u ? "bg-blue-400" : "bg-gray-300"}`}
+              >
+                {u}
+                {entry && entry.unread > 0 && (
+                  <span className="ml-1 px-1 rounded-full bg-red-600 text-white text-xs">{entry.unread}</span>
+                )}
+              </button>
+            );
+          })}
+        {inboxCursor && (
+          <button onClick={() => loadInbox(inboxCursor)} className="p-2 rounded bg-gray-300">
+            …
           </button>
-        ))}
+        )}
       </div>
     </div>
   );
@@ -1,33 +1,63 @@
-import { render, screen, fireEvent, waitFor } from '@testing-library/react';
+import { render, screen, fireEvent, act } from '@testing-library/react';
 import axios from 'axios';
-import SearchBar from '../components/SearchBar'; 
+import SearchBar from '../components/SearchBar';
 
 jest.mock('axios');
 const mockedAxios = axios as jest.Mocked<typeof axios>;
 
 describe('SearchBar', () => {
+  beforeEach(() => {
+    jest.useFakeTimers();
+    mockedAxios.get.mockReset();
+  });
+
+  afterEach(() => {
+    jest.useRealTimers();
+  });
+
   test('renders input and button', () => {
     render(<SearchBar onUserSelect={jest.fn()} />);
     expect(screen.getByPlaceholderText(/search username/i)).toBeInTheDocument();
     expect(screen.getByRole('button')).toBeInTheDocument();
   });
 
-  test('shows search results after successful API call and calls onUserSelect on click', async () => {
-    const fakeUser = { id: '1', username: 'testuser' };
-    mockedAxios.get.mockResolvedValueOnce({ data: fakeUser });
+  test('queries typeahead once after the debounce and calls onUserSelect on click', async () => {
+    const fakeUser = { id: '1', username: 'testuser', name: 'Test User' };
+    mockedAxios.get.mockResolvedValue({ data: [fakeUser] });
 
     const onUserSelect = jest.fn();
 
     render(<SearchBar onUserSelect={onUserSelect} />);
 
-    fireEvent.change(screen.getByPlaceholderText(/search username/i), { target: { value: 'testuser' } });
-    fireEvent.click(screen.getByRole('button'));
+    const input = screen.getByPlaceholderText(/search username/i);
+    fireEvent.change(input, { target: { value: 'test' } });
+    fireEvent.change(input, { target: { value: 'testuser' } });
+    expect(mockedAxios.get).not.toHaveBeenCalled();
 
-    await waitFor(() => {
-      expect(screen.getByText('testuser')).toBeInTheDocument();
+    await act(async () => {
+      jest.advanceTimersByTime(150);
     });
 
+    expect(mockedAxios.get).toHaveBeenCalledTimes(1);
+    expect(mockedAxios.get).toHaveBeenCalledWith('http://localhost:8080/api/users/typeahead', {
+      params: { q: 'testuser', limit: 10 },
+    });
+    expect(screen.getByText('testuser')).toBeInTheDocument();
+
     fireEvent.click(screen.getByText('testuser'));
     expect(onUserSelect).toHaveBeenCalledWith(fakeUser);
   });
+
+  test('shows a message when typeahead returns no users', async () => {
+    mockedAxios.get.mockResolvedValue({ data: [] });
+
+    render(<SearchBar onUserSelect={jest.fn()} />);
+
+    fireEvent.change(screen.getByPlaceholderText(/search username/i), { target: { value: 'ghost' } });
+    await act(async () => {
+      jest.advanceTimersByTime(150);
+    });
+
+    expect(screen.getByText('User not found.')).toBeInTheDocument();
+  });
 });
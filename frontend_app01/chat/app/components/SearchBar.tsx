@@ -1,9 +1,10 @@
-import { useState, ChangeEvent } from "react";
+import { useState, useEffect, ChangeEvent } from "react";
 import axios from "axios";
 
 interface User {
   id: string;
   username: string;
+  name?: string;
 }
 
 interface SearchBarProps {
@@ -19,25 +20,34 @@ const SearchBar: React.FC<SearchBarProps> = ({ onUserSelect }) => {
     setUsername(e.target.value);
   };
 
-  const handleSearch = async () => {
+  const handleSearch = async (query: string = username) => {
+    if (!query.trim()) {
+      setSearchResults([]);
+      return;
+    }
     try {
       setError(null);
-      const response = await axios.get(
-    `http://localhost:8080/api/users/search?username=${username}`
-  );
+      const response = await axios.get<User[]>("http://localhost:8080/api/users/typeahead", {
+        params: { q: query, limit: 10 },
+      });
 
-      setSearchResults(response.data ? [response.data] : []);
-    } catch (error) {
-      console.error("Error searching for user:", error);
-      if (axios.isAxiosError(error) && error.response && error.response.status === 404) {
+      setSearchResults(response.data);
+      if (response.data.length === 0) {
         setError("User not found.");
-      } else {
-        setError("An error occurred while searching.");
       }
+    } catch (error) {
+      console.error("Error searching for user:", error);
+      setError("An error occurred while searching.");
       setSearchResults([]);
     }
   };
 
+  // Vorschläge während der Eingabe, mit kurzer Verzögerung gegen eine Anfrage pro Tastendruck
+  useEffect(() => {
+    const timer = setTimeout(() => handleSearch(username), 150);
+    return () => clearTimeout(timer);
+  }, [username]);
+
   const handleUserSelect = (user: User) => {
     setUsername("");
     setSearchResults([]);
@@ -55,7 +65,7 @@ const SearchBar: React.FC<SearchBarProps> = ({ onUserSelect }) => {
       />
       <button
         className="absolute right-0 top-0 mt-2 mr-2"
-        onClick={handleSearch}
+        onClick={() => handleSearch()}
       >
         <svg
           xmlns="http://www.w3.org/2000/svg"
@@ -88,6 +98,7 @@ const SearchBar: React.FC<SearchBarProps> = ({ onUserSelect }) => {
               onClick={() => handleUserSelect(user)}
             >
               {user.username}
+              {user.name && <span className="text-gray-500 ml-2">{user.name}</span>}
             </div>
           ))}
         </div>